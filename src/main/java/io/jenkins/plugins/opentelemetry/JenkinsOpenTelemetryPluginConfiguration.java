@@ -14,10 +14,13 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import groovy.text.GStringTemplateEngine;
 import hudson.Extension;
 import hudson.PluginWrapper;
+import hudson.XmlFile;
 import hudson.init.InitMilestone;
 import hudson.init.Initializer;
 import hudson.model.Describable;
 import hudson.model.Descriptor;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
 import hudson.tasks.BuildStep;
 import hudson.util.FormValidation;
 import io.jenkins.plugins.opentelemetry.authentication.NoAuthentication;
@@ -73,6 +76,7 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -161,6 +165,14 @@ public class JenkinsOpenTelemetryPluginConfiguration extends GlobalConfiguration
      */
     protected transient OpenTelemetryConfiguration currentOpenTelemetryConfiguration;
 
+    /**
+     * Incremented each time an input of {@link #toOpenTelemetryConfiguration()} changes so that the consumers caching
+     * a snapshot of it know when to refresh it.
+     *
+     * @see #configurationChanged()
+     */
+    private final transient AtomicLong configurationGeneration = new AtomicLong();
+
     @DataBoundConstructor
     public JenkinsOpenTelemetryPluginConfiguration() {
         load();
@@ -258,6 +270,35 @@ public class JenkinsOpenTelemetryPluginConfiguration extends GlobalConfiguration
             }
         }
         this.logStorageRetriever = resolveLogStorageRetriever();
+        configurationChanged();
+    }
+
+    /**
+     * @see #configurationGeneration
+     */
+    public long getConfigurationGeneration() {
+        return configurationGeneration.get();
+    }
+
+    /**
+     * Invoked when an input of {@link #toOpenTelemetryConfiguration()} changes: {@link DataBoundSetter}s invoked by the
+     * configuration form and by JCasC, (re)initialization, change of the Jenkins URL
+     */
+    void configurationChanged() {
+        this.configurationGeneration.incrementAndGet();
+    }
+
+    /**
+     * Refresh the snapshots of the configuration when the Jenkins URL changes
+     */
+    @Extension
+    public static class JenkinsLocationConfigurationListener extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof JenkinsLocationConfiguration) {
+                JenkinsOpenTelemetryPluginConfiguration.get().configurationChanged();
+            }
+        }
     }
 
     /**
@@ -287,6 +328,7 @@ public class JenkinsOpenTelemetryPluginConfiguration extends GlobalConfiguration
         this.endpoint = sanitizeOtlpEndpoint(endpoint);
         // debug line used to verify the lifecycle (@Initializer) when using JCasC configuration
         LOGGER.log(Level.FINE, () -> "setEndpoint(" + endpoint + ")");
+        configurationChanged();
     }
 
     @NonNull
@@ -297,6 +339,7 @@ public class JenkinsOpenTelemetryPluginConfiguration extends GlobalConfiguration
     @DataBoundSetter
     public void setAuthentication(OtlpAuthentication authentication) {
         this.authentication = authentication;
+        configurationChanged();
     }
 
     @CheckForNull
@@ -307,11 +350,13 @@ public class JenkinsOpenTelemetryPluginConfiguration extends GlobalConfiguration
     @DataBoundSetter
     public void setTrustedCertificatesPem(String trustedCertificatesPem) {
         this.trustedCertificatesPem = trustedCertificatesPem;
+        configurationChanged();
     }
 
     @DataBoundSetter
     public void setObservabilityBackends(List<ObservabilityBackend> observabilityBackends) {
         this.observabilityBackends = observabilityBackends == null ? Collections.emptyList() : observabilityBackends;
+        configurationChanged();
     }
 
     @NonNull
@@ -334,7 +379,7 @@ public class JenkinsOpenTelemetryPluginConfiguration extends GlobalConfiguration
     @DataBoundSetter
     public void setExporterTimeoutMillis(Integer exporterTimeoutMillis) {
         this.exporterTimeoutMillis = exporterTimeoutMillis;
-
+        configurationChanged();
     }
 
     public Integer getExporterIntervalMillis() {
@@ -344,7 +389,7 @@ public class JenkinsOpenTelemetryPluginConfiguration extends GlobalConfiguration
     @DataBoundSetter
     public void setExporterIntervalMillis(Integer exporterIntervalMillis) {
         this.exporterIntervalMillis = exporterIntervalMillis;
-
+        configurationChanged();
     }
 
     public String getIgnoredSteps() {
@@ -367,7 +412,7 @@ public class JenkinsOpenTelemetryPluginConfiguration extends GlobalConfiguration
     @DataBoundSetter
     public void setDisabledResourceProviders(String disabledResourceProviders) {
         this.disabledResourceProviders = disabledResourceProviders;
-
+        configurationChanged();
     }
 
     public boolean isExportOtelConfigurationAsEnvironmentVariables() {
@@ -386,7 +431,7 @@ public class JenkinsOpenTelemetryPluginConfiguration extends GlobalConfiguration
     @DataBoundSetter
     public void setConfigurationProperties(String configurationProperties) {
         this.configurationProperties = configurationProperties;
-
+        configurationChanged();
     }
 
     @NonNull
@@ -517,7 +562,7 @@ public class JenkinsOpenTelemetryPluginConfiguration extends GlobalConfiguration
     @DataBoundSetter
     public void setServiceName(String serviceName) {
         this.serviceName = serviceName;
-
+        configurationChanged();
     }
 
     /**
@@ -530,7 +575,7 @@ public class JenkinsOpenTelemetryPluginConfiguration extends GlobalConfiguration
     @DataBoundSetter
     public void setServiceNamespace(String serviceNamespace) {
         this.serviceNamespace = serviceNamespace;
-
+        configurationChanged();
     }
 
     @NonNull
@@ -8,6 +8,7 @@ package io.jenkins.plugins.opentelemetry.backend.elastic;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
 import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SlicedScroll;
 import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch._types.Time;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
@@ -16,12 +17,10 @@ import co.elastic.clients.elasticsearch._types.query_dsl.QueryBuilders;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.SearchResponse;
 import co.elastic.clients.elasticsearch.core.search.Hit;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Iterators;
 import io.jenkins.plugins.opentelemetry.job.log.ConsoleNotes;
 import io.jenkins.plugins.opentelemetry.job.log.util.LineIterator;
+import io.jenkins.plugins.opentelemetry.job.log.util.PageReadAhead;
 import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanBuilder;
@@ -34,23 +33,40 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import java.io.Closeable;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Objects;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
+ * Iterates over the log lines of a build paging through a point in time with {@code search_after} on the sort values
+ * ({@code @timestamp} and the implicit {@code _shard_doc} tiebreaker of the point in time) of the last hit of the
+ * previous page, so that Elasticsearch doesn't collect and skip the previous hits on each page. The size of the pages
+ * doubles, up to {@link #MAX_PAGE_SIZE}, when pages come back full.
+ * <p>
+ * The log is streamed without line limit, holding a single page in memory. The work per request is bounded by the
+ * budget set with {@link #setRetrievalBudget(Duration, long)}, a truncation notice ends the log when the budget is
+ * exhausted.
+ * <p>
+ * The next pages are loaded while the current one is consumed, see {@link #setPrefetchedPages(int)}. Large logs can be
+ * searched in parallel slices of the point in time merged in the global order, see
+ * {@link #setParallelRetrieval(int, long)}.
+ * <p>
  * https://www.elastic.co/guide/en/elasticsearch/reference/7.17/point-in-time-api.html
+ * https://www.elastic.co/guide/en/elasticsearch/reference/7.17/paginate-search-results.html#search-after
  */
 public class ElasticsearchBuildLogsLineIterator implements LineIterator, Closeable {
     private final static Logger logger = Logger.getLogger(ElasticsearchBuildLogsLineIterator.class.getName());
 
     public static final Time POINT_IN_TIME_KEEP_ALIVE = Time.of(builder -> builder.time("30s"));
     public static final int PAGE_SIZE = 200;
-    public final static int MAX_LINES = 10_000;
+    public static final int MAX_PAGE_SIZE = 5_000;
 
     final String jobFullName;
     final int runNumber;
@@ -60,7 +76,58 @@ public class ElasticsearchBuildLogsLineIterator implements LineIterator, Closeab
     final ElasticsearchClient esClient;
     final Tracer tracer;
     long readLines;
-    String pointInTimeId;
+    /**
+     * Number of loaded Elasticsearch documents, a document contains several lines when log lines are chunked
+     */
+    long readRecords;
+    /**
+     * {@code true} if log records may contain several lines, see {@link JenkinsOtelSemanticAttributes#JENKINS_LOG_LINE_COUNT}
+     */
+    boolean chunkedLogRecords;
+    /**
+     * Updated by the searches of the {@link ElasticsearchLogSlices} that run in parallel
+     */
+    volatile String pointInTimeId;
+    /**
+     * Sort values of the last loaded document, {@code null} before the first page
+     */
+    @Nullable
+    List<FieldValue> searchAfter;
+    /**
+     * Number of documents to skip before the first page, see {@link #skipLines(long)}
+     */
+    long skipRecords;
+    int pageSize = PAGE_SIZE;
+
+    /**
+     * {@link Duration#ZERO} for no limit
+     */
+    Duration maxDuration = Duration.ZERO;
+    /**
+     * {@code 0} for no limit
+     */
+    long maxBytes;
+    long retrievalStartInNanos;
+    /**
+     * Length in bytes of the lines returned by {@link #next()}, including the {@code \n}
+     */
+    long readBytes;
+    /**
+     * Maximum number of pages loaded ahead of the consumer, {@code 0} to load the pages on demand
+     */
+    int prefetchedPages;
+    @Nullable
+    PageReadAhead<String> readAhead;
+    /**
+     * Maximum number of slices of the point in time searched in parallel, {@code 1} to search sequentially
+     */
+    int maxSlices = 1;
+    /**
+     * Minimum number of documents of the log to search it in parallel slices
+     */
+    long minDocumentsForSlicing;
+    @Nullable
+    ElasticsearchLogSlices slices;
 
     @VisibleForTesting
     int queryCounter;
@@ -81,6 +148,34 @@ public class ElasticsearchBuildLogsLineIterator implements LineIterator, Closeab
         this.esClient = esClient;
     }
 
+    public void setChunkedLogRecords(boolean chunkedLogRecords) {
+        this.chunkedLogRecords = chunkedLogRecords;
+    }
+
+    public void setPrefetchedPages(int prefetchedPages) {
+        this.prefetchedPages = prefetchedPages;
+    }
+
+    /**
+     * Search the log in parallel slices of the point in time when it contains at least {@code minDocuments} documents,
+     * the log is searched sequentially when it is read from an offset.
+     *
+     * @param maxSlices {@code 1} to always search sequentially
+     */
+    public void setParallelRetrieval(int maxSlices, long minDocuments) {
+        this.maxSlices = maxSlices;
+        this.minDocumentsForSlicing = minDocuments;
+    }
+
+    /**
+     * @param maxDuration {@link Duration#ZERO} for no limit
+     * @param maxBytes    {@code 0} for no limit
+     */
+    public void setRetrievalBudget(@NonNull Duration maxDuration, long maxBytes) {
+        this.maxDuration = maxDuration;
+        this.maxBytes = maxBytes;
+    }
+
     String lazyLoadPointInTimeId() throws IOException {
         if (pointInTimeId == null) {
             Span esOpenPitSpan = tracer.spanBuilder("ElasticsearchLogsSearchIterator.openPointInTime")
@@ -105,16 +200,23 @@ public class ElasticsearchBuildLogsLineIterator implements LineIterator, Closeab
                 return delegate;
             }
             if (delegate == null) {
-                delegate = loadNextFormattedLogLines();
+                retrievalStartInNanos = System.nanoTime();
+                delegate = getReadAhead().nextPage().iterator();
             }
             if (delegate.hasNext()) {
                 return delegate;
             }
-            delegate = loadNextFormattedLogLines();
-            if (readLines > MAX_LINES) {
-                delegate = Iterators.concat(delegate, Collections.singleton("...").iterator());
+            String exhaustedBudget = getExhaustedBudget();
+            if (exhaustedBudget != null) {
+                logger.log(Level.FINE, () -> jobFullName + "#" + runNumber + " - truncate log after " + readLines + " lines, " + exhaustedBudget);
+                // stop loading pages ahead
+                closeReadAhead();
+                delegate = Collections.singleton("[OpenTelemetry] Log truncated, " + exhaustedBudget).iterator();
                 endOfStream = true;
-            } else if (!delegate.hasNext()) {
+                return delegate;
+            }
+            delegate = getReadAhead().nextPage().iterator();
+            if (!delegate.hasNext()) {
                 endOfStream = true;
             }
             return delegate;
@@ -123,6 +225,56 @@ public class ElasticsearchBuildLogsLineIterator implements LineIterator, Closeab
         }
     }
 
+    @NonNull
+    PageReadAhead<String> getReadAhead() throws IOException {
+        if (readAhead == null) {
+            PageReadAhead.PageLoader<String> pageLoader = this::loadNextFormattedLogLines;
+            if (maxSlices > 1 && skipRecords == 0 && searchAfter == null) {
+                Query query = getQuery();
+                long documents = countDocuments(query);
+                if (documents >= minDocumentsForSlicing) {
+                    logger.log(Level.FINE, () -> jobFullName + "#" + runNumber + " - search " + documents + " documents in " + maxSlices + " slices");
+                    slices = new ElasticsearchLogSlices(this, query, maxSlices);
+                    pageLoader = slices;
+                }
+            }
+            readAhead = new PageReadAhead<>(pageLoader, prefetchedPages);
+        }
+        return readAhead;
+    }
+
+    /**
+     * Cancel the loading of the pages, waiting for the pending searches to complete
+     */
+    void closeReadAhead() {
+        if (readAhead != null) {
+            readAhead.close();
+        }
+        if (slices != null) {
+            slices.close();
+        }
+    }
+
+    /**
+     * Cheap count of the documents of the log to choose between the sequential and the sliced search
+     */
+    long countDocuments(@NonNull Query query) throws IOException {
+        Span esCountSpan = tracer.spanBuilder("ElasticsearchLogsSearchIterator.count")
+            .setAttribute("query.index", ElasticsearchFields.INDEX_TEMPLATE_PATTERNS)
+            .startSpan();
+        try (Scope esCountSpanScope = esCountSpan.makeCurrent()) {
+            long count = esClient.count(request -> request.index(ElasticsearchFields.INDEX_TEMPLATE_PATTERNS).query(query)).count();
+            esCountSpan.setAttribute("response.count", count);
+            return count;
+        } catch (ElasticsearchException e) {
+            esCountSpan.recordException(e);
+            throw e;
+        } finally {
+            esCountSpan.end();
+            queryCounter++;
+        }
+    }
+
     @Override
     public void close() throws IOException {
         Tracer tracer = logger.isLoggable(Level.FINE) ? this.tracer : TracerProvider.noop().get("noop");
@@ -135,6 +287,8 @@ public class ElasticsearchBuildLogsLineIterator implements LineIterator, Closeab
         }
         Span closeSpan = spanBuilder.startSpan();
         try (Scope closeSpanScope = closeSpan.makeCurrent()) {
+            // wait for the pages being loaded before closing the point in time
+            closeReadAhead();
             if (pointInTimeId != null) {
                 Span esClosePitSpan = this.tracer.spanBuilder("Elasticsearch.closePointInTime")
                     .setAttribute("query.pointInTimeId", pointInTimeId)
@@ -159,52 +313,70 @@ public class ElasticsearchBuildLogsLineIterator implements LineIterator, Closeab
     @Override
     public String next() {
         readLines++;
-        return getCurrentIterator().next();
+        String line = getCurrentIterator().next();
+        readBytes += ConsoleNotes.formattedMessageLengthInBytes(line, null) + 1;
+        return line;
     }
 
-    protected Iterator<String> loadNextFormattedLogLines() throws IOException {
-        if (readLines > Integer.MAX_VALUE) {
-            // TODO should we support reading more than max int lines?
-            logger.log(Level.INFO, () -> "Skip more than Integer.MAX_VALUE, return empty result"); // FIXME
-            return Collections.emptyIterator();
+    /**
+     * @return the description of the exhausted retrieval budget, {@code null} if the budget is not exhausted
+     */
+    @Nullable
+    String getExhaustedBudget() {
+        if (maxBytes > 0 && readBytes >= maxBytes) {
+            return "the maximum of " + maxBytes + " bytes per request (" + JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_RETRIEVAL_MAX_BYTES + ") has been reached";
         }
-        String loadPointInTimeId = this.lazyLoadPointInTimeId();
+        if (!maxDuration.isZero() && System.nanoTime() - retrievalStartInNanos >= maxDuration.toNanos()) {
+            return "the maximum duration of " + maxDuration + " per request (" + JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_RETRIEVAL_MAX_DURATION + ") has been reached";
+        }
+        return null;
+    }
 
+    /**
+     * Invoked by the {@link PageReadAhead}, on a read ahead thread if {@link #prefetchedPages} is greater than 0
+     *
+     * @return the lines of the next page, empty at the end of the log
+     */
+    @NonNull
+    protected List<String> loadNextFormattedLogLines() throws IOException {
         Span esSearchSpan = tracer.spanBuilder("ElasticsearchLogsSearchIterator.search")
             .startSpan();
         try (Scope esSearchSpanScope = esSearchSpan.makeCurrent()) {
             esSearchSpan
                 .setAttribute("query.pointInTimeId", lazyLoadPointInTimeId())
-                .setAttribute("query.from", readLines)
-                .setAttribute("query.size", PAGE_SIZE)
+                .setAttribute("query.skipRecords", skipRecords)
+                .setAttribute("query.searchAfter", searchAfter == null ? "" : searchAfter.stream().map(FieldValue::_get).map(String::valueOf).collect(Collectors.joining(",")))
+                .setAttribute("query.size", pageSize)
                 .setAttribute("query.match.traceId", traceId)
                 .setAttribute("query.match.jobFullName", jobFullName)
                 .setAttribute("query.match.runNumber", runNumber);
 
-            BoolQuery.Builder queryBuilder = QueryBuilders.bool()
-                .must(
-                    QueryBuilders.match().field(ElasticsearchFields.FIELD_TRACE_ID).query(FieldValue.of(traceId)).build()._toQuery(),
-                    QueryBuilders.match().field(ElasticsearchFields.FIELD_CI_PIPELINE_ID).query(FieldValue.of(jobFullName)).build()._toQuery(),
-                    QueryBuilders.match().field(ElasticsearchFields.FIELD_CI_PIPELINE_RUN_NUMBER).query(FieldValue.of(runNumber)).build()._toQuery()
-                );
             if (flowNodeId != null) {
                 esSearchSpan.setAttribute("query.match.flowNodeId", flowNodeId);
-                queryBuilder.must(QueryBuilders.match().field(ElasticsearchFields.FIELD_JENKINS_STEP_ID).query(FieldValue.of(flowNodeId)).build()._toQuery());
             }
-            Query query = queryBuilder.build()._toQuery();
-
-            SearchRequest searchRequest = new SearchRequest.Builder()
-                .pit(pit -> pit.id(loadPointInTimeId).keepAlive(POINT_IN_TIME_KEEP_ALIVE))
-                .from((int) readLines)
-                .size(PAGE_SIZE)
-                .sort(s -> s.field(f -> f.field(ElasticsearchFields.FIELD_TIMESTAMP).order(SortOrder.Asc)))
-                .query(query)
-                .build();
-            SearchResponse<ObjectNode> searchResponse = this.esClient.search(searchRequest, ObjectNode.class);
-
-            List<Hit<ObjectNode>> hits = searchResponse.hits().hits();
+            Query query = getQuery();
+
+            // skip the documents with search_after rather than with "from" that is limited by "index.max_result_window"
+            while (skipRecords > 0) {
+                List<Hit<ElasticsearchLogDocument>> skippedHits = search(query, (int) Math.min(skipRecords, MAX_PAGE_SIZE), false);
+                skipRecords = skippedHits.isEmpty() ? 0 : skipRecords - skippedHits.size();
+            }
+
+            List<Hit<ElasticsearchLogDocument>> hits = search(query, pageSize, true);
             esSearchSpan.setAttribute("response.size", hits.size());
-            return hits.stream().map(new ElasticsearchHitToFormattedLogLine()).filter(Objects::nonNull).iterator();
+            if (hits.size() == pageSize) {
+                pageSize = Math.min(pageSize * 2, MAX_PAGE_SIZE);
+            }
+            readRecords += hits.size();
+            ElasticsearchHitToFormattedLogLine hitToFormattedLogLine = new ElasticsearchHitToFormattedLogLine();
+            List<String> lines = new ArrayList<>(hits.size());
+            for (Hit<ElasticsearchLogDocument> hit : hits) {
+                String formattedMessage = hitToFormattedLogLine.apply(hit);
+                if (formattedMessage != null) {
+                    addLines(lines, formattedMessage, hit.source().getLineCount());
+                }
+            }
+            return lines;
         } catch (ElasticsearchException e) {
             esSearchSpan.recordException(e);
             throw e;
@@ -214,6 +386,68 @@ public class ElasticsearchBuildLogsLineIterator implements LineIterator, Closeab
         }
     }
 
+    @NonNull
+    Query getQuery() {
+        BoolQuery.Builder queryBuilder = QueryBuilders.bool()
+            .must(
+                QueryBuilders.match().field(ElasticsearchFields.FIELD_TRACE_ID).query(FieldValue.of(traceId)).build()._toQuery(),
+                QueryBuilders.match().field(ElasticsearchFields.FIELD_CI_PIPELINE_ID).query(FieldValue.of(jobFullName)).build()._toQuery(),
+                QueryBuilders.match().field(ElasticsearchFields.FIELD_CI_PIPELINE_RUN_NUMBER).query(FieldValue.of(runNumber)).build()._toQuery()
+            );
+        if (flowNodeId != null) {
+            queryBuilder.must(QueryBuilders.match().field(ElasticsearchFields.FIELD_JENKINS_STEP_ID).query(FieldValue.of(flowNodeId)).build()._toQuery());
+        }
+        return queryBuilder.build()._toQuery();
+    }
+
+    /**
+     * Search the page following {@link #searchAfter} in the point in time
+     *
+     * @param fetchSource {@code false} to skip the documents, otherwise only the
+     *                    {@link ElasticsearchLogDocument#SOURCE_INCLUDES} of the documents are fetched
+     */
+    @NonNull
+    private List<Hit<ElasticsearchLogDocument>> search(@NonNull Query query, int size, boolean fetchSource) throws IOException {
+        List<Hit<ElasticsearchLogDocument>> hits = search(query, size, fetchSource, searchAfter, null);
+        if (!hits.isEmpty()) {
+            searchAfter = hits.get(hits.size() - 1).sort();
+        }
+        return hits;
+    }
+
+    /**
+     * Search the page following the given sort values in the point in time, or in the given slice of the point in time
+     */
+    @NonNull
+    List<Hit<ElasticsearchLogDocument>> search(@NonNull Query query, int size, boolean fetchSource, @Nullable List<FieldValue> searchAfter, @Nullable SlicedScroll slice) throws IOException {
+        String loadPointInTimeId = this.lazyLoadPointInTimeId();
+        // the point in time adds the implicit "_shard_doc" tiebreaker to the sort values
+        SearchRequest.Builder searchRequestBuilder = new SearchRequest.Builder()
+            .pit(pit -> pit.id(loadPointInTimeId).keepAlive(POINT_IN_TIME_KEEP_ALIVE))
+            .size(size)
+            .sort(s -> s.field(f -> f.field(ElasticsearchFields.FIELD_TIMESTAMP).order(SortOrder.Asc)))
+            .query(query);
+        if (searchAfter != null) {
+            searchRequestBuilder.searchAfter(searchAfter);
+        }
+        if (slice != null) {
+            searchRequestBuilder.slice(slice);
+        }
+        if (fetchSource) {
+            searchRequestBuilder.source(source -> source.filter(filter -> filter.includes(ElasticsearchLogDocument.SOURCE_INCLUDES)));
+        } else {
+            searchRequestBuilder.source(source -> source.fetch(false));
+        }
+        SearchResponse<ElasticsearchLogDocument> searchResponse = this.esClient.search(searchRequestBuilder.build(), ElasticsearchLogDocument.class);
+
+        List<Hit<ElasticsearchLogDocument>> hits = searchResponse.hits().hits();
+        if (searchResponse.pitId() != null) {
+            // the id of the point in time can change between searches
+            pointInTimeId = searchResponse.pitId();
+        }
+        return hits;
+    }
+
     @Override
     public void skipLines(long skipLines) {
         Tracer tracer = logger.isLoggable(Level.FINE) ? this.tracer : TracerProvider.noop().get("noop");
@@ -224,8 +458,20 @@ public class ElasticsearchBuildLogsLineIterator implements LineIterator, Closeab
             .setAttribute("skipLines", skipLines);
         Span span = spanBuilder.startSpan();
         try {
+            if (this.delegate == null && chunkedLogRecords) {
+                // the number of lines can't be translated in a number of documents, read the lines to skip
+                int counter = 0;
+                while (counter < skipLines && hasNext()) {
+                    next();
+                    counter++;
+                }
+                span.setAttribute("skippedLines", counter);
+                return;
+            }
             this.readLines = skipLines;
             if (this.delegate == null) {
+                this.readRecords = skipLines;
+                this.skipRecords = skipLines;
                 span.setAttribute("skippedLines", -1);
             } else {
                 /*
@@ -254,37 +500,37 @@ public class ElasticsearchBuildLogsLineIterator implements LineIterator, Closeab
         }
     }
 
-    static class ElasticsearchHitToFormattedLogLine implements Function<Hit<ObjectNode>, String> {
+    /**
+     * Split the log records coalescing several lines ({@link JenkinsOtelSemanticAttributes#JENKINS_LOG_LINE_COUNT}),
+     * the other log records are single lines that may contain line breaks
+     */
+    static void addLines(@NonNull List<String> lines, @NonNull String formattedMessage, @Nullable Long lineCount) {
+        if (lineCount == null || lineCount <= 1) {
+            lines.add(formattedMessage);
+        } else {
+            lines.addAll(Arrays.asList(formattedMessage.split("\n")));
+        }
+    }
+
+    static class ElasticsearchHitToFormattedLogLine implements Function<Hit<ElasticsearchLogDocument>, String> {
         /**
          * Returns the formatted log line or {@code null} if the given Elasticsearch document doesn't contain a {@code message} field.
          */
         @Nullable
         @Override
-        public String apply(Hit<ObjectNode> hit) {
-            ObjectNode source = hit.source();
+        public String apply(Hit<ElasticsearchLogDocument> hit) {
+            ElasticsearchLogDocument source = hit.source();
             if (source == null) {
                 logger.log(Level.FINE, () -> "Skip log with no source (document id: " + hit.id() + ")");
                 return null;
             }
-            JsonNode messageAsJsonNode = source.findValue(ElasticsearchFields.FIELD_MESSAGE);
-            if (messageAsJsonNode == null) {
+            String message = source.message;
+            if (message == null) {
                 logger.log(Level.FINE, () -> "Skip log with no message (document id: " + hit.id() + ")");
                 return null;
             }
-            ObjectNode labels = (ObjectNode) source.findValue("labels");
-
-            String message = messageAsJsonNode.asText();
-            JSONArray annotations;
-            if (labels == null) {
-                annotations = null;
-            } else {
-                JsonNode annotationsAsText = labels.get(JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS.getKey());
-                if (annotationsAsText == null) {
-                    annotations = null;
-                } else {
-                    annotations = JSONArray.fromObject(annotationsAsText.asText());
-                }
-            }
+            String annotationsAsText = source.getAnsiAnnotations();
+            JSONArray annotations = annotationsAsText == null ? null : JSONArray.fromObject(annotationsAsText);
             String formattedMessage = ConsoleNotes.readFormattedMessage(message, annotations);
             logger.log(Level.FINEST, () -> "Write: " + formattedMessage + " for document.id: " + hit.id());
             return formattedMessage;
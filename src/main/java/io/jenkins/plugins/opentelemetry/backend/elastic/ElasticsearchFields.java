@@ -21,6 +21,12 @@ public interface ElasticsearchFields {
     String FIELD_CI_PIPELINE_ID = "labels." + JenkinsOtelSemanticAttributes.CI_PIPELINE_ID.getKey().replace('.', '_');
     String FIELD_CI_PIPELINE_RUN_NUMBER = "numeric_labels." + JenkinsOtelSemanticAttributes.CI_PIPELINE_RUN_NUMBER.getKey().replace('.', '_');
     String FIELD_JENKINS_STEP_ID = "labels." + JenkinsOtelSemanticAttributes.JENKINS_STEP_ID.getKey().replace('.', '_');
+    String FIELD_JENKINS_LOG_LINE_COUNT = "numeric_labels." + JenkinsOtelSemanticAttributes.JENKINS_LOG_LINE_COUNT.getKey().replace('.', '_');
+    String FIELD_JENKINS_ANSI_ANNOTATIONS = "labels." + JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS.getKey().replace('.', '_');
+    /**
+     * {@link JenkinsOtelSemanticAttributes#JENKINS_ANSI_ANNOTATIONS} stored without replacing the dots
+     */
+    String FIELD_JENKINS_ANSI_ANNOTATIONS_LEGACY = "labels." + JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS.getKey();
     String INDEX_TEMPLATE_PATTERNS = "logs-apm.app-*,.ds-logs-apm.app*";
     String INDEX_TEMPLATE_NAME = "logs-apm.app";
     /**
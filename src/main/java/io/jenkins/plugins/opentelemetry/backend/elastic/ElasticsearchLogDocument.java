@@ -0,0 +1,90 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.backend.elastic;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.util.List;
+
+/**
+ * Fields of a log document needed to render the console, the search requests only fetch the {@link #SOURCE_INCLUDES}
+ * of the {@code _source} rather than the whole document with its resource attributes.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+final class ElasticsearchLogDocument {
+    /**
+     * {@code _source} fields fetched by the search requests
+     */
+    static final List<String> SOURCE_INCLUDES = List.of(
+        ElasticsearchFields.FIELD_TIMESTAMP,
+        ElasticsearchFields.FIELD_MESSAGE,
+        ElasticsearchFields.FIELD_JENKINS_ANSI_ANNOTATIONS,
+        ElasticsearchFields.FIELD_JENKINS_ANSI_ANNOTATIONS_LEGACY,
+        ElasticsearchFields.FIELD_JENKINS_STEP_ID,
+        ElasticsearchFields.FIELD_JENKINS_LOG_LINE_COUNT);
+
+    @JsonProperty(ElasticsearchFields.FIELD_TIMESTAMP)
+    String timestamp;
+    @JsonProperty(ElasticsearchFields.FIELD_MESSAGE)
+    String message;
+    @JsonProperty("labels")
+    Labels labels;
+    @JsonProperty("numeric_labels")
+    NumericLabels numericLabels;
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static final class Labels {
+        /**
+         * {@link io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes#JENKINS_ANSI_ANNOTATIONS}
+         */
+        @JsonProperty("jenkins_ansi_annotations")
+        @JsonAlias("jenkins.ansi.annotations")
+        String ansiAnnotations;
+        /**
+         * {@link io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes#JENKINS_STEP_ID}
+         */
+        @JsonProperty("jenkins_pipeline_step_id")
+        String stepId;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    static final class NumericLabels {
+        /**
+         * {@link io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes#JENKINS_LOG_LINE_COUNT}
+         */
+        @JsonProperty("jenkins_log_line_count")
+        Long lineCount;
+    }
+
+    @CheckForNull
+    String getAnsiAnnotations() {
+        return labels == null ? null : labels.ansiAnnotations;
+    }
+
+    @CheckForNull
+    String getStepId() {
+        return labels == null ? null : labels.stepId;
+    }
+
+    /**
+     * @return {@code null} if the log record contains a single line
+     */
+    @CheckForNull
+    Long getLineCount() {
+        return numericLabels == null ? null : numericLabels.lineCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ElasticsearchLogDocument{" +
+            "timestamp='" + timestamp + '\'' +
+            ", stepId='" + getStepId() + '\'' +
+            '}';
+    }
+}
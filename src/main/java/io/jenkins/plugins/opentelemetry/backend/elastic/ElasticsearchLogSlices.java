@@ -0,0 +1,219 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.backend.elastic;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SlicedScroll;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.jenkins.plugins.opentelemetry.job.log.util.PageReadAhead;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.context.Scope;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Searches the point in time of a {@link ElasticsearchBuildLogsLineIterator} in parallel slices and merges the
+ * documents of the slices on their sort values ({@code @timestamp} and the {@code _shard_doc} tiebreaker that is unique
+ * in the point in time) so that the lines are returned in the same order as with the sequential search.
+ * <p>
+ * Each slice is paged with {@code search_after} and loads its next page while the slices are merged.
+ * <p>
+ * https://www.elastic.co/guide/en/elasticsearch/reference/7.17/point-in-time-api.html#search-slicing
+ */
+final class ElasticsearchLogSlices implements PageReadAhead.PageLoader<String>, Closeable {
+    /**
+     * Number of lines of the merged pages
+     */
+    static final int PAGE_SIZE = ElasticsearchBuildLogsLineIterator.PAGE_SIZE;
+
+    private static final Comparator<Slice> SLICE_HEAD_ORDER = Comparator
+        .<Slice>comparingLong(slice -> slice.getHead().timestamp)
+        .thenComparingLong(slice -> slice.getHead().sequence);
+
+    private final ElasticsearchBuildLogsLineIterator lineIterator;
+    private final Query query;
+    private final List<Slice> slices = new ArrayList<>();
+    /**
+     * Slices that have documents left, ordered by their next document
+     */
+    private final PriorityQueue<Slice> sliceHeads = new PriorityQueue<>(SLICE_HEAD_ORDER);
+    private boolean started;
+
+    ElasticsearchLogSlices(@NonNull ElasticsearchBuildLogsLineIterator lineIterator, @NonNull Query query, int sliceCount) {
+        this.lineIterator = lineIterator;
+        this.query = query;
+        for (int id = 0; id < sliceCount; id++) {
+            String sliceId = String.valueOf(id);
+            slices.add(new Slice(SlicedScroll.of(slice -> slice.id(sliceId).max(sliceCount))));
+        }
+    }
+
+    /**
+     * Log document with its sort values
+     */
+    static final class SortedDocument {
+        final long timestamp;
+        final long sequence;
+        /**
+         * {@code null} if the document doesn't contain a message
+         */
+        @CheckForNull
+        final String formattedMessage;
+        /**
+         * {@code null} if the document contains a single line
+         */
+        @CheckForNull
+        final Long lineCount;
+
+        SortedDocument(long timestamp, long sequence, @CheckForNull String formattedMessage, @CheckForNull Long lineCount) {
+            this.timestamp = timestamp;
+            this.sequence = sequence;
+            this.formattedMessage = formattedMessage;
+            this.lineCount = lineCount;
+        }
+    }
+
+    /**
+     * @return the next lines in the order of the sort values of the documents of all the slices
+     */
+    @NonNull
+    @Override
+    public List<String> loadNextPage() throws IOException {
+        if (!started) {
+            started = true;
+            // open the point in time before the slices search it in parallel
+            lineIterator.lazyLoadPointInTimeId();
+            for (Slice slice : slices) {
+                slice.readAhead.start();
+            }
+            for (Slice slice : slices) {
+                if (slice.advance()) {
+                    sliceHeads.add(slice);
+                }
+            }
+        }
+        List<String> lines = new ArrayList<>(PAGE_SIZE);
+        while (lines.size() < PAGE_SIZE && !sliceHeads.isEmpty()) {
+            Slice slice = sliceHeads.poll();
+            SortedDocument document = slice.getHead();
+            if (document.formattedMessage != null) {
+                ElasticsearchBuildLogsLineIterator.addLines(lines, document.formattedMessage, document.lineCount);
+            }
+            if (slice.advance()) {
+                sliceHeads.add(slice);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Cancel the searches of the slices, waiting for the pending searches to complete
+     */
+    @Override
+    public void close() {
+        for (Slice slice : slices) {
+            slice.readAhead.close();
+        }
+    }
+
+    final class Slice implements PageReadAhead.PageLoader<SortedDocument> {
+        final SlicedScroll slicedScroll;
+        /**
+         * Loads the next page of the slice while the slices are merged
+         */
+        final PageReadAhead<SortedDocument> readAhead;
+        @CheckForNull
+        List<FieldValue> searchAfter;
+        int pageSize = ElasticsearchBuildLogsLineIterator.PAGE_SIZE;
+        Iterator<SortedDocument> page = Collections.emptyIterator();
+        @CheckForNull
+        SortedDocument head;
+
+        Slice(@NonNull SlicedScroll slicedScroll) {
+            this.slicedScroll = slicedScroll;
+            this.readAhead = new PageReadAhead<>(this, 1);
+        }
+
+        @NonNull
+        SortedDocument getHead() {
+            if (head == null) {
+                throw new IllegalStateException("No document left in slice " + slicedScroll.id());
+            }
+            return head;
+        }
+
+        /**
+         * Move to the next document of the slice
+         *
+         * @return {@code false} if there is no document left in the slice
+         */
+        boolean advance() throws IOException {
+            while (!page.hasNext()) {
+                List<SortedDocument> nextPage = readAhead.nextPage();
+                if (nextPage.isEmpty()) {
+                    head = null;
+                    return false;
+                }
+                page = nextPage.iterator();
+            }
+            head = page.next();
+            return true;
+        }
+
+        /**
+         * Invoked on a read ahead thread
+         */
+        @NonNull
+        @Override
+        public List<SortedDocument> loadNextPage() throws IOException {
+            Span esSearchSpan = lineIterator.tracer.spanBuilder("ElasticsearchLogsSearchIterator.searchSlice")
+                .setAttribute("query.slice.id", slicedScroll.id())
+                .setAttribute("query.slice.max", slicedScroll.max())
+                .setAttribute("query.size", pageSize)
+                .startSpan();
+            try (Scope esSearchSpanScope = esSearchSpan.makeCurrent()) {
+                List<Hit<ElasticsearchLogDocument>> hits = lineIterator.search(query, pageSize, true, searchAfter, slicedScroll);
+                esSearchSpan.setAttribute("response.size", hits.size());
+                if (hits.size() == pageSize) {
+                    pageSize = Math.min(pageSize * 2, ElasticsearchBuildLogsLineIterator.MAX_PAGE_SIZE);
+                }
+                ElasticsearchBuildLogsLineIterator.ElasticsearchHitToFormattedLogLine hitToFormattedLogLine = new ElasticsearchBuildLogsLineIterator.ElasticsearchHitToFormattedLogLine();
+                List<SortedDocument> documents = new ArrayList<>(hits.size());
+                for (Hit<ElasticsearchLogDocument> hit : hits) {
+                    List<FieldValue> sort = hit.sort();
+                    ElasticsearchLogDocument source = hit.source();
+                    documents.add(new SortedDocument(toLong(sort.get(0)), toLong(sort.get(1)), hitToFormattedLogLine.apply(hit), source == null ? null : source.getLineCount()));
+                    searchAfter = sort;
+                }
+                return documents;
+            } catch (RuntimeException e) {
+                esSearchSpan.recordException(e);
+                throw e;
+            } finally {
+                esSearchSpan.end();
+            }
+        }
+    }
+
+    static long toLong(@NonNull FieldValue sortValue) {
+        if (sortValue.isLong()) {
+            return sortValue.longValue();
+        } else if (sortValue.isDouble()) {
+            return (long) sortValue.doubleValue();
+        }
+        return Long.parseLong(String.valueOf(sortValue._get()));
+    }
+}
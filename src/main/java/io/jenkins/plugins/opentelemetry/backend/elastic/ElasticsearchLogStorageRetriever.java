@@ -37,6 +37,7 @@ import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.SpanBuilder;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Scope;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonValue;
 import org.apache.commons.lang.StringUtils;
@@ -59,6 +60,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
 import java.security.Principal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -148,6 +150,26 @@ public class ElasticsearchLogStorageRetriever implements LogStorageRetriever, Cl
         this.templateBindingsProvider = templateBindingsProvider;
     }
 
+
+    private void configure(@NonNull ElasticsearchBuildLogsLineIterator logLines) {
+        ConfigProperties config = JenkinsControllerOpenTelemetry.get().getConfig();
+        logLines.setChunkedLogRecords(config.getBoolean(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_CHUNKING_ENABLED, false));
+        logLines.setRetrievalBudget(
+            config.getDuration(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_RETRIEVAL_MAX_DURATION, Duration.ofMinutes(5)),
+            config.getLong(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_RETRIEVAL_MAX_BYTES, 0));
+        logLines.setPrefetchedPages(config.getInt(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_RETRIEVAL_PREFETCHED_PAGES, 1));
+    }
+
+    /**
+     * The log is truncated once the {@link JenkinsOtelSemanticAttributes#OTEL_INSTRUMENTATION_JENKINS_LOGS_RETRIEVAL_MAX_BYTES}
+     * budget is exhausted, including by the lines read to skip to the tail of the log
+     */
+    @Override
+    public boolean canRetrieveEntirely(long lengthInBytes) {
+        long maxBytes = JenkinsControllerOpenTelemetry.get().getConfig().getLong(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_RETRIEVAL_MAX_BYTES, 0);
+        return maxBytes <= 0 || lengthInBytes <= maxBytes;
+    }
+
     @NonNull
     @Override
     public LogsQueryResult overallLog(
@@ -161,8 +183,13 @@ public class ElasticsearchLogStorageRetriever implements LogStorageRetriever, Cl
 
         Span span = spanBuilder.startSpan();
         try (Scope scope = span.makeCurrent()) {
-            LineIterator logLines = new ElasticsearchBuildLogsLineIterator(
+            ElasticsearchBuildLogsLineIterator logLines = new ElasticsearchBuildLogsLineIterator(
                 jobFullName, runNumber, traceId, esClient, getTracer());
+            configure(logLines);
+            ConfigProperties config = JenkinsControllerOpenTelemetry.get().getConfig();
+            logLines.setParallelRetrieval(
+                config.getInt(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_RETRIEVAL_SLICES, 4),
+                config.getLong(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_RETRIEVAL_SLICES_MIN_DOCUMENTS, 10_000));
 
             LineIterator.LineBytesToLineNumberConverter lineBytesToLineNumberConverter = new LineIterator.JenkinsHttpSessionLineBytesToLineNumberConverter(jobFullName, runNumber, null);
             LineIteratorInputStream lineIteratorInputStream = new LineIteratorInputStream(logLines, lineBytesToLineNumberConverter, getTracer());
@@ -200,9 +227,10 @@ public class ElasticsearchLogStorageRetriever implements LogStorageRetriever, Cl
 
         try (Scope scope = span.makeCurrent()) {
 
-            LineIterator logLines = new ElasticsearchBuildLogsLineIterator(
+            ElasticsearchBuildLogsLineIterator logLines = new ElasticsearchBuildLogsLineIterator(
                 jobFullName, runNumber, traceId, flowNodeId,
                 esClient, getTracer());
+            configure(logLines);
             LineIterator.LineBytesToLineNumberConverter lineBytesToLineNumberConverter = new LineIterator.JenkinsHttpSessionLineBytesToLineNumberConverter(jobFullName, runNumber, flowNodeId);
 
             LineIteratorInputStream lineIteratorInputStream = new LineIteratorInputStream(logLines, lineBytesToLineNumberConverter, getTracer());
@@ -8,9 +8,11 @@ package io.jenkins.plugins.opentelemetry.backend.grafana;
 import com.google.common.annotations.VisibleForTesting;
 import com.jayway.jsonpath.JsonPath;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import io.jenkins.plugins.opentelemetry.job.log.LogLine;
 import io.jenkins.plugins.opentelemetry.job.log.util.CloseableIterator;
 import io.jenkins.plugins.opentelemetry.job.log.util.LogLineIterator;
+import io.jenkins.plugins.opentelemetry.job.log.util.PageReadAhead;
 import io.opentelemetry.api.trace.Span;
 import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.api.trace.TracerProvider;
@@ -28,9 +30,13 @@ import org.apache.http.util.EntityUtils;
 import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -61,6 +67,23 @@ public class LokiBuildLogsLineIterator implements LogLineIterator<Long>, AutoClo
 
     Iterator<LogLine<Long>> delegate;
     boolean endOfStream;
+    /**
+     * Maximum number of pages loaded ahead of the consumer, {@code 0} to load the pages on demand
+     */
+    int prefetchedPages;
+    @Nullable
+    PageReadAhead<LogLine<Long>> readAhead;
+    private final Object inFlightRequestLock = new Object();
+    /**
+     * Query of the page being loaded, aborted by the cancellation of the {@link #readAhead}. Guarded by
+     * {@link #inFlightRequestLock}
+     */
+    @Nullable
+    private HttpUriRequest inFlightRequest;
+    /**
+     * Guarded by {@link #inFlightRequestLock}
+     */
+    private boolean cancelled;
 
     public LokiBuildLogsLineIterator(
 
@@ -86,6 +109,46 @@ public class LokiBuildLogsLineIterator implements LogLineIterator<Long>, AutoClo
         this.tracer = tracer;
     }
 
+    public void setPrefetchedPages(int prefetchedPages) {
+        this.prefetchedPages = prefetchedPages;
+    }
+
+    @NonNull
+    PageReadAhead<LogLine<Long>> getReadAhead() {
+        if (readAhead == null) {
+            synchronized (inFlightRequestLock) {
+                cancelled = false;
+            }
+            readAhead = new PageReadAhead<>(new PageReadAhead.PageLoader<>() {
+                @NonNull
+                @Override
+                public List<LogLine<Long>> loadNextPage() throws IOException {
+                    return loadNextLogLines();
+                }
+
+                @Override
+                public void cancel() {
+                    abortInFlightRequest();
+                }
+            }, prefetchedPages);
+        }
+        return readAhead;
+    }
+
+    /**
+     * Invoked by the thread closing the {@link #readAhead}, the socket reads of the loading thread don't respond to
+     * its interruption
+     */
+    private void abortInFlightRequest() {
+        synchronized (inFlightRequestLock) {
+            cancelled = true;
+            if (inFlightRequest != null) {
+                logger.log(Level.FINE, () -> "Abort " + inFlightRequest.getRequestLine());
+                inFlightRequest.abort();
+            }
+        }
+    }
+
     @NonNull
     Iterator<LogLine<Long>> getCurrentIterator() {
         try {
@@ -94,12 +157,12 @@ public class LokiBuildLogsLineIterator implements LogLineIterator<Long>, AutoClo
                 return delegate;
             }
             if (delegate == null) {
-                delegate = loadNextLogLines();
+                delegate = getReadAhead().nextPage().iterator();
             }
             if (delegate.hasNext()) {
                 return delegate;
             }
-            delegate = loadNextLogLines();
+            delegate = getReadAhead().nextPage().iterator();
             if (!delegate.hasNext()) {
                 endOfStream = true;
             }
@@ -109,11 +172,17 @@ public class LokiBuildLogsLineIterator implements LogLineIterator<Long>, AutoClo
         }
     }
 
-    protected Iterator<LogLine<Long>> loadNextLogLines() throws IOException {
+    /**
+     * Invoked by the {@link PageReadAhead}, on a read ahead thread if {@link #prefetchedPages} is greater than 0
+     *
+     * @return the lines of the next page, empty at the end of the log
+     */
+    @NonNull
+    protected List<LogLine<Long>> loadNextLogLines() throws IOException {
         if (queryCounter > MAX_QUERIES) {
             logger.log(Level.INFO, () -> "Circuit breaker: "
                 + queryCounter + " queries for " + this.lokiQueryParameters);
-            return Collections.emptyIterator();
+            return Collections.emptyList();
         }
 
         Span loadNextLogLinesSpan = tracer.spanBuilder("LokiBuildLogsLineIterator.loadNextLogLines")
@@ -135,17 +204,32 @@ public class LokiBuildLogsLineIterator implements LogLineIterator<Long>, AutoClo
             lokiTenantId.ifPresent(tenantId -> lokiQueryRangeRequest.addHeader(new LokiTenantHeader(tenantId)));
 
             queryCounter++;
-            try (CloseableHttpResponse lokiQueryRangeResponse = httpClient.execute(lokiQueryRangeRequest, this.httpContext)) {
-                if (lokiQueryRangeResponse.getStatusLine().getStatusCode() != 200) {
-                    throw new IOException("Loki logs query failure: " + lokiQueryRangeResponse.getStatusLine() + " - " + EntityUtils.toString(lokiQueryRangeResponse.getEntity()));
+            synchronized (inFlightRequestLock) {
+                if (cancelled) {
+                    throw new InterruptedIOException("Loading of the logs cancelled");
+                }
+                inFlightRequest = lokiQueryRangeRequest;
+            }
+            try {
+                try (CloseableHttpResponse lokiQueryRangeResponse = httpClient.execute(lokiQueryRangeRequest, this.httpContext)) {
+                    if (lokiQueryRangeResponse.getStatusLine().getStatusCode() != 200) {
+                        throw new IOException("Loki logs query failure: " + lokiQueryRangeResponse.getStatusLine() + " - " + EntityUtils.toString(lokiQueryRangeResponse.getEntity()));
+                    }
+                    HttpEntity entity = lokiQueryRangeResponse.getEntity();
+                    if (entity == null) {
+                        logger.log(Level.INFO, () -> "No content in response for " + this.lokiQueryParameters);
+                        return Collections.emptyList();
+                    }
+                    InputStream lokiQueryLogsResponseStream = entity.getContent();
+                    // consume the page to move the start time of the query of the next page after its last line
+                    List<LogLine<Long>> logLines = new ArrayList<>();
+                    loadLogLines(lokiQueryLogsResponseStream).forEachRemaining(logLines::add);
+                    return logLines;
                 }
-                HttpEntity entity = lokiQueryRangeResponse.getEntity();
-                if (entity == null) {
-                    logger.log(Level.INFO, () -> "No content in response for " + this.lokiQueryParameters);
-                    return Collections.emptyIterator();
+            } finally {
+                synchronized (inFlightRequestLock) {
+                    inFlightRequest = null;
                 }
-                InputStream lokiQueryLogsResponseStream = entity.getContent();
-                return loadLogLines(lokiQueryLogsResponseStream);
             }
         }
     }
@@ -153,19 +237,67 @@ public class LokiBuildLogsLineIterator implements LogLineIterator<Long>, AutoClo
     @Nonnull
     @VisibleForTesting
     protected Iterator<LogLine<Long>> loadLogLines(InputStream lokiQueryResponseInputStream) throws IOException {
-        Iterator<LogLine<Long>> logLineIterator = JsonPath.<List<List<String>>>read(lokiQueryResponseInputStream, "$.data.result[*].values[*]").stream().map(valueKeyPair -> {
-            long timestampInNanos = Long.parseLong(valueKeyPair.get(0));
-            String msg = valueKeyPair.get(1);
+        List<Map<String, Object>> streams = JsonPath.read(lokiQueryResponseInputStream, "$.data.result[*]");
+        List<LogRecord> logRecords = new ArrayList<>();
+        for (Map<String, Object> stream : streams) {
+            Object streamLabels = stream.get("stream");
+            Object lineCount = streamLabels instanceof Map ? ((Map<?, ?>) streamLabels).get(LokiMetadata.META_DATA_JENKINS_LOG_LINE_COUNT) : null;
+            for (Object value : (List<?>) stream.get("values")) {
+                List<?> timestampAndLine = (List<?>) value;
+                logRecords.add(new LogRecord(Long.parseLong(String.valueOf(timestampAndLine.get(0))), String.valueOf(timestampAndLine.get(1)), lineCount));
+            }
+        }
+        if (streams.size() > 1) {
+            // the records of the streams of the different line counts are merged in the order of their timestamps
+            logRecords.sort(Comparator.comparingLong(logRecord -> logRecord.timestampInNanos));
+        }
+
+        List<LogLine<Long>> logLines = new ArrayList<>(logRecords.size());
+        for (LogRecord logRecord : logRecords) {
+            long timestampInNanos = logRecord.timestampInNanos;
             if (timestampInNanos < lokiQueryParameters.getStartTimeInNanos()) {
                 logger.log(Level.INFO, () -> "Unordered timestamps " + timestampInNanos + " < " + lokiQueryParameters.getStartTimeInNanos()
                     + " for " + lokiQueryParameters);
             } else {
                 lokiQueryParameters.setStartTimeInNanos(timestampInNanos + 1); // +1 because `start` is >=
             }
-            return new LogLine<>(timestampInNanos, msg);
-        }).iterator();
+            if (logRecord.isChunked()) {
+                // log records coalescing several lines (see JenkinsOtelSemanticAttributes.JENKINS_LOG_LINE_COUNT) are split back into lines
+                for (String line : logRecord.msg.split("\n")) {
+                    logLines.add(new LogLine<>(timestampInNanos, line));
+                }
+            } else {
+                logLines.add(new LogLine<>(timestampInNanos, logRecord.msg));
+            }
+        }
+        return new CloseableIterator<>(logLines.iterator(), lokiQueryResponseInputStream);
+    }
 
-        return new CloseableIterator<>(logLineIterator, lokiQueryResponseInputStream);
+    private static final class LogRecord {
+        final long timestampInNanos;
+        final String msg;
+        /**
+         * Value of the {@link LokiMetadata#META_DATA_JENKINS_LOG_LINE_COUNT} label of the stream, {@code null} for single lines
+         */
+        @Nullable
+        final Object lineCount;
+
+        LogRecord(long timestampInNanos, @NonNull String msg, @Nullable Object lineCount) {
+            this.timestampInNanos = timestampInNanos;
+            this.msg = msg;
+            this.lineCount = lineCount;
+        }
+
+        boolean isChunked() {
+            if (lineCount == null) {
+                return false;
+            }
+            try {
+                return Long.parseLong(String.valueOf(lineCount)) > 1;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
     }
 
     @Override
@@ -177,6 +309,12 @@ public class LokiBuildLogsLineIterator implements LogLineIterator<Long>, AutoClo
             .startSpan();
         long newStartTimeInNanos = lastLogTimestampInNanos + 1;
         try {
+            if (readAhead != null) {
+                // the pages loaded ahead start at the former start time
+                readAhead.close();
+                readAhead = null;
+                endOfStream = false;
+            }
             if (this.delegate == null) {
                 span.setAttribute("skippedLines", -1);
                 lokiQueryParameters.setStartTimeInNanos(newStartTimeInNanos);
@@ -212,6 +350,9 @@ public class LokiBuildLogsLineIterator implements LogLineIterator<Long>, AutoClo
 
     @Override
     public void close() throws Exception {
+        if (readAhead != null) {
+            readAhead.close();
+        }
         if (delegate instanceof AutoCloseable) {
             try {
                 ((AutoCloseable) delegate).close();
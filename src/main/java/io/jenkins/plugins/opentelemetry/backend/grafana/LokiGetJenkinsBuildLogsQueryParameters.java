@@ -61,7 +61,8 @@ public class LokiGetJenkinsBuildLogsQueryParameters {
             META_DATA_CI_PIPELINE_RUN_NUMBER + "=" + runNumber);
         flowNodeId.ifPresent(flowNodeId -> logQl.append(", " + META_DATA_JENKINS_PIPELINE_STEP_ID + "=\"" + flowNodeId + "\""));
 
-        logQl.append(" | keep __line__");
+        // the line count of the log records coalescing several lines, the records are then returned in one stream per line count
+        logQl.append(" | keep __line__, " + META_DATA_JENKINS_LOG_LINE_COUNT);
 
         RequestBuilder lokiQueryRangeRequestBuilder = RequestBuilder
             .get()
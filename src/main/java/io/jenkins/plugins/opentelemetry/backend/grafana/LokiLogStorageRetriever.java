@@ -113,6 +113,10 @@ public class LokiLogStorageRetriever implements LogStorageRetriever, Closeable {
         this.openTelemetry = openTelemetry;
     }
 
+    private void configure(@NonNull LokiBuildLogsLineIterator logLines) {
+        logLines.setPrefetchedPages(JenkinsControllerOpenTelemetry.get().getConfig().getInt(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_RETRIEVAL_PREFETCHED_PAGES, 1));
+    }
+
     @Nonnull
     @Override
     public LogsQueryResult overallLog(@Nonnull String jobFullName, int runNumber, @Nonnull String traceId, @Nonnull String spanId, boolean complete, @Nonnull Instant startTime, @Nullable Instant endTime) {
@@ -134,11 +138,12 @@ public class LokiLogStorageRetriever implements LogStorageRetriever, Closeable {
                 .setServiceName(serviceName)
                 .setServiceNamespace(serviceNamespace)
                 .build();
-            LogLineIterator<Long> logLines = new LokiBuildLogsLineIterator(
+            LokiBuildLogsLineIterator logLines = new LokiBuildLogsLineIterator(
                 lokiQueryParameters,
                 httpClient, httpContext,
                 lokiUrl, lokiCredentials, lokiTenantId,
                 openTelemetry.getTracer("io.jenkins"));
+            configure(logLines);
 
             LogLineIterator.JenkinsHttpSessionLineBytesToLogLineIdMapper<Long> lineBytesToLineNumberConverter = new LogLineIterator.JenkinsHttpSessionLineBytesToLogLineIdMapper<>(jobFullName, runNumber, null);
             InputStream lineIteratorInputStream = new LogLineIteratorInputStream<>(logLines, lineBytesToLineNumberConverter, getTracer());
@@ -194,10 +199,11 @@ public class LokiLogStorageRetriever implements LogStorageRetriever, Closeable {
                 .setServiceName(serviceName)
                 .setServiceNamespace(serviceNamespace)
                 .build();
-            LogLineIterator<Long> logLines = new LokiBuildLogsLineIterator(
+            LokiBuildLogsLineIterator logLines = new LokiBuildLogsLineIterator(
                 lokiQueryParameters, httpClient, httpContext,
                 lokiUrl, lokiCredentials, lokiTenantId,
                 openTelemetry.getTracer("io.jenkins"));
+            configure(logLines);
 
             LogLineIterator.LogLineBytesToLogLineIdMapper<Long> logLineBytesToLogLineIdMapper = new LogLineIterator.JenkinsHttpSessionLineBytesToLogLineIdMapper<>(jobFullName, runNumber, null);
             InputStream logLineIteratorInputStream = new LogLineIteratorInputStream<>(logLines, logLineBytesToLogLineIdMapper, getTracer());
@@ -16,4 +16,5 @@ public interface LokiMetadata {
     String META_DATA_CI_PIPELINE_ID = JenkinsOtelSemanticAttributes.CI_PIPELINE_ID.getKey().replace('.', '_');
     String META_DATA_CI_PIPELINE_RUN_NUMBER = JenkinsOtelSemanticAttributes.CI_PIPELINE_RUN_NUMBER.getKey().replace('.', '_');
     String META_DATA_JENKINS_PIPELINE_STEP_ID = JenkinsOtelSemanticAttributes.JENKINS_STEP_ID.getKey().replace('.', '_');
+    String META_DATA_JENKINS_LOG_LINE_COUNT = JenkinsOtelSemanticAttributes.JENKINS_LOG_LINE_COUNT.getKey().replace('.', '_');
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import io.jenkins.plugins.opentelemetry.job.action.FlowNodeMonitoringAction;
+import io.opentelemetry.api.trace.Span;
+
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * In memory index of the {@link FlowNodeMonitoringAction}s of a pipeline run keyed by flow node id.
+ * <p>
+ * Resolving the span of a {@link org.jenkinsci.plugins.workflow.graph.FlowNode} is a hash lookup plus a walk on the
+ * parent pointers (enclosing block start node ids) until a flow node holding a non ended span is found. Parent pointers
+ * are recorded when spans are registered and lazily loaded for the flow nodes that don't hold a span (e.g. {@code script}
+ * or {@code withEnv} blocks).
+ * <p>
+ * The {@link FlowNodeMonitoringAction}s are the same instances as the ones attached to the flow nodes. When the registry
+ * has been created at the start of the run, it knows all the flow nodes that received a {@link FlowNodeMonitoringAction}
+ * and the run can be purged without walking the flow graph.
+ */
+class FlowNodeSpanRegistry {
+    /**
+     * Marker of the flow nodes that have no enclosing block, {@link ConcurrentHashMap} doesn't support {@code null} values
+     */
+    private static final String NO_ENCLOSING_BLOCK = "";
+
+    /**
+     * Monitoring actions by flow node id, the most recent first
+     */
+    private final ConcurrentMap<String, Deque<FlowNodeMonitoringAction>> actionsByFlowNodeId = new ConcurrentHashMap<>();
+    /**
+     * Id of the enclosing block start node by flow node id
+     */
+    private final ConcurrentMap<String, String> enclosingIdByFlowNodeId = new ConcurrentHashMap<>();
+    /**
+     * {@code true} if all the spans of the flow nodes of the run have been registered, {@code false} for runs resumed
+     * after a restart
+     */
+    private final boolean trackedSinceRunStart;
+
+    FlowNodeSpanRegistry() {
+        this(false);
+    }
+
+    FlowNodeSpanRegistry(boolean trackedSinceRunStart) {
+        this.trackedSinceRunStart = trackedSinceRunStart;
+    }
+
+    /**
+     * @param flowNodeId          id of the flow node holding the span
+     * @param enclosingFlowNodeId id of the start node of the enclosing block, {@code null} for the root of the graph
+     */
+    void put(@NonNull String flowNodeId, @Nullable String enclosingFlowNodeId, @NonNull FlowNodeMonitoringAction action) {
+        enclosingIdByFlowNodeId.put(flowNodeId, Objects.toString(enclosingFlowNodeId, NO_ENCLOSING_BLOCK));
+        actionsByFlowNodeId.computeIfAbsent(flowNodeId, id -> new ConcurrentLinkedDeque<>()).addFirst(action);
+    }
+
+    /**
+     * @return the most recent non ended span held by the given flow node, {@code null} if none
+     */
+    @CheckForNull
+    Span getOpenSpan(@NonNull String flowNodeId) {
+        Deque<FlowNodeMonitoringAction> actions = actionsByFlowNodeId.get(flowNodeId);
+        if (actions == null) {
+            return null;
+        }
+        for (FlowNodeMonitoringAction action : actions) {
+            if (!action.hasEnded()) {
+                return action.getSpan();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Walk the chain of enclosing blocks from the given flow node and return the first non ended span.
+     *
+     * @param flowNodeId         id of the flow node to start from, the flow node itself is inspected first
+     * @param enclosingIdLoader  loads the id of the enclosing block start node of flow nodes that have not yet been
+     *                           indexed, returns {@code null} for the root of the graph
+     * @return {@code null} if no enclosing block holds a non ended span
+     */
+    @CheckForNull
+    Span findOpenSpan(@NonNull String flowNodeId, @NonNull Function<String, String> enclosingIdLoader) {
+        String currentId = flowNodeId;
+        while (currentId != null) {
+            Span span = getOpenSpan(currentId);
+            if (span != null) {
+                return span;
+            }
+            String enclosingId = enclosingIdByFlowNodeId.get(currentId);
+            if (enclosingId == null) {
+                enclosingId = Objects.toString(enclosingIdLoader.apply(currentId), NO_ENCLOSING_BLOCK);
+                enclosingIdByFlowNodeId.putIfAbsent(currentId, enclosingId);
+            }
+            currentId = NO_ENCLOSING_BLOCK.equals(enclosingId) ? null : enclosingId;
+        }
+        return null;
+    }
+
+    /**
+     * Unregister the {@link FlowNodeMonitoringAction} of the given span.
+     *
+     * @return the removed action, {@code null} if not found
+     */
+    @CheckForNull
+    FlowNodeMonitoringAction remove(@NonNull String flowNodeId, @NonNull String spanId) {
+        Deque<FlowNodeMonitoringAction> actions = actionsByFlowNodeId.get(flowNodeId);
+        if (actions == null) {
+            return null;
+        }
+        for (Iterator<FlowNodeMonitoringAction> it = actions.iterator(); it.hasNext(); ) {
+            FlowNodeMonitoringAction action = it.next();
+            if (Objects.equals(action.getSpanId(), spanId)) {
+                it.remove();
+                return action;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Purge the spans that have not been unregistered, the flow nodes that received a span are known and none of them
+     * has to be loaded.
+     *
+     * @return number of flow nodes that received a span during the run
+     */
+    int purge() {
+        for (Deque<FlowNodeMonitoringAction> actions : actionsByFlowNodeId.values()) {
+            for (FlowNodeMonitoringAction action; (action = actions.pollFirst()) != null; ) {
+                action.purgeSpan();
+            }
+        }
+        return actionsByFlowNodeId.size();
+    }
+
+    boolean isTrackedSinceRunStart() {
+        return trackedSinceRunStart;
+    }
+
+    /**
+     * @return number of flow nodes that received a span
+     */
+    int size() {
+        return actionsByFlowNodeId.size();
+    }
+}
@@ -5,11 +5,13 @@
 
 package io.jenkins.plugins.opentelemetry.job;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.errorprone.annotations.MustBeClosed;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import hudson.Extension;
 import hudson.ExtensionList;
+import hudson.ExtensionListListener;
 import hudson.model.Computer;
 import hudson.model.Describable;
 import hudson.model.Descriptor;
@@ -18,7 +20,10 @@ import io.jenkins.plugins.opentelemetry.JenkinsOpenTelemetryPluginConfiguration;
 import io.jenkins.plugins.opentelemetry.OpenTelemetryAttributesAction;
 import io.jenkins.plugins.opentelemetry.OpenTelemetryLifecycleListener;
 import io.jenkins.plugins.opentelemetry.OtelUtils;
+import io.jenkins.plugins.opentelemetry.job.action.TracingGranularityAction;
 import io.jenkins.plugins.opentelemetry.job.jenkins.AbstractPipelineListener;
+import io.jenkins.plugins.opentelemetry.job.jenkins.NodeStatusTracker;
+import io.jenkins.plugins.opentelemetry.job.jenkins.PipelineEventDispatcher;
 import io.jenkins.plugins.opentelemetry.job.jenkins.PipelineListener;
 import io.jenkins.plugins.opentelemetry.job.step.SetSpanAttributesStep;
 import io.jenkins.plugins.opentelemetry.job.step.StepHandler;
@@ -26,6 +31,7 @@ import io.jenkins.plugins.opentelemetry.job.step.WithSpanAttributeStep;
 import io.jenkins.plugins.opentelemetry.job.step.WithSpanAttributesStep;
 import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
 import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
 import io.opentelemetry.api.incubator.events.EventLogger;
 import io.opentelemetry.api.logs.LoggerProvider;
 import io.opentelemetry.api.metrics.Meter;
@@ -36,6 +42,7 @@ import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.context.Context;
 import io.opentelemetry.context.Scope;
 import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.common.Clock;
 import io.opentelemetry.semconv.incubating.HostIncubatingAttributes;
 import jenkins.YesNoMaybe;
 import jenkins.model.CauseOfInterruption;
@@ -68,7 +75,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.function.Supplier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -81,9 +90,25 @@ public class MonitoringPipelineListener extends AbstractPipelineListener impleme
     private final static Logger LOGGER = Logger.getLogger(MonitoringPipelineListener.class.getName());
 
     private OtelTraceService otelTraceService;
+    private PipelineEventDispatcher pipelineEventDispatcher;
+    private NodeStatusTracker nodeStatusTracker;
     private Tracer tracer;
     private Set<String> ignoredSteps;
     private List<StepHandler> stepHandlers;
+    private volatile StepHandlerDispatchTable stepHandlerDispatchTable;
+    /**
+     * Step type, name and plugin attributes by step descriptor id (and {@link CoreStep} delegate symbol)
+     */
+    private final StepAttributesCache stepAttributesCache = new StepAttributesCache();
+    private final ConcurrentMap<RunIdentifier, StepSpanBudget> stepSpanBudgets = new ConcurrentHashMap<>();
+    /**
+     * Guards the creation of the {@link TracingGranularityAction}s, rather than the monitor of the run that Jenkins core
+     * holds while saving the run
+     */
+    private final Object tracingGranularityLock = new Object();
+    private int maxStepSpansPerRun;
+    private int maxStepSpansPerParent;
+    private TracingGranularity defaultTracingGranularity = TracingGranularity.FULL;
 
     /**
      * Interruption causes that should mark the span as error because they are external interruptions.
@@ -95,26 +120,35 @@ public class MonitoringPipelineListener extends AbstractPipelineListener impleme
         final JenkinsOpenTelemetryPluginConfiguration jenkinsOpenTelemetryPluginConfiguration = JenkinsOpenTelemetryPluginConfiguration.get();
         this.ignoredSteps = new HashSet<>(Arrays.asList(jenkinsOpenTelemetryPluginConfiguration.getIgnoredSteps().split(",")));
         this.statusUnsetCausesOfInterruption = new HashSet<>(jenkinsOpenTelemetryPluginConfiguration.getStatusUnsetCausesOfInterruption());
+        // descriptors are added when a plugin is dynamically installed, plugin upgrades require a restart
+        ExtensionList.lookup(Descriptor.class).addListener(new ExtensionListListener() {
+            @Override
+            public void onChange() {
+                LOGGER.log(Level.FINE, "Descriptors changed, invalidate step attributes cache");
+                jenkinsOpenTelemetryPluginConfiguration.getLoadedStepsPlugins().clear();
+                stepAttributesCache.invalidate();
+            }
+        });
     }
 
     @Override
     public void onStartNodeStep(@NonNull StepStartNode stepStartNode, @Nullable String agentLabel, @NonNull WorkflowRun run) {
+        if (!getTracingGranularity(run).isBlockTraced()) {
+            return;
+        }
         try (Scope nodeSpanScope = setupContext(run, stepStartNode)) {
             verifyNotNull(nodeSpanScope, "%s - No span found for node %s", run, stepStartNode);
-            String stepType = getStepType(stepStartNode, stepStartNode.getDescriptor(), JenkinsOtelSemanticAttributes.STEP_NODE);
-            JenkinsOpenTelemetryPluginConfiguration.StepPlugin stepPlugin = JenkinsOpenTelemetryPluginConfiguration.get().findStepPluginOrDefault(stepType, stepStartNode);
+            Attributes stepAttributes = getStepAttributes(stepStartNode, stepStartNode.getDescriptor(), JenkinsOtelSemanticAttributes.STEP_NODE);
 
             SpanBuilder agentSpanBuilder = getTracer().spanBuilder(JenkinsOtelSemanticAttributes.AGENT_UI)
                 .setParent(Context.current())
-                .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_TYPE, stepType)
+                .setAllAttributes(stepAttributes)
                 .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_ID, stepStartNode.getId())
-                .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_NAME, JenkinsOtelSemanticAttributes.AGENT) // FIXME verify it's the right semantic and value
-                .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_PLUGIN_NAME, stepPlugin.getName())
-                .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_PLUGIN_VERSION, stepPlugin.getVersion());
+                .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_NAME, JenkinsOtelSemanticAttributes.AGENT); // FIXME verify it's the right semantic and value
             if (agentLabel != null) {
                 agentSpanBuilder.setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGENT_LABEL, agentLabel);
             }
-            Span agentSpan = agentSpanBuilder.startSpan();
+            Span agentSpan = startSpan(agentSpanBuilder);
 
             LOGGER.log(Level.FINE, () -> run.getFullDisplayName() + " - > " + JenkinsOtelSemanticAttributes.AGENT + "(" + agentLabel + ") - begin " + OtelUtils.toDebugString(agentSpan));
 
@@ -123,15 +157,13 @@ public class MonitoringPipelineListener extends AbstractPipelineListener impleme
             try (Scope allocateAgentSpanScope = agentSpan.makeCurrent()) {
                 SpanBuilder allocateAgentSpanBuilder = getTracer().spanBuilder(JenkinsOtelSemanticAttributes.AGENT_ALLOCATION_UI)
                     .setParent(Context.current())
-                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_TYPE, getStepType(stepStartNode, stepStartNode.getDescriptor(), JenkinsOtelSemanticAttributes.STEP_NODE))
+                    .setAllAttributes(stepAttributes)
                     .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_ID, stepStartNode.getId())
-                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_NAME, JenkinsOtelSemanticAttributes.AGENT_ALLOCATE) // FIXME verify it's the right semantic and value
-                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_PLUGIN_NAME, stepPlugin.getName())
-                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_PLUGIN_VERSION, stepPlugin.getVersion());
+                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_NAME, JenkinsOtelSemanticAttributes.AGENT_ALLOCATE); // FIXME verify it's the right semantic and value
                 if (agentLabel != null) {
                     allocateAgentSpanBuilder.setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGENT_LABEL, agentLabel);
                 }
-                Span allocateAgentSpan = allocateAgentSpanBuilder.startSpan();
+                Span allocateAgentSpan = startSpan(allocateAgentSpanBuilder);
 
                 LOGGER.log(Level.FINE, () -> run.getFullDisplayName() + " - > " + JenkinsOtelSemanticAttributes.AGENT_ALLOCATE + "(" + agentLabel + ") - begin " + OtelUtils.toDebugString(allocateAgentSpan));
 
@@ -142,27 +174,29 @@ public class MonitoringPipelineListener extends AbstractPipelineListener impleme
 
     @Override
     public void onAfterStartNodeStep(@NonNull StepStartNode stepStartNode, @Nullable String nodeLabel, @NonNull WorkflowRun run) {
+        if (!getTracingGranularity(run).isBlockTraced()) {
+            return;
+        }
         // end the JenkinsOtelSemanticAttributes.AGENT_ALLOCATE span
         endCurrentSpan(stepStartNode, run, null);
     }
 
     @Override
     public void onStartStageStep(@NonNull StepStartNode stepStartNode, @NonNull String stageName, @NonNull WorkflowRun run) {
+        if (!getTracingGranularity(run).isBlockTraced()) {
+            return;
+        }
         try (Scope ignored = setupContext(run, stepStartNode)) {
             verifyNotNull(ignored, "%s - No span found for node %s", run, stepStartNode);
             String spanStageName = "Stage: " + stageName;
 
-            String stepType = getStepType(stepStartNode, stepStartNode.getDescriptor(),"stage");
-            JenkinsOpenTelemetryPluginConfiguration.StepPlugin stepPlugin = JenkinsOpenTelemetryPluginConfiguration.get().findStepPluginOrDefault(stepType, stepStartNode);
+            Attributes stepAttributes = getStepAttributes(stepStartNode, stepStartNode.getDescriptor(), "stage");
 
-            Span stageSpan = getTracer().spanBuilder(spanStageName)
+            Span stageSpan = startSpan(getTracer().spanBuilder(spanStageName)
                     .setParent(Context.current())
-                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_TYPE, stepType)
+                    .setAllAttributes(stepAttributes)
                     .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_ID, stepStartNode.getId())
-                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_NAME, stageName)
-                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_PLUGIN_NAME, stepPlugin.getName())
-                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_PLUGIN_VERSION, stepPlugin.getVersion())
-                    .startSpan();
+                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_NAME, stageName));
             LOGGER.log(Level.FINE, () -> run.getFullDisplayName() + " - > stage(" + stageName + ") - begin " + OtelUtils.toDebugString(stageSpan));
 
             getTracerService().putSpan(run, stageSpan, stepStartNode);
@@ -171,15 +205,21 @@ public class MonitoringPipelineListener extends AbstractPipelineListener impleme
 
     @Override
     public void onEndNodeStep(@NonNull StepEndNode node, @NonNull String nodeName, FlowNode nextNode, @NonNull WorkflowRun run) {
+        if (!getTracingGranularity(run).isBlockTraced()) {
+            return;
+        }
         StepStartNode nodeStartNode = node.getStartNode();
-        GenericStatus nodeStatus = StatusAndTiming.computeChunkStatus2(run, null, nodeStartNode, node, nextNode);
+        GenericStatus nodeStatus = nodeStatusTracker.computeChunkStatus(run, nodeStartNode, node, nextNode);
         endCurrentSpan(node, run, nodeStatus);
     }
 
     @Override
     public void onEndStageStep(@NonNull StepEndNode node, @NonNull String stageName, FlowNode nextNode, @NonNull WorkflowRun run) {
+        if (!getTracingGranularity(run).isBlockTraced()) {
+            return;
+        }
         StepStartNode stageStartNode = node.getStartNode();
-        GenericStatus stageStatus = StatusAndTiming.computeChunkStatus2(run, null, stageStartNode, node, nextNode);
+        GenericStatus stageStatus = nodeStatusTracker.computeChunkStatus(run, stageStartNode, node, nextNode);
         endCurrentSpan(node, run, stageStatus);
     }
 
@@ -191,8 +231,22 @@ public class MonitoringPipelineListener extends AbstractPipelineListener impleme
         }
         return this.stepHandlers;
     }
+
+    @NonNull
+    StepHandlerDispatchTable getStepHandlerDispatchTable() {
+        StepHandlerDispatchTable stepHandlerDispatchTable = this.stepHandlerDispatchTable;
+        if (stepHandlerDispatchTable == null) {
+            stepHandlerDispatchTable = new StepHandlerDispatchTable(getStepHandlers());
+            this.stepHandlerDispatchTable = stepHandlerDispatchTable;
+        }
+        return stepHandlerDispatchTable;
+    }
+
     @Override
     public void onAtomicStep(@NonNull StepAtomNode node, @NonNull WorkflowRun run) {
+        if (!getTracingGranularity(run).isStepTraced()) {
+            return;
+        }
         if (isIgnoredStep(node.getDescriptor())){
             LOGGER.log(Level.FINE, () -> run.getFullDisplayName() + " - don't create span for step '" + node.getDisplayFunctionName() + "'");
             return;
@@ -200,27 +254,36 @@ public class MonitoringPipelineListener extends AbstractPipelineListener impleme
         try (Scope ignored = setupContext(run, node)) {
             verifyNotNull(ignored, "%s - No span found for node %s", run, node);
 
+            StepSpanBudget stepSpanBudget = getStepSpanBudget(run);
+            if (stepSpanBudget != null) {
+                String parentSpanId = Span.current().getSpanContext().getSpanId();
+                if (!stepSpanBudget.tryAcquire(parentSpanId)) {
+                    Attributes stepAttributes = getStepAttributes(node, node.getDescriptor(), JenkinsOtelSemanticAttributes.STEP_NAME);
+                    String stepType = Objects.toString(stepAttributes.get(JenkinsOtelSemanticAttributes.JENKINS_STEP_TYPE), JenkinsOtelSemanticAttributes.STEP_NAME);
+                    LOGGER.log(Level.FINE, () -> run.getFullDisplayName() + " - span budget exceeded, aggregate step '" + node.getDisplayFunctionName() + "' (" + node.getId() + ")");
+                    stepSpanBudget.aggregate(node.getId(), parentSpanId, stepType, now(), () -> startSpan(getTracer().spanBuilder("Aggregated steps: " + stepType)
+                        .setParent(Context.current())
+                        .setAllAttributes(stepAttributes)));
+                    return;
+                }
+            }
+
             String principal = Objects.toString(node.getExecution().getAuthentication().getPrincipal(), "#null#");
             LOGGER.log(Level.FINE, () -> node.getDisplayFunctionName() + " - principal: " + principal);
 
-            StepHandler stepHandler = getStepHandlers().stream().filter(sh -> sh.canCreateSpanBuilder(node, run)).findFirst()
-                .orElseThrow((Supplier<RuntimeException>) () ->
-                    new IllegalStateException("No StepHandler found for node " + node.getClass() + " - " + node + " on " + run));
+            StepHandler stepHandler = getStepHandlerDispatchTable().findStepHandler(node, run);
+            if (stepHandler == null) {
+                throw new IllegalStateException("No StepHandler found for node " + node.getClass() + " - " + node + " on " + run);
+            }
             SpanBuilder spanBuilder = stepHandler.createSpanBuilder(node, run, getTracer());
 
-            String stepType = getStepType(node, node.getDescriptor(), JenkinsOtelSemanticAttributes.STEP_NAME);
-            JenkinsOpenTelemetryPluginConfiguration.StepPlugin stepPlugin = JenkinsOpenTelemetryPluginConfiguration.get().findStepPluginOrDefault(stepType, node);
-
             spanBuilder
                     .setParent(Context.current()) // TODO can we remove this call?
-                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_TYPE, stepType)
+                    .setAllAttributes(getStepAttributes(node, node.getDescriptor(), JenkinsOtelSemanticAttributes.STEP_NAME))
                     .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_ID, node.getId())
-                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_NAME, getStepName(node, JenkinsOtelSemanticAttributes.STEP_NAME))
-                    .setAttribute(JenkinsOtelSemanticAttributes.CI_PIPELINE_RUN_USER, principal)
-                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_PLUGIN_NAME, stepPlugin.getName())
-                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_PLUGIN_VERSION, stepPlugin.getVersion());
+                    .setAttribute(JenkinsOtelSemanticAttributes.CI_PIPELINE_RUN_USER, principal);
 
-            Span atomicStepSpan = spanBuilder.startSpan();
+            Span atomicStepSpan = startSpan(spanBuilder);
             LOGGER.log(Level.FINE, () -> run.getFullDisplayName() + " - > " + node.getDisplayFunctionName() + " - begin " + OtelUtils.toDebugString(atomicStepSpan));
             try (Scope ignored2 = atomicStepSpan.makeCurrent()) {
                 stepHandler.afterSpanCreated(node, run);
@@ -231,14 +294,63 @@ public class MonitoringPipelineListener extends AbstractPipelineListener impleme
 
     @Override
     public void onAfterAtomicStep(@NonNull StepAtomNode node, FlowNode nextNode, @NonNull WorkflowRun run) {
+        if (!getTracingGranularity(run).isStepTraced()) {
+            return;
+        }
         if (isIgnoredStep(node.getDescriptor())){
             LOGGER.log(Level.FINE, () -> run.getFullDisplayName() + " - don't end span for step '" + node.getDisplayFunctionName() + "'");
             return;
         }
-        GenericStatus stageStatus = StatusAndTiming.computeChunkStatus2(run, null, node, node, nextNode);
+        StepSpanBudget stepSpanBudget = stepSpanBudgets.get(RunIdentifier.fromRun(run));
+        if (stepSpanBudget != null && stepSpanBudget.complete(node.getId(), now(), node.getError() != null)) {
+            LOGGER.log(Level.FINE, () -> run.getFullDisplayName() + " - < " + node.getDisplayFunctionName() + " - aggregated");
+            return;
+        }
+        GenericStatus stageStatus = nodeStatusTracker.computeChunkStatus(run, node, node, nextNode);
         endCurrentSpan(node, run, stageStatus);
     }
 
+    @Override
+    public void onEndPipeline(@NonNull FlowNode node, @NonNull WorkflowRun run) {
+        StepSpanBudget stepSpanBudget = stepSpanBudgets.remove(RunIdentifier.fromRun(run));
+        if (stepSpanBudget != null) {
+            stepSpanBudget.endAggregatedSpans();
+        }
+    }
+
+    /**
+     * Resolve the tracing granularity of the build on its first flow node and cache it in a {@link TracingGranularityAction}.
+     * The flow nodes of the parallel branches can be notified concurrently, the resolution is synchronized so that all
+     * the nodes of the build see the same granularity.
+     */
+    @NonNull
+    TracingGranularity getTracingGranularity(@NonNull WorkflowRun run) {
+        TracingGranularityAction tracingGranularityAction = run.getAction(TracingGranularityAction.class);
+        if (tracingGranularityAction == null) {
+            synchronized (tracingGranularityLock) {
+                tracingGranularityAction = run.getAction(TracingGranularityAction.class);
+                if (tracingGranularityAction == null) {
+                    tracingGranularityAction = new TracingGranularityAction(TracingGranularityJobProperty.resolve(run.getParent(), defaultTracingGranularity));
+                    run.addAction(tracingGranularityAction);
+                    TracingGranularity tracingGranularity = tracingGranularityAction.getTracingGranularity();
+                    LOGGER.log(Level.FINE, () -> run.getFullDisplayName() + " - tracing granularity: " + tracingGranularity);
+                }
+            }
+        }
+        return tracingGranularityAction.getTracingGranularity();
+    }
+
+    /**
+     * @return {@code null} if the step spans are not limited
+     */
+    @Nullable
+    private StepSpanBudget getStepSpanBudget(@NonNull WorkflowRun run) {
+        if (maxStepSpansPerRun <= 0 && maxStepSpansPerParent <= 0) {
+            return null;
+        }
+        return stepSpanBudgets.computeIfAbsent(RunIdentifier.fromRun(run), runIdentifier -> new StepSpanBudget(maxStepSpansPerRun, maxStepSpansPerParent));
+    }
+
     private boolean isIgnoredStep(@Nullable StepDescriptor stepDescriptor) {
         if (stepDescriptor == null) {
             return true;
@@ -252,28 +364,43 @@ public class MonitoringPipelineListener extends AbstractPipelineListener impleme
         return ignoreStep;
     }
 
-    private String getStepName(@NonNull StepAtomNode node, @NonNull String name) {
-        StepDescriptor stepDescriptor = node.getDescriptor();
+    /**
+     * @param defaultType step type and step name used when the step descriptor is unknown
+     * @return the {@link JenkinsOtelSemanticAttributes#JENKINS_STEP_TYPE}, {@link JenkinsOtelSemanticAttributes#JENKINS_STEP_NAME},
+     * {@link JenkinsOtelSemanticAttributes#JENKINS_STEP_PLUGIN_NAME} and {@link JenkinsOtelSemanticAttributes#JENKINS_STEP_PLUGIN_VERSION}
+     * attributes of the step. Cached by step descriptor and by {@link CoreStep} delegate symbol.
+     */
+    @NonNull
+    private Attributes getStepAttributes(@NonNull FlowNode node, @Nullable StepDescriptor stepDescriptor, @NonNull String defaultType) {
         if (stepDescriptor == null) {
-            return name;
+            JenkinsOpenTelemetryPluginConfiguration.StepPlugin stepPlugin = JenkinsOpenTelemetryPluginConfiguration.get().findStepPluginOrDefault(defaultType, (Descriptor<? extends Describable>) null);
+            return newStepAttributes(defaultType, defaultType, stepPlugin);
         }
         UninstantiatedDescribable describable = getUninstantiatedDescribableOrNull(node, stepDescriptor);
-        if (describable != null) {
-            Descriptor<? extends Describable> d = SymbolLookup.get().findDescriptor(Describable.class, describable.getSymbol());
-            return d.getDisplayName();
-        }
-        return stepDescriptor.getDisplayName();
+        String key = describable == null ? stepDescriptor.getId() : stepDescriptor.getId() + "#" + describable.getSymbol();
+        return stepAttributesCache.get(key, () -> {
+            String stepType;
+            Descriptor<? extends Describable> descriptor;
+            if (describable == null) {
+                stepType = stepDescriptor.getFunctionName();
+                descriptor = stepDescriptor;
+            } else {
+                stepType = describable.getSymbol();
+                descriptor = SymbolLookup.get().findDescriptor(Describable.class, describable.getSymbol());
+            }
+            String stepName = descriptor == null ? stepDescriptor.getDisplayName() : descriptor.getDisplayName();
+            JenkinsOpenTelemetryPluginConfiguration.StepPlugin stepPlugin = JenkinsOpenTelemetryPluginConfiguration.get().findStepPluginOrDefault(stepType, descriptor);
+            return newStepAttributes(stepType, stepName, stepPlugin);
+        });
     }
 
-    private String getStepType(@NonNull FlowNode node, @Nullable StepDescriptor stepDescriptor, @NonNull String type) {
-        if (stepDescriptor == null) {
-            return type;
-        }
-        UninstantiatedDescribable describable = getUninstantiatedDescribableOrNull(node, stepDescriptor);
-        if (describable != null) {
-            return describable.getSymbol();
-        }
-        return stepDescriptor.getFunctionName();
+    @NonNull
+    private static Attributes newStepAttributes(@NonNull String stepType, @NonNull String stepName, @NonNull JenkinsOpenTelemetryPluginConfiguration.StepPlugin stepPlugin) {
+        return Attributes.of(
+            JenkinsOtelSemanticAttributes.JENKINS_STEP_TYPE, stepType,
+            JenkinsOtelSemanticAttributes.JENKINS_STEP_NAME, stepName,
+            JenkinsOtelSemanticAttributes.JENKINS_STEP_PLUGIN_NAME, stepPlugin.getName(),
+            JenkinsOtelSemanticAttributes.JENKINS_STEP_PLUGIN_VERSION, stepPlugin.getVersion());
     }
 
     @Nullable
@@ -290,20 +417,19 @@ public class MonitoringPipelineListener extends AbstractPipelineListener impleme
 
     @Override
     public void onStartParallelStepBranch(@NonNull StepStartNode stepStartNode, @NonNull String branchName, @NonNull WorkflowRun run) {
+        if (!getTracingGranularity(run).isBlockTraced()) {
+            return;
+        }
         try (Scope ignored = setupContext(run, stepStartNode)) {
             verifyNotNull(ignored, "%s - No span found for node %s", run, stepStartNode);
 
-            String stepType = getStepType(stepStartNode, stepStartNode.getDescriptor(),"branch");
-            JenkinsOpenTelemetryPluginConfiguration.StepPlugin stepPlugin = JenkinsOpenTelemetryPluginConfiguration.get().findStepPluginOrDefault(stepType, stepStartNode);
+            Attributes stepAttributes = getStepAttributes(stepStartNode, stepStartNode.getDescriptor(), "branch");
 
-            Span atomicStepSpan = getTracer().spanBuilder("Parallel branch: " + branchName)
+            Span atomicStepSpan = startSpan(getTracer().spanBuilder("Parallel branch: " + branchName)
                     .setParent(Context.current())
-                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_TYPE, stepType)
+                    .setAllAttributes(stepAttributes)
                     .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_ID, stepStartNode.getId())
-                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_NAME, branchName)
-                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_PLUGIN_NAME, stepPlugin.getName())
-                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_PLUGIN_VERSION, stepPlugin.getVersion())
-                    .startSpan();
+                    .setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_NAME, branchName));
             LOGGER.log(Level.FINE, () -> run.getFullDisplayName() + " - > parallel branch(" + branchName + ") - begin " + OtelUtils.toDebugString(atomicStepSpan));
 
             getTracerService().putSpan(run, atomicStepSpan, stepStartNode);
@@ -312,8 +438,11 @@ public class MonitoringPipelineListener extends AbstractPipelineListener impleme
 
     @Override
     public void onEndParallelStepBranch(@NonNull StepEndNode node, @NonNull String branchName, FlowNode nextNode, @NonNull WorkflowRun run) {
+        if (!getTracingGranularity(run).isBlockTraced()) {
+            return;
+        }
         StepStartNode parallelStartNode = node.getStartNode();
-        GenericStatus parallelStatus = StatusAndTiming.computeChunkStatus2(run, null, parallelStartNode, node, nextNode);
+        GenericStatus parallelStatus = nodeStatusTracker.computeChunkStatus(run, parallelStartNode, node, nextNode);
         endCurrentSpan(node, run, parallelStatus);
     }
 
@@ -365,7 +494,12 @@ public class MonitoringPipelineListener extends AbstractPipelineListener impleme
                 span.setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_RESULT, status.toString());
             }
 
-            span.end();
+            StepSpanBudget stepSpanBudget = stepSpanBudgets.get(RunIdentifier.fromRun(run));
+            if (stepSpanBudget != null) {
+                stepSpanBudget.endAggregatedSpans(span.getSpanContext().getSpanId());
+            }
+
+            endSpan(span);
             LOGGER.log(Level.FINE, () -> run.getFullDisplayName() + " - < " + node.getDisplayFunctionName() + " - end " + OtelUtils.toDebugString(span));
 
             getTracerService().removePipelineStepSpan(run, node, span);
@@ -397,14 +531,17 @@ public class MonitoringPipelineListener extends AbstractPipelineListener impleme
             OpenTelemetryAttributesAction otelComputerAttributesAction = computer.getAction(OpenTelemetryAttributesAction.class);
             OpenTelemetryAttributesAction otelChildAttributesAction = context.get(OpenTelemetryAttributesAction.class);
 
-            try (Scope ignored = setupContext(run, node)) {
-                Span currentSpan = Span.current();
-                LOGGER.log(Level.FINE, () -> "Add resource attributes to span " + OtelUtils.toDebugString(currentSpan) + " - " + otelComputerAttributesAction);
-                setAttributesToSpan(currentSpan, otelComputerAttributesAction);
+            // the span of the step may not yet be created when pipeline events are dispatched asynchronously
+            pipelineEventDispatcher.dispatch(run, node.getId(), () -> {
+                try (Scope ignored = setupContext(run, node)) {
+                    Span currentSpan = Span.current();
+                    LOGGER.log(Level.FINE, () -> "Add resource attributes to span " + OtelUtils.toDebugString(currentSpan) + " - " + otelComputerAttributesAction);
+                    setAttributesToSpan(currentSpan, otelComputerAttributesAction);
 
-                LOGGER.log(Level.FINE, () -> "Add attributes to child span " + OtelUtils.toDebugString(currentSpan) + " - " + otelChildAttributesAction);
-                setAttributesToSpan(currentSpan, otelChildAttributesAction);
-            }
+                    LOGGER.log(Level.FINE, () -> "Add attributes to child span " + OtelUtils.toDebugString(currentSpan) + " - " + otelChildAttributesAction);
+                    setAttributesToSpan(currentSpan, otelChildAttributesAction);
+                }
+            });
         } catch (IOException | InterruptedException | RuntimeException e) {
             LOGGER.log(Level.WARNING,"Exception processing " + step + " - " + context, e);
         }
@@ -426,6 +563,42 @@ public class MonitoringPipelineListener extends AbstractPipelineListener impleme
         }
     }
 
+    /**
+     * Start the span using the capture time of the pipeline event when events are dispatched asynchronously
+     *
+     * @see PipelineEventDispatcher#getCurrentEvent()
+     */
+    @NonNull
+    private static Span startSpan(@NonNull SpanBuilder spanBuilder) {
+        PipelineEventDispatcher.PipelineEvent pipelineEvent = PipelineEventDispatcher.getCurrentEvent();
+        if (pipelineEvent != null) {
+            spanBuilder.setStartTimestamp(pipelineEvent.getEpochNanos(), TimeUnit.NANOSECONDS);
+        }
+        return spanBuilder.startSpan();
+    }
+
+    /**
+     * End the span using the capture time of the pipeline event when events are dispatched asynchronously
+     *
+     * @see PipelineEventDispatcher#getCurrentEvent()
+     */
+    private static void endSpan(@NonNull Span span) {
+        PipelineEventDispatcher.PipelineEvent pipelineEvent = PipelineEventDispatcher.getCurrentEvent();
+        if (pipelineEvent == null) {
+            span.end();
+        } else {
+            span.end(pipelineEvent.getEpochNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * @return capture time of the pipeline event when events are dispatched asynchronously, current time otherwise
+     */
+    private static long now() {
+        PipelineEventDispatcher.PipelineEvent pipelineEvent = PipelineEventDispatcher.getCurrentEvent();
+        return pipelineEvent == null ? Clock.getDefault().now() : pipelineEvent.getEpochNanos();
+    }
+
     /**
      * @return {@code null} if no {@link Span} has been created for the {@link Run} of the given {@link FlowNode}
      */
@@ -443,6 +616,16 @@ public class MonitoringPipelineListener extends AbstractPipelineListener impleme
         this.otelTraceService = otelTraceService;
     }
 
+    @Inject
+    public final void setNodeStatusTracker(@NonNull NodeStatusTracker nodeStatusTracker) {
+        this.nodeStatusTracker = nodeStatusTracker;
+    }
+
+    @Inject
+    public final void setPipelineEventDispatcher(@NonNull PipelineEventDispatcher pipelineEventDispatcher) {
+        this.pipelineEventDispatcher = pipelineEventDispatcher;
+    }
+
     @NonNull
     public OtelTraceService getTracerService() {
         return otelTraceService;
@@ -461,9 +644,26 @@ public class MonitoringPipelineListener extends AbstractPipelineListener impleme
     @Override
     public void afterSdkInitialized(Meter meter, LoggerProvider loggerProvider, EventLogger eventLogger, Tracer tracer, ConfigProperties configProperties) {
         this.tracer = tracer;
+        // the step plugins and names may have changed with the configuration
+        this.stepAttributesCache.invalidate();
+        this.stepHandlerDispatchTable = new StepHandlerDispatchTable(getStepHandlers());
+        this.maxStepSpansPerRun = configProperties.getInt(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_PIPELINE_STEP_SPANS_MAX_PER_RUN, 0);
+        this.maxStepSpansPerParent = configProperties.getInt(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_PIPELINE_STEP_SPANS_MAX_PER_PARENT, 0);
+        String tracingGranularity = configProperties.getString(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_PIPELINE_TRACING_GRANULARITY);
+        try {
+            this.defaultTracingGranularity = TracingGranularity.fromValue(tracingGranularity, TracingGranularity.FULL);
+        } catch (IllegalArgumentException e) {
+            LOGGER.log(Level.WARNING, e.getMessage() + ", use '" + TracingGranularity.FULL.getValue() + "'");
+            this.defaultTracingGranularity = TracingGranularity.FULL;
+        }
         LOGGER.log(Level.FINE, () -> "Start monitoring Jenkins pipeline executions...");
     }
 
+    @VisibleForTesting
+    StepAttributesCache getStepAttributesCache() {
+        return stepAttributesCache;
+    }
+
     @Override
     public void beforeSdkShutdown() {
 
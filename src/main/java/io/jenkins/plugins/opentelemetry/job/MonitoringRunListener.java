@@ -22,6 +22,7 @@ import hudson.model.TaskListener;
 import hudson.model.User;
 import io.jenkins.plugins.opentelemetry.OtelUtils;
 import io.jenkins.plugins.opentelemetry.job.cause.CauseHandler;
+import io.jenkins.plugins.opentelemetry.job.jenkins.PipelineEventDispatcher;
 import io.jenkins.plugins.opentelemetry.job.opentelemetry.OtelContextAwareAbstractRunListener;
 import io.jenkins.plugins.opentelemetry.job.runhandler.RunHandler;
 import io.jenkins.plugins.opentelemetry.queue.RemoteSpanAction;
@@ -315,6 +316,9 @@ public class MonitoringRunListener extends OtelContextAwareAbstractRunListener {
 
     @Override
     public void _onCompleted(@NonNull Run run, @NonNull TaskListener listener) {
+        // end the spans of the pipeline steps before the run phase span, invoked on the executor thread of the run, not
+        // on the CPS VM thread
+        PipelineEventDispatcher.get().flush(run);
         try (Scope parentScope = endPipelinePhaseSpan(run)) {
             Span finalizeSpan = getTracer().spanBuilder(JenkinsOtelSemanticAttributes.JENKINS_JOB_SPAN_PHASE_FINALIZE_NAME).setParent(Context.current()).startSpan();
             LOGGER.log(Level.FINE, () -> run.getFullDisplayName() + " - begin " + OtelUtils.toDebugString(finalizeSpan));
@@ -338,6 +342,7 @@ public class MonitoringRunListener extends OtelContextAwareAbstractRunListener {
 
     @Override
     public void _onFinalized(@NonNull Run run) {
+        PipelineEventDispatcher.get().close(run);
 
         try (Scope parentScope = endPipelinePhaseSpan(run)) {
             Span parentSpan = Span.current();
@@ -9,6 +9,7 @@ import hudson.EnvVars;
 import hudson.Extension;
 import hudson.model.Run;
 import hudson.model.TaskListener;
+import io.jenkins.plugins.opentelemetry.job.jenkins.PipelineEventDispatcher;
 import io.opentelemetry.api.trace.Span;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.steps.StepContext;
@@ -33,6 +34,8 @@ public class OtelStepEnvironmentContributor extends StepEnvironmentContributor {
 
     private OtelTraceService otelTraceService;
 
+    private PipelineEventDispatcher pipelineEventDispatcher;
+
     @Override
     public void buildEnvironmentFor(@NonNull StepContext stepContext, @NonNull EnvVars envs, @NonNull TaskListener listener) throws IOException, InterruptedException {
         super.buildEnvironmentFor(stepContext, envs, listener);
@@ -45,6 +48,9 @@ public class OtelStepEnvironmentContributor extends StepEnvironmentContributor {
             span = otelTraceService.getSpan(run);
         } else {
             LOGGER.log(Level.FINE, () -> run.getFullDisplayName() + "buildEnvironmentFor(flowNode: " + flowNode.getDisplayFunctionName() + ") ");
+            // ensure the span of the step has been created when pipeline events are dispatched asynchronously, the
+            // pending events are dispatched inline on the CPS VM thread
+            pipelineEventDispatcher.flush(run);
             span = otelTraceService.getSpan(run, flowNode);
         }
 
@@ -56,6 +62,11 @@ public class OtelStepEnvironmentContributor extends StepEnvironmentContributor {
         this.otelEnvironmentContributorService = otelEnvironmentContributorService;
     }
 
+    @Inject
+    public void setPipelineEventDispatcher(PipelineEventDispatcher pipelineEventDispatcher) {
+        this.pipelineEventDispatcher = pipelineEventDispatcher;
+    }
+
     @Inject
     public void setOtelTraceService(OtelTraceService otelTraceService) {
         this.otelTraceService = otelTraceService;
@@ -5,9 +5,12 @@
 
 package io.jenkins.plugins.opentelemetry.job;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.VerifyException;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.Extension;
 import hudson.ExtensionList;
@@ -15,14 +18,24 @@ import hudson.model.AbstractBuild;
 import hudson.model.Run;
 import hudson.tasks.BuildStep;
 import io.jenkins.plugins.opentelemetry.OpenTelemetryAttributesAction;
+import io.jenkins.plugins.opentelemetry.OpenTelemetryLifecycleListener;
 import io.jenkins.plugins.opentelemetry.OtelUtils;
 import io.jenkins.plugins.opentelemetry.job.action.BuildStepMonitoringAction;
 import io.jenkins.plugins.opentelemetry.job.action.FlowNodeMonitoringAction;
 import io.jenkins.plugins.opentelemetry.job.action.OtelMonitoringAction;
 import io.jenkins.plugins.opentelemetry.job.action.RunPhaseMonitoringAction;
 import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsSemanticMetrics;
 import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.incubator.events.EventLogger;
+import io.opentelemetry.api.logs.LoggerProvider;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
 import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
 import org.jenkinsci.plugins.workflow.cps.nodes.StepEndNode;
 import org.jenkinsci.plugins.workflow.cps.nodes.StepStartNode;
 import org.jenkinsci.plugins.workflow.flow.FlowExecution;
@@ -33,12 +46,15 @@ import org.jenkinsci.plugins.workflow.graphanalysis.ForkScanner;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.jenkinsci.plugins.workflow.support.steps.ExecutorStep;
 
-import java.util.ArrayList;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -48,15 +64,38 @@ import java.util.stream.StreamSupport;
 import static com.google.common.base.Verify.verifyNotNull;
 
 @Extension
-public class OtelTraceService {
+public class OtelTraceService implements OpenTelemetryLifecycleListener {
     private static final Logger LOGGER = Logger.getLogger(OtelTraceService.class.getName());
 
     @SuppressFBWarnings("MS_SHOULD_BE_FINAL")
     public static boolean STRICT_MODE = false;
 
+    private static final Meter NOOP_METER = MeterProvider.noop().get(OtelTraceService.class.getName());
+
+    /**
+     * Spans of the flow nodes of the pipeline runs that are in progress
+     */
+    private final ConcurrentMap<RunIdentifier, FlowNodeSpanRegistry> flowNodeSpanRegistries = new ConcurrentHashMap<>();
+
+    private LongCounter purgedFlowNodesCounter = NOOP_METER.counterBuilder(JenkinsSemanticMetrics.JENKINS_PIPELINE_PURGE_FLOW_NODES).build();
+    private LongHistogram purgeDurationHistogram = NOOP_METER.histogramBuilder(JenkinsSemanticMetrics.JENKINS_PIPELINE_PURGE_DURATION).ofLongs().build();
+
     public OtelTraceService() {
     }
 
+    @Override
+    public void afterSdkInitialized(Meter meter, LoggerProvider loggerProvider, EventLogger eventLogger, Tracer tracer, ConfigProperties configProperties) {
+        purgedFlowNodesCounter = meter.counterBuilder(JenkinsSemanticMetrics.JENKINS_PIPELINE_PURGE_FLOW_NODES)
+            .setDescription("Number of flow nodes whose spans have been purged at the end of pipeline runs")
+            .setUnit("1")
+            .build();
+        purgeDurationHistogram = meter.histogramBuilder(JenkinsSemanticMetrics.JENKINS_PIPELINE_PURGE_DURATION)
+            .ofLongs()
+            .setDescription("Duration of the purge of the spans of pipeline runs")
+            .setUnit("ms")
+            .build();
+    }
+
     /**
      * Returns the span of the current run phase.
      *
@@ -84,21 +123,38 @@ public class OtelTraceService {
 
     @NonNull
     public Span getSpan(@NonNull Run run, FlowNode flowNode) {
-        Iterable<FlowNode> ancestors = getAncestors(flowNode);
-        for (FlowNode currentFlowNode : ancestors) {
-            Optional<Span> span = ImmutableList.copyOf(currentFlowNode.getActions(FlowNodeMonitoringAction.class))
-                .reverse() // from last to first
-                .stream()
-                .filter(Predicate.not(FlowNodeMonitoringAction::hasEnded)) // only the non ended spans
-                .findFirst().map(FlowNodeMonitoringAction::getSpan);
-            if (span.isPresent()) {
-                return span.get();
+        FlowNodeSpanRegistry flowNodeSpanRegistry = flowNodeSpanRegistries.get(RunIdentifier.fromRun(run));
+        if (flowNodeSpanRegistry != null) {
+            FlowNode startNode = flowNode instanceof StepEndNode ? ((StepEndNode) flowNode).getStartNode() : flowNode;
+            Span span = flowNodeSpanRegistry.findOpenSpan(startNode.getId(), flowNodeId -> loadEnclosingId(startNode, flowNodeId));
+            return span == null ? getSpan(run) : span;
+        }
+
+        for (FlowNode currentFlowNode : getAncestors(flowNode)) {
+            Span span = getOpenSpan(currentFlowNode);
+            if (span != null) {
+                return span;
             }
         }
 
         return getSpan(run);
     }
 
+    /**
+     * @return the most recent non ended span attached to the given flow node, {@code null} if none
+     */
+    @Nullable
+    static Span getOpenSpan(@NonNull FlowNode flowNode) {
+        List<FlowNodeMonitoringAction> actions = flowNode.getActions(FlowNodeMonitoringAction.class);
+        for (int i = actions.size() - 1; i >= 0; i--) { // from last to first
+            FlowNodeMonitoringAction action = actions.get(i);
+            if (!action.hasEnded()) {
+                return action.getSpan();
+            }
+        }
+        return null;
+    }
+
     @NonNull
     public Span getSpan(@NonNull AbstractBuild build, @NonNull BuildStep buildStep) {
         return ImmutableList.copyOf(build.getActions(BuildStepMonitoringAction.class)).reverse() // from last to first
@@ -136,25 +192,53 @@ public class OtelTraceService {
      * "node / node.id: 3",
      * "Start of Pipeline / node.id: 2" // not visualized above
      * ]}
-     * TODO optimize lazing loading the enclosing blocks using {@link GraphLookupView#findEnclosingBlockStart(FlowNode)}
+     * <p>
+     * The enclosing blocks are lazily resolved with {@link GraphLookupView#findEnclosingBlockStart(FlowNode)} so that
+     * callers that stop at the first ancestor holding a span don't pay for the whole chain.
      *
-     * @return list of enclosing flow nodes starting with the passed flow nodes
+     * @return chain of enclosing flow nodes starting with the passed flow nodes
      */
     @NonNull
-    private Iterable<FlowNode> getAncestors(@NonNull final FlowNode flowNode) {
-        List<FlowNode> ancestors = new ArrayList<>();
-        FlowNode startNode;
+    @VisibleForTesting
+    static Iterable<FlowNode> getAncestors(@NonNull final FlowNode flowNode) {
+        final FlowNode startNode;
         if (flowNode instanceof StepEndNode) {
             startNode = ((StepEndNode) flowNode).getStartNode();
         } else {
             startNode = flowNode;
         }
-        ancestors.add(startNode);
-        ancestors.addAll(startNode.getEnclosingBlocks());
-        LOGGER.log(Level.FINEST, () -> "getAncestors(" + OtelUtils.toDebugString(flowNode) + "): " + ancestors.stream().map(OtelUtils.flowNodeToDebugString()).collect(Collectors.joining(", ")));
+        Iterable<FlowNode> ancestors = () -> new AbstractIterator<>() {
+            FlowNode next = startNode;
+
+            @Override
+            protected FlowNode computeNext() {
+                FlowNode current = next;
+                if (current == null) {
+                    return endOfData();
+                }
+                next = current.getExecution().findEnclosingBlockStart(current);
+                return current;
+            }
+        };
+        LOGGER.log(Level.FINEST, () -> "getAncestors(" + OtelUtils.toDebugString(flowNode) + "): " + StreamSupport.stream(ancestors.spliterator(), false).map(OtelUtils.flowNodeToDebugString()).collect(Collectors.joining(", ")));
         return ancestors;
     }
 
+    /**
+     * @return the id of the start node of the block enclosing the given flow node, {@code null} if the flow node is not
+     * enclosed or can't be loaded
+     */
+    @Nullable
+    private String loadEnclosingId(@NonNull FlowNode knownFlowNode, @NonNull String flowNodeId) {
+        try {
+            FlowNode flowNode = knownFlowNode.getId().equals(flowNodeId) ? knownFlowNode : knownFlowNode.getExecution().getNode(flowNodeId);
+            return flowNode == null ? null : flowNode.getEnclosingId();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failure to retrieve flow node " + flowNodeId, e);
+            return null;
+        }
+    }
+
     public void removePipelineStepSpan(@NonNull WorkflowRun run, @NonNull FlowNode flowNode, @NonNull Span span) {
         FlowNode startSpanNode;
         if (flowNode instanceof AtomNode) {
@@ -177,6 +261,13 @@ public class OtelTraceService {
             throw new VerifyException("Can't remove span from node of type" + flowNode.getClass() + " - " + flowNode);
         }
 
+        FlowNodeSpanRegistry flowNodeSpanRegistry = flowNodeSpanRegistries.get(RunIdentifier.fromRun(run));
+        FlowNodeMonitoringAction registeredAction = flowNodeSpanRegistry == null ? null : flowNodeSpanRegistry.remove(startSpanNode.getId(), span.getSpanContext().getSpanId());
+        if (registeredAction != null) {
+            registeredAction.purgeSpan();
+            return;
+        }
+
         ImmutableList.copyOf(startSpanNode.getActions(FlowNodeMonitoringAction.class))
             .reverse()
             .stream()
@@ -210,15 +301,36 @@ public class OtelTraceService {
     }
 
     public void purgeRun(@NonNull Run run) {
+        FlowNodeSpanRegistry flowNodeSpanRegistry = flowNodeSpanRegistries.remove(RunIdentifier.fromRun(run));
         run.getActions(OtelMonitoringAction.class).forEach(OtelMonitoringAction::purgeSpan);
-        // TODO verify we don't need this cleanup
         if (run instanceof WorkflowRun) {
-            WorkflowRun workflowRun = (WorkflowRun) run;
-            List<FlowNode> flowNodesHeads = Optional.ofNullable(workflowRun.getExecution()).map(FlowExecution::getCurrentHeads).orElse(Collections.emptyList());
-            ForkScanner scanner = new ForkScanner();
-            scanner.setup(flowNodesHeads);
-            StreamSupport.stream(scanner.spliterator(), false).forEach(flowNode -> flowNode.getActions(OtelMonitoringAction.class).forEach(OtelMonitoringAction::purgeSpan));
+            long startNanos = System.nanoTime();
+            int purgedFlowNodes;
+            if (flowNodeSpanRegistry != null && flowNodeSpanRegistry.isTrackedSinceRunStart()) {
+                purgedFlowNodes = flowNodeSpanRegistry.purge();
+            } else {
+                // run resumed after a restart, the flow nodes that received a span before the restart are unknown
+                purgedFlowNodes = purgeFlowGraph((WorkflowRun) run);
+            }
+            purgedFlowNodesCounter.add(purgedFlowNodes);
+            purgeDurationHistogram.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            LOGGER.log(Level.FINE, () -> "purgeRun(" + run.getFullDisplayName() + "): " + purgedFlowNodes + " flow nodes purged");
+        }
+    }
+
+    private int purgeFlowGraph(@NonNull WorkflowRun workflowRun) {
+        List<FlowNode> flowNodesHeads = Optional.ofNullable(workflowRun.getExecution()).map(FlowExecution::getCurrentHeads).orElse(Collections.emptyList());
+        ForkScanner scanner = new ForkScanner();
+        scanner.setup(flowNodesHeads);
+        int purgedFlowNodes = 0;
+        for (FlowNode flowNode : scanner) {
+            List<OtelMonitoringAction> actions = flowNode.getActions(OtelMonitoringAction.class);
+            if (!actions.isEmpty()) {
+                actions.forEach(OtelMonitoringAction::purgeSpan);
+                purgedFlowNodes++;
+            }
         }
+        return purgedFlowNodes;
     }
 
     public void putSpan(@NonNull AbstractBuild build, @NonNull Span span) {
@@ -233,6 +345,10 @@ public class OtelTraceService {
 
     public void putSpan(@NonNull Run run, @NonNull Span span) {
         run.addAction(new MonitoringAction(span));
+        if (run instanceof WorkflowRun) {
+            // root span, all the flow nodes that will receive a span are tracked
+            flowNodeSpanRegistries.put(RunIdentifier.fromRun(run), new FlowNodeSpanRegistry(true));
+        }
         LOGGER.log(Level.FINEST, () -> "putSpan(" + run.getFullDisplayName() + "," + OtelUtils.toDebugString(span) + ")");
     }
 
@@ -254,7 +370,11 @@ public class OtelTraceService {
 
     public void putSpan(@NonNull Run run, @NonNull Span span, @NonNull FlowNode flowNode) {
         // FYI for agent allocation, we have 2 FlowNodeMonitoringAction to track the agent allocation duration
-        flowNode.addAction(new FlowNodeMonitoringAction(span));
+        FlowNodeMonitoringAction flowNodeMonitoringAction = new FlowNodeMonitoringAction(span);
+        flowNode.addAction(flowNodeMonitoringAction);
+        flowNodeSpanRegistries
+            .computeIfAbsent(RunIdentifier.fromRun(run), runIdentifier -> new FlowNodeSpanRegistry())
+            .put(flowNode.getId(), flowNode.getEnclosingId(), flowNodeMonitoringAction);
 
         LOGGER.log(Level.FINE, () -> "putSpan(" + run.getFullDisplayName() + ", " +
             OtelUtils.toDebugString(flowNode) + ", " + OtelUtils.toDebugString(span) + ")");
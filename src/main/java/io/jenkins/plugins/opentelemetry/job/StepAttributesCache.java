@@ -0,0 +1,62 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.opentelemetry.api.common.Attributes;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of the step type, name and plugin attributes by step descriptor id (and
+ * {@link org.jenkinsci.plugins.workflow.steps.CoreStep} delegate symbol).
+ * <p>
+ * The keys are bounded by the installed step descriptors, the {@link #maxSize} guards against an unexpected number of
+ * keys: the attributes of the steps beyond the limit are computed but not cached.
+ */
+final class StepAttributesCache {
+    static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final int maxSize;
+    private final ConcurrentMap<String, Attributes> attributesByKey = new ConcurrentHashMap<>();
+
+    StepAttributesCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    StepAttributesCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @NonNull
+    Attributes get(@NonNull String key, @NonNull Supplier<Attributes> attributesSupplier) {
+        Attributes attributes = attributesByKey.get(key);
+        if (attributes != null) {
+            return attributes;
+        }
+        attributes = attributesSupplier.get();
+        if (attributesByKey.size() < maxSize) {
+            Attributes concurrentAttributes = attributesByKey.putIfAbsent(key, attributes);
+            if (concurrentAttributes != null) {
+                return concurrentAttributes;
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * Invoked when the step descriptors or the configuration change
+     */
+    void invalidate() {
+        attributesByKey.clear();
+    }
+
+    int size() {
+        return attributesByKey.size();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.jenkins.plugins.opentelemetry.job.step.StepHandler;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Resolve the {@link StepHandler} of a {@link StepAtomNode} without evaluating
+ * {@link StepHandler#canCreateSpanBuilder(org.jenkinsci.plugins.workflow.graph.FlowNode, WorkflowRun)} on every
+ * registered handler.
+ * <p>
+ * The candidate handlers of a {@link StepDescriptor} class are computed once: the handlers declaring a supported
+ * descriptor class assignable from the step descriptor class plus the handlers that don't declare any supported
+ * descriptor class (see {@link StepHandler#getSupportedStepDescriptors()}), in the {@link StepHandler#ordinal()} order.
+ * Candidates are then checked with {@code canCreateSpanBuilder} as before, so the resolved handler is the same as the
+ * one found by a linear scan of the sorted handlers.
+ */
+class StepHandlerDispatchTable {
+
+    private final List<StepHandler> stepHandlers;
+
+    private final ClassValue<List<StepHandler>> candidatesByDescriptorClass = new ClassValue<>() {
+        @Override
+        protected List<StepHandler> computeValue(Class<?> descriptorClass) {
+            return Collections.unmodifiableList(stepHandlers.stream()
+                .filter(stepHandler -> isCandidate(stepHandler, descriptorClass))
+                .collect(Collectors.toList()));
+        }
+    };
+
+    /**
+     * @param stepHandlers step handlers sorted by {@link StepHandler#ordinal()}
+     */
+    StepHandlerDispatchTable(@NonNull List<StepHandler> stepHandlers) {
+        this.stepHandlers = Collections.unmodifiableList(new ArrayList<>(stepHandlers));
+    }
+
+    /**
+     * @return the first {@link StepHandler} that can create the span builder of the given node, {@code null} if none
+     */
+    @CheckForNull
+    StepHandler findStepHandler(@NonNull StepAtomNode node, @NonNull WorkflowRun run) {
+        StepDescriptor descriptor = node.getDescriptor();
+        List<StepHandler> candidates = descriptor == null ? stepHandlers : getCandidates(descriptor.getClass());
+        for (StepHandler stepHandler : candidates) {
+            if (stepHandler.canCreateSpanBuilder(node, run)) {
+                return stepHandler;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the handlers that may support the steps of the given descriptor class
+     */
+    @NonNull
+    List<StepHandler> getCandidates(@NonNull Class<? extends StepDescriptor> descriptorClass) {
+        return candidatesByDescriptorClass.get(descriptorClass);
+    }
+
+    private static boolean isCandidate(@NonNull StepHandler stepHandler, @NonNull Class<?> descriptorClass) {
+        Set<Class<? extends StepDescriptor>> supportedStepDescriptors = stepHandler.getSupportedStepDescriptors();
+        if (supportedStepDescriptors.isEmpty()) {
+            return true;
+        }
+        for (Class<? extends StepDescriptor> supportedStepDescriptor : supportedStepDescriptors) {
+            if (supportedStepDescriptor.isAssignableFrom(descriptorClass)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Budget of the atomic step spans of a pipeline run.
+ * <p>
+ * Once the budget of the run or of the parent span is exceeded, the steps are no longer traced with one span per step
+ * but folded in one aggregated span per parent span and step type. The aggregated span carries the count, failure
+ * count and duration statistics of the folded steps and is ended when its parent span ends or when the pipeline ends.
+ */
+class StepSpanBudget {
+
+    /**
+     * Max number of step spans of the run, {@code 0} for unlimited
+     */
+    private final int maxSpansPerRun;
+    /**
+     * Max number of step spans per parent span, {@code 0} for unlimited
+     */
+    private final int maxSpansPerParent;
+
+    private final AtomicInteger spanCount = new AtomicInteger();
+    private final ConcurrentMap<String, AtomicInteger> spanCountByParentSpanId = new ConcurrentHashMap<>();
+    /**
+     * Aggregated spans by parent span id and step type
+     */
+    private final ConcurrentMap<String, AggregatedStepSpan> aggregatedSpans = new ConcurrentHashMap<>();
+    /**
+     * Aggregated spans of the steps in progress by flow node id
+     */
+    private final ConcurrentMap<String, AggregatedStep> aggregatedStepsByFlowNodeId = new ConcurrentHashMap<>();
+
+    StepSpanBudget(int maxSpansPerRun, int maxSpansPerParent) {
+        this.maxSpansPerRun = Math.max(0, maxSpansPerRun);
+        this.maxSpansPerParent = Math.max(0, maxSpansPerParent);
+    }
+
+    /**
+     * @return {@code true} if a span can be created for a step of the given parent span, {@code false} if the step must be aggregated
+     */
+    boolean tryAcquire(@NonNull String parentSpanId) {
+        if (maxSpansPerRun > 0 && spanCount.incrementAndGet() > maxSpansPerRun) {
+            spanCount.decrementAndGet();
+            return false;
+        }
+        if (maxSpansPerParent > 0 && spanCountByParentSpanId.computeIfAbsent(parentSpanId, id -> new AtomicInteger()).incrementAndGet() > maxSpansPerParent) {
+            spanCountByParentSpanId.get(parentSpanId).decrementAndGet();
+            if (maxSpansPerRun > 0) {
+                spanCount.decrementAndGet();
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Fold the given step in the aggregated span of its parent span and step type
+     *
+     * @param aggregatedSpanFactory creates the aggregated span when the first step of the parent span and step type is folded
+     */
+    void aggregate(@NonNull String flowNodeId, @NonNull String parentSpanId, @NonNull String stepType, long startEpochNanos, @NonNull Supplier<Span> aggregatedSpanFactory) {
+        AggregatedStepSpan aggregatedSpan = aggregatedSpans.computeIfAbsent(parentSpanId + "/" + stepType, key -> new AggregatedStepSpan(parentSpanId, aggregatedSpanFactory.get()));
+        aggregatedStepsByFlowNodeId.put(flowNodeId, new AggregatedStep(aggregatedSpan, startEpochNanos));
+    }
+
+    /**
+     * @return {@code false} if the given step has not been aggregated
+     */
+    boolean complete(@NonNull String flowNodeId, long endEpochNanos, boolean failed) {
+        AggregatedStep aggregatedStep = aggregatedStepsByFlowNodeId.remove(flowNodeId);
+        if (aggregatedStep == null) {
+            return false;
+        }
+        aggregatedStep.aggregatedSpan.record(endEpochNanos - aggregatedStep.startEpochNanos, endEpochNanos, failed);
+        return true;
+    }
+
+    /**
+     * End the aggregated spans of the given parent span
+     */
+    void endAggregatedSpans(@NonNull String parentSpanId) {
+        aggregatedSpans.values().removeIf(aggregatedSpan -> {
+            if (aggregatedSpan.parentSpanId.equals(parentSpanId)) {
+                aggregatedSpan.end();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * End all the aggregated spans of the run
+     */
+    void endAggregatedSpans() {
+        aggregatedSpans.values().removeIf(aggregatedSpan -> {
+            aggregatedSpan.end();
+            return true;
+        });
+        aggregatedStepsByFlowNodeId.clear();
+    }
+
+    private static final class AggregatedStep {
+        final AggregatedStepSpan aggregatedSpan;
+        final long startEpochNanos;
+
+        AggregatedStep(AggregatedStepSpan aggregatedSpan, long startEpochNanos) {
+            this.aggregatedSpan = aggregatedSpan;
+            this.startEpochNanos = startEpochNanos;
+        }
+    }
+
+    /**
+     * Durations of the folded steps and their statistics. The count, total, min and max are exact, the percentiles are
+     * computed on a uniform sample of at most {@link #RESERVOIR_SIZE} durations so that the memory of an aggregated
+     * span doesn't grow with the number of folded steps.
+     */
+    static final class AggregatedStepSpan {
+        /**
+         * Max number of durations kept to compute the percentiles, the percentiles are exact below this number of steps
+         */
+        static final int RESERVOIR_SIZE = 1024;
+
+        final String parentSpanId;
+        final Span span;
+        /**
+         * Reservoir sample of the durations (Vitter's algorithm R)
+         */
+        private final long[] durationsInNanos = new long[RESERVOIR_SIZE];
+        private int count;
+        private int failureCount;
+        private long totalDurationInNanos;
+        private long minDurationInNanos = Long.MAX_VALUE;
+        private long maxDurationInNanos;
+        private long lastEndEpochNanos;
+
+        AggregatedStepSpan(@NonNull String parentSpanId, @NonNull Span span) {
+            this.parentSpanId = parentSpanId;
+            this.span = span;
+        }
+
+        synchronized void record(long durationInNanos, long endEpochNanos, boolean failed) {
+            durationInNanos = Math.max(0, durationInNanos);
+            if (count < RESERVOIR_SIZE) {
+                durationsInNanos[count] = durationInNanos;
+            } else {
+                int index = ThreadLocalRandom.current().nextInt(count + 1);
+                if (index < RESERVOIR_SIZE) {
+                    durationsInNanos[index] = durationInNanos;
+                }
+            }
+            count++;
+            totalDurationInNanos += durationInNanos;
+            minDurationInNanos = Math.min(minDurationInNanos, durationInNanos);
+            maxDurationInNanos = Math.max(maxDurationInNanos, durationInNanos);
+            if (failed) {
+                failureCount++;
+            }
+            lastEndEpochNanos = Math.max(lastEndEpochNanos, endEpochNanos);
+        }
+
+        synchronized void end() {
+            span.setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_COUNT, (long) count);
+            span.setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_FAILURE_COUNT, (long) failureCount);
+            if (count > 0) {
+                long[] sortedDurations = Arrays.copyOf(durationsInNanos, Math.min(count, RESERVOIR_SIZE));
+                Arrays.sort(sortedDurations);
+                span.setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_DURATION_MILLIS_TOTAL, TimeUnit.NANOSECONDS.toMillis(totalDurationInNanos));
+                span.setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_DURATION_MILLIS_MIN, TimeUnit.NANOSECONDS.toMillis(minDurationInNanos));
+                span.setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_DURATION_MILLIS_MAX, TimeUnit.NANOSECONDS.toMillis(maxDurationInNanos));
+                span.setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_DURATION_MILLIS_P50, TimeUnit.NANOSECONDS.toMillis(percentile(sortedDurations, 50)));
+                span.setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_DURATION_MILLIS_P90, TimeUnit.NANOSECONDS.toMillis(percentile(sortedDurations, 90)));
+                span.setAttribute(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_DURATION_MILLIS_P99, TimeUnit.NANOSECONDS.toMillis(percentile(sortedDurations, 99)));
+            }
+            if (failureCount > 0) {
+                span.setStatus(StatusCode.ERROR, failureCount + " of " + count + " steps failed");
+            } else {
+                span.setStatus(StatusCode.OK);
+            }
+            if (lastEndEpochNanos > 0) {
+                span.end(lastEndEpochNanos, TimeUnit.NANOSECONDS);
+            } else {
+                span.end();
+            }
+        }
+
+        /**
+         * Nearest-rank percentile
+         */
+        static long percentile(@NonNull long[] sortedValues, int percentile) {
+            int rank = (int) Math.ceil(percentile / 100.0 * sortedValues.length);
+            return sortedValues[Math.min(Math.max(rank, 1), sortedValues.length) - 1];
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Level of detail of the traces of pipeline builds.
+ *
+ * @see TracingGranularityJobProperty
+ * @see TracingGranularityFolderProperty
+ */
+public enum TracingGranularity {
+    FULL("full", "Full: stages, parallel branches, agents and steps"),
+    STAGES("stages", "Stages: stages, parallel branches and agents, no step spans"),
+    RUN_ONLY("run-only", "Run only: build root and phase spans");
+
+    final String value;
+    final String displayName;
+
+    TracingGranularity(String value, String displayName) {
+        this.value = value;
+        this.displayName = displayName;
+    }
+
+    /**
+     * @return the value used in the {@code otel.instrumentation.jenkins.pipeline.tracing.granularity} configuration
+     */
+    @NonNull
+    public String getValue() {
+        return value;
+    }
+
+    @NonNull
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * @return {@code true} if spans are created for atomic steps ({@code sh}, {@code echo}...)
+     */
+    public boolean isStepTraced() {
+        return this == FULL;
+    }
+
+    /**
+     * @return {@code true} if spans are created for blocks (stages, parallel branches and agents)
+     */
+    public boolean isBlockTraced() {
+        return this != RUN_ONLY;
+    }
+
+    /**
+     * @param value {@code full}, {@code stages} or {@code run-only}, case insensitive, enum constant names are also accepted
+     * @throws IllegalArgumentException if the value is not supported
+     */
+    @NonNull
+    public static TracingGranularity fromValue(@CheckForNull String value, @NonNull TracingGranularity defaultValue) {
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        String normalizedValue = value.trim().toLowerCase(Locale.ROOT).replace('_', '-');
+        for (TracingGranularity tracingGranularity : values()) {
+            if (tracingGranularity.value.equals(normalizedValue)) {
+                return tracingGranularity;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported tracing granularity '" + value + "', expected 'full', 'stages' or 'run-only'");
+    }
+}
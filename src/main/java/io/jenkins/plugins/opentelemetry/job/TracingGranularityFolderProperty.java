@@ -0,0 +1,63 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import com.cloudbees.hudson.plugins.folder.AbstractFolder;
+import com.cloudbees.hudson.plugins.folder.AbstractFolderProperty;
+import com.cloudbees.hudson.plugins.folder.AbstractFolderPropertyDescriptor;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.util.ListBoxModel;
+import io.jenkins.plugins.opentelemetry.Messages;
+import net.sf.json.JSONObject;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.StaplerRequest;
+
+/**
+ * Override of the tracing granularity of the builds of the jobs of a folder and its sub folders.
+ *
+ * @see TracingGranularityJobProperty#resolve(hudson.model.Job, TracingGranularity)
+ */
+public class TracingGranularityFolderProperty extends AbstractFolderProperty<AbstractFolder<?>> {
+
+    private final TracingGranularity granularity;
+
+    @DataBoundConstructor
+    public TracingGranularityFolderProperty(TracingGranularity granularity) {
+        this.granularity = granularity == null ? TracingGranularity.FULL : granularity;
+    }
+
+    @NonNull
+    public TracingGranularity getGranularity() {
+        return granularity;
+    }
+
+    @Symbol("openTelemetryTracingGranularity")
+    @Extension
+    public static class DescriptorImpl extends AbstractFolderPropertyDescriptor {
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return Messages.tracingGranularityOverride();
+        }
+
+        @Override
+        public AbstractFolderProperty<?> newInstance(StaplerRequest req, JSONObject formData) throws FormException {
+            JSONObject override = formData.optJSONObject("tracingGranularityOverride");
+            return override == null ? null : super.newInstance(req, override);
+        }
+
+        public ListBoxModel doFillGranularityItems() {
+            ListBoxModel items = new ListBoxModel();
+            for (TracingGranularity tracingGranularity : TracingGranularity.values()) {
+                items.add(tracingGranularity.getDisplayName(), tracingGranularity.name());
+            }
+            return items;
+        }
+    }
+}
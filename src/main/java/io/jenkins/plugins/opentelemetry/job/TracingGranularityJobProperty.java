@@ -0,0 +1,78 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import com.cloudbees.hudson.plugins.folder.AbstractFolder;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.ItemGroup;
+import hudson.model.Job;
+import hudson.util.ListBoxModel;
+import io.jenkins.plugins.opentelemetry.Messages;
+import jenkins.model.OptionalJobProperty;
+import org.jenkinsci.Symbol;
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * Override of the tracing granularity of the builds of a job.
+ * <p>
+ * Precedence: job property, then the {@link TracingGranularityFolderProperty} of the closest folder, then the
+ * {@code otel.instrumentation.jenkins.pipeline.tracing.granularity} configuration.
+ */
+public class TracingGranularityJobProperty extends OptionalJobProperty<Job<?, ?>> {
+
+    private final TracingGranularity granularity;
+
+    @DataBoundConstructor
+    public TracingGranularityJobProperty(TracingGranularity granularity) {
+        this.granularity = granularity == null ? TracingGranularity.FULL : granularity;
+    }
+
+    @NonNull
+    public TracingGranularity getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * @return the tracing granularity of the given job, {@code defaultGranularity} if neither the job nor its folders override it
+     */
+    @NonNull
+    public static TracingGranularity resolve(@NonNull Job<?, ?> job, @NonNull TracingGranularity defaultGranularity) {
+        TracingGranularityJobProperty jobProperty = job.getProperty(TracingGranularityJobProperty.class);
+        if (jobProperty != null) {
+            return jobProperty.getGranularity();
+        }
+        ItemGroup<?> parent = job.getParent();
+        while (parent instanceof AbstractFolder) {
+            AbstractFolder<?> folder = (AbstractFolder<?>) parent;
+            TracingGranularityFolderProperty folderProperty = folder.getProperties().get(TracingGranularityFolderProperty.class);
+            if (folderProperty != null) {
+                return folderProperty.getGranularity();
+            }
+            parent = folder.getParent();
+        }
+        return defaultGranularity;
+    }
+
+    @Symbol("openTelemetryTracingGranularity")
+    @Extension
+    public static class DescriptorImpl extends OptionalJobPropertyDescriptor {
+
+        @NonNull
+        @Override
+        public String getDisplayName() {
+            return Messages.tracingGranularityOverride();
+        }
+
+        public ListBoxModel doFillGranularityItems() {
+            ListBoxModel items = new ListBoxModel();
+            for (TracingGranularity tracingGranularity : TracingGranularity.values()) {
+                items.add(tracingGranularity.getDisplayName(), tracingGranularity.name());
+            }
+            return items;
+        }
+    }
+}
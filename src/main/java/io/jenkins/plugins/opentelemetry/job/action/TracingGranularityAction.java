@@ -0,0 +1,35 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.action;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.InvisibleAction;
+import io.jenkins.plugins.opentelemetry.job.TracingGranularity;
+
+/**
+ * Tracing granularity of a build, resolved once when the build starts so that the pipeline listeners don't have to
+ * walk the job and folder properties for every flow node.
+ */
+public class TracingGranularityAction extends InvisibleAction {
+
+    private final TracingGranularity tracingGranularity;
+
+    public TracingGranularityAction(@NonNull TracingGranularity tracingGranularity) {
+        this.tracingGranularity = tracingGranularity;
+    }
+
+    @NonNull
+    public TracingGranularity getTracingGranularity() {
+        return tracingGranularity;
+    }
+
+    @Override
+    public String toString() {
+        return "TracingGranularityAction{" +
+            "tracingGranularity=" + tracingGranularity +
+            '}';
+    }
+}
@@ -27,6 +27,7 @@ import org.jenkinsci.plugins.workflow.steps.StepContext;
 import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import javax.inject.Inject;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Objects;
@@ -42,17 +43,39 @@ import java.util.stream.Collectors;
 public class GraphListenerAdapterToPipelineListener implements StepListener, GraphListener, GraphListener.Synchronous {
     private final static Logger LOGGER = Logger.getLogger(GraphListenerAdapterToPipelineListener.class.getName());
 
+    private PipelineEventDispatcher pipelineEventDispatcher;
+    private NodeStatusTracker nodeStatusTracker;
+
     @Override
     public final void onNewHead(FlowNode node) {
         WorkflowRun run = PipelineNodeUtil.getWorkflowRun(node);
-        processPreviousNodes(node, run);
-        processCurrentNode(node, run);
+        pipelineEventDispatcher.dispatch(run, node.getId(), () -> {
+            if (node instanceof FlowStartNode) {
+                nodeStatusTracker.onStartPipeline(run);
+            }
+            processPreviousNodes(node, run);
+            processCurrentNode(node, run);
+            if (node instanceof FlowEndNode) {
+                nodeStatusTracker.onEndPipeline(run);
+            }
+        });
+    }
+
+    @Inject
+    public void setPipelineEventDispatcher(@NonNull PipelineEventDispatcher pipelineEventDispatcher) {
+        this.pipelineEventDispatcher = pipelineEventDispatcher;
+    }
+
+    @Inject
+    public void setNodeStatusTracker(@NonNull NodeStatusTracker nodeStatusTracker) {
+        this.nodeStatusTracker = nodeStatusTracker;
     }
 
     private void processPreviousNodes(FlowNode node, WorkflowRun run) {
         log(Level.FINE, () -> run.getFullDisplayName() + " - onNewHead - Process " + PipelineNodeUtil.getDetailedDebugString(node));
         for (FlowNode previousNode : node.getParents()) {
             log(Level.FINE, () -> run.getFullDisplayName() + " - Process previous node " + PipelineNodeUtil.getDetailedDebugString(previousNode) + " of node " + PipelineNodeUtil.getDetailedDebugString(node));
+            nodeStatusTracker.onNodeCompleted(previousNode, run);
             if (previousNode instanceof StepAtomNode) {
                 StepAtomNode stepAtomNode = (StepAtomNode) previousNode;
                 fireOnAfterAtomicStep(stepAtomNode, node, run);
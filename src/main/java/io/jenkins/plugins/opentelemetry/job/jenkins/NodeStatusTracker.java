@@ -0,0 +1,132 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.jenkins;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.model.Result;
+import jenkins.YesNoMaybe;
+import org.jenkinsci.plugins.workflow.actions.ErrorAction;
+import org.jenkinsci.plugins.workflow.actions.NotExecutedNodeAction;
+import org.jenkinsci.plugins.workflow.actions.WarningAction;
+import org.jenkinsci.plugins.workflow.flow.FlowExecution;
+import org.jenkinsci.plugins.workflow.graph.BlockEndNode;
+import org.jenkinsci.plugins.workflow.graph.BlockStartNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.pipelinegraphanalysis.GenericStatus;
+import org.jenkinsci.plugins.workflow.pipelinegraphanalysis.StatusAndTiming;
+import org.jenkinsci.plugins.workflow.steps.FlowInterruptedException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Incremental computation of the status of the blocks of a pipeline to avoid the graph walk of
+ * {@link StatusAndTiming#computeChunkStatus2(WorkflowRun, FlowNode, FlowNode, FlowNode, FlowNode)} when a span ends.
+ * <p>
+ * The worst {@link WarningAction} of each block is propagated to the enclosing block when the block ends, so it is
+ * known when the block's span ends. {@link ErrorAction}s (including interruption causes) are read on the end node as
+ * {@link StatusAndTiming#computeChunkStatus2(WorkflowRun, FlowNode, FlowNode, FlowNode, FlowNode)} does.
+ * <p>
+ * Runs not tracked since their {@link org.jenkinsci.plugins.workflow.graph.FlowStartNode} (e.g. resumed after a
+ * restart) and the last chunks of a run fall back to
+ * {@link StatusAndTiming#computeChunkStatus2(WorkflowRun, FlowNode, FlowNode, FlowNode, FlowNode)}.
+ */
+@Extension(dynamicLoadable = YesNoMaybe.YES)
+public class NodeStatusTracker {
+    private final static Logger LOGGER = Logger.getLogger(NodeStatusTracker.class.getName());
+
+    /**
+     * Worst warning result by block start node id, by run
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, Result>> worstWarningsByRun = new ConcurrentHashMap<>();
+
+    public void onStartPipeline(@NonNull WorkflowRun run) {
+        worstWarningsByRun.put(run.getExternalizableId(), new ConcurrentHashMap<>());
+    }
+
+    public void onEndPipeline(@NonNull WorkflowRun run) {
+        worstWarningsByRun.remove(run.getExternalizableId());
+    }
+
+    /**
+     * Record a flow node that has completed, must be invoked before the listeners of this node are notified
+     */
+    public void onNodeCompleted(@NonNull FlowNode node, @NonNull WorkflowRun run) {
+        ConcurrentMap<String, Result> worstWarnings = worstWarningsByRun.get(run.getExternalizableId());
+        if (worstWarnings == null) {
+            return;
+        }
+        Result result = getWarningResult(node);
+        if (node instanceof BlockEndNode) {
+            BlockStartNode startNode = ((BlockEndNode<?>) node).getStartNode();
+            // warnings can be added to the start node when the block completes (e.g. catchError, warnError)
+            result = worst(result, worst(getWarningResult(startNode), worstWarnings.get(startNode.getId())));
+            if (result != null) {
+                worstWarnings.put(startNode.getId(), result);
+            }
+        }
+        if (result != null) {
+            // for a block end node, the enclosing block is the one of its start node
+            String enclosingId = node.getEnclosingId();
+            if (enclosingId != null) {
+                worstWarnings.merge(enclosingId, result, NodeStatusTracker::worst);
+            }
+        }
+    }
+
+    /**
+     * Drop in replacement of {@link StatusAndTiming#computeChunkStatus2(WorkflowRun, FlowNode, FlowNode, FlowNode, FlowNode)}
+     * for a chunk that is either an atomic step or a block
+     */
+    @CheckForNull
+    public GenericStatus computeChunkStatus(@NonNull WorkflowRun run, @NonNull FlowNode firstNode, @NonNull FlowNode lastNode, @CheckForNull FlowNode after) {
+        ConcurrentMap<String, Result> worstWarnings = worstWarningsByRun.get(run.getExternalizableId());
+        FlowExecution execution = run.getExecution();
+        if (worstWarnings == null || after == null || execution == null || execution.isCurrentHead(lastNode) || !NotExecutedNodeAction.isExecuted(lastNode)) {
+            return StatusAndTiming.computeChunkStatus2(run, null, firstNode, lastNode, after);
+        }
+        ErrorAction errorAction = lastNode.getError();
+        if (errorAction != null) {
+            Throwable error = errorAction.getError();
+            if (error instanceof FlowInterruptedException) {
+                return GenericStatus.fromResult(((FlowInterruptedException) error).getResult());
+            }
+            return GenericStatus.FAILURE;
+        }
+        Result worstWarning;
+        if (firstNode == lastNode) {
+            worstWarning = getWarningResult(lastNode);
+        } else if (lastNode instanceof BlockEndNode && ((BlockEndNode<?>) lastNode).getStartNode().getId().equals(firstNode.getId())) {
+            worstWarning = worstWarnings.get(firstNode.getId());
+        } else {
+            LOGGER.log(Level.FINE, () -> run.getFullDisplayName() + " - chunk " + firstNode.getId() + "-" + lastNode.getId() + " is not a block, compute status walking the graph");
+            return StatusAndTiming.computeChunkStatus2(run, null, firstNode, lastNode, after);
+        }
+        return worstWarning == null ? GenericStatus.SUCCESS : GenericStatus.fromResult(worstWarning);
+    }
+
+    @CheckForNull
+    private static Result getWarningResult(@NonNull FlowNode node) {
+        WarningAction warningAction = node.getPersistentAction(WarningAction.class);
+        return warningAction == null ? null : warningAction.getResult();
+    }
+
+    @CheckForNull
+    private static Result worst(@CheckForNull Result r1, @CheckForNull Result r2) {
+        if (r1 == null) {
+            return r2;
+        } else if (r2 == null) {
+            return r1;
+        } else {
+            return r1.combine(r2);
+        }
+    }
+}
@@ -0,0 +1,443 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.jenkins;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.Run;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.jenkins.plugins.opentelemetry.OpenTelemetryLifecycleListener;
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsSemanticMetrics;
+import io.opentelemetry.api.incubator.events.EventLogger;
+import io.opentelemetry.api.logs.LoggerProvider;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.common.Clock;
+import jenkins.YesNoMaybe;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dispatches the pipeline events to the {@link PipelineListener}s.
+ * <p>
+ * By default, events are dispatched synchronously on the caller thread (the CPS VM thread for
+ * {@link org.jenkinsci.plugins.workflow.flow.GraphListener.Synchronous#onNewHead(org.jenkinsci.plugins.workflow.graph.FlowNode)}).
+ * When {@link JenkinsOtelSemanticAttributes#OTEL_INSTRUMENTATION_JENKINS_PIPELINE_ASYNC_ENABLED} is enabled, events are
+ * captured as immutable {@link PipelineEvent}s, appended to a bounded queue per run and dispatched in order by a bounded
+ * thread pool (virtual threads when available). The {@link PipelineListener}s use {@link #getCurrentEvent()} to
+ * timestamp spans with the capture time rather than with the dispatch time.
+ * <p>
+ * When the queue of a run is full, the producer thread doesn't wait for the dispatcher to catch up: it dispatches the
+ * pending events and its own event inline (backpressure), waiting at most for the event being dispatched.
+ * Consumers that need the spans of the run to be up to date (e.g. environment variables injecting the trace context)
+ * must invoke {@link #flush(Run)} that dispatches the pending events inline, including on the CPS VM thread, or
+ * {@link #dispatch(Run, String, Runnable)} their processing after the pending events.
+ * <p>
+ * The executor is created when the OpenTelemetry SDK is initialized, recreated when the number of threads changes and
+ * shut down when the asynchronous dispatch is disabled or when the plugin stops.
+ */
+@Extension(dynamicLoadable = YesNoMaybe.YES, optional = true)
+public class PipelineEventDispatcher implements OpenTelemetryLifecycleListener {
+    private final static Logger LOGGER = Logger.getLogger(PipelineEventDispatcher.class.getName());
+
+    private static final ThreadLocal<PipelineEvent> CURRENT_EVENT = new ThreadLocal<>();
+
+    private final ConcurrentMap<String, RunEventQueue> runEventQueues = new ConcurrentHashMap<>();
+
+    private volatile boolean async;
+    private int queueCapacity = 10_000;
+    private Duration flushTimeout = Duration.ofSeconds(30);
+    private volatile ExecutorService executorService;
+    private int executorThreads;
+
+    private LongCounter dispatchedEventsCounter;
+    private LongCounter backpressureCounter;
+    private LongHistogram dispatchLagHistogram;
+
+    @Override
+    public void afterSdkInitialized(Meter meter, LoggerProvider loggerProvider, EventLogger eventLogger, Tracer tracer, ConfigProperties configProperties) {
+        this.queueCapacity = configProperties.getInt(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_PIPELINE_ASYNC_QUEUE_CAPACITY, 10_000);
+        this.flushTimeout = configProperties.getDuration(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_PIPELINE_ASYNC_FLUSH_TIMEOUT, Duration.ofSeconds(30));
+        boolean async = configProperties.getBoolean(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_PIPELINE_ASYNC_ENABLED, false);
+        int threads = Math.max(1, configProperties.getInt(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_PIPELINE_ASYNC_THREADS, 2));
+        ExecutorService previousExecutorService;
+        synchronized (this) {
+            previousExecutorService = executorService;
+            if (!async) {
+                executorService = null;
+            } else if (previousExecutorService == null || threads != executorThreads) {
+                ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), newThreadFactory());
+                threadPoolExecutor.allowCoreThreadTimeOut(true);
+                executorService = threadPoolExecutor;
+                executorThreads = threads;
+            } else {
+                previousExecutorService = null;
+            }
+        }
+        if (previousExecutorService != null) {
+            // the dispatches in progress complete, the next ones are scheduled on the new executor
+            previousExecutorService.shutdown();
+        }
+
+        meter.upDownCounterBuilder(JenkinsSemanticMetrics.JENKINS_PIPELINE_EVENTS_QUEUED)
+            .setDescription("Number of pipeline events waiting to be dispatched")
+            .setUnit("1")
+            .buildWithCallback(valueObserver -> valueObserver.record(runEventQueues.values().stream().mapToLong(queue -> queue.events.size()).sum()));
+        dispatchedEventsCounter = meter.counterBuilder(JenkinsSemanticMetrics.JENKINS_PIPELINE_EVENTS_DISPATCHED)
+            .setDescription("Number of pipeline events asynchronously dispatched")
+            .setUnit("1")
+            .build();
+        backpressureCounter = meter.counterBuilder(JenkinsSemanticMetrics.JENKINS_PIPELINE_EVENTS_BACKPRESSURE)
+            .setDescription("Number of times a pipeline thread dispatched the pending events because the event queue of the run was full")
+            .setUnit("1")
+            .build();
+        dispatchLagHistogram = meter.histogramBuilder(JenkinsSemanticMetrics.JENKINS_PIPELINE_EVENTS_DISPATCH_LAG)
+            .ofLongs()
+            .setDescription("Delay between the capture of a pipeline event and its dispatch")
+            .setUnit("ms")
+            .build();
+
+        this.async = async;
+        LOGGER.log(Level.FINE, () -> "Pipeline events dispatched " + (async ? "asynchronously" : "synchronously"));
+    }
+
+    @Override
+    public void beforeSdkShutdown() {
+        // export the pending spans with the SDK that is about to be shut down
+        runEventQueues.values().forEach(RunEventQueue::flush);
+    }
+
+    /**
+     * Dispatch the pending events and shut down the executor when the plugin stops
+     */
+    @PreDestroy
+    public void shutdown() {
+        async = false;
+        runEventQueues.values().forEach(RunEventQueue::flush);
+        ExecutorService executorService;
+        synchronized (this) {
+            executorService = this.executorService;
+            this.executorService = null;
+        }
+        if (executorService != null) {
+            executorService.shutdown();
+            try {
+                if (!executorService.awaitTermination(flushTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                    LOGGER.log(Level.WARNING, "Timeout waiting for the dispatch of the pipeline events");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Dispatch the given pipeline event, synchronously or asynchronously according to the configuration.
+     *
+     * @param description used for troubleshooting, typically the id of the flow node
+     * @param dispatcher  notifies the {@link PipelineListener}s
+     */
+    public void dispatch(@NonNull Run run, @NonNull String description, @NonNull Runnable dispatcher) {
+        dispatch(run.getExternalizableId(), run.isBuilding(), description, dispatcher);
+    }
+
+    /**
+     * @param building {@code false} once the run has completed, the events of a completed run whose queue has been
+     *                 closed are dispatched synchronously rather than in a new queue that would never be closed
+     */
+    void dispatch(@NonNull String runId, boolean building, @NonNull String description, @NonNull Runnable dispatcher) {
+        if (!async && runEventQueues.isEmpty()) {
+            dispatcher.run();
+            return;
+        }
+        PipelineEvent event = new PipelineEvent(description, Clock.getDefault().now(), dispatcher);
+        RunEventQueue runEventQueue = async && building ?
+            runEventQueues.computeIfAbsent(runId, RunEventQueue::new) :
+            runEventQueues.get(runId); // async mode disabled while the run is in progress
+        if (runEventQueue == null || !runEventQueue.enqueue(event)) {
+            dispatcher.run();
+        }
+    }
+
+    /**
+     * Dispatch the pending events of the given run on the caller thread, after the event being dispatched by the
+     * executor if any. No-op when invoked by a {@link PipelineListener}.
+     * <p>
+     * Invoked on the CPS VM thread before resolving the span of a step (environment variables, log listeners) so that
+     * the span of the step has been created.
+     */
+    public void flush(@NonNull Run run) {
+        flush(run.getExternalizableId());
+    }
+
+    void flush(@NonNull String runId) {
+        RunEventQueue runEventQueue = runEventQueues.get(runId);
+        if (runEventQueue != null) {
+            runEventQueue.flush();
+        }
+    }
+
+    /**
+     * Dispatch the pending events of the given run and release the associated resources. The events of the run
+     * dispatched from now on are dispatched synchronously.
+     */
+    public void close(@NonNull Run run) {
+        close(run.getExternalizableId());
+    }
+
+    void close(@NonNull String runId) {
+        RunEventQueue runEventQueue = runEventQueues.get(runId);
+        if (runEventQueue != null) {
+            runEventQueue.close();
+            runEventQueues.remove(runId, runEventQueue);
+        }
+    }
+
+    /**
+     * @return the event being dispatched asynchronously by the current thread, {@code null} if events are dispatched
+     * synchronously
+     */
+    @CheckForNull
+    public static PipelineEvent getCurrentEvent() {
+        return CURRENT_EVENT.get();
+    }
+
+    @NonNull
+    public static PipelineEventDispatcher get() {
+        return ExtensionList.lookupSingleton(PipelineEventDispatcher.class);
+    }
+
+    /**
+     * Use virtual threads when running on Java 21+
+     */
+    @NonNull
+    static ThreadFactory newThreadFactory() {
+        try {
+            Class<?> threadBuilderClass = Class.forName("java.lang.Thread$Builder");
+            Object threadBuilder = Thread.class.getMethod("ofVirtual").invoke(null);
+            threadBuilder = threadBuilderClass.getMethod("name", String.class, long.class).invoke(threadBuilder, "otel-pipeline-events-", 0L);
+            return (ThreadFactory) threadBuilderClass.getMethod("factory").invoke(threadBuilder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.log(Level.FINE, () -> "Virtual threads not available, use platform threads: " + e);
+            return new NamingThreadFactory(new DaemonThreadFactory(), "otel-pipeline-events");
+        }
+    }
+
+    /**
+     * Immutable snapshot of a pipeline event
+     */
+    public static final class PipelineEvent {
+        private final String description;
+        private final long epochNanos;
+        private final Runnable dispatcher;
+
+        PipelineEvent(@NonNull String description, long epochNanos, @NonNull Runnable dispatcher) {
+            this.description = description;
+            this.epochNanos = epochNanos;
+            this.dispatcher = dispatcher;
+        }
+
+        /**
+         * @return time at which the event was captured, in nanoseconds since epoch
+         */
+        public long getEpochNanos() {
+            return epochNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "PipelineEvent{" +
+                "description='" + description + '\'' +
+                ", epochNanos=" + epochNanos +
+                '}';
+        }
+    }
+
+    /**
+     * Queue of the events of a run, drained by at most one thread at a time, holding the {@link #dispatchLock}, to
+     * preserve ordering. The queue is drained by the executor and inline by the producer when the queue is full, by
+     * {@link #flush()} and by {@link #close()}.
+     */
+    private final class RunEventQueue implements Runnable {
+        final String runId;
+        final BlockingQueue<PipelineEvent> events;
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        /**
+         * Held while polling and dispatching an event
+         */
+        final ReentrantLock dispatchLock = new ReentrantLock();
+        /**
+         * Guarded by {@code this}
+         */
+        private boolean closed;
+
+        RunEventQueue(@NonNull String runId) {
+            this.runId = runId;
+            this.events = new LinkedBlockingQueue<>(queueCapacity);
+        }
+
+        /**
+         * Never waits for the executor: when the queue is full, the pending events and the given event are dispatched
+         * by the caller
+         *
+         * @return {@code false} if the queue has been closed, the caller must dispatch the event
+         */
+        boolean enqueue(@NonNull PipelineEvent event) {
+            boolean enqueued;
+            // synchronized with close() so that no event is enqueued once the queue has been closed
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                enqueued = events.offer(event);
+            }
+            if (enqueued) {
+                schedule();
+                return true;
+            }
+            backpressureCounter.add(1);
+            LOGGER.log(Level.FINE, () -> runId + " - event queue full, dispatch the pending events inline");
+            if (lockDispatch()) {
+                try {
+                    dispatchPendingEvents();
+                    dispatchEvent(event);
+                } finally {
+                    dispatchLock.unlock();
+                }
+            } else {
+                LOGGER.log(Level.WARNING, () -> runId + " - timeout waiting for the dispatch of the pipeline events, dispatch out of order " + event);
+                dispatchEvent(event);
+            }
+            return true;
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                ExecutorService executorService = PipelineEventDispatcher.this.executorService;
+                try {
+                    if (executorService == null) {
+                        throw new RejectedExecutionException("No executor");
+                    }
+                    executorService.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // asynchronous dispatch disabled or plugin stopping, dispatch the pending events on the caller thread
+                    LOGGER.log(Level.FINE, () -> runId + " - dispatch the pending events synchronously: " + e.getMessage());
+                    run();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    dispatchLock.lock();
+                    try {
+                        PipelineEvent event = events.poll();
+                        if (event == null) {
+                            return;
+                        }
+                        dispatchEvent(event);
+                    } finally {
+                        dispatchLock.unlock();
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+                if (!events.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+        /**
+         * Wait, at most for the flush timeout, for the event being dispatched by another thread
+         *
+         * @return {@code true} if the {@link #dispatchLock} has been acquired
+         */
+        private boolean lockDispatch() {
+            try {
+                return dispatchLock.tryLock(flushTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        /**
+         * Must be invoked holding the {@link #dispatchLock}
+         */
+        private void dispatchPendingEvents() {
+            PipelineEvent event;
+            while ((event = events.poll()) != null) {
+                dispatchEvent(event);
+            }
+        }
+
+        void dispatchEvent(@NonNull PipelineEvent event) {
+            dispatchLagHistogram.record(TimeUnit.NANOSECONDS.toMillis(Clock.getDefault().now() - event.epochNanos));
+            CURRENT_EVENT.set(event);
+            try {
+                event.dispatcher.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, e, () -> runId + " - exception dispatching " + event);
+            } finally {
+                CURRENT_EVENT.remove();
+                dispatchedEventsCounter.add(1);
+            }
+        }
+
+        /**
+         * Dispatch the pending events on the caller thread
+         */
+        void flush() {
+            if (CURRENT_EVENT.get() != null) {
+                // invoked by a pipeline listener, dispatching the next events would break the ordering
+                return;
+            }
+            if (lockDispatch()) {
+                try {
+                    dispatchPendingEvents();
+                } finally {
+                    dispatchLock.unlock();
+                }
+            } else {
+                LOGGER.log(Level.WARNING, () -> runId + " - timeout waiting for the dispatch of " + events.size() + " pipeline events");
+            }
+        }
+
+        /**
+         * Dispatch the pending events, the events enqueued from now on are dispatched by the caller
+         */
+        void close() {
+            synchronized (this) {
+                closed = true;
+            }
+            flush();
+        }
+    }
+}
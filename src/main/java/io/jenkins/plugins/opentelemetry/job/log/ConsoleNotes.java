@@ -7,13 +7,10 @@ package io.jenkins.plugins.opentelemetry.job.log;
 
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-
-import com.google.common.collect.ImmutableMap;
+import java.util.Arrays;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import hudson.console.ConsoleNote;
 import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
@@ -30,44 +27,126 @@ public class ConsoleNotes {
     }
 
     public static TextAndAnnotations parse(byte[] bytes, int len) {
-        assert len > 0 && len <= bytes.length;
-        int endOfLine = len;
-        while (endOfLine > 0) {
-            byte character = bytes[endOfLine - 1];
-            if (character == '\n' || character == '\r') {
-                endOfLine--;
-            } else {
-                break;
-            }
-        }
-        String line = new String(bytes, 0, endOfLine, StandardCharsets.UTF_8);
-        // Would be more efficient to do searches at the byte[] level, but too much bother for now,
-        // especially since there is no standard library method to do offset searches like String has.
-        if (!line.contains(ConsoleNote.PREAMBLE_STR)) {
-            // Shortcut for the common case that we have no notes.
-            return new TextAndAnnotations(line, null);
-        } else {
-            StringBuilder buf = new StringBuilder();
-            List<Map<String, Object>> annotations = new ArrayList<>();
-            int pos = 0;
-            while (true) {
-                int preamble = line.indexOf(ConsoleNote.PREAMBLE_STR, pos);
-                if (preamble == -1) {
+        Parser parser = new Parser();
+        String text = parser.parse(bytes, len);
+        return new TextAndAnnotations(text, parser.hasAnnotations() ? parser.getAnnotations() : null);
+    }
+
+    /**
+     * Extract the {@link ConsoleNote}s of log lines scanning their bytes, the plain text is copied in a scratch buffer
+     * reused from one line to the next.
+     * <p>
+     * Annotations are kept as offsets in the parsed line and are only converted to JSON by {@link #getAnnotations()}.
+     * Not thread safe, one instance per output stream.
+     */
+    static final class Parser {
+        /**
+         * Plain text of the last parsed line
+         */
+        private byte[] text = new byte[256];
+        /**
+         * Triples (position in the plain text, start of the note, end of the note) of the annotations of the last
+         * parsed line, the notes are read in {@link #line}
+         */
+        private int[] annotations = new int[3 * 4];
+        private int annotationsCount;
+        @CheckForNull
+        private byte[] line;
+
+        /**
+         * @return the plain text of the line, without the trailing line breaks
+         */
+        @NonNull
+        String parse(byte[] bytes, int len) {
+            assert len > 0 && len <= bytes.length;
+            int endOfLine = len;
+            while (endOfLine > 0) {
+                byte character = bytes[endOfLine - 1];
+                if (character == '\n' || character == '\r') {
+                    endOfLine--;
+                } else {
                     break;
                 }
-                int endOfPreamble = preamble + ConsoleNote.PREAMBLE_STR.length();
-                int postamble = line.indexOf(ConsoleNote.POSTAMBLE_STR, endOfPreamble);
+            }
+            this.annotationsCount = 0;
+            this.line = bytes;
+            int preamble = ConsoleNote.findPreamble(bytes, 0, endOfLine);
+            if (preamble == -1) {
+                // Shortcut for the common case that we have no notes.
+                return new String(bytes, 0, endOfLine, StandardCharsets.UTF_8);
+            }
+            int textLength = 0;
+            int pos = 0;
+            while (preamble != -1) {
+                int endOfPreamble = preamble + ConsoleNote.PREAMBLE.length;
+                int postamble = indexOf(bytes, ConsoleNote.POSTAMBLE, endOfPreamble, endOfLine);
                 if (postamble == -1) {
                     // Malformed; stop here.
                     break;
                 }
-                buf.append(line, pos, preamble);
-                annotations.add(
-                    ImmutableMap.of(JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS_POSITION_FIELD, buf.length(), JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS_NOTE_FIELD, line.substring(endOfPreamble, postamble)));
-                pos = postamble + ConsoleNote.POSTAMBLE_STR.length();
+                textLength = appendText(bytes, pos, preamble, textLength);
+                addAnnotation(textLength, endOfPreamble, postamble);
+                pos = postamble + ConsoleNote.POSTAMBLE.length;
+                preamble = ConsoleNote.findPreamble(bytes, pos, endOfLine - pos);
             }
-            buf.append(line, pos, line.length()); // append tail
-            return new TextAndAnnotations(buf.toString(), JSONArray.fromObject(annotations));
+            textLength = appendText(bytes, pos, endOfLine, textLength); // append tail
+            return new String(text, 0, textLength, StandardCharsets.UTF_8);
+        }
+
+        boolean hasAnnotations() {
+            return annotationsCount > 0;
+        }
+
+        /**
+         * Must be invoked before the bytes of the last parsed line are modified.
+         *
+         * @return the annotations of the last parsed line, positions are expressed in characters of the plain text
+         */
+        @NonNull
+        JSONArray getAnnotations() {
+            JSONArray result = new JSONArray();
+            for (int i = 0; i < annotationsCount; i++) {
+                int position = annotations[3 * i];
+                int noteStart = annotations[3 * i + 1];
+                int noteEnd = annotations[3 * i + 2];
+                JSONObject annotation = new JSONObject();
+                annotation.put(JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS_POSITION_FIELD, new String(text, 0, position, StandardCharsets.UTF_8).length());
+                annotation.put(JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS_NOTE_FIELD, new String(line, noteStart, noteEnd - noteStart, StandardCharsets.UTF_8));
+                result.add(annotation);
+            }
+            return result;
+        }
+
+        private int appendText(byte[] bytes, int from, int to, int textLength) {
+            int newTextLength = textLength + to - from;
+            if (newTextLength > text.length) {
+                text = Arrays.copyOf(text, Math.max(newTextLength, 2 * text.length));
+            }
+            System.arraycopy(bytes, from, text, textLength, to - from);
+            return newTextLength;
+        }
+
+        private void addAnnotation(int position, int noteStart, int noteEnd) {
+            if (3 * (annotationsCount + 1) > annotations.length) {
+                annotations = Arrays.copyOf(annotations, 2 * annotations.length);
+            }
+            annotations[3 * annotationsCount] = position;
+            annotations[3 * annotationsCount + 1] = noteStart;
+            annotations[3 * annotationsCount + 2] = noteEnd;
+            annotationsCount++;
+        }
+
+        private static int indexOf(byte[] bytes, byte[] target, int from, int to) {
+            OUTER:
+            for (int i = from; i <= to - target.length; i++) {
+                for (int j = 0; j < target.length; j++) {
+                    if (bytes[i + j] != target[j]) {
+                        continue OUTER;
+                    }
+                }
+                return i;
+            }
+            return -1;
         }
     }
 
@@ -102,4 +181,38 @@ public class ConsoleNotes {
             return formattedMessage.toString();
         }
     }
+
+    /**
+     * @return the length in bytes of the UTF-8 encoding of {@link #readFormattedMessage(String, JSONArray)}, without
+     * formatting the message
+     */
+    public static long formattedMessageLengthInBytes(@NonNull String message, @Nullable JSONArray annotations) {
+        long length = 0;
+        for (int i = 0; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < message.length() && Character.isLowSurrogate(message.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogates are replaced by '?' when encoded
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        if (annotations != null) {
+            for (Object o : annotations) {
+                JSONObject annotation = (JSONObject) o;
+                // the notes are base64 encoded
+                length += ConsoleNote.PREAMBLE.length
+                    + annotation.getString(JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS_NOTE_FIELD).length()
+                    + ConsoleNote.POSTAMBLE.length;
+            }
+        }
+        return length;
+    }
 }
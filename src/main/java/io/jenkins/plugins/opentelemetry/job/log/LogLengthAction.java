@@ -0,0 +1,77 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import hudson.model.InvisibleAction;
+import hudson.model.Run;
+
+/**
+ * Length in bytes of the log of a run as rendered by the {@link LogStorageRetriever}s, maintained when the log records
+ * are emitted so that the console can be rendered from the tail of the log without the backend having to compute the
+ * length of the log.
+ * <p>
+ * The length is added when the {@link OtelLogOutputStream}s are closed, it is only {@link #isFinal() final} once all the
+ * streams opened for the run have been closed. The length of the log of runs whose streams have not all been closed
+ * (agent disconnection, controller restart...) is unknown, as well as the length of the log of runs whose log records
+ * may have been lost (dropped by the OpenTelemetry SDK, failed exports...).
+ */
+public class LogLengthAction extends InvisibleAction implements LogLengthCounter {
+
+    private static final Object GET_OR_CREATE_LOCK = new Object();
+
+    private long lengthInBytes;
+    private int openedStreams;
+    private int closedStreams;
+    /**
+     * {@code true} if a stream reported that log records may have been lost
+     */
+    private boolean inexact;
+
+    @Override
+    public synchronized void streamOpened() {
+        openedStreams++;
+    }
+
+    @Override
+    public synchronized void streamClosed(long bytes, boolean exact) {
+        lengthInBytes += bytes;
+        closedStreams++;
+        inexact |= !exact;
+    }
+
+    public synchronized long getLengthInBytes() {
+        return lengthInBytes;
+    }
+
+    /**
+     * @return {@code true} if all the streams opened for the run have reported their exact length
+     */
+    public synchronized boolean isFinal() {
+        return openedStreams > 0 && openedStreams == closedStreams && !inexact;
+    }
+
+    static LogLengthAction getOrCreate(Run<?, ?> run) {
+        // not the monitor of the run, held by Jenkins core while saving the run
+        synchronized (GET_OR_CREATE_LOCK) {
+            LogLengthAction action = run.getAction(LogLengthAction.class);
+            if (action == null) {
+                action = new LogLengthAction();
+                run.addAction(action);
+            }
+            return action;
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LogLengthAction{" +
+            "lengthInBytes=" + lengthInBytes +
+            ", openedStreams=" + openedStreams +
+            ", closedStreams=" + closedStreams +
+            ", inexact=" + inexact +
+            '}';
+    }
+}
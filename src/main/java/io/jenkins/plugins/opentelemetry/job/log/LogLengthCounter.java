@@ -0,0 +1,31 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import hudson.remoting.Asynchronous;
+
+/**
+ * Receives the length of the log records emitted by the {@link OtelLogOutputStream}s of a run, exported to the Jenkins
+ * Agents through the remoting channel.
+ *
+ * @see LogLengthAction
+ */
+public interface LogLengthCounter {
+    /**
+     * Invoked when an {@link OtelLogOutputStream} is created, the length is only final once all the opened streams
+     * have been closed
+     */
+    @Asynchronous
+    void streamOpened();
+
+    /**
+     * @param bytes length of the log records emitted by the closed stream
+     * @param exact {@code false} if log records of the stream may have been lost without being reported in the log,
+     *              the length of the log is then unknown
+     */
+    @Asynchronous
+    void streamClosed(long bytes, boolean exact);
+}
@@ -0,0 +1,416 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.Extension;
+import hudson.ExtensionList;
+import hudson.model.BuildListener;
+import hudson.model.StreamBuildListener;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.NamingThreadFactory;
+import io.jenkins.plugins.opentelemetry.OpenTelemetryLifecycleListener;
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsSemanticMetrics;
+import io.opentelemetry.api.incubator.events.EventLogger;
+import io.opentelemetry.api.logs.LoggerProvider;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.LongHistogram;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import jenkins.YesNoMaybe;
+import org.jenkinsci.plugins.workflow.log.OutputStreamTaskListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Asynchronous writer of the copy of the pipeline logs on the disk of the Jenkins Controller
+ * ({@code otel.logs.mirror_to_disk}).
+ * <p>
+ * When {@link JenkinsOtelSemanticAttributes#OTEL_INSTRUMENTATION_JENKINS_LOGS_MIRROR_ASYNC_ENABLED} is enabled, the
+ * bytes written in the {@link org.jenkinsci.plugins.workflow.log.FileLogStorage} streams of a run are appended to a
+ * bounded buffer shared by the streams of the run, preserving the ordering of the writes, and written in large chunks
+ * by a dedicated thread. Writers are blocked when the buffer of the run is full. Closing a stream, at the end of a step
+ * and at the completion of the run, waits for the buffer of the run to be written.
+ * <p>
+ * The Jenkins Agents write through the buffer of the run as well. A failure to write on disk is rethrown to the
+ * writers of the run by the next write and by the close of their stream.
+ */
+@Extension(dynamicLoadable = YesNoMaybe.YES, optional = true)
+public class LogMirrorWriter implements OpenTelemetryLifecycleListener {
+    private final static Logger LOGGER = Logger.getLogger(LogMirrorWriter.class.getName());
+
+    /**
+     * Maximum size of the chunks of consecutive bytes written in the same stream
+     */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ConcurrentMap<String, RunMirror> runMirrors = new ConcurrentHashMap<>();
+
+    private volatile boolean async;
+    private volatile int bufferSize = 1024 * 1024;
+    private ExecutorService writer;
+
+    private LongCounter bytesWrittenCounter = MeterProvider.noop().get(JenkinsOtelSemanticAttributes.INSTRUMENTATION_NAME).counterBuilder(JenkinsSemanticMetrics.JENKINS_PIPELINE_LOGS_MIRROR_BYTES_WRITTEN).build();
+    private LongHistogram writeDurationHistogram = MeterProvider.noop().get(JenkinsOtelSemanticAttributes.INSTRUMENTATION_NAME).histogramBuilder(JenkinsSemanticMetrics.JENKINS_PIPELINE_LOGS_MIRROR_WRITE_DURATION).ofLongs().build();
+
+    @Override
+    public void afterSdkInitialized(Meter meter, LoggerProvider loggerProvider, EventLogger eventLogger, Tracer tracer, ConfigProperties configProperties) {
+        this.bufferSize = Math.max(CHUNK_SIZE, configProperties.getInt(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_MIRROR_ASYNC_BUFFER_SIZE, 1024 * 1024));
+        boolean async = configProperties.getBoolean(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_MIRROR_ASYNC_ENABLED, false);
+        if (async) {
+            synchronized (this) {
+                if (writer == null) {
+                    writer = Executors.newSingleThreadExecutor(new NamingThreadFactory(new DaemonThreadFactory(), "otel-logs-mirror-writer"));
+                }
+            }
+        }
+
+        meter.upDownCounterBuilder(JenkinsSemanticMetrics.JENKINS_PIPELINE_LOGS_MIRROR_BUFFERED)
+            .setDescription("Bytes of pipeline logs waiting to be written on disk")
+            .setUnit("By")
+            .buildWithCallback(valueObserver -> valueObserver.record(runMirrors.values().stream().mapToLong(RunMirror::getBufferedBytes).sum()));
+        bytesWrittenCounter = meter.counterBuilder(JenkinsSemanticMetrics.JENKINS_PIPELINE_LOGS_MIRROR_BYTES_WRITTEN)
+            .setDescription("Bytes of pipeline logs written on disk")
+            .setUnit("By")
+            .build();
+        writeDurationHistogram = meter.histogramBuilder(JenkinsSemanticMetrics.JENKINS_PIPELINE_LOGS_MIRROR_WRITE_DURATION)
+            .ofLongs()
+            .setDescription("Duration of the writes of chunks of pipeline logs on disk")
+            .setUnit("ms")
+            .build();
+
+        this.async = async;
+        LOGGER.log(Level.FINE, () -> "Pipeline logs mirrored on disk " + (async ? "asynchronously" : "synchronously"));
+    }
+
+    /**
+     * @param logFile          the log file of the run
+     * @param mirrorListener   {@link BuildListener} of the {@link org.jenkinsci.plugins.workflow.log.FileLogStorage}
+     * @return the given {@code mirrorListener} if the asynchronous mode is disabled or if the listener doesn't expose an
+     * {@link OutputStream}
+     */
+    @NonNull
+    public BuildListener wrap(@NonNull File logFile, @NonNull BuildListener mirrorListener) {
+        if (!async || !(mirrorListener instanceof OutputStreamTaskListener)) {
+            return mirrorListener;
+        }
+        return new AsyncMirrorBuildListener(this, logFile.getAbsolutePath(), mirrorListener);
+    }
+
+    @NonNull
+    private RunMirror acquire(@NonNull String logFilePath) {
+        return runMirrors.compute(logFilePath, (path, runMirror) -> {
+            if (runMirror == null) {
+                runMirror = new RunMirror(path);
+            }
+            runMirror.openStreams++;
+            return runMirror;
+        });
+    }
+
+    private void release(@NonNull RunMirror runMirror) {
+        runMirrors.computeIfPresent(runMirror.logFilePath, (path, current) -> {
+            current.openStreams--;
+            return current.openStreams <= 0 && current.getBufferedBytes() == 0 ? null : current;
+        });
+    }
+
+    public static LogMirrorWriter get() {
+        return ExtensionList.lookupSingleton(LogMirrorWriter.class);
+    }
+
+    /**
+     * Bounded buffer of the log file of a run, shared by the streams of the run to preserve the ordering of the writes
+     */
+    final class RunMirror {
+        final String logFilePath;
+        /**
+         * Guarded by {@link ConcurrentMap#compute(Object, java.util.function.BiFunction)} of {@link #runMirrors}
+         */
+        int openStreams;
+
+        private final ArrayDeque<Chunk> chunks = new ArrayDeque<>();
+        private long bufferedBytes;
+        private boolean scheduled;
+        private boolean flushRequested;
+        /**
+         * Targets written since their last flush, including by previous batches. Only accessed by the writer thread.
+         */
+        private final Set<OutputStream> unflushedTargets = Collections.newSetFromMap(new IdentityHashMap<>());
+        /**
+         * First failure to write on disk
+         */
+        @CheckForNull
+        private Exception failure;
+
+        RunMirror(@NonNull String logFilePath) {
+            this.logFilePath = logFilePath;
+        }
+
+        synchronized long getBufferedBytes() {
+            return bufferedBytes;
+        }
+
+        synchronized void append(@NonNull OutputStream target, byte[] bytes, int off, int len) throws IOException {
+            checkNotFailed();
+            while (len > 0) {
+                while (bufferedBytes >= bufferSize) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted waiting for the logs to be written on disk in " + logFilePath);
+                    }
+                    checkNotFailed();
+                }
+                Chunk chunk = chunks.peekLast();
+                if (chunk == null || chunk.target != target || chunk.bytes.size() >= CHUNK_SIZE) {
+                    chunk = new Chunk(target);
+                    chunks.add(chunk);
+                }
+                int appended = (int) Math.min(len, Math.min(CHUNK_SIZE - chunk.bytes.size(), bufferSize - bufferedBytes));
+                chunk.bytes.write(bytes, off, appended);
+                bufferedBytes += appended;
+                off += appended;
+                len -= appended;
+                schedule();
+            }
+        }
+
+        synchronized void requestFlush() {
+            flushRequested = true;
+            schedule();
+        }
+
+        /**
+         * Wait for the buffered bytes to be written
+         */
+        synchronized void awaitWritten() throws IOException {
+            while (scheduled) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for the logs to be written on disk in " + logFilePath);
+                }
+            }
+            checkNotFailed();
+        }
+
+        /**
+         * Must be invoked holding the lock of the {@link RunMirror}
+         */
+        private void checkNotFailed() throws IOException {
+            if (failure != null) {
+                throw new IOException("Failure to write the logs on disk in " + logFilePath, failure);
+            }
+        }
+
+        private synchronized void fail(@NonNull Exception e) {
+            if (failure == null) {
+                failure = e;
+                LOGGER.log(Level.WARNING, "Failure to write the logs on disk in " + logFilePath, e);
+            } else if (failure != e) {
+                failure.addSuppressed(e);
+            }
+        }
+
+        private void schedule() {
+            if (!scheduled) {
+                scheduled = true;
+                writer.execute(this::write);
+            }
+        }
+
+        /**
+         * Invoked by the writer thread
+         */
+        private void write() {
+            while (true) {
+                List<Chunk> chunksToWrite;
+                boolean flush;
+                synchronized (this) {
+                    if (chunks.isEmpty() && !flushRequested) {
+                        scheduled = false;
+                        notifyAll();
+                        return;
+                    }
+                    chunksToWrite = new ArrayList<>(chunks);
+                    chunks.clear();
+                    flush = flushRequested;
+                    flushRequested = false;
+                }
+                long written = 0;
+                long startTimeInNanos = System.nanoTime();
+                for (Chunk chunk : chunksToWrite) {
+                    try {
+                        chunk.bytes.writeTo(chunk.target);
+                        unflushedTargets.add(chunk.target);
+                    } catch (IOException | RuntimeException e) {
+                        fail(e);
+                    }
+                    written += chunk.bytes.size();
+                }
+                if (flush) {
+                    for (OutputStream target : unflushedTargets) {
+                        try {
+                            target.flush();
+                        } catch (IOException | RuntimeException e) {
+                            fail(e);
+                        }
+                    }
+                    unflushedTargets.clear();
+                }
+                writeDurationHistogram.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeInNanos));
+                bytesWrittenCounter.add(written);
+                synchronized (this) {
+                    bufferedBytes -= written;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    static final class Chunk {
+        final OutputStream target;
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        Chunk(@NonNull OutputStream target) {
+            this.target = target;
+        }
+    }
+
+    /**
+     * {@link OutputStream} appending to the {@link RunMirror} of the run
+     */
+    static final class AsyncMirrorOutputStream extends OutputStream {
+        final LogMirrorWriter logMirrorWriter;
+        final RunMirror runMirror;
+        final OutputStream target;
+        private boolean closed;
+
+        AsyncMirrorOutputStream(@NonNull LogMirrorWriter logMirrorWriter, @NonNull String logFilePath, @NonNull OutputStream target) {
+            this.logMirrorWriter = logMirrorWriter;
+            this.runMirror = logMirrorWriter.acquire(logFilePath);
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            runMirror.append(target, b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            runMirror.requestFlush();
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                runMirror.requestFlush();
+                runMirror.awaitWritten();
+                target.close();
+            } finally {
+                logMirrorWriter.release(runMirror);
+            }
+        }
+    }
+
+    /**
+     * {@link BuildListener} writing asynchronously in the {@link org.jenkinsci.plugins.workflow.log.FileLogStorage}.
+     * Replaced by a listener writing remotely in the same {@link RunMirror} when sent to the Jenkins Agents so that the
+     * writes of the agents are ordered with the writes of the Jenkins Controller.
+     */
+    static final class AsyncMirrorBuildListener implements BuildListener, OutputStreamTaskListener, AutoCloseable {
+        private static final long serialVersionUID = 1L;
+
+        private final transient LogMirrorWriter logMirrorWriter;
+        private final transient String logFilePath;
+        private final BuildListener delegate;
+
+        private transient OutputStream outputStream;
+        private transient PrintStream printStream;
+
+        AsyncMirrorBuildListener(@NonNull LogMirrorWriter logMirrorWriter, @NonNull String logFilePath, @NonNull BuildListener delegate) {
+            this.logMirrorWriter = logMirrorWriter;
+            this.logFilePath = logFilePath;
+            this.delegate = delegate;
+        }
+
+        @NonNull
+        @Override
+        public synchronized OutputStream getOutputStream() {
+            if (outputStream == null) {
+                outputStream = new AsyncMirrorOutputStream(logMirrorWriter, logFilePath, ((OutputStreamTaskListener) delegate).getOutputStream());
+            }
+            return outputStream;
+        }
+
+        @NonNull
+        @Override
+        public synchronized PrintStream getLogger() {
+            if (printStream == null) {
+                printStream = new PrintStream(getOutputStream(), false, StandardCharsets.UTF_8);
+            }
+            return printStream;
+        }
+
+        @Override
+        public void close() throws Exception {
+            OutputStream outputStream;
+            synchronized (this) {
+                outputStream = this.outputStream;
+            }
+            if (outputStream != null) {
+                outputStream.close();
+            }
+            if (delegate instanceof AutoCloseable) {
+                ((AutoCloseable) delegate).close();
+            }
+        }
+
+        /**
+         * The asynchronous writer only runs on the Jenkins Controller, the {@link StreamBuildListener} is serialized
+         * with a {@link hudson.remoting.RemoteOutputStream} of the {@link AsyncMirrorOutputStream}
+         */
+        Object writeReplace() {
+            return new StreamBuildListener(getOutputStream(), StandardCharsets.UTF_8);
+        }
+    }
+}
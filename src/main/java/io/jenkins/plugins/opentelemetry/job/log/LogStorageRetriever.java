@@ -35,4 +35,13 @@ public interface LogStorageRetriever extends AutoCloseable {
      */
     @NonNull LogsQueryResult stepLog(@NonNull String jobFullName, int runNumber, @NonNull String flowNodeId, @NonNull String traceId, @NonNull String spanId, boolean complete, @NonNull Instant startTime, @Nullable Instant endTime) throws IOException;
 
+    /**
+     * @param lengthInBytes length of the log of the run accounted when its log records were emitted, see {@link LogLengthAction}
+     * @return {@code false} if the log returned by {@link #overallLog} may be truncated before the given length, the
+     * length of the log is then not advertised to the console
+     */
+    default boolean canRetrieveEntirely(long lengthInBytes) {
+        return true;
+    }
+
 }
@@ -1,21 +1,46 @@
 package io.jenkins.plugins.opentelemetry.job.log;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import hudson.console.LineTransformationOutputStream;
+import io.jenkins.plugins.opentelemetry.opentelemetry.autoconfigure.ConfigPropertiesUtils;
 import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
 import io.opentelemetry.api.common.Attributes;
-import io.opentelemetry.api.common.AttributesBuilder;
-import io.opentelemetry.api.logs.Severity;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.api.metrics.MeterProvider;
 import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
 import io.opentelemetry.sdk.common.Clock;
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
 import org.apache.commons.lang.StringUtils;
 
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Process the output stream and send it to OpenTelemetry.
+ * <p>
+ * When {@link JenkinsOtelSemanticAttributes#OTEL_INSTRUMENTATION_JENKINS_LOGS_CHUNKING_ENABLED} is set, consecutive lines
+ * are coalesced in one log record, separated by {@code \n}, with the attribute
+ * {@link JenkinsOtelSemanticAttributes#JENKINS_LOG_LINE_COUNT}. A chunk is emitted when it reaches
+ * {@link JenkinsOtelSemanticAttributes#OTEL_INSTRUMENTATION_JENKINS_LOGS_CHUNKING_MAX_BYTES}, when its first line is
+ * older than {@link JenkinsOtelSemanticAttributes#OTEL_INSTRUMENTATION_JENKINS_LOGS_CHUNKING_MAX_DELAY}, on
+ * {@link #flush()} and on {@link #close()}. The timestamp of the record is the one of the first line.
+ * <p>
+ * When {@link JenkinsOtelSemanticAttributes#OTEL_INSTRUMENTATION_JENKINS_LOGS_REPEATED_LINES_COLLAPSING_ENABLED} is
+ * set, runs of consecutive lines that are identical or that only differ by their numbers (progress bars, polling
+ * loops...) within {@link JenkinsOtelSemanticAttributes#OTEL_INSTRUMENTATION_JENKINS_LOGS_REPEATED_LINES_COLLAPSING_WINDOW}
+ * are collapsed in the first line, a summary line with the count of collapsed lines, and the last line. Only the last
+ * line of the run is retained in memory.
+ * <p>
+ * The log records are handed off to the {@link io.opentelemetry.api.logs.Logger} through an {@link OtelLogRecordQueue}
+ * bounded according to {@link JenkinsOtelSemanticAttributes#OTEL_INSTRUMENTATION_JENKINS_LOGS_QUEUE_POLICY}.
  * TODO support Pipeline Step Context {@link Context} in addition to supporting run root context.
  * TODO should we implement a MonotonicallyIncreasedClock to ensure the logs messages are always well sorted? Will backends truncate nano seconds to just do millis and loose this monotonic nature ?
  * See https://github.com/jenkinsci/pipeline-cloudwatch-logs-plugin/blob/pipeline-cloudwatch-logs-0.2/src/main/java/io/jenkins/plugins/pipeline_cloudwatch_logs/CloudWatchSender.java#L162
@@ -24,16 +49,125 @@ final class OtelLogOutputStream extends LineTransformationOutputStream {
     public static boolean ENABLE_LOG_FORMATTING = Boolean.parseBoolean(System.getProperty("pipeline.log.elastic.enable.log.formatting", "false"));
     private final static Logger LOGGER = Logger.getLogger(OtelLogOutputStream.class.getName());
 
+    /**
+     * Emits the chunks that are older than the max delay and the collapsed lines held at the end of the collapsing
+     * window when no new line is written
+     */
+    private static volatile ScheduledExecutorService chunksScheduler;
+    /**
+     * Set once the chunks scheduler has been shut down, the scheduler is not created again and the streams emit their
+     * lines synchronously rather than holding them in chunks or collapsed lines. Guarded by the class for the writes
+     */
+    private static volatile boolean chunksSchedulerStopped;
+
     @NonNull
     final RunTraceContext runTraceContext;
 
     final io.opentelemetry.api.logs.Logger otelLogger;
     final Clock clock;
+    /**
+     * {@link RunTraceContext#getContext()} and {@link RunTraceContext#toAttributes()} are computed once per stream,
+     * streams are created after the deserialization of the {@link RunTraceContext} on the Jenkins agents
+     */
+    final Context context;
+    final Attributes attributes;
+    final ConsoleNotes.Parser consoleNotesParser = new ConsoleNotes.Parser();
+    final OtelLogRecordQueue logRecordQueue;
+    /**
+     * {@code true} while the chunks scheduler, shared by all the streams, emits the records of this stream, the
+     * records are then added to the {@link #logRecordQueue} without waiting. Guarded by {@code this}
+     */
+    private boolean scheduledEmission;
+    /**
+     * Notified of the creation of the stream and receives the length of the emitted log records when the stream is
+     * closed, {@code null} if the length is not accounted
+     */
+    @CheckForNull
+    final LogLengthCounter logLengthCounter;
+    private boolean closed;
+
+    /**
+     * {@code 0} if the collapsing of repeated lines is disabled
+     */
+    final long repeatedLinesWindowInNanos;
+    /**
+     * Last line forwarded or collapsed, {@code null} if no line has been written since the last flush
+     */
+    @CheckForNull
+    private String repeatedLine;
+    @CheckForNull
+    private JSONArray repeatedLineAnnotations;
+    private int repeatedLineLength;
+    private long repeatedLineTimestampInNanos;
+    private long repeatedLinesFirstTimestampInNanos;
+    /**
+     * Number of lines collapsed after the first line of the run, the last one being {@link #repeatedLine}
+     */
+    private int repeatedLinesCount;
+    /**
+     * Incremented each time the repeated lines are flushed so that the scheduled flush at the end of a collapsing window
+     * doesn't flush the next run of repeated lines
+     */
+    private long repeatedLinesSequence;
+
+    /**
+     * {@code 0} if chunking is disabled
+     */
+    final int chunkMaxBytes;
+    final long chunkMaxDelayInNanos;
+    private final StringBuilder chunk = new StringBuilder();
+    @CheckForNull
+    private JSONArray chunkAnnotations;
+    private int chunkLines;
+    private int chunkBytes;
+    private long chunkTimestampInNanos;
+    /**
+     * Incremented for each emitted chunk so that the scheduled emission of a chunk doesn't emit the next one
+     */
+    private long chunkSequence;
 
     public OtelLogOutputStream(@NonNull RunTraceContext runTraceContext, @NonNull io.opentelemetry.api.logs.Logger otelLogger, @NonNull Clock clock) {
+        this(runTraceContext, otelLogger, clock, ConfigPropertiesUtils.emptyConfig());
+    }
+
+    public OtelLogOutputStream(@NonNull RunTraceContext runTraceContext, @NonNull io.opentelemetry.api.logs.Logger otelLogger, @NonNull Clock clock, @NonNull ConfigProperties config) {
+        this(runTraceContext, otelLogger, MeterProvider.noop().get(JenkinsOtelSemanticAttributes.INSTRUMENTATION_NAME), clock, config);
+    }
+
+    public OtelLogOutputStream(@NonNull RunTraceContext runTraceContext, @NonNull io.opentelemetry.api.logs.Logger otelLogger, @NonNull Meter meter, @NonNull Clock clock, @NonNull ConfigProperties config) {
+        this(runTraceContext, otelLogger, meter, clock, config, null);
+    }
+
+    public OtelLogOutputStream(@NonNull RunTraceContext runTraceContext, @NonNull io.opentelemetry.api.logs.Logger otelLogger, @NonNull Meter meter, @NonNull Clock clock, @NonNull ConfigProperties config, @CheckForNull LogLengthCounter logLengthCounter) {
         this.runTraceContext = runTraceContext;
         this.otelLogger = otelLogger;
         this.clock = clock;
+        this.context = runTraceContext.getContext();
+        this.attributes = runTraceContext.toAttributes();
+        this.logLengthCounter = logLengthCounter;
+        if (config.getBoolean(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_CHUNKING_ENABLED, false)) {
+            this.chunkMaxBytes = Math.max(1, config.getInt(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_CHUNKING_MAX_BYTES, 16 * 1024));
+            this.chunkMaxDelayInNanos = config.getDuration(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_CHUNKING_MAX_DELAY, Duration.ofSeconds(1)).toNanos();
+        } else {
+            this.chunkMaxBytes = 0;
+            this.chunkMaxDelayInNanos = 0;
+        }
+        if (config.getBoolean(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_REPEATED_LINES_COLLAPSING_ENABLED, false)) {
+            this.repeatedLinesWindowInNanos = Math.max(1, config.getDuration(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_REPEATED_LINES_COLLAPSING_WINDOW, Duration.ofSeconds(10)).toNanos());
+        } else {
+            this.repeatedLinesWindowInNanos = 0;
+        }
+        this.logRecordQueue = new OtelLogRecordQueue(runTraceContext, otelLogger, meter, clock, context, attributes,
+            OtelLogRecordQueue.Policy.parse(config.getString(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_QUEUE_POLICY)),
+            config.getInt(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_QUEUE_CAPACITY, 2048),
+            config.getDuration(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_QUEUE_CLOSE_TIMEOUT, Duration.ofSeconds(5)).toNanos());
+        if (logLengthCounter != null) {
+            try {
+                logLengthCounter.streamOpened();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, e, () -> runTraceContext + " - failure to report the opening of the stream");
+            }
+        }
     }
 
     @Override
@@ -41,35 +175,267 @@ final class OtelLogOutputStream extends LineTransformationOutputStream {
         if (len == 0) {
             return;
         }
-        ConsoleNotes.TextAndAnnotations textAndAnnotations = ConsoleNotes.parse(bytes, len);
-        String plainLogLine = textAndAnnotations.text;
-        if (plainLogLine == null || plainLogLine.isEmpty()) {
+        String plainLogLine = consoleNotesParser.parse(bytes, len);
+        if (plainLogLine.isEmpty()) {
             LOGGER.log(Level.FINEST, () -> runTraceContext + " - skip empty log line");
         } else {
-            AttributesBuilder attributesBuilder = Attributes.builder();
-            if (ENABLE_LOG_FORMATTING && textAndAnnotations.annotations != null) {
-                attributesBuilder.put(JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS, textAndAnnotations.annotations.toString());
+            JSONArray annotations = ENABLE_LOG_FORMATTING && consoleNotesParser.hasAnnotations() ? consoleNotesParser.getAnnotations() : null;
+            if (chunksSchedulerStopped) {
+                // no scheduler to emit the held lines later, emit the pending lines and this line now
+                flushRepeatedLines();
+                emitChunk();
+                emit(plainLogLine, annotations, 1, clock.now());
+            } else if (repeatedLinesWindowInNanos == 0) {
+                forward(plainLogLine, annotations, len, clock.now());
+            } else {
+                collapseRepeatedLine(plainLogLine, annotations, len);
+            }
+        }
+    }
+
+    private void forward(@NonNull String plainLogLine, @CheckForNull JSONArray annotations, int len, long timestampInNanos) {
+        if (chunkMaxBytes == 0) {
+            emit(plainLogLine, annotations, 1, timestampInNanos);
+        } else {
+            appendToChunk(plainLogLine, annotations, len, timestampInNanos);
+        }
+    }
+
+    private synchronized void collapseRepeatedLine(@NonNull String plainLogLine, @CheckForNull JSONArray annotations, int len) {
+        long now = clock.now();
+        if (repeatedLine != null && now - repeatedLinesFirstTimestampInNanos < repeatedLinesWindowInNanos && isRepeatedLine(repeatedLine, plainLogLine)) {
+            repeatedLinesCount++;
+            if (repeatedLinesCount == 1) {
+                // emit the held line at the end of the window even if no other line is written
+                long sequence = repeatedLinesSequence;
+                long delayInNanos = repeatedLinesFirstTimestampInNanos + repeatedLinesWindowInNanos - now;
+                schedule(() -> flushRepeatedLines(sequence), delayInNanos);
+            }
+        } else {
+            flushRepeatedLines();
+            forward(plainLogLine, annotations, len, now);
+            repeatedLinesFirstTimestampInNanos = now;
+        }
+        repeatedLine = plainLogLine;
+        repeatedLineAnnotations = annotations;
+        repeatedLineLength = len;
+        repeatedLineTimestampInNanos = now;
+    }
+
+    /**
+     * Forward the summary of the collapsed lines and the last collapsed line
+     */
+    private synchronized void flushRepeatedLines() {
+        if (repeatedLinesCount > 1) {
+            String summary = "[OpenTelemetry] " + (repeatedLinesCount - 1) + " similar lines collapsed";
+            forward(summary, null, summary.length(), repeatedLineTimestampInNanos);
+        }
+        if (repeatedLinesCount > 0 && repeatedLine != null) {
+            forward(repeatedLine, repeatedLineAnnotations, repeatedLineLength, repeatedLineTimestampInNanos);
+        }
+        repeatedLine = null;
+        repeatedLineAnnotations = null;
+        repeatedLinesCount = 0;
+        repeatedLinesSequence++;
+    }
+
+    /**
+     * Invoked by the chunks scheduler
+     */
+    private synchronized void flushRepeatedLines(long sequence) {
+        if (sequence == repeatedLinesSequence) {
+            scheduledEmission = true;
+            try {
+                flushRepeatedLines();
+            } finally {
+                scheduledEmission = false;
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if both lines are identical once each sequence of digits is considered equal
+     */
+    static boolean isRepeatedLine(@NonNull String previous, @NonNull String line) {
+        int i = 0;
+        int j = 0;
+        while (i < previous.length() && j < line.length()) {
+            char c1 = previous.charAt(i);
+            char c2 = line.charAt(j);
+            if (isDigit(c1) && isDigit(c2)) {
+                do {
+                    i++;
+                } while (i < previous.length() && isDigit(previous.charAt(i)));
+                do {
+                    j++;
+                } while (j < line.length() && isDigit(line.charAt(j)));
+            } else if (c1 == c2) {
+                i++;
+                j++;
+            } else {
+                return false;
+            }
+        }
+        return i == previous.length() && j == line.length();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private void emit(@NonNull String body, @CheckForNull JSONArray annotations, int lines, long timestampInNanos) {
+        // the retrievers render each record followed by '\n'
+        long lengthInBytes = logLengthCounter == null ? 0 : ConsoleNotes.formattedMessageLengthInBytes(body, annotations) + 1;
+        logRecordQueue.add(new OtelLogRecordQueue.PendingLogRecord(body, annotations == null ? null : annotations.toString(), lines, timestampInNanos, lengthInBytes), !scheduledEmission);
+        LOGGER.log(Level.FINEST, () -> runTraceContext.jobFullName + "#" + runTraceContext.runNumber + " - emit body: '" + StringUtils.abbreviate(body, 30) + "'");
+    }
+
+    private synchronized void appendToChunk(@NonNull String plainLogLine, @CheckForNull JSONArray annotations, int len, long now) {
+        if (chunkLines > 0 && (chunkBytes + len > chunkMaxBytes || now - chunkTimestampInNanos >= chunkMaxDelayInNanos)) {
+            emitChunk();
+        }
+        if (chunkLines == 0) {
+            chunkTimestampInNanos = now;
+            long sequence = chunkSequence;
+            schedule(() -> emitChunk(sequence), chunkMaxDelayInNanos);
+        } else {
+            chunk.append('\n');
+        }
+        if (annotations != null) {
+            if (chunkAnnotations == null) {
+                chunkAnnotations = new JSONArray();
+            }
+            for (Object o : annotations) {
+                JSONObject annotation = (JSONObject) o;
+                annotation.put(JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS_POSITION_FIELD, chunk.length() + annotation.getInt(JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS_POSITION_FIELD));
+                chunkAnnotations.add(annotation);
+            }
+        }
+        chunk.append(plainLogLine);
+        chunkLines++;
+        chunkBytes += len;
+        if (chunkBytes >= chunkMaxBytes) {
+            emitChunk();
+        }
+    }
+
+    /**
+     * Invoked by the chunks scheduler
+     */
+    private synchronized void emitChunk(long sequence) {
+        if (sequence == chunkSequence) {
+            scheduledEmission = true;
+            try {
+                emitChunk();
+            } finally {
+                scheduledEmission = false;
             }
-            attributesBuilder.putAll(runTraceContext.toAttributes());
+        }
+    }
 
-            otelLogger.logRecordBuilder()
-                .setSeverity(Severity.INFO)
-                .setBody(plainLogLine)
-                .setAllAttributes(attributesBuilder.build())
-                .setContext(runTraceContext.getContext())
-                .setTimestamp(clock.now(), TimeUnit.NANOSECONDS)
-                .emit();
-            LOGGER.log(Level.FINEST, () -> runTraceContext.jobFullName + "#" + runTraceContext.runNumber + " - emit body: '" + StringUtils.abbreviate(plainLogLine, 30) + "'");
+    private synchronized void emitChunk() {
+        if (chunkLines == 0) {
+            return;
+        }
+        emit(chunk.toString(), chunkAnnotations, chunkLines, chunkTimestampInNanos);
+        chunk.setLength(0);
+        chunkAnnotations = null;
+        chunkLines = 0;
+        chunkBytes = 0;
+        chunkSequence++;
+    }
+
+    /**
+     * @return {@code null} if the scheduler has been shut down
+     */
+    @CheckForNull
+    private static ScheduledExecutorService getChunksScheduler() {
+        ScheduledExecutorService scheduler = chunksScheduler;
+        if (scheduler == null) {
+            synchronized (OtelLogOutputStream.class) {
+                scheduler = chunksScheduler;
+                if (scheduler == null && !chunksSchedulerStopped) {
+                    scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "OpenTelemetry log chunks");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    chunksScheduler = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    private static void schedule(@NonNull Runnable task, long delayInNanos) {
+        ScheduledExecutorService scheduler = getChunksScheduler();
+        if (scheduler == null) {
+            // the pending lines are emitted by the next line or by the close of the stream
+            LOGGER.log(Level.FINE, "Scheduler stopped, don't schedule the emission of the pending lines");
+            return;
+        }
+        try {
+            scheduler.schedule(task, delayInNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // the scheduler is shutting down, the pending lines are emitted by the next line or by the close of the stream
+            LOGGER.log(Level.FINE, "Scheduler shut down, don't schedule the emission of the pending lines");
+        }
+    }
+
+    /**
+     * Allow the scheduler to be created again, lazily, when the plugin starts after having been stopped in the same JVM
+     */
+    static void startChunksScheduler() {
+        synchronized (OtelLogOutputStream.class) {
+            chunksSchedulerStopped = false;
+        }
+    }
+
+    /**
+     * Emit the pending chunks and collapsed lines and shut down the scheduler, invoked when the plugin stops. The
+     * streams then emit their lines synchronously.
+     */
+    static void shutdownChunksScheduler() {
+        ScheduledExecutorService scheduler;
+        synchronized (OtelLogOutputStream.class) {
+            chunksSchedulerStopped = true;
+            scheduler = chunksScheduler;
+            chunksScheduler = null;
+        }
+        if (scheduler == null) {
+            return;
+        }
+        for (Runnable task : scheduler.shutdownNow()) {
+            task.run();
         }
     }
 
     @Override
     public void flush() {
-        // there is no flush concept with the Otel Logger
+        // there is no flush concept with the Otel Logger, emit the pending repeated lines and chunk
+        flushRepeatedLines();
+        emitChunk();
     }
 
     @Override
     public void close() {
-        // TODO anything to do? cyrille: probably not
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flushRepeatedLines();
+        emitChunk();
+        logRecordQueue.close();
+        long emittedBytes = logRecordQueue.getEmittedBytes();
+        boolean exact = logRecordQueue.isEmittedBytesExact();
+        if (logLengthCounter != null) {
+            try {
+                logLengthCounter.streamClosed(emittedBytes, exact);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.FINE, e, () -> runTraceContext + " - failure to report the log length");
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,544 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.jenkins.plugins.opentelemetry.opentelemetry.LogRecordExportBackpressure;
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsSemanticMetrics;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.logs.LogRecordBuilder;
+import io.opentelemetry.api.logs.Severity;
+import io.opentelemetry.api.metrics.LongCounter;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.Clock;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Bounded hand-off between an {@link OtelLogOutputStream} and the {@link io.opentelemetry.api.logs.Logger} so that a
+ * slow OpenTelemetry pipeline doesn't silently lose log lines. The records are emitted by a shared sender thread that
+ * waits for the SDK to export the pending records ({@link LogRecordExportBackpressure}), when the queue is full, the
+ * {@link Policy} decides whether the build waits, the oldest records are dropped or the records are spilled to a local
+ * file and replayed once the queue has drained.
+ * <p>
+ * Dropped lines are reported in the log stream with a marker record emitted before the next record.
+ * <p>
+ * The writers never wait for the export of the records beyond the {@link Policy#BLOCK} policy: once the SDK didn't
+ * export the pending records within its export timeout, the next records are dropped without waiting until the SDK has
+ * capacity again, and {@link #close()} waits at most for the close timeout before dropping the records left.
+ */
+final class OtelLogRecordQueue {
+    private final static Logger LOGGER = Logger.getLogger(OtelLogRecordQueue.class.getName());
+
+    private static volatile ExecutorService sender;
+
+    enum Policy {
+        /**
+         * No hand-off, the records are emitted by the thread writing the log
+         */
+        NONE,
+        /**
+         * The thread writing the log waits for the queue to have room
+         */
+        BLOCK,
+        /**
+         * The oldest queued record is dropped
+         */
+        DROP_OLDEST,
+        /**
+         * The records are written to a local file and emitted once the queue has drained
+         */
+        SPILL;
+
+        @NonNull
+        static Policy parse(@CheckForNull String policy) {
+            if (policy == null || policy.isEmpty()) {
+                return NONE;
+            }
+            try {
+                return valueOf(policy.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                LOGGER.log(Level.WARNING, () -> "Unsupported " + JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_QUEUE_POLICY + " '" + policy + "', use " + NONE);
+                return NONE;
+            }
+        }
+    }
+
+    static final class PendingLogRecord {
+        @NonNull
+        final String body;
+        @CheckForNull
+        final String annotations;
+        final int lines;
+        final long timestampInNanos;
+        /**
+         * Length of the record once rendered by the {@link LogStorageRetriever}s, including the trailing {@code \n}
+         */
+        final long lengthInBytes;
+
+        PendingLogRecord(@NonNull String body, @CheckForNull String annotations, int lines, long timestampInNanos, long lengthInBytes) {
+            this.body = body;
+            this.annotations = annotations;
+            this.lines = lines;
+            this.timestampInNanos = timestampInNanos;
+            this.lengthInBytes = lengthInBytes;
+        }
+    }
+
+    @NonNull
+    final RunTraceContext runTraceContext;
+    final io.opentelemetry.api.logs.Logger otelLogger;
+    final Clock clock;
+    final Context context;
+    final Attributes attributes;
+    final Policy policy;
+    final int capacity;
+    final long closeTimeoutInNanos;
+
+    final LongCounter emittedLinesCounter;
+    final LongCounter droppedLinesCounter;
+    final LongCounter spilledLinesCounter;
+    final Attributes metricAttributes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+    private final ArrayDeque<PendingLogRecord> queue = new ArrayDeque<>();
+    private boolean draining;
+    /**
+     * Set when {@link #close()} timed out, the sender stops draining the queue
+     */
+    private boolean abandoned;
+    /**
+     * Set when records have been lost without being reported by the dropped lines marker
+     */
+    private boolean unreportedLoss;
+    private final LogRecordExportBackpressure.LossObservation lossObservation = LogRecordExportBackpressure.observeLosses();
+    private long droppedLinesSinceMarker;
+
+    @CheckForNull
+    private File spillFile;
+    @CheckForNull
+    private DataOutputStream spillOutput;
+    @CheckForNull
+    private DataInputStream spillInput;
+    private long spilledRecords;
+    private long replayedRecords;
+    /**
+     * Lines of the spilled records not replayed yet
+     */
+    private long spilledPendingLines;
+
+    private long emittedLines;
+    private long emittedBytes;
+    private long droppedLines;
+    private long spilledLines;
+
+    OtelLogRecordQueue(@NonNull RunTraceContext runTraceContext, @NonNull io.opentelemetry.api.logs.Logger otelLogger, @NonNull Meter meter,
+                       @NonNull Clock clock, @NonNull Context context, @NonNull Attributes attributes, @NonNull Policy policy, int capacity,
+                       long closeTimeoutInNanos) {
+        this.runTraceContext = runTraceContext;
+        this.otelLogger = otelLogger;
+        this.clock = clock;
+        this.context = context;
+        this.attributes = attributes;
+        this.policy = policy;
+        this.capacity = Math.max(1, capacity);
+        this.closeTimeoutInNanos = Math.max(0, closeTimeoutInNanos);
+        this.metricAttributes = Attributes.of(JenkinsOtelSemanticAttributes.CI_PIPELINE_ID, runTraceContext.getJobFullName());
+        this.emittedLinesCounter = meter.counterBuilder(JenkinsSemanticMetrics.JENKINS_PIPELINE_LOGS_LINES_EMITTED)
+            .setDescription("Log lines emitted")
+            .setUnit("1")
+            .build();
+        this.droppedLinesCounter = meter.counterBuilder(JenkinsSemanticMetrics.JENKINS_PIPELINE_LOGS_LINES_DROPPED)
+            .setDescription("Log lines dropped because the log record queue was full")
+            .setUnit("1")
+            .build();
+        this.spilledLinesCounter = meter.counterBuilder(JenkinsSemanticMetrics.JENKINS_PIPELINE_LOGS_LINES_SPILLED)
+            .setDescription("Log lines spilled to a local file because the log record queue was full")
+            .setUnit("1")
+            .build();
+    }
+
+    /**
+     * Emit the record or queue it if {@link Policy} is not {@link Policy#NONE}
+     *
+     * @param mayWait {@code false} for the threads shared by the log streams that must not wait for the queue to have
+     *                room with the {@link Policy#BLOCK} policy, the record is then spilled
+     */
+    void add(@NonNull PendingLogRecord record, boolean mayWait) {
+        if (policy == Policy.NONE) {
+            emit(record);
+            return;
+        }
+        lock.lock();
+        try {
+            if (spillOutput != null || ((policy == Policy.SPILL || (policy == Policy.BLOCK && !mayWait)) && queue.size() >= capacity)) {
+                spill(record);
+            } else {
+                while (queue.size() >= capacity) {
+                    if (policy == Policy.DROP_OLDEST) {
+                        drop(queue.poll());
+                    } else {
+                        try {
+                            notFull.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            drop(record);
+                            return;
+                        }
+                    }
+                }
+                queue.add(record);
+            }
+            if (!draining) {
+                draining = true;
+                getSender().execute(this::drain);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait, at most for the close timeout, for the queued and spilled records to be emitted. The records left are
+     * dropped and reported with the dropped lines marker.
+     */
+    void close() {
+        if (policy == Policy.NONE) {
+            return;
+        }
+        lock.lock();
+        try {
+            long nanos = closeTimeoutInNanos;
+            while (draining && nanos > 0) {
+                nanos = idle.awaitNanos(nanos);
+            }
+            if (draining) {
+                abandon();
+            }
+            emitDroppedLinesMarker(clock.now());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon();
+            emitDroppedLinesMarker(clock.now());
+        } finally {
+            lock.unlock();
+        }
+        if (droppedLines > 0 || spilledLines > 0) {
+            LOGGER.log(Level.FINE, () -> runTraceContext + " - log lines emitted: " + emittedLines + ", dropped: " + droppedLines + ", spilled: " + spilledLines);
+        }
+    }
+
+    /**
+     * Drop the queued records and the spilled records not replayed yet, the sender closes the spill file.
+     * Must be invoked holding the {@link #lock}
+     */
+    private void abandon() {
+        if (!draining || abandoned) {
+            return;
+        }
+        abandoned = true;
+        // the record being emitted by the sender may not be accounted in the emitted bytes
+        unreportedLoss = true;
+        LOGGER.log(Level.FINE, () -> runTraceContext + " - timeout waiting for the emission of " + queue.size() + " log records, drop them");
+        PendingLogRecord record;
+        while ((record = queue.poll()) != null) {
+            drop(record);
+        }
+        droppedLinesSinceMarker += spilledPendingLines;
+        droppedLines += spilledPendingLines;
+        droppedLinesCounter.add(spilledPendingLines, metricAttributes);
+        spilledPendingLines = 0;
+        notFull.signalAll();
+    }
+
+    /**
+     * @return the length of the records emitted, must be invoked after {@link #close()}
+     */
+    long getEmittedBytes() {
+        return emittedBytes;
+    }
+
+    /**
+     * @return {@code true} if the {@link #getEmittedBytes() emitted bytes} are the length of the records received by
+     * the backend: no record has been lost after its emission by the OpenTelemetry SDK or without being reported by the
+     * dropped lines marker. Must be invoked after {@link #close()}
+     */
+    boolean isEmittedBytesExact() {
+        lock.lock();
+        try {
+            return !unreportedLoss && lossObservation.isLossless();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Invoked on the shared sender thread, emits at most {@link #capacity} records before yielding to the other queues
+     */
+    private void drain() {
+        for (int emitted = 0; ; emitted++) {
+            PendingLogRecord record;
+            lock.lock();
+            try {
+                if (abandoned) {
+                    closeSpillFile();
+                    draining = false;
+                    idle.signalAll();
+                    return;
+                }
+                if (emitted == capacity) {
+                    getSender().execute(this::drain);
+                    return;
+                }
+                record = queue.poll();
+                if (record != null) {
+                    notFull.signal();
+                } else if (spilledRecords == replayedRecords) {
+                    closeSpillFile();
+                    draining = false;
+                    idle.signalAll();
+                    return;
+                }
+                if (droppedLinesSinceMarker > 0) {
+                    emitDroppedLinesMarker(record == null ? clock.now() : record.timestampInNanos);
+                }
+            } finally {
+                lock.unlock();
+            }
+            try {
+                if (record == null) {
+                    // the records queued before the spilling started have been emitted, replay the spilled records
+                    record = readSpilledRecord();
+                }
+                if (awaitExportCapacity()) {
+                    emit(record);
+                } else {
+                    lock.lock();
+                    try {
+                        drop(record);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, runTraceContext + " - failure to emit log records, drop the spilled log records", e);
+                lock.lock();
+                try {
+                    unreportedLoss = true;
+                    closeSpillFile();
+                    draining = false;
+                    idle.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Wait for the OpenTelemetry SDK to export the pending log records rather than having its batch processor drop the
+     * records, the queue fills up meanwhile and the {@link Policy} applies
+     *
+     * @return {@code false} if the SDK doesn't export the pending records, the record must then be dropped
+     */
+    private boolean awaitExportCapacity() {
+        try {
+            if (LogRecordExportBackpressure.awaitCapacity()) {
+                return true;
+            }
+            LOGGER.log(Level.FINE, () -> runTraceContext + " - log records not exported in time, drop log record");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private void emit(@NonNull PendingLogRecord record) {
+        LogRecordBuilder logRecordBuilder = otelLogger.logRecordBuilder()
+            .setSeverity(Severity.INFO)
+            .setBody(record.body)
+            .setAllAttributes(attributes);
+        if (record.annotations != null) {
+            logRecordBuilder.setAttribute(JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS, record.annotations);
+        }
+        if (record.lines > 1) {
+            logRecordBuilder.setAttribute(JenkinsOtelSemanticAttributes.JENKINS_LOG_LINE_COUNT, (long) record.lines);
+        }
+        logRecordBuilder
+            .setContext(context)
+            .setTimestamp(record.timestampInNanos, TimeUnit.NANOSECONDS)
+            .emit();
+        emittedLines += record.lines;
+        emittedBytes += record.lengthInBytes;
+        emittedLinesCounter.add(record.lines, metricAttributes);
+    }
+
+    /**
+     * Must be invoked holding the {@link #lock}
+     */
+    private void emitDroppedLinesMarker(long timestampInNanos) {
+        if (droppedLinesSinceMarker == 0) {
+            return;
+        }
+        String marker = "[OpenTelemetry] " + droppedLinesSinceMarker + " lines dropped, the log is incomplete";
+        emit(new PendingLogRecord(marker, null, 1, timestampInNanos, marker.length() + 1));
+        droppedLinesSinceMarker = 0;
+    }
+
+    /**
+     * Must be invoked holding the {@link #lock}
+     */
+    private void drop(@NonNull PendingLogRecord record) {
+        droppedLinesSinceMarker += record.lines;
+        droppedLines += record.lines;
+        droppedLinesCounter.add(record.lines, metricAttributes);
+    }
+
+    /**
+     * Must be invoked holding the {@link #lock}
+     */
+    private void spill(@NonNull PendingLogRecord record) {
+        try {
+            if (spillOutput == null) {
+                spillFile = Files.createTempFile("otel-logs-", ".bin").toFile();
+                spillFile.deleteOnExit();
+                spillOutput = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+                spillInput = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile)));
+                LOGGER.log(Level.FINE, () -> runTraceContext + " - log record queue full, spill log records to " + spillFile);
+            }
+            spillOutput.writeLong(record.timestampInNanos);
+            spillOutput.writeInt(record.lines);
+            spillOutput.writeLong(record.lengthInBytes);
+            writeString(spillOutput, record.body);
+            writeString(spillOutput, record.annotations);
+            // the sender thread reads the records it has been notified of
+            spillOutput.flush();
+            spilledRecords++;
+            spilledLines += record.lines;
+            spilledPendingLines += record.lines;
+            spilledLinesCounter.add(record.lines, metricAttributes);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, runTraceContext + " - failure to spill log record to " + spillFile + ", drop it", e);
+            drop(record);
+        }
+    }
+
+    /**
+     * Invoked by the sender thread, only reads records that have been flushed by {@link #spill(PendingLogRecord)}
+     */
+    @NonNull
+    private PendingLogRecord readSpilledRecord() throws IOException {
+        DataInputStream input = spillInput;
+        if (input == null) {
+            throw new IOException("No spill file");
+        }
+        long timestampInNanos = input.readLong();
+        int lines = input.readInt();
+        long lengthInBytes = input.readLong();
+        String body = readString(input);
+        String annotations = readString(input);
+        lock.lock();
+        try {
+            replayedRecords++;
+            if (!abandoned) {
+                spilledPendingLines -= lines;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return new PendingLogRecord(body == null ? "" : body, annotations, lines, timestampInNanos, lengthInBytes);
+    }
+
+    /**
+     * Must be invoked holding the {@link #lock}
+     */
+    private void closeSpillFile() {
+        if (spillFile == null) {
+            return;
+        }
+        try {
+            if (spillOutput != null) {
+                spillOutput.close();
+            }
+            if (spillInput != null) {
+                spillInput.close();
+            }
+            Files.deleteIfExists(spillFile.toPath());
+        } catch (IOException e) {
+            LOGGER.log(Level.INFO, runTraceContext + " - failure to delete " + spillFile, e);
+        }
+        spillFile = null;
+        spillOutput = null;
+        spillInput = null;
+        spilledRecords = 0;
+        replayedRecords = 0;
+        spilledPendingLines = 0;
+    }
+
+    private static void writeString(@NonNull DataOutputStream output, @CheckForNull String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    @CheckForNull
+    private static String readString(@NonNull DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @NonNull
+    private static ExecutorService getSender() {
+        ExecutorService executor = sender;
+        if (executor == null) {
+            synchronized (OtelLogRecordQueue.class) {
+                executor = sender;
+                if (executor == null) {
+                    executor = Executors.newSingleThreadExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "OpenTelemetry log sender");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    sender = executor;
+                }
+            }
+        }
+        return executor;
+    }
+}
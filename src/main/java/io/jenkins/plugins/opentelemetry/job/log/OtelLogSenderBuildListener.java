@@ -9,21 +9,29 @@ import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.model.BuildListener;
+import hudson.remoting.Channel;
 import io.jenkins.plugins.opentelemetry.JenkinsControllerOpenTelemetry;
 import io.jenkins.plugins.opentelemetry.opentelemetry.GlobalOpenTelemetrySdk;
 import io.jenkins.plugins.opentelemetry.opentelemetry.common.Clocks;
 import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
+import io.opentelemetry.api.metrics.Meter;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.autoconfigure.spi.internal.DefaultConfigProperties;
 import io.opentelemetry.sdk.common.Clock;
 import jenkins.util.JenkinsJVM;
 import org.jenkinsci.plugins.workflow.log.OutputStreamTaskListener;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -34,15 +42,31 @@ import java.util.logging.Logger;
  * - On the Jenkins Controller as a {@link OtelLogSenderBuildListenerOnController} instance
  * - On Jenkins Agents as a {@link OtelLogSenderBuildListenerOnAgent} instance
  * <p>
+ * The listener is closed by Jenkins when the step or the run completes, closing the listener emits the pending log
+ * records of its streams and reports the length of the emitted records to the {@link LogLengthCounter}.
+ * <p>
  * See https://github.com/jenkinsci/pipeline-cloudwatch-logs-plugin/blob/pipeline-cloudwatch-logs-0.2/src/main/java/io/jenkins/plugins/pipeline_cloudwatch_logs/CloudWatchSender.java
  */
-abstract class OtelLogSenderBuildListener implements BuildListener, OutputStreamTaskListener {
+abstract class OtelLogSenderBuildListener implements BuildListener, OutputStreamTaskListener, Closeable {
 
     protected final static Logger LOGGER = Logger.getLogger(OtelLogSenderBuildListener.class.getName());
-    final RunTraceContext runTraceContext;
+    /**
+     * {@code null} until looked up by {@link #getRunTraceContext()} when the listener has been created with a
+     * {@link Supplier}
+     */
+    @SuppressFBWarnings("IS2_INCONSISTENT_SYNC")
+    @CheckForNull
+    RunTraceContext runTraceContext;
 
-    final Map<String, String> otelConfigProperties;
-    final Map<String, String> otelResourceAttributes;
+    @CheckForNull
+    transient Supplier<? extends RunTraceContext> runTraceContextSupplier;
+
+    /**
+     * Empty when {@link OtelLogSenderBuildListenerOnAgent} is sent with the hash of the configuration, until it is
+     * resolved on the Jenkins Agent
+     */
+    Map<String, String> otelConfigProperties;
+    Map<String, String> otelResourceAttributes;
     /**
      * Timestamps of the logs emitted by the Jenkins Agents must be chronologically ordered with the timestamps of
      * the logs & traces emitted on the Jenkins controller even if the system clock are not perfectly synchronized
@@ -57,7 +81,20 @@ abstract class OtelLogSenderBuildListener implements BuildListener, OutputStream
     transient PrintStream logger;
 
     public OtelLogSenderBuildListener(@NonNull RunTraceContext runTraceContext, @NonNull Map<String, String> otelConfigProperties, @NonNull Map<String, String> otelResourceAttributes) {
+        this(otelConfigProperties, otelResourceAttributes);
         this.runTraceContext = runTraceContext;
+    }
+
+    /**
+     * @param runTraceContextSupplier looked up when the first log stream is created or when the listener is sent to a
+     *                                Jenkins Agent, typically because the span of the step may not have been created yet
+     */
+    public OtelLogSenderBuildListener(@NonNull Supplier<? extends RunTraceContext> runTraceContextSupplier, @NonNull Map<String, String> otelConfigProperties, @NonNull Map<String, String> otelResourceAttributes) {
+        this(otelConfigProperties, otelResourceAttributes);
+        this.runTraceContextSupplier = runTraceContextSupplier;
+    }
+
+    private OtelLogSenderBuildListener(@NonNull Map<String, String> otelConfigProperties, @NonNull Map<String, String> otelResourceAttributes) {
         this.otelConfigProperties = otelConfigProperties;
         this.otelResourceAttributes = otelResourceAttributes;
         this.clock = Clocks.monotonicClock();
@@ -66,11 +103,20 @@ abstract class OtelLogSenderBuildListener implements BuildListener, OutputStream
         JenkinsJVM.checkJenkinsJVM();
     }
 
+    @NonNull
+    synchronized RunTraceContext getRunTraceContext() {
+        if (runTraceContext == null) {
+            runTraceContext = Objects.requireNonNull(runTraceContextSupplier, "runTraceContextSupplier").get();
+            runTraceContextSupplier = null;
+        }
+        return runTraceContext;
+    }
+
     @NonNull
     @Override
     public synchronized final OutputStream getOutputStream() {
         if (outputStream == null) {
-            outputStream = new OtelLogOutputStream(runTraceContext, getOtelLogger(), clock);
+            outputStream = new OtelLogOutputStream(getRunTraceContext(), getOtelLogger(), getOtelMeter(), clock, getOtelConfig(), getLogLengthCounter());
         }
         return outputStream;
     }
@@ -79,13 +125,49 @@ abstract class OtelLogSenderBuildListener implements BuildListener, OutputStream
     @Override
     public synchronized final PrintStream getLogger() {
         if (logger == null) {
-            logger = new PrintStream(new OtelLogOutputStream(runTraceContext, getOtelLogger(), clock), false, StandardCharsets.UTF_8);
+            logger = new PrintStream(new OtelLogOutputStream(getRunTraceContext(), getOtelLogger(), getOtelMeter(), clock, getOtelConfig(), getLogLengthCounter()), false, StandardCharsets.UTF_8);
         }
         return logger;
     }
 
+    @Override
+    public synchronized void close() {
+        if (logger != null) {
+            logger.close();
+            logger = null;
+        }
+        if (outputStream != null) {
+            try {
+                outputStream.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, e, () -> getRunTraceContext() + " - failure to close the log stream");
+            }
+            outputStream = null;
+        }
+    }
+
     abstract io.opentelemetry.api.logs.Logger getOtelLogger();
 
+    /**
+     * {@link Meter} of the counters of the log lines emitted, dropped and spilled
+     */
+    abstract Meter getOtelMeter();
+
+    /**
+     * {@link LogLengthCounter} of the run, {@code null} if the length of the log is not accounted
+     */
+    @CheckForNull
+    abstract LogLengthCounter getLogLengthCounter();
+
+    /**
+     * Configuration transmitted to the Jenkins Agents, not the {@link ConfigProperties} of the Jenkins Controller, so
+     * that logs are processed the same way on the Jenkins Controller and on the Jenkins Agents
+     */
+    @NonNull
+    ConfigProperties getOtelConfig() {
+        return DefaultConfigProperties.createFromMap(otelConfigProperties);
+    }
+
     /**
      * {@link OtelLogSenderBuildListener} implementation that runs on the Jenkins Controller and
      * that retrieves the {@link io.opentelemetry.api.logs.Logger} from the {@link JenkinsControllerOpenTelemetry}
@@ -95,8 +177,23 @@ abstract class OtelLogSenderBuildListener implements BuildListener, OutputStream
 
         private final static Logger logger = Logger.getLogger(OtelLogSenderBuildListenerOnController.class.getName());
 
+        @CheckForNull
+        private final transient LogLengthAction logLengthAction;
+
         public OtelLogSenderBuildListenerOnController(@NonNull RunTraceContext runTraceContext, @NonNull Map<String, String> otelConfigProperties, @NonNull Map<String, String> otelResourceAttributes) {
+            this(runTraceContext, otelConfigProperties, otelResourceAttributes, null);
+        }
+
+        public OtelLogSenderBuildListenerOnController(@NonNull RunTraceContext runTraceContext, @NonNull Map<String, String> otelConfigProperties, @NonNull Map<String, String> otelResourceAttributes, @CheckForNull LogLengthAction logLengthAction) {
             super(runTraceContext, otelConfigProperties, otelResourceAttributes);
+            this.logLengthAction = logLengthAction;
+            logger.log(Level.FINEST, () -> "new OtelLogSenderBuildListenerOnController()");
+            JenkinsJVM.checkJenkinsJVM();
+        }
+
+        public OtelLogSenderBuildListenerOnController(@NonNull Supplier<? extends RunTraceContext> runTraceContextSupplier, @NonNull Map<String, String> otelConfigProperties, @NonNull Map<String, String> otelResourceAttributes, @CheckForNull LogLengthAction logLengthAction) {
+            super(runTraceContextSupplier, otelConfigProperties, otelResourceAttributes);
+            this.logLengthAction = logLengthAction;
             logger.log(Level.FINEST, () -> "new OtelLogSenderBuildListenerOnController()");
             JenkinsJVM.checkJenkinsJVM();
         }
@@ -107,6 +204,18 @@ abstract class OtelLogSenderBuildListener implements BuildListener, OutputStream
             return JenkinsControllerOpenTelemetry.get().getLogsBridge().get(JenkinsOtelSemanticAttributes.INSTRUMENTATION_NAME);
         }
 
+        @Override
+        Meter getOtelMeter() {
+            JenkinsJVM.checkJenkinsJVM();
+            return JenkinsControllerOpenTelemetry.get().getMeter(JenkinsOtelSemanticAttributes.INSTRUMENTATION_NAME);
+        }
+
+        @CheckForNull
+        @Override
+        LogLengthCounter getLogLengthCounter() {
+            return logLengthAction;
+        }
+
         /**
          * Java serialization to send the {@link OtelLogSenderBuildListener} from the Jenkins Controller to a Jenkins Agent.
          * Swap the instance from a {@link OtelLogSenderBuildListenerOnController} to a {@link OtelLogSenderBuildListenerOnAgent}
@@ -117,7 +226,15 @@ abstract class OtelLogSenderBuildListener implements BuildListener, OutputStream
         private Object writeReplace() throws IOException {
             logger.log(Level.FINEST, () -> "writeReplace()");
             JenkinsJVM.checkJenkinsJVM();
-            return new OtelLogSenderBuildListenerOnAgent(runTraceContext, otelConfigProperties, otelResourceAttributes);
+            RunTraceContext runTraceContext = getRunTraceContext();
+            String configurationHash = OtelLogSenderConfigurations.hash(otelConfigProperties, otelResourceAttributes);
+            Channel channel = Channel.current();
+            // the agents report the length of the log records they emit through a proxy of the counter of the run
+            LogLengthCounter logLengthCounter = channel == null || logLengthAction == null ? null : channel.export(LogLengthCounter.class, logLengthAction);
+            if (channel != null && OtelLogSenderConfigurations.pushIfAbsent(channel, configurationHash, otelConfigProperties, otelResourceAttributes)) {
+                return new OtelLogSenderBuildListenerOnAgent(runTraceContext, Collections.emptyMap(), Collections.emptyMap(), configurationHash, logLengthCounter);
+            }
+            return new OtelLogSenderBuildListenerOnAgent(runTraceContext, otelConfigProperties, otelResourceAttributes, configurationHash, logLengthCounter);
         }
     }
 
@@ -137,11 +254,28 @@ abstract class OtelLogSenderBuildListener implements BuildListener, OutputStream
          */
         private long instantInNanosOnJenkinsControllerBeforeSerialization;
 
+        /**
+         * See {@link OtelLogSenderConfigurations}
+         */
+        private final String configurationHash;
+
+        /**
+         * Remoting proxy of the {@link LogLengthAction} of the run
+         */
+        @SuppressFBWarnings(value = "SE_BAD_FIELD", justification = "remoting proxy exported by Channel#export")
+        @CheckForNull
+        private final LogLengthCounter logLengthCounter;
+
         /**
          * Intended to be exclusively called on the Jenkins Controller by {@link OtelLogSenderBuildListenerOnController#writeReplace()}.
+         *
+         * @param otelConfigProperties   empty if the configuration has been pushed to the Jenkins Agent
+         * @param otelResourceAttributes empty if the configuration has been pushed to the Jenkins Agent
          */
-        private OtelLogSenderBuildListenerOnAgent(@NonNull RunTraceContext runTraceContext, @NonNull Map<String, String> otelConfigProperties, @NonNull Map<String, String> otelResourceAttributes) {
+        private OtelLogSenderBuildListenerOnAgent(@NonNull RunTraceContext runTraceContext, @NonNull Map<String, String> otelConfigProperties, @NonNull Map<String, String> otelResourceAttributes, @NonNull String configurationHash, @CheckForNull LogLengthCounter logLengthCounter) {
             super(runTraceContext, otelConfigProperties, otelResourceAttributes);
+            this.configurationHash = configurationHash;
+            this.logLengthCounter = logLengthCounter;
             logger.log(Level.FINEST, () -> "new OtelLogSenderBuildListenerOnAgent()");
             JenkinsJVM.checkJenkinsJVM();
         }
@@ -156,6 +290,18 @@ abstract class OtelLogSenderBuildListener implements BuildListener, OutputStream
             return GlobalOpenTelemetrySdk.getOtelLogger();
         }
 
+        @Override
+        Meter getOtelMeter() {
+            JenkinsJVM.checkNotJenkinsJVM();
+            return GlobalOpenTelemetrySdk.getMeter();
+        }
+
+        @CheckForNull
+        @Override
+        LogLengthCounter getLogLengthCounter() {
+            return logLengthCounter;
+        }
+
         private void writeObject(ObjectOutputStream stream) throws IOException {
             logger.log(Level.FINEST, () -> "writeObject(): set instantInNanosOnJenkinsControllerBeforeSerialization");
             JenkinsJVM.checkJenkinsJVM();
@@ -186,12 +332,20 @@ abstract class OtelLogSenderBuildListener implements BuildListener, OutputStream
                 this.clock = Clocks.monotonicOffsetClock(offsetInNanosOnJenkinsAgent);
             }
 
-            // Setup OTel
-            GlobalOpenTelemetrySdk.configure(
-                otelConfigProperties,
-                otelResourceAttributes,
-                /* the JVM shutdown hook is too late to flush the Otel signals as the OTel classes have been unloaded */
-                false );
+            OtelLogSenderConfigurations.Configuration configuration = OtelLogSenderConfigurations.resolve(configurationHash, otelConfigProperties, otelResourceAttributes);
+            if (configuration == null) {
+                return this;
+            }
+            this.otelConfigProperties = configuration.otelConfigProperties;
+            this.otelResourceAttributes = configuration.otelResourceAttributes;
+
+            // Setup OTel, skip the comparison of the configuration maps if the configuration has not changed
+            OtelLogSenderConfigurations.configureIfChanged(configurationHash, configuration, (properties, resourceAttributes) ->
+                GlobalOpenTelemetrySdk.configure(
+                    properties,
+                    resourceAttributes,
+                    /* the JVM shutdown hook is too late to flush the Otel signals as the OTel classes have been unloaded */
+                    false));
             // TODO find the right lifecycle event to shutdown the Otel SDK on agent shutdown
             // hudson.remoting.EngineListener doesn't seem to be the right event
             return this;
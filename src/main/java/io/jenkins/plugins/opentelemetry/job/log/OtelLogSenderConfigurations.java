@@ -0,0 +1,246 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import com.google.common.annotations.VisibleForTesting;
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.remoting.Channel;
+import jenkins.security.MasterToSlaveCallable;
+import jenkins.util.JenkinsJVM;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Content addressed cache of the OpenTelemetry configurations of the {@link OtelLogSenderBuildListener}s sent to the
+ * Jenkins Agents.
+ * <p>
+ * The Jenkins Controller pushes each configuration once per {@link Channel}, asynchronously so that the serialization
+ * of a listener never waits for a remote call. The listeners are sent with their configuration until the push has
+ * completed, then with the hash of their configuration that they resolve from the cache of the Jenkins Agent.
+ */
+final class OtelLogSenderConfigurations {
+    private final static Logger LOGGER = Logger.getLogger(OtelLogSenderConfigurations.class.getName());
+
+    /**
+     * Pushes of the configurations to each channel by hash, on the Jenkins Controller
+     */
+    private static final Map<Channel, Map<String, Future<Void>>> pushesByChannel = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Configurations received from the Jenkins Controller, on the Jenkins Agents
+     */
+    private static final Map<String, Configuration> configurationsByHash = new ConcurrentHashMap<>();
+
+    /**
+     * Hash of the configuration the {@link io.jenkins.plugins.opentelemetry.opentelemetry.GlobalOpenTelemetrySdk} of
+     * the Jenkins Agent has been configured with
+     */
+    @CheckForNull
+    private static volatile String configuredHash;
+
+    private OtelLogSenderConfigurations() {
+    }
+
+    static final class Configuration {
+        @NonNull
+        final Map<String, String> otelConfigProperties;
+        @NonNull
+        final Map<String, String> otelResourceAttributes;
+
+        Configuration(@NonNull Map<String, String> otelConfigProperties, @NonNull Map<String, String> otelResourceAttributes) {
+            this.otelConfigProperties = otelConfigProperties;
+            this.otelResourceAttributes = otelResourceAttributes;
+        }
+    }
+
+    /**
+     * @return the hash of the configuration, independent of the ordering of the maps
+     */
+    @NonNull
+    static String hash(@NonNull Map<String, String> otelConfigProperties, @NonNull Map<String, String> otelResourceAttributes) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            update(messageDigest, otelConfigProperties);
+            messageDigest.update((byte) 0);
+            update(messageDigest, otelResourceAttributes);
+            StringBuilder hash = new StringBuilder();
+            for (byte b : messageDigest.digest()) {
+                hash.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hash.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Length prefixed entries so that no two distinct maps have the same encoding
+     */
+    private static void update(@NonNull MessageDigest messageDigest, @NonNull Map<String, String> map) {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        messageDigest.update(length.putInt(0, map.size()).array());
+        for (Map.Entry<String, String> entry : new TreeMap<>(map).entrySet()) {
+            update(messageDigest, length, entry.getKey());
+            update(messageDigest, length, entry.getValue());
+        }
+    }
+
+    private static void update(@NonNull MessageDigest messageDigest, @NonNull ByteBuffer length, @CheckForNull String value) {
+        if (value == null) {
+            messageDigest.update(length.putInt(0, -1).array());
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        messageDigest.update(length.putInt(0, bytes.length).array());
+        messageDigest.update(bytes);
+    }
+
+    /**
+     * Invoked on the Jenkins Controller, push asynchronously the configuration to the Jenkins Agent if it has not
+     * already been pushed
+     *
+     * @return {@code true} if the Jenkins Agent of the channel has the configuration in its cache, {@code false} if
+     * the push is in progress or has failed, the listener must then be sent with its configuration
+     */
+    static boolean pushIfAbsent(@NonNull Channel channel, @NonNull String hash, @NonNull Map<String, String> otelConfigProperties, @NonNull Map<String, String> otelResourceAttributes) {
+        JenkinsJVM.checkJenkinsJVM();
+        Map<String, Future<Void>> pushes;
+        synchronized (pushesByChannel) {
+            pushes = pushesByChannel.computeIfAbsent(channel, c -> new ConcurrentHashMap<>());
+        }
+        Future<Void> push = pushes.get(hash);
+        if (push == null) {
+            try {
+                // don't wait for the agent, the listeners referencing the configuration are sent once the push has completed
+                push = channel.callAsync(new CacheConfiguration(hash, otelConfigProperties, otelResourceAttributes));
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.FINE, e, () -> "Failure to push the OpenTelemetry configuration " + hash + " to " + channel.getName());
+                return false;
+            }
+            Future<Void> concurrentPush = pushes.putIfAbsent(hash, push);
+            if (concurrentPush != null) {
+                push = concurrentPush;
+            }
+        }
+        if (!push.isDone()) {
+            return false;
+        }
+        try {
+            push.get();
+            return true;
+        } catch (ExecutionException | CancellationException e) {
+            LOGGER.log(Level.FINE, e, () -> "Failure to push the OpenTelemetry configuration " + hash + " to " + channel.getName());
+            // push again with the next listener
+            pushes.remove(hash, push);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @VisibleForTesting
+    @CheckForNull
+    static Future<Void> getPush(@NonNull Channel channel, @NonNull String hash) {
+        Map<String, Future<Void>> pushes = pushesByChannel.get(channel);
+        return pushes == null ? null : pushes.get(hash);
+    }
+
+    /**
+     * Invoked on the Jenkins Agents
+     */
+    static void put(@NonNull String hash, @NonNull Configuration configuration) {
+        configurationsByHash.put(hash, configuration);
+    }
+
+    /**
+     * Invoked on the Jenkins Agents
+     */
+    @CheckForNull
+    static Configuration get(@NonNull String hash) {
+        return configurationsByHash.get(hash);
+    }
+
+    /**
+     * Invoked on the Jenkins Agents by the deserialized listeners
+     *
+     * @param otelConfigProperties   empty if the listener has been sent with the hash of its configuration
+     * @param otelResourceAttributes empty if the listener has been sent with the hash of its configuration
+     * @return the configuration of the listener, cached if sent with the listener, or the configuration the SDK of the
+     * Jenkins Agent has last been configured with if the configuration of the hash is not in the cache. {@code null}
+     * if the SDK has never been configured.
+     */
+    @CheckForNull
+    static Configuration resolve(@NonNull String hash, @NonNull Map<String, String> otelConfigProperties, @NonNull Map<String, String> otelResourceAttributes) {
+        if (!otelConfigProperties.isEmpty() || !otelResourceAttributes.isEmpty()) {
+            Configuration configuration = new Configuration(otelConfigProperties, otelResourceAttributes);
+            put(hash, configuration);
+            return configuration;
+        }
+        Configuration configuration = get(hash);
+        if (configuration != null) {
+            return configuration;
+        }
+        String configuredHash = OtelLogSenderConfigurations.configuredHash;
+        Configuration configuredConfiguration = configuredHash == null ? null : get(configuredHash);
+        LOGGER.log(Level.WARNING, () -> "OpenTelemetry configuration " + hash + " not found, " +
+            (configuredConfiguration == null ? "don't configure the OpenTelemetry SDK" : "use the current configuration " + configuredHash));
+        return configuredConfiguration;
+    }
+
+    /**
+     * Invoked on the Jenkins Agents, configure the SDK unless it has already been configured with the configuration of
+     * the given hash, skipping the comparison of the configuration maps
+     *
+     * @return {@code true} if the SDK has been configured
+     */
+    static boolean configureIfChanged(@NonNull String hash, @NonNull Configuration configuration, @NonNull BiConsumer<Map<String, String>, Map<String, String>> sdkConfigurer) {
+        synchronized (OtelLogSenderConfigurations.class) {
+            if (hash.equals(configuredHash)) {
+                return false;
+            }
+            sdkConfigurer.accept(configuration.otelConfigProperties, configuration.otelResourceAttributes);
+            configuredHash = hash;
+            return true;
+        }
+    }
+
+    private static final class CacheConfiguration extends MasterToSlaveCallable<Void, IOException> {
+        private static final long serialVersionUID = 1;
+
+        private final String hash;
+        private final Map<String, String> otelConfigProperties;
+        private final Map<String, String> otelResourceAttributes;
+
+        CacheConfiguration(@NonNull String hash, @NonNull Map<String, String> otelConfigProperties, @NonNull Map<String, String> otelResourceAttributes) {
+            this.hash = hash;
+            this.otelConfigProperties = otelConfigProperties;
+            this.otelResourceAttributes = otelResourceAttributes;
+        }
+
+        @Override
+        public Void call() {
+            put(hash, new Configuration(otelConfigProperties, otelResourceAttributes));
+            return null;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package io.jenkins.plugins.opentelemetry.job.log;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import hudson.console.AnnotatedLargeText;
@@ -11,6 +12,8 @@ import io.jenkins.plugins.opentelemetry.JenkinsOpenTelemetryPluginConfiguration;
 import io.jenkins.plugins.opentelemetry.OpenTelemetryConfiguration;
 import io.jenkins.plugins.opentelemetry.job.MonitoringAction;
 import io.jenkins.plugins.opentelemetry.job.OtelTraceService;
+import io.jenkins.plugins.opentelemetry.job.jenkins.PipelineEventDispatcher;
+import io.jenkins.plugins.opentelemetry.job.log.util.InputStreamByteBuffer;
 import io.jenkins.plugins.opentelemetry.job.log.util.TeeBuildListener;
 import io.jenkins.plugins.opentelemetry.job.log.util.TeeOutputStreamBuildListener;
 import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
@@ -30,9 +33,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,6 +50,13 @@ import java.util.logging.Logger;
 class OtelLogStorage implements LogStorage {
 
     private final static Logger logger = Logger.getLogger(OtelLogStorage.class.getName());
+
+    /**
+     * Configuration shared by the listeners of all the runs, rebuilt when
+     * {@link JenkinsOpenTelemetryPluginConfiguration#getConfigurationGeneration()} changes
+     */
+    @CheckForNull
+    private static volatile ConfigurationSnapshot configurationSnapshot;
     final Run run;
     final RunTraceContext runTraceContext;
     final String runFolderPath;
@@ -72,18 +84,15 @@ class OtelLogStorage implements LogStorage {
     @NonNull
     @Override
     public BuildListener overallListener() throws IOException {
-        OpenTelemetryConfiguration otelConfiguration = JenkinsOpenTelemetryPluginConfiguration.get().toOpenTelemetryConfiguration();
-        Map<String, String> otelConfigurationProperties = otelConfiguration.toOpenTelemetryProperties();
-        Map<String, String> otelResourceAttributes = new HashMap<>();
-        otelConfiguration.toOpenTelemetryResource().getAttributes().asMap().forEach((k, v) -> otelResourceAttributes.put(k.getKey(), v.toString()));
+        ConfigurationSnapshot configuration = getConfigurationSnapshot();
 
-        OtelLogSenderBuildListener otelLogSenderBuildListener = new OtelLogSenderBuildListener.OtelLogSenderBuildListenerOnController(runTraceContext, otelConfigurationProperties, otelResourceAttributes);
+        OtelLogSenderBuildListener otelLogSenderBuildListener = new OtelLogSenderBuildListener.OtelLogSenderBuildListenerOnController(runTraceContext, configuration.otelConfigProperties, configuration.otelResourceAttributes, LogLengthAction.getOrCreate(run));
 
         BuildListener result;
         if (JenkinsControllerOpenTelemetry.get().isOtelLogsMirrorToDisk()) {
             try {
                 File logFile = new File(runFolderPath, "log");
-                BuildListener fileStorageBuildListener = FileLogStorage.forFile(logFile).overallListener();
+                BuildListener fileStorageBuildListener = LogMirrorWriter.get().wrap(logFile, FileLogStorage.forFile(logFile).overallListener());
                 if (fileStorageBuildListener instanceof OutputStreamTaskListener) {
                     result = new TeeOutputStreamBuildListener(otelLogSenderBuildListener, fileStorageBuildListener);
                 } else {
@@ -110,20 +119,23 @@ class OtelLogStorage implements LogStorage {
     @NonNull
     @Override
     public BuildListener nodeListener(@NonNull FlowNode flowNode) throws IOException {
-        OpenTelemetryConfiguration otelConfiguration = JenkinsOpenTelemetryPluginConfiguration.get().toOpenTelemetryConfiguration();
-        Map<String, String> otelConfigurationProperties = otelConfiguration.toOpenTelemetryProperties();
-        Map<String, String> otelResourceAttributes = new HashMap<>();
-        otelConfiguration.toOpenTelemetryResource().getAttributes().asMap().forEach((k, v) -> otelResourceAttributes.put(k.getKey(), v.toString()));
+        ConfigurationSnapshot configuration = getConfigurationSnapshot();
 
-        Span span = otelTraceService.getSpan(run, flowNode);
-        FlowNodeTraceContext flowNodeTraceContext = FlowNodeTraceContext.newFlowNodeTraceContext(run, flowNode, span);
-        OtelLogSenderBuildListener otelLogSenderBuildListener = new OtelLogSenderBuildListener.OtelLogSenderBuildListenerOnController(flowNodeTraceContext, otelConfigurationProperties, otelResourceAttributes);
+        // look up the span of the step when the log is written rather than when the listener is created, typically on
+        // the CPS VM thread, so that the span has been created when pipeline events are dispatched asynchronously
+        Supplier<FlowNodeTraceContext> flowNodeTraceContext = () -> {
+            // dispatches the pending events inline, including on the CPS VM thread, so that the span of the step exists
+            PipelineEventDispatcher.get().flush(run);
+            Span span = otelTraceService.getSpan(run, flowNode);
+            return FlowNodeTraceContext.newFlowNodeTraceContext(run, flowNode, span);
+        };
+        OtelLogSenderBuildListener otelLogSenderBuildListener = new OtelLogSenderBuildListener.OtelLogSenderBuildListenerOnController(flowNodeTraceContext, configuration.otelConfigProperties, configuration.otelResourceAttributes, LogLengthAction.getOrCreate(run));
 
         BuildListener result;
         if (JenkinsControllerOpenTelemetry.get().isOtelLogsMirrorToDisk()) {
             try {
                 File logFile = new File(runFolderPath, "log");
-                BuildListener fileStorageBuildListener = BuildListenerAdapter.wrap(FileLogStorage.forFile(logFile).nodeListener(flowNode));
+                BuildListener fileStorageBuildListener = LogMirrorWriter.get().wrap(logFile, BuildListenerAdapter.wrap(FileLogStorage.forFile(logFile).nodeListener(flowNode)));
                 if (fileStorageBuildListener instanceof OutputStreamTaskListener) {
                     result = new TeeOutputStreamBuildListener(otelLogSenderBuildListener, fileStorageBuildListener);
                 } else {
@@ -170,6 +182,16 @@ class OtelLogStorage implements LogStorage {
             Instant endTime = run.getDuration() == 0 ? null : startTime.plusMillis(run.getDuration());
             LogsQueryResult logsQueryResult = logStorageRetriever.overallLog(run.getParent().getFullName(), run.getNumber(), runTraceContext.getTraceId(), runTraceContext.getSpanId(), complete, startTime, endTime);
             span.setAttribute("completed", logsQueryResult.isComplete());
+            // the length accounted when the logs were emitted is only final once the run is completed and all its
+            // log streams have been closed without losing log records, and only if the retrieval doesn't truncate
+            // the log before this length, otherwise the console renders the streamed log
+            LogLengthAction logLengthAction = run.getAction(LogLengthAction.class);
+            if (logLengthAction != null && !run.isLogUpdated() && logLengthAction.isFinal() && logsQueryResult.getByteBuffer() instanceof InputStreamByteBuffer
+                && logStorageRetriever.canRetrieveEntirely(logLengthAction.getLengthInBytes())) {
+                long length = logLengthAction.getLengthInBytes();
+                span.setAttribute("length", length);
+                ((InputStreamByteBuffer) logsQueryResult.getByteBuffer()).setLength(length);
+            }
             return new OverallLog(logsQueryResult.getByteBuffer(), logsQueryResult.getLogsViewHeader(), logsQueryResult.getCharset(), logsQueryResult.isComplete(), build, tracer);
         } catch (Exception x) {
             span.recordException(x);
@@ -255,6 +277,35 @@ class OtelLogStorage implements LogStorage {
             '}';
     }
 
+    @NonNull
+    static ConfigurationSnapshot getConfigurationSnapshot() {
+        JenkinsOpenTelemetryPluginConfiguration pluginConfiguration = JenkinsOpenTelemetryPluginConfiguration.get();
+        long generation = pluginConfiguration.getConfigurationGeneration();
+        ConfigurationSnapshot snapshot = configurationSnapshot;
+        if (snapshot == null || snapshot.generation != generation) {
+            snapshot = new ConfigurationSnapshot(generation, pluginConfiguration.toOpenTelemetryConfiguration());
+            configurationSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Immutable OpenTelemetry configuration sent with the {@link OtelLogSenderBuildListener}s
+     */
+    static final class ConfigurationSnapshot {
+        final long generation;
+        final Map<String, String> otelConfigProperties;
+        final Map<String, String> otelResourceAttributes;
+
+        ConfigurationSnapshot(long generation, @NonNull OpenTelemetryConfiguration otelConfiguration) {
+            this.generation = generation;
+            this.otelConfigProperties = Collections.unmodifiableMap(new HashMap<>(otelConfiguration.toOpenTelemetryProperties()));
+            Map<String, String> otelResourceAttributes = new HashMap<>();
+            otelConfiguration.toOpenTelemetryResource().getAttributes().asMap().forEach((k, v) -> otelResourceAttributes.put(k.getKey(), v.toString()));
+            this.otelResourceAttributes = Collections.unmodifiableMap(otelResourceAttributes);
+        }
+    }
+
     @NonNull
     public LogStorageRetriever getLogStorageRetriever() {
         return JenkinsOpenTelemetryPluginConfiguration.get().getLogStorageRetriever();
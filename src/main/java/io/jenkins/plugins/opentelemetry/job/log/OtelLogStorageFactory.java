@@ -24,6 +24,8 @@ import org.jenkinsci.plugins.workflow.log.BrokenLogStorage;
 import org.jenkinsci.plugins.workflow.log.LogStorage;
 import org.jenkinsci.plugins.workflow.log.LogStorageFactory;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -104,4 +106,20 @@ public final class OtelLogStorageFactory implements LogStorageFactory, OpenTelem
     public void afterSdkInitialized(Meter meter, LoggerProvider loggerProvider, EventLogger eventLogger, Tracer tracer, ConfigProperties configProperties) {
         this.tracer = tracer;
     }
+
+    /**
+     * Allow the scheduler of the log chunks of the Jenkins Controller to be created when the plugin starts
+     */
+    @PostConstruct
+    public void start() {
+        OtelLogOutputStream.startChunksScheduler();
+    }
+
+    /**
+     * Stop the scheduler of the log chunks of the Jenkins Controller when the plugin stops
+     */
+    @PreDestroy
+    public void shutdown() {
+        OtelLogOutputStream.shutdownChunksScheduler();
+    }
 }
\ No newline at end of file
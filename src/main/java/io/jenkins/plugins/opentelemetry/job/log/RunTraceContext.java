@@ -24,6 +24,20 @@ public class RunTraceContext implements Serializable {
 
     static final long serialVersionUID = 1L;
 
+    private static final TextMapGetter<Map<String, String>> W3C_TRACE_CONTEXT_GETTER = new TextMapGetter<>() {
+        @Override
+        public Iterable<String> keys(@Nonnull Map<String, String> carrier) {
+            return carrier.keySet();
+        }
+
+        @Nullable
+        @Override
+        public String get(@Nullable Map<String, String> carrier, @Nonnull String key) {
+            assert carrier != null;
+            return carrier.get(key);
+        }
+    };
+
     final String jobFullName;
     final int runNumber;
     final String spanId;
@@ -72,19 +86,7 @@ public class RunTraceContext implements Serializable {
     }
 
     public Context getContext() {
-        return W3CTraceContextPropagator.getInstance().extract(Context.current(), getW3cTraceContext(), new TextMapGetter<>() {
-            @Override
-            public Iterable<String> keys(@Nonnull Map<String, String> carrier) {
-                return carrier.keySet();
-            }
-
-            @Nullable
-            @Override
-            public String get(@Nullable Map<String, String> carrier, @Nonnull String key) {
-                assert carrier != null;
-                return carrier.get(key);
-            }
-        });
+        return W3CTraceContextPropagator.getInstance().extract(Context.current(), getW3cTraceContext(), W3C_TRACE_CONTEXT_GETTER);
     }
 
     @Override
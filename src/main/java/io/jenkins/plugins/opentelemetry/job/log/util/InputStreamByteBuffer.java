@@ -22,6 +22,9 @@ import java.util.logging.Logger;
 
 /**
  * Readonly {@link ByteBuffer} backed by an {@link InputStream}
+ * <p>
+ * The length of the log is unknown unless it is provided with {@link #setLength(long)}, {@link #length()} then returns
+ * {@code hudson.consoleTailKB} so that the console renders the log from its beginning.
  */
 public class InputStreamByteBuffer extends ByteBuffer {
     final static Logger logger = Logger.getLogger(InputStreamByteBuffer.class.getName());
@@ -32,13 +35,28 @@ public class InputStreamByteBuffer extends ByteBuffer {
     @NonNull
     final InputStream in;
 
+    /**
+     * {@code -1} if unknown
+     */
+    private long length = -1;
+
     public InputStreamByteBuffer(@Nonnull InputStream in, @Nonnull Tracer tracer) {
         this.in = in;
         this.tracer = tracer;
     }
 
+    /**
+     * @param length length in bytes of the content of the {@link InputStream}
+     */
+    public synchronized void setLength(long length) {
+        this.length = length;
+    }
+
     @Override
     public synchronized long length() {
+        if (this.length >= 0) {
+            return this.length;
+        }
         Tracer tracer = logger.isLoggable(Level.FINER) ? this.tracer : TracerProvider.noop().get("noop");
         // See system property 'hudson.consoleTailKB'
         // workflow-job-2.41.jar!/org/jenkinsci/plugins/workflow/job/WorkflowRun/console.jelly
@@ -0,0 +1,64 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes the log lines, followed by {@code \n}, in UTF-8 in a reusable buffer from which the {@link java.io.InputStream}s
+ * backed by line iterators read.
+ */
+final class LineEncoder {
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer line = ByteBuffer.allocate(1024).flip();
+
+    /**
+     * Replace the remaining bytes of the current line by the given line followed by {@code \n}
+     */
+    void encode(@NonNull String message) {
+        int maxLength = (int) Math.ceil(message.length() * (double) encoder.maxBytesPerChar()) + 1;
+        if (line.capacity() < maxLength) {
+            line = ByteBuffer.allocate(Math.max(maxLength, line.capacity() * 2));
+        } else {
+            line.clear();
+        }
+        encoder.reset();
+        CharBuffer chars = CharBuffer.wrap(message);
+        // the buffer can't overflow as its capacity is greater than the max length of the encoded message
+        encoder.encode(chars, line, true);
+        encoder.flush(line);
+        line.put((byte) '\n');
+        line.flip();
+    }
+
+    boolean hasRemaining() {
+        return line.hasRemaining();
+    }
+
+    /**
+     * @return the next byte of the current line, {@link #hasRemaining()} must be {@code true}
+     */
+    int read() {
+        return line.get() & 0xFF;
+    }
+
+    /**
+     * @return the number of bytes of the current line copied in the given array
+     */
+    int read(byte[] b, int off, int len) {
+        int read = Math.min(len, line.remaining());
+        line.get(b, off, read);
+        return read;
+    }
+}
@@ -10,13 +10,13 @@ import io.opentelemetry.api.trace.Tracer;
 import io.opentelemetry.api.trace.TracerProvider;
 import io.opentelemetry.context.Scope;
 
+import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.util.Optional;
+import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,8 +33,7 @@ public class LineIteratorInputStream extends InputStream {
     private final LineIterator lines;
     final protected Tracer tracer;
 
-    private int cursorOnCurrentLine;
-    private byte[] currentLine;
+    private final LineEncoder lineEncoder = new LineEncoder();
     private long readLines;
     private long readBytes;
 
@@ -46,25 +45,42 @@ public class LineIteratorInputStream extends InputStream {
 
     @Override
     public int read() throws IOException {
-        if (currentLine == null) {
-            if (cursorOnCurrentLine != 0) {
-                throw new IllegalStateException("Current line is null but cursorOnCurrentLine!=0: " + cursorOnCurrentLine);
-            }
-            currentLine = Optional.ofNullable(readLine()).map(line -> line + "\n").map(line -> line.getBytes(StandardCharsets.UTF_8)).orElse(null);
-            if (currentLine == null) {
-                return -1;
-            }
+        if (!lineEncoder.hasRemaining() && !nextLine()) {
+            return -1;
+        }
+        readBytes++;
+        return lineEncoder.read();
+    }
+
+    @Override
+    public int read(@NonNull byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
         }
-        if (cursorOnCurrentLine > currentLine.length) {
-            throw new IllegalStateException();
+        int read = 0;
+        while (read < len) {
+            if (!lineEncoder.hasRemaining() && !nextLine()) {
+                break;
+            }
+            read += lineEncoder.read(b, off + read, len - read);
         }
-        int result = currentLine[cursorOnCurrentLine++];
-        if (cursorOnCurrentLine == currentLine.length) {
-            currentLine = null;
-            cursorOnCurrentLine = 0;
+        readBytes += read;
+        return read == 0 ? -1 : read;
+    }
+
+    /**
+     * Encode the next line in the {@link #lineEncoder}
+     *
+     * @return {@code false} if no more data available
+     */
+    private boolean nextLine() {
+        String line = readLine();
+        if (line == null) {
+            return false;
         }
-        readBytes++;
-        return result;
+        lineEncoder.encode(line);
+        return true;
     }
 
     /**
@@ -89,13 +105,16 @@ public class LineIteratorInputStream extends InputStream {
         try (Scope scope = span.makeCurrent()) {
             Long skipLogLines = lineBytesToLineNumberConverter.getLogLineFromLogBytes(skipBytes);
             if (skipLogLines == null) {
+                // read the skipped lines so that the offsets remain accurate
                 span.addEvent("Line Bytes to Line Number conversion not found");
-            } else {
-                span.setAttribute("skipLines", skipLogLines);
-                lines.skipLines(skipLogLines);
-                readBytes += skipBytes;
-                readLines += skipLogLines;
+                long skipped = super.skip(skipBytes);
+                span.setAttribute("skippedBytes", skipped);
+                return skipped;
             }
+            span.setAttribute("skipLines", skipLogLines);
+            lines.skipLines(skipLogLines);
+            readBytes += skipBytes;
+            readLines += skipLogLines;
             return skipBytes;
         } finally {
             span.end();
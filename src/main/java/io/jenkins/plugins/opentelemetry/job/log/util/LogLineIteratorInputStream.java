@@ -5,6 +5,7 @@
 
 package io.jenkins.plugins.opentelemetry.job.log.util;
 
+import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import io.jenkins.plugins.opentelemetry.job.log.LogLine;
 import io.opentelemetry.api.trace.Span;
@@ -15,8 +16,7 @@ import io.opentelemetry.context.Scope;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.util.Optional;
+import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,8 +30,7 @@ public class LogLineIteratorInputStream<Id> extends InputStream {
     private final LogLineIterator<Id> logLines;
     final protected Tracer tracer;
 
-    private int cursorOnCurrentLine;
-    private byte[] currentLine;
+    private final LineEncoder lineEncoder = new LineEncoder();
     private long readBytes;
     private Id lastLogLineId;
 
@@ -43,25 +42,42 @@ public class LogLineIteratorInputStream<Id> extends InputStream {
 
     @Override
     public int read() throws IOException {
-        if (currentLine == null) {
-            if (cursorOnCurrentLine != 0) {
-                throw new IllegalStateException("Current line is null but cursorOnCurrentLine!=0: " + cursorOnCurrentLine);
-            }
-            currentLine = Optional.ofNullable(readLine()).map(line -> (line.getMessage() + "\n").getBytes(StandardCharsets.UTF_8)).orElse(null);
-            if (currentLine == null) {
-                return -1;
-            }
+        if (!lineEncoder.hasRemaining() && !nextLine()) {
+            return -1;
+        }
+        readBytes++;
+        return lineEncoder.read();
+    }
+
+    @Override
+    public int read(@NonNull byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
         }
-        if (cursorOnCurrentLine > currentLine.length) {
-            throw new IllegalStateException();
+        int read = 0;
+        while (read < len) {
+            if (!lineEncoder.hasRemaining() && !nextLine()) {
+                break;
+            }
+            read += lineEncoder.read(b, off + read, len - read);
         }
-        int result = currentLine[cursorOnCurrentLine++];
-        if (cursorOnCurrentLine == currentLine.length) {
-            currentLine = null;
-            cursorOnCurrentLine = 0;
+        readBytes += read;
+        return read == 0 ? -1 : read;
+    }
+
+    /**
+     * Encode the next line in the {@link #lineEncoder}
+     *
+     * @return {@code false} if no more data available
+     */
+    private boolean nextLine() {
+        LogLine<Id> line = readLine();
+        if (line == null) {
+            return false;
         }
-        readBytes++;
-        return result;
+        lineEncoder.encode(line.getMessage());
+        return true;
     }
 
     /**
@@ -85,16 +101,19 @@ public class LogLineIteratorInputStream<Id> extends InputStream {
             .setAttribute("skipBytes", skipBytes)
             .startSpan();
         try (Scope scope = span.makeCurrent()) {
-            Optional<Id> logLineId = Optional.ofNullable(logLineBytesToLogLineIdConverter.getLogLineIdFromLogBytes(skipBytes));
-            logLineId.ifPresentOrElse(id -> {
-                    span.setAttribute("previousLastLogLineId", String.valueOf(this.lastLogLineId));
-                    span.setAttribute("lastLogLineId", String.valueOf(id));
-                    logLines.skipLines(id);
-                    readBytes += skipBytes;
-                    this.lastLogLineId = id;
-                },
-                () -> span.addEvent("LogLine Bytes to LogLine Id conversion not found")
-            );
+            Id logLineId = logLineBytesToLogLineIdConverter.getLogLineIdFromLogBytes(skipBytes);
+            if (logLineId == null) {
+                // read the skipped lines so that the offsets remain accurate
+                span.addEvent("LogLine Bytes to LogLine Id conversion not found");
+                long skipped = super.skip(skipBytes);
+                span.setAttribute("skippedBytes", skipped);
+                return skipped;
+            }
+            span.setAttribute("previousLastLogLineId", String.valueOf(this.lastLogLineId));
+            span.setAttribute("lastLogLineId", String.valueOf(logLineId));
+            logLines.skipLines(logLineId);
+            readBytes += skipBytes;
+            this.lastLogLineId = logLineId;
             return skipBytes;
         } finally {
             span.end();
@@ -0,0 +1,267 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.opentelemetry.context.Context;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads the pages of a log ahead of the consumer so that the rendering of a page overlaps with the round-trip to the
+ * observability backend of the next pages.
+ * <p>
+ * The pages are loaded sequentially, each page being requested from the state left by the previous one (search after
+ * sort values, start timestamp...), by a thread of a shared pool as soon as the previous page has been loaded, with at
+ * most {@code maxPagesAhead} pages being loaded or loaded and not yet consumed. {@link #close()} cancels the loading and waits for the
+ * loading thread to leave the {@link PageLoader}, so that the resources of the loader can then be released.
+ * <p>
+ * With {@code maxPagesAhead} set to {@code 0}, the pages are loaded by the consumer thread. The pool is bounded to
+ * {@link #MAX_THREADS} threads, the pages are also loaded by the consumer thread when all the threads are busy.
+ *
+ * @param <T> type of the log lines
+ */
+public final class PageReadAhead<T> implements Closeable {
+    private final static Logger logger = Logger.getLogger(PageReadAhead.class.getName());
+
+    /**
+     * Maximum number of threads loading pages ahead, shared by all the log requests. A search of the log in parallel
+     * slices uses one thread per slice
+     */
+    static final int MAX_THREADS = Integer.getInteger(PageReadAhead.class.getName() + ".maxThreads", 32);
+
+    private static volatile ExecutorService readAheadExecutor;
+
+    /**
+     * Loads the next page of log lines
+     */
+    @FunctionalInterface
+    public interface PageLoader<T> {
+        /**
+         * @return the next page, empty at the end of the log
+         */
+        @NonNull
+        List<T> loadNextPage() throws IOException;
+
+        /**
+         * Invoked by {@link PageReadAhead#close()}, from the closing thread, to abort the loading of the page in
+         * progress when the interruption of the loading thread isn't enough (blocking I/O...)
+         */
+        default void cancel() {
+        }
+    }
+
+    @NonNull
+    private final PageLoader<T> pageLoader;
+    private final int maxPagesAhead;
+    @CheckForNull
+    private final BlockingQueue<Object> pages;
+    /**
+     * Pages that can be loaded ahead of the consumer
+     */
+    @CheckForNull
+    private final Semaphore pagesAhead;
+    private final CountDownLatch loaderDone = new CountDownLatch(1);
+    private boolean loaderStarted;
+    /**
+     * {@code true} if the pages are loaded by the consumer thread because the read ahead pool is saturated
+     */
+    private volatile boolean onDemand;
+    /**
+     * Thread running {@link #loadPages()}, interrupted by {@link #close()}
+     */
+    @CheckForNull
+    private Thread loaderThread;
+    private volatile boolean closed;
+    private boolean endOfLog;
+
+    public PageReadAhead(@NonNull PageLoader<T> pageLoader, int maxPagesAhead) {
+        this.pageLoader = pageLoader;
+        this.maxPagesAhead = Math.max(0, maxPagesAhead);
+        this.pages = this.maxPagesAhead == 0 ? null : new LinkedBlockingQueue<>();
+        this.pagesAhead = this.maxPagesAhead == 0 ? null : new Semaphore(this.maxPagesAhead);
+    }
+
+    /**
+     * Failure of the loading of a page, rethrown to the consumer
+     */
+    private static final class LoadingFailure {
+        final Throwable cause;
+
+        LoadingFailure(Throwable cause) {
+            this.cause = cause;
+        }
+    }
+
+    /**
+     * @return the next page, empty at the end of the log
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public List<T> nextPage() throws IOException {
+        if (endOfLog || closed) {
+            return Collections.emptyList();
+        }
+        if (pages == null || pagesAhead == null) {
+            return loadPageOnDemand();
+        }
+        start();
+        if (onDemand) {
+            return loadPageOnDemand();
+        }
+        Object page;
+        try {
+            page = pages.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the next page of logs");
+        }
+        pagesAhead.release();
+        if (page instanceof LoadingFailure) {
+            endOfLog = true;
+            Throwable cause = ((LoadingFailure) page).cause;
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+        List<T> result = (List<T>) page;
+        endOfLog = result.isEmpty();
+        return result;
+    }
+
+    @NonNull
+    private List<T> loadPageOnDemand() throws IOException {
+        List<T> page = pageLoader.loadNextPage();
+        endOfLog = page.isEmpty();
+        return page;
+    }
+
+    /**
+     * Start loading the pages ahead before the first call to {@link #nextPage()}, the loading otherwise starts with the
+     * first page so that the loader can be positioned before. No-op when the pages are loaded on demand.
+     */
+    public synchronized void start() {
+        if (pages == null || loaderStarted || closed) {
+            return;
+        }
+        loaderStarted = true;
+        try {
+            getReadAheadExecutor().execute(Context.current().wrap(this::loadPages));
+        } catch (RejectedExecutionException e) {
+            logger.log(Level.FINE, () -> "All the " + MAX_THREADS + " read ahead threads are busy, load the pages on demand");
+            onDemand = true;
+            loaderDone.countDown();
+        }
+    }
+
+    /**
+     * Invoked on the read ahead thread
+     */
+    private void loadPages() {
+        BlockingQueue<Object> pages = Objects.requireNonNull(this.pages);
+        Semaphore pagesAhead = Objects.requireNonNull(this.pagesAhead);
+        synchronized (this) {
+            loaderThread = Thread.currentThread();
+        }
+        try {
+            while (!closed) {
+                pagesAhead.acquire();
+                Object page;
+                try {
+                    page = pageLoader.loadNextPage();
+                } catch (Throwable e) {
+                    page = new LoadingFailure(e);
+                }
+                pages.put(page);
+                if (page instanceof LoadingFailure || ((List<?>) page).isEmpty()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // cancelled by close()
+        } finally {
+            synchronized (this) {
+                loaderThread = null;
+                // don't leak the interruption of close() to the next task of the pool
+                Thread.interrupted();
+            }
+            loaderDone.countDown();
+        }
+    }
+
+    /**
+     * Cancel the loading of the pages and wait for the loading thread to leave the {@link PageLoader}
+     */
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            if (!loaderStarted) {
+                return;
+            }
+            if (loaderThread != null) {
+                loaderThread.interrupt();
+            }
+        }
+        if (!onDemand) {
+            pageLoader.cancel();
+        }
+        try {
+            if (!loaderDone.await(30, TimeUnit.SECONDS)) {
+                logger.log(Level.INFO, "Timeout waiting for the cancellation of the read ahead of the logs");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (pages != null) {
+            pages.clear();
+        }
+    }
+
+    @NonNull
+    private static ExecutorService getReadAheadExecutor() {
+        ExecutorService executor = readAheadExecutor;
+        if (executor == null) {
+            synchronized (PageReadAhead.class) {
+                executor = readAheadExecutor;
+                if (executor == null) {
+                    AtomicInteger threadCounter = new AtomicInteger();
+                    // no queue: the tasks are rejected when all the threads are busy
+                    ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+                        Thread thread = new Thread(runnable, "OpenTelemetry logs read ahead-" + threadCounter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    threadPoolExecutor.allowCoreThreadTimeOut(true);
+                    executor = threadPoolExecutor;
+                    readAheadExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+}
@@ -7,12 +7,15 @@ package io.jenkins.plugins.opentelemetry.job.step;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 
 import org.jenkinsci.plugins.workflow.actions.ArgumentsAction;
 import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
 import org.jenkinsci.plugins.workflow.support.steps.build.BuildTriggerStep;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
@@ -24,6 +27,12 @@ import jenkins.YesNoMaybe;
 
 @Extension(optional = true, dynamicLoadable = YesNoMaybe.YES)
 public class BuildTriggerStepHandler implements StepHandler {
+    @NonNull
+    @Override
+    public Set<Class<? extends StepDescriptor>> getSupportedStepDescriptors() {
+        return Collections.singleton(BuildTriggerStep.DescriptorImpl.class);
+    }
+
     @Override
     public boolean canCreateSpanBuilder(@NonNull FlowNode flowNode, @NonNull WorkflowRun run) {
         return flowNode instanceof StepAtomNode && ((StepAtomNode) flowNode).getDescriptor() instanceof BuildTriggerStep.DescriptorImpl;
@@ -14,17 +14,26 @@ import org.jenkinsci.plugins.workflow.actions.ArgumentsAction;
 import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
 import org.jenkinsci.plugins.workflow.steps.durable_task.DurableTaskStep;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 /**
  * Customization of spans for shell step: ({@code sh}, {@code cmd}, and {@code powershell}).
  */
 @Extension(optional = true, dynamicLoadable = YesNoMaybe.YES)
 public class  DurableTaskHandler implements StepHandler {
+    @NonNull
+    @Override
+    public Set<Class<? extends StepDescriptor>> getSupportedStepDescriptors() {
+        return Collections.singleton(DurableTaskStep.DurableTaskStepDescriptor.class);
+    }
+
     @Override
     public boolean canCreateSpanBuilder(@NonNull FlowNode flowNode, @NonNull WorkflowRun run) {
         return flowNode instanceof StepAtomNode && ((StepAtomNode) flowNode).getDescriptor() instanceof DurableTaskStep.DurableTaskStepDescriptor;
@@ -24,11 +24,14 @@ import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.job.WorkflowJob;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
 import org.jenkinsci.plugins.workflow.multibranch.BranchJobProperty;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
 import org.jenkinsci.plugins.workflow.steps.scm.GenericSCMStep;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,6 +42,12 @@ import java.util.logging.Logger;
 public class GitCheckoutStepHandler extends AbstractGitStepHandler {
     private final static Logger LOGGER = Logger.getLogger(GitCheckoutStepHandler.class.getName());
 
+    @NonNull
+    @Override
+    public Set<Class<? extends StepDescriptor>> getSupportedStepDescriptors() {
+        return Collections.singleton(GenericSCMStep.DescriptorImpl.class);
+    }
+
     @Override
     public boolean canCreateSpanBuilder(@NonNull FlowNode flowNode, @NonNull WorkflowRun run) {
         if (!(flowNode instanceof StepAtomNode)) {
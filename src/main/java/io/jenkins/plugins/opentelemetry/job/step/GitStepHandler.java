@@ -14,10 +14,13 @@ import org.jenkinsci.plugins.workflow.actions.ArgumentsAction;
 import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -27,6 +30,12 @@ import static com.google.common.base.Preconditions.checkNotNull;
 @Extension(optional = true, dynamicLoadable = YesNoMaybe.YES)
 public class GitStepHandler extends AbstractGitStepHandler {
 
+    @NonNull
+    @Override
+    public Set<Class<? extends StepDescriptor>> getSupportedStepDescriptors() {
+        return Collections.singleton(GitStep.DescriptorImpl.class);
+    }
+
     @Override
     public boolean canCreateSpanBuilder(@NonNull FlowNode flowNode, @NonNull WorkflowRun run) {
         return flowNode instanceof StepAtomNode && ((StepAtomNode) flowNode).getDescriptor() instanceof GitStep.DescriptorImpl;
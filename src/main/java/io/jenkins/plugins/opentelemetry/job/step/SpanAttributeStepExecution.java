@@ -10,6 +10,7 @@ import hudson.model.Actionable;
 import hudson.model.Run;
 import io.jenkins.plugins.opentelemetry.OpenTelemetryAttributesAction;
 import io.jenkins.plugins.opentelemetry.job.OtelTraceService;
+import io.jenkins.plugins.opentelemetry.job.jenkins.PipelineEventDispatcher;
 import io.opentelemetry.api.common.AttributeKey;
 import io.opentelemetry.api.trace.Span;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
@@ -58,6 +59,22 @@ public class SpanAttributeStepExecution extends GeneralNonBlockingStepExecution
         OtelTraceService otelTraceService = ExtensionList.lookupSingleton(OtelTraceService.class);
         Run run = getContext().get(Run.class);
         FlowNode flowNode = getContext().get(FlowNode.class);
+        spanAttributes.forEach(SpanAttribute::convert);
+        // set the attributes after the pending pipeline events have been dispatched rather than waiting for them on the
+        // CPS VM thread, the spans of the step may not have been created yet
+        PipelineEventDispatcher.get().dispatch(run, "span attributes of node " + flowNode.getId(), () -> setSpanAttributes(otelTraceService, run, flowNode));
+        if (setOnChildren) {
+            getContext()
+                .newBodyInvoker()
+                .withContext(mergeAttributes(getContext(), spanAttributes))
+                .withCallback(NopCallback.INSTANCE)
+                .start();
+        }
+
+        return null;
+    }
+
+    private void setSpanAttributes(OtelTraceService otelTraceService, Run run, FlowNode flowNode) {
         spanAttributes.forEach(spanAttribute -> {
             switch (spanAttribute.getTarget()) {
                 case PIPELINE_ROOT_SPAN:
@@ -71,8 +88,6 @@ public class SpanAttributeStepExecution extends GeneralNonBlockingStepExecution
             }
         });
 
-        spanAttributes.forEach(SpanAttribute::convert);
-
         spanAttributes.forEach(spanAttribute -> {
             logger.log(Level.FINE, () -> "spanAttribute: run=\"" + run.getParent().getName() + "#" + run.getId() + "\", key=" + spanAttribute.getKey() + " value=\"" + spanAttribute.getValue() + "\" type=" + spanAttribute.getAttributeType());
             spanAttribute.getTargetSpan().setAttribute(spanAttribute.getAttributeKey(), spanAttribute.getConvertedValue());
@@ -98,14 +113,7 @@ public class SpanAttributeStepExecution extends GeneralNonBlockingStepExecution
                         throw new IllegalArgumentException("Unsupported target span '" + spanAttribute.getTarget() + "'. ");
                 }
             });
-            getContext()
-                .newBodyInvoker()
-                .withContext(mergeAttributes(getContext(), spanAttributes))
-                .withCallback(NopCallback.INSTANCE)
-                .start();
         }
-
-        return null;
     }
 
     private void addAttributeToRunAction(Actionable actionable, AttributeKey attributeKey, Object convertedValue) {
@@ -10,12 +10,28 @@ import io.opentelemetry.api.trace.Tracer;
 import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
 import org.jenkinsci.plugins.workflow.graph.FlowNode;
 import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.steps.StepDescriptor;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
 
+import java.util.Collections;
+import java.util.Set;
+
 public interface StepHandler extends Comparable<StepHandler> {
     boolean canCreateSpanBuilder(@NonNull FlowNode flowNode, @NonNull WorkflowRun run);
 
+    /**
+     * Optional declaration of the {@link StepDescriptor} classes (including subclasses) this handler supports, used to
+     * skip this handler for the other steps without invoking {@link #canCreateSpanBuilder(FlowNode, WorkflowRun)}.
+     * {@link #canCreateSpanBuilder(FlowNode, WorkflowRun)} is still invoked for the supported steps.
+     *
+     * @return the supported step descriptor classes, an empty set if this handler must be evaluated for every step
+     */
+    @NonNull
+    default Set<Class<? extends StepDescriptor>> getSupportedStepDescriptors() {
+        return Collections.emptySet();
+    }
+
     @NonNull
     SpanBuilder createSpanBuilder(@NonNull FlowNode node, @NonNull WorkflowRun run, @NonNull Tracer tracer);
 
@@ -91,6 +91,8 @@ public final class GlobalOpenTelemetrySdk {
                         .build();
                 });
 
+            // observe the export of the log records to apply backpressure on the pipeline logs
+            LogRecordExportBackpressure.configure(builder);
             if (!registerShutDownHook) {
                 builder.disableShutdownHook();
             }
@@ -0,0 +1,335 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.opentelemetry;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdkBuilder;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.logs.LogRecordProcessor;
+import io.opentelemetry.sdk.logs.ReadWriteLogRecord;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+import io.opentelemetry.sdk.logs.export.BatchLogRecordProcessor;
+import io.opentelemetry.sdk.logs.export.LogRecordExporter;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Makes the export of the log records observable so that the emitters can wait for the export instead of having the
+ * {@link BatchLogRecordProcessor} silently drop the records when its queue is full.
+ * <p>
+ * The log records pending export are the records emitted to the {@link BatchLogRecordProcessor} and not yet exported by
+ * the slowest {@link LogRecordExporter}. Their number is bounded by the queue size of the batch processor
+ * ({@code otel.blrp.max.queue.size}), the records emitted beyond this bound are dropped and counted here rather than by
+ * the batch processor.
+ * <p>
+ * Only applied when a single {@link BatchLogRecordProcessor} is configured, typically the OTLP exporter, otherwise
+ * {@link #awaitCapacity()} returns immediately.
+ */
+public final class LogRecordExportBackpressure {
+    private final static Logger logger = Logger.getLogger(LogRecordExportBackpressure.class.getName());
+
+    /**
+     * Backpressure of the last configured OpenTelemetry SDK
+     */
+    @CheckForNull
+    private static volatile LogRecordExportBackpressure current;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final List<ObservedLogRecordExporter> exporters = new CopyOnWriteArrayList<>();
+    private int batchProcessors;
+    private int capacity = Integer.MAX_VALUE;
+    private long exportTimeoutInNanos;
+    private long emittedLogRecords;
+    private long droppedLogRecords;
+    /**
+     * Records dropped or whose export failed, see {@link LossObservation}
+     */
+    private long lostLogRecords;
+    /**
+     * {@code true} once the records pending export were not exported within the export timeout, the next callers of
+     * {@link #awaitCapacity()} don't wait until the export resumes
+     */
+    private volatile boolean stalled;
+
+    LogRecordExportBackpressure() {
+    }
+
+    /**
+     * Observe the export of the log records of the SDK built by the given builder
+     */
+    public static void configure(@NonNull AutoConfiguredOpenTelemetrySdkBuilder builder) {
+        LogRecordExportBackpressure backpressure = new LogRecordExportBackpressure();
+        builder
+            .addLogRecordExporterCustomizer(backpressure::observe)
+            .addLogRecordProcessorCustomizer(backpressure::bound);
+        current = backpressure;
+    }
+
+    /**
+     * Wait, at most for the export timeout of the batch processor ({@code otel.blrp.export.timeout}), for the number
+     * of log records pending export to be below the queue size of the batch processor. Once a wait timed out, doesn't
+     * wait until the records pending export are below the queue size again.
+     *
+     * @return {@code false} if the records are still pending export after the timeout, the next emitted records are
+     * then dropped
+     */
+    public static boolean awaitCapacity() throws InterruptedException {
+        LogRecordExportBackpressure backpressure = current;
+        if (backpressure == null) {
+            return true;
+        }
+        if (backpressure.stalled) {
+            backpressure.stalled = !backpressure.awaitCapacity(0);
+            return !backpressure.stalled;
+        }
+        if (backpressure.awaitCapacity(backpressure.exportTimeoutInNanos)) {
+            return true;
+        }
+        logger.log(Level.FINE, "Log records not exported in time, don't wait for the export until it resumes");
+        backpressure.stalled = true;
+        return false;
+    }
+
+    boolean awaitCapacity(long timeoutInNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            long nanos = timeoutInNanos;
+            while (isFull()) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of log records dropped by the last configured OpenTelemetry SDK because too many records were
+     * pending export
+     */
+    public static long getDroppedLogRecords() {
+        LogRecordExportBackpressure backpressure = current;
+        if (backpressure == null) {
+            return 0;
+        }
+        backpressure.lock.lock();
+        try {
+            return backpressure.droppedLogRecords;
+        } finally {
+            backpressure.lock.unlock();
+        }
+    }
+
+    /**
+     * Start observing the loss of the log records emitted to the last configured OpenTelemetry SDK
+     */
+    @NonNull
+    public static LossObservation observeLosses() {
+        LogRecordExportBackpressure backpressure = current;
+        if (backpressure == null) {
+            return new LossObservation(null, 0);
+        }
+        backpressure.lock.lock();
+        try {
+            return new LossObservation(backpressure, backpressure.lostLogRecords);
+        } finally {
+            backpressure.lock.unlock();
+        }
+    }
+
+    /**
+     * Must be invoked holding the {@link #lock}
+     */
+    private boolean isFull() {
+        return batchProcessors == 1 && getPendingLogRecords() >= capacity;
+    }
+
+    /**
+     * Must be invoked holding the {@link #lock}
+     */
+    private long getPendingLogRecords() {
+        long exportedLogRecords = emittedLogRecords;
+        for (ObservedLogRecordExporter exporter : exporters) {
+            exportedLogRecords = Math.min(exportedLogRecords, exporter.exportedLogRecords);
+        }
+        return emittedLogRecords - exportedLogRecords;
+    }
+
+    @NonNull
+    LogRecordExporter observe(@NonNull LogRecordExporter exporter, @NonNull ConfigProperties config) {
+        ObservedLogRecordExporter observedExporter = new ObservedLogRecordExporter(exporter);
+        exporters.add(observedExporter);
+        return observedExporter;
+    }
+
+    @NonNull
+    LogRecordProcessor bound(@NonNull LogRecordProcessor processor, @NonNull ConfigProperties config) {
+        if (!(processor instanceof BatchLogRecordProcessor)) {
+            return processor;
+        }
+        lock.lock();
+        try {
+            batchProcessors++;
+            capacity = Math.max(1, config.getInt("otel.blrp.max.queue.size", 2048));
+            exportTimeoutInNanos = config.getDuration("otel.blrp.export.timeout", Duration.ofSeconds(30)).toNanos();
+        } finally {
+            lock.unlock();
+        }
+        return new BoundedLogRecordProcessor(processor);
+    }
+
+    private void onExported(@NonNull ObservedLogRecordExporter exporter, int logRecords, boolean success) {
+        lock.lock();
+        try {
+            exporter.exportedLogRecords += logRecords;
+            if (!success) {
+                lostLogRecords += logRecords;
+            }
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Observes whether log records emitted to the SDK since the start of the observation have been dropped or have
+     * failed to be exported. The records are not told apart, a loss is reported whatever the emitter of the lost
+     * records. The losses of the {@link BatchLogRecordProcessor}s are only observed when a single one is configured
+     * and the exports completing after {@link #isLossless()} are not accounted.
+     */
+    public static final class LossObservation {
+        @CheckForNull
+        private final LogRecordExportBackpressure backpressure;
+        private final long lostLogRecords;
+
+        LossObservation(@CheckForNull LogRecordExportBackpressure backpressure, long lostLogRecords) {
+            this.backpressure = backpressure;
+            this.lostLogRecords = lostLogRecords;
+        }
+
+        /**
+         * @return {@code false} if log records may have been lost since the start of the observation, including when
+         * the OpenTelemetry SDK has been reconfigured meanwhile
+         */
+        public boolean isLossless() {
+            if (backpressure != current) {
+                return false;
+            }
+            if (backpressure == null) {
+                return true;
+            }
+            backpressure.lock.lock();
+            try {
+                return backpressure.batchProcessors <= 1 && backpressure.lostLogRecords == lostLogRecords;
+            } finally {
+                backpressure.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Counts the records exported, successfully or not, the records of a failed export are not retried
+     */
+    final class ObservedLogRecordExporter implements LogRecordExporter {
+        final LogRecordExporter delegate;
+        /**
+         * Guarded by {@link #lock}
+         */
+        long exportedLogRecords;
+
+        ObservedLogRecordExporter(@NonNull LogRecordExporter delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public CompletableResultCode export(@NonNull Collection<LogRecordData> logs) {
+            CompletableResultCode result = delegate.export(logs);
+            int logRecords = logs.size();
+            result.whenComplete(() -> onExported(this, logRecords, result.isSuccess()));
+            return result;
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return delegate.flush();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return delegate.shutdown();
+        }
+
+        @Override
+        public String toString() {
+            return "ObservedLogRecordExporter{" + delegate + '}';
+        }
+    }
+
+    /**
+     * Drops the records rather than overflowing the queue of the {@link BatchLogRecordProcessor}
+     */
+    final class BoundedLogRecordProcessor implements LogRecordProcessor {
+        final LogRecordProcessor delegate;
+
+        BoundedLogRecordProcessor(@NonNull LogRecordProcessor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onEmit(@NonNull Context context, @NonNull ReadWriteLogRecord logRecord) {
+            lock.lock();
+            try {
+                if (isFull()) {
+                    droppedLogRecords++;
+                    lostLogRecords++;
+                    if (droppedLogRecords == 1) {
+                        logger.log(Level.WARNING, "Too many log records pending export, drop log records");
+                    } else {
+                        logger.log(Level.FINE, () -> "Too many log records pending export, " + droppedLogRecords + " log records dropped");
+                    }
+                    return;
+                }
+                emittedLogRecords++;
+            } finally {
+                lock.unlock();
+            }
+            delegate.onEmit(context, logRecord);
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            // don't wait for the export of the shut down SDK
+            if (current == LogRecordExportBackpressure.this) {
+                current = null;
+            }
+            return delegate.shutdown();
+        }
+
+        @Override
+        public CompletableResultCode forceFlush() {
+            return delegate.forceFlush();
+        }
+
+        @Override
+        public String toString() {
+            return "BoundedLogRecordProcessor{" + delegate + '}';
+        }
+    }
+}
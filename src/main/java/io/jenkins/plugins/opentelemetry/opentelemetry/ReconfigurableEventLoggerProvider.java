@@ -25,11 +25,15 @@ import java.util.concurrent.ConcurrentMap;
  * All instantiated eventLoggers are reconfigured when the configuration changes, when
  * {@link ReconfigurableEventLoggerProvider#setDelegate(EventLoggerProvider)} is invoked.
  * </p>
+ * <p>
+ * Delegates are published through volatile fields so that emitting events doesn't acquire any lock, only the
+ * reconfiguration and the creation of event loggers are serialized.
+ * </p>
  */
 class ReconfigurableEventLoggerProvider implements EventLoggerProvider {
 
     private final ConcurrentMap<InstrumentationScope, ReconfigurableEventLogger> eventLoggers = new ConcurrentHashMap<>();
-    private EventLoggerProvider delegate = EventLoggerProvider.noop();
+    private volatile EventLoggerProvider delegate = EventLoggerProvider.noop();
 
     @Override
     public EventLoggerBuilder eventLoggerBuilder(String instrumentationScopeName) {
@@ -38,10 +42,18 @@ class ReconfigurableEventLoggerProvider implements EventLoggerProvider {
 
     @Override
     public EventLogger get(String instrumentationScopeName) {
-        return eventLoggers.computeIfAbsent(new InstrumentationScope(instrumentationScopeName), key -> new ReconfigurableEventLogger(delegate.get(key.instrumentationScopeName)));
+        InstrumentationScope instrumentationScope = new InstrumentationScope(instrumentationScopeName);
+        ReconfigurableEventLogger eventLogger = eventLoggers.get(instrumentationScope);
+        if (eventLogger != null) {
+            return eventLogger;
+        }
+        synchronized (this) {
+            // don't create an event logger with a delegate that is being replaced
+            return eventLoggers.computeIfAbsent(instrumentationScope, key -> new ReconfigurableEventLogger(delegate.get(key.instrumentationScopeName)));
+        }
     }
 
-    public void setDelegate(EventLoggerProvider delegateEventLoggerBuilder) {
+    public synchronized void setDelegate(EventLoggerProvider delegateEventLoggerBuilder) {
         this.delegate = delegateEventLoggerBuilder;
         eventLoggers.forEach((key, reconfigurableEventLogger) -> {
             EventLoggerBuilder eventLoggerBuilder = delegateEventLoggerBuilder.eventLoggerBuilder(key.instrumentationScopeName);
@@ -53,7 +65,7 @@ class ReconfigurableEventLoggerProvider implements EventLoggerProvider {
 
     @VisibleForTesting
     protected static class ReconfigurableEventLogger implements EventLogger {
-        EventLogger delegateEventLogger;
+        volatile EventLogger delegateEventLogger;
 
         public ReconfigurableEventLogger(EventLogger delegateEventLogger) {
             this.delegateEventLogger = Objects.requireNonNull(delegateEventLogger);
@@ -25,9 +25,13 @@ import java.util.concurrent.ConcurrentMap;
  * All instantiated loggers are reconfigured when the configuration changes, when
  * {@link ReconfigurableLoggerProvider#setDelegate(LoggerProvider)} is invoked.
  * </p>
+ * <p>
+ * Delegates are published through volatile fields so that emitting log records doesn't acquire any lock, only the
+ * reconfiguration and the creation of loggers are serialized.
+ * </p>
  */
 class ReconfigurableLoggerProvider implements LoggerProvider {
-    private LoggerProvider delegate;
+    private volatile LoggerProvider delegate;
 
     private final ConcurrentMap<InstrumentationScope, ReconfigurableLogger> loggers = new ConcurrentHashMap<>();
 
@@ -47,10 +51,17 @@ class ReconfigurableLoggerProvider implements LoggerProvider {
     @Override
     public Logger get(String instrumentationScopeName) {
         InstrumentationScope instrumentationScope = new InstrumentationScope(instrumentationScopeName);
-        return loggers.computeIfAbsent(instrumentationScope, scope -> new ReconfigurableLogger(delegate.get(instrumentationScopeName)));
+        ReconfigurableLogger logger = loggers.get(instrumentationScope);
+        if (logger != null) {
+            return logger;
+        }
+        synchronized (this) {
+            // don't create a logger with a delegate that is being replaced
+            return loggers.computeIfAbsent(instrumentationScope, scope -> new ReconfigurableLogger(delegate.get(instrumentationScopeName)));
+        }
     }
 
-    public void setDelegate(LoggerProvider delegate) {
+    public synchronized void setDelegate(LoggerProvider delegate) {
         this.delegate = delegate;
         loggers.forEach((instrumentationScope, reconfigurableTracer) -> {
             LoggerBuilder loggerBuilder = delegate.loggerBuilder(instrumentationScope.instrumentationScopeName);
@@ -95,18 +106,18 @@ class ReconfigurableLoggerProvider implements LoggerProvider {
 
     @VisibleForTesting
     protected static class ReconfigurableLogger implements Logger {
-        Logger delegate;
+        volatile Logger delegate;
 
         public ReconfigurableLogger(Logger delegate) {
             this.delegate = delegate;
         }
 
         @Override
-        public synchronized LogRecordBuilder logRecordBuilder() {
+        public LogRecordBuilder logRecordBuilder() {
             return delegate.logRecordBuilder();
         }
 
-        public synchronized void setDelegate(Logger delegate) {
+        public void setDelegate(Logger delegate) {
             this.delegate = delegate;
         }
     }
@@ -27,6 +27,7 @@ import io.opentelemetry.api.trace.TracerProvider;
 import io.opentelemetry.context.propagation.ContextPropagators;
 import io.opentelemetry.sdk.OpenTelemetrySdk;
 import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdk;
+import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdkBuilder;
 import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
 import io.opentelemetry.sdk.common.CompletableResultCode;
 import io.opentelemetry.sdk.logs.internal.SdkEventLoggerProvider;
@@ -97,8 +98,10 @@ public class ReconfigurableOpenTelemetry implements OpenTelemetry, Closeable {
             logger.log(Level.FINE, "initializeOtlp");
 
             // OPENTELEMETRY SDK
-            OpenTelemetrySdk openTelemetrySdk = AutoConfiguredOpenTelemetrySdk
-                .builder()
+            AutoConfiguredOpenTelemetrySdkBuilder openTelemetrySdkBuilder = AutoConfiguredOpenTelemetrySdk.builder();
+            // observe the export of the log records to apply backpressure on the pipeline logs
+            LogRecordExportBackpressure.configure(openTelemetrySdkBuilder);
+            OpenTelemetrySdk openTelemetrySdk = openTelemetrySdkBuilder
                 // properties
                 .addPropertiesSupplier(() -> openTelemetryProperties)
                 .addPropertiesCustomizer((Function<ConfigProperties, Map<String, String>>) configProperties -> {
@@ -26,10 +26,14 @@ import java.util.concurrent.ConcurrentMap;
  * All instantiated tracers are reconfigured when the configuration changes, when
  * {@link ReconfigurableTracerProvider#setDelegate(TracerProvider)} is invoked.
  * </p>
+ * <p>
+ * Delegates are published through volatile fields so that starting spans doesn't acquire any lock, only the
+ * reconfiguration and the creation of tracers are serialized.
+ * </p>
  */
 class ReconfigurableTracerProvider implements TracerProvider {
 
-    private TracerProvider delegate;
+    private volatile TracerProvider delegate;
 
     private final ConcurrentMap<InstrumentationScope, ReconfigurableTracer> tracers = new ConcurrentHashMap<>();
 
@@ -42,10 +46,18 @@ class ReconfigurableTracerProvider implements TracerProvider {
     }
 
     @Override
-    public synchronized Tracer get(String instrumentationScopeName) {
-        return tracers.computeIfAbsent(
-            new InstrumentationScope(instrumentationScopeName),
-            instrumentationScope -> new ReconfigurableTracer(delegate.get(instrumentationScope.instrumentationScopeName)));
+    public Tracer get(String instrumentationScopeName) {
+        InstrumentationScope instrumentationScope = new InstrumentationScope(instrumentationScopeName);
+        ReconfigurableTracer tracer = tracers.get(instrumentationScope);
+        if (tracer != null) {
+            return tracer;
+        }
+        synchronized (this) {
+            // don't create a tracer with a delegate that is being replaced
+            return tracers.computeIfAbsent(
+                instrumentationScope,
+                scope -> new ReconfigurableTracer(delegate.get(scope.instrumentationScopeName)));
+        }
     }
 
     public synchronized void setDelegate(TracerProvider delegate) {
@@ -70,7 +82,7 @@ class ReconfigurableTracerProvider implements TracerProvider {
         return new ReconfigurableTracerBuilder(delegate.tracerBuilder(instrumentationScopeName), instrumentationScopeName);
     }
 
-    public synchronized TracerProvider getDelegate() {
+    public TracerProvider getDelegate() {
         return delegate;
     }
 
@@ -110,22 +122,22 @@ class ReconfigurableTracerProvider implements TracerProvider {
 
     @VisibleForTesting
     protected static class ReconfigurableTracer implements Tracer {
-        Tracer delegate;
+        volatile Tracer delegate;
 
         public ReconfigurableTracer(Tracer delegate) {
             this.delegate = delegate;
         }
 
         @Override
-        public synchronized SpanBuilder spanBuilder(@Nonnull String spanName) {
+        public SpanBuilder spanBuilder(@Nonnull String spanName) {
             return delegate.spanBuilder(spanName);
         }
 
-        public synchronized void setDelegate(Tracer delegate) {
+        public void setDelegate(Tracer delegate) {
             this.delegate = delegate;
         }
 
-        public synchronized Tracer getDelegate() {
+        public Tracer getDelegate() {
             return delegate;
         }
     }
@@ -98,6 +98,17 @@ public final class JenkinsOtelSemanticAttributes {
     public static final AttributeKey<List<String>> JENKINS_STEP_INTERRUPTION_CAUSES = AttributeKey.stringArrayKey("jenkins.pipeline.step.interruption.causes");
 
     public static final AttributeKey<String> JENKINS_CREDENTIALS_ID = AttributeKey.stringKey("jenkins.credentials.id");
+    /**
+     * Number of steps folded in an aggregated step span once the span budget of the run is exceeded
+     */
+    public static final AttributeKey<Long> JENKINS_STEP_AGGREGATED_COUNT = AttributeKey.longKey("jenkins.pipeline.step.aggregated.count");
+    public static final AttributeKey<Long> JENKINS_STEP_AGGREGATED_FAILURE_COUNT = AttributeKey.longKey("jenkins.pipeline.step.aggregated.failure.count");
+    public static final AttributeKey<Long> JENKINS_STEP_AGGREGATED_DURATION_MILLIS_TOTAL = AttributeKey.longKey("jenkins.pipeline.step.aggregated.durationMillis.total");
+    public static final AttributeKey<Long> JENKINS_STEP_AGGREGATED_DURATION_MILLIS_MIN = AttributeKey.longKey("jenkins.pipeline.step.aggregated.durationMillis.min");
+    public static final AttributeKey<Long> JENKINS_STEP_AGGREGATED_DURATION_MILLIS_MAX = AttributeKey.longKey("jenkins.pipeline.step.aggregated.durationMillis.max");
+    public static final AttributeKey<Long> JENKINS_STEP_AGGREGATED_DURATION_MILLIS_P50 = AttributeKey.longKey("jenkins.pipeline.step.aggregated.durationMillis.p50");
+    public static final AttributeKey<Long> JENKINS_STEP_AGGREGATED_DURATION_MILLIS_P90 = AttributeKey.longKey("jenkins.pipeline.step.aggregated.durationMillis.p90");
+    public static final AttributeKey<Long> JENKINS_STEP_AGGREGATED_DURATION_MILLIS_P99 = AttributeKey.longKey("jenkins.pipeline.step.aggregated.durationMillis.p99");
 
     public static final String JENKINS = "jenkins";
 
@@ -142,9 +153,74 @@ public final class JenkinsOtelSemanticAttributes {
     public static final AttributeKey<String> JENKINS_ANSI_ANNOTATIONS = AttributeKey.stringKey("jenkins.ansi.annotations");
     public static final String JENKINS_ANSI_ANNOTATIONS_POSITION_FIELD = "position";
     public static final String JENKINS_ANSI_ANNOTATIONS_NOTE_FIELD = "note";
+    /**
+     * Number of log lines of a log record coalescing several lines separated by {@code \n}
+     */
+    public static final AttributeKey<Long> JENKINS_LOG_LINE_COUNT = AttributeKey.longKey("jenkins.log.line.count");
 
     public static final String OTEL_INSTRUMENTATION_JENKINS_WEB_ENABLED = "otel.instrumentation.jenkins.web.enabled";
     public static final String OTEL_INSTRUMENTATION_JENKINS_REMOTE_SPAN_ENABLED = "otel.instrumentation.jenkins.remote.span.enabled";
+    /**
+     * Dispatch the pipeline events to the pipeline listeners asynchronously rather than on the CPS VM thread
+     */
+    public static final String OTEL_INSTRUMENTATION_JENKINS_PIPELINE_ASYNC_ENABLED = "otel.instrumentation.jenkins.pipeline.async.enabled";
+    public static final String OTEL_INSTRUMENTATION_JENKINS_PIPELINE_ASYNC_THREADS = "otel.instrumentation.jenkins.pipeline.async.threads";
+    public static final String OTEL_INSTRUMENTATION_JENKINS_PIPELINE_ASYNC_QUEUE_CAPACITY = "otel.instrumentation.jenkins.pipeline.async.queue.capacity";
+    public static final String OTEL_INSTRUMENTATION_JENKINS_PIPELINE_ASYNC_FLUSH_TIMEOUT = "otel.instrumentation.jenkins.pipeline.async.flush.timeout";
+    /**
+     * Default tracing granularity of pipeline builds: {@code full}, {@code stages} or {@code run-only}
+     */
+    public static final String OTEL_INSTRUMENTATION_JENKINS_PIPELINE_TRACING_GRANULARITY = "otel.instrumentation.jenkins.pipeline.tracing.granularity";
+    /**
+     * Maximum number of step spans per pipeline run, the spans of the steps exceeding the budget are aggregated
+     */
+    public static final String OTEL_INSTRUMENTATION_JENKINS_PIPELINE_STEP_SPANS_MAX_PER_RUN = "otel.instrumentation.jenkins.pipeline.step.spans.max.per.run";
+    /**
+     * Maximum number of step spans per parent span (stage, parallel branch, node...), the spans of the steps exceeding the budget are aggregated
+     */
+    public static final String OTEL_INSTRUMENTATION_JENKINS_PIPELINE_STEP_SPANS_MAX_PER_PARENT = "otel.instrumentation.jenkins.pipeline.step.spans.max.per.parent";
+    /**
+     * Coalesce the consecutive log lines of a pipeline step in one log record
+     */
+    public static final String OTEL_INSTRUMENTATION_JENKINS_LOGS_CHUNKING_ENABLED = "otel.instrumentation.jenkins.logs.chunking.enabled";
+    public static final String OTEL_INSTRUMENTATION_JENKINS_LOGS_CHUNKING_MAX_BYTES = "otel.instrumentation.jenkins.logs.chunking.max.bytes";
+    public static final String OTEL_INSTRUMENTATION_JENKINS_LOGS_CHUNKING_MAX_DELAY = "otel.instrumentation.jenkins.logs.chunking.max.delay";
+    /**
+     * Collapse the runs of consecutive log lines that are identical or only differ by their numbers
+     */
+    public static final String OTEL_INSTRUMENTATION_JENKINS_LOGS_REPEATED_LINES_COLLAPSING_ENABLED = "otel.instrumentation.jenkins.logs.repeated.lines.collapsing.enabled";
+    public static final String OTEL_INSTRUMENTATION_JENKINS_LOGS_REPEATED_LINES_COLLAPSING_WINDOW = "otel.instrumentation.jenkins.logs.repeated.lines.collapsing.window";
+    /**
+     * Policy of the bounded queue between the pipeline log streams and the OpenTelemetry logger when the queue is full:
+     * {@code none}, {@code block}, {@code drop_oldest}, or {@code spill}
+     */
+    public static final String OTEL_INSTRUMENTATION_JENKINS_LOGS_QUEUE_POLICY = "otel.instrumentation.jenkins.logs.queue.policy";
+    public static final String OTEL_INSTRUMENTATION_JENKINS_LOGS_QUEUE_CAPACITY = "otel.instrumentation.jenkins.logs.queue.capacity";
+    /**
+     * Maximum time for the close of a log stream to wait for its queued records to be emitted, the records left are dropped
+     */
+    public static final String OTEL_INSTRUMENTATION_JENKINS_LOGS_QUEUE_CLOSE_TIMEOUT = "otel.instrumentation.jenkins.logs.queue.close.timeout";
+    /**
+     * Write asynchronously the copy of the pipeline logs on the disk of the Jenkins Controller ({@code otel.logs.mirror_to_disk})
+     */
+    public static final String OTEL_INSTRUMENTATION_JENKINS_LOGS_MIRROR_ASYNC_ENABLED = "otel.instrumentation.jenkins.logs.mirror.async.enabled";
+    public static final String OTEL_INSTRUMENTATION_JENKINS_LOGS_MIRROR_ASYNC_BUFFER_SIZE = "otel.instrumentation.jenkins.logs.mirror.async.buffer.size";
+    /**
+     * Budget of the retrieval of a pipeline log from the observability backend per request, the log is truncated when
+     * the budget is exhausted
+     */
+    public static final String OTEL_INSTRUMENTATION_JENKINS_LOGS_RETRIEVAL_MAX_DURATION = "otel.instrumentation.jenkins.logs.retrieval.max.duration";
+    public static final String OTEL_INSTRUMENTATION_JENKINS_LOGS_RETRIEVAL_MAX_BYTES = "otel.instrumentation.jenkins.logs.retrieval.max.bytes";
+    /**
+     * Number of pages of a pipeline log loaded from the observability backend ahead of the rendering, {@code 0} to
+     * load the pages on demand
+     */
+    public static final String OTEL_INSTRUMENTATION_JENKINS_LOGS_RETRIEVAL_PREFETCHED_PAGES = "otel.instrumentation.jenkins.logs.retrieval.prefetched.pages";
+    /**
+     * Parallel retrieval of the pipeline logs from Elasticsearch in slices of the point in time
+     */
+    public static final String OTEL_INSTRUMENTATION_JENKINS_LOGS_RETRIEVAL_SLICES = "otel.instrumentation.jenkins.logs.retrieval.slices";
+    public static final String OTEL_INSTRUMENTATION_JENKINS_LOGS_RETRIEVAL_SLICES_MIN_DOCUMENTS = "otel.instrumentation.jenkins.logs.retrieval.slices.min.documents";
     /**
      * https://opentelemetry.io/docs/zero-code/java/agent/configuration/#capturing-servlet-request-parameters
      */
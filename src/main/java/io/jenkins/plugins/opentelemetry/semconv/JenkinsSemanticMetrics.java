@@ -38,6 +38,19 @@ public class JenkinsSemanticMetrics {
     public static final String JENKINS_SCM_EVENT_QUEUED_TASKS =      "jenkins.scm.event.queued_tasks";
     public static final String JENKINS_SCM_EVENT_COMPLETED_TASKS =   "jenkins.scm.event.completed_tasks";
 
+    public static final String JENKINS_PIPELINE_EVENTS_QUEUED =         "jenkins.pipeline.events.queued";
+    public static final String JENKINS_PIPELINE_EVENTS_DISPATCHED =     "jenkins.pipeline.events.dispatched";
+    public static final String JENKINS_PIPELINE_EVENTS_BACKPRESSURE =   "jenkins.pipeline.events.backpressure";
+    public static final String JENKINS_PIPELINE_EVENTS_DISPATCH_LAG =   "jenkins.pipeline.events.dispatch.lag";
+    public static final String JENKINS_PIPELINE_PURGE_FLOW_NODES =      "jenkins.pipeline.purge.flow_nodes";
+    public static final String JENKINS_PIPELINE_PURGE_DURATION =        "jenkins.pipeline.purge.duration";
+    public static final String JENKINS_PIPELINE_LOGS_LINES_EMITTED =    "jenkins.pipeline.logs.lines.emitted";
+    public static final String JENKINS_PIPELINE_LOGS_LINES_DROPPED =    "jenkins.pipeline.logs.lines.dropped";
+    public static final String JENKINS_PIPELINE_LOGS_LINES_SPILLED =    "jenkins.pipeline.logs.lines.spilled";
+    public static final String JENKINS_PIPELINE_LOGS_MIRROR_BUFFERED =  "jenkins.pipeline.logs.mirror.buffered";
+    public static final String JENKINS_PIPELINE_LOGS_MIRROR_BYTES_WRITTEN = "jenkins.pipeline.logs.mirror.bytes_written";
+    public static final String JENKINS_PIPELINE_LOGS_MIRROR_WRITE_DURATION = "jenkins.pipeline.logs.mirror.write.duration";
+
 
 
     public static final String LOGIN =           "login";
@@ -0,0 +1,44 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the JMH benchmarks of the plugin ({@code *Benchmark} classes).
+ * <p>
+ * Skipped by default, run with {@code mvn test -Dbenchmark}. A single benchmark can be selected with
+ * {@code -Dbenchmark.include=OtelLogOutputStreamBenchmark}.
+ */
+public class BenchmarkRunner {
+
+    @Test
+    public void runJmhBenchmarks() throws Exception {
+        Assume.assumeTrue("JMH benchmarks are only executed with -Dbenchmark", Boolean.getBoolean("benchmark"));
+
+        Options options = new OptionsBuilder()
+            .include(getClass().getPackage().getName() + ".*" + System.getProperty("benchmark.include", "Benchmark"))
+            .mode(Mode.AverageTime)
+            .timeUnit(TimeUnit.MICROSECONDS)
+            .warmupIterations(2)
+            .measurementIterations(5)
+            .forks(1)
+            .shouldFailOnError(true)
+            .shouldDoGC(true)
+            .resultFormat(ResultFormatType.JSON)
+            .result("target/jmh-report.json")
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.backend.elastic;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import io.opentelemetry.api.trace.TracerProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+
+/**
+ * Time to render a log of 50,000 lines retrieved from a local stand-in of Elasticsearch answering each page with a
+ * latency of 20ms, rendering each line costing a few microseconds, with and without loading the pages ahead of the
+ * rendering, searching the log sequentially or in parallel slices.
+ */
+public class ElasticsearchBuildLogsLineIteratorBenchmark {
+    static final int LINES = 50_000;
+
+    @State(Scope.Benchmark)
+    public static class ElasticsearchState {
+        @Param({"0", "1", "2"})
+        int prefetchedPages;
+        @Param({"1", "4"})
+        int slices;
+
+        FakeElasticsearchServer elasticsearch;
+        ElasticsearchClient esClient;
+
+        @Setup
+        public void setup() throws IOException {
+            elasticsearch = new FakeElasticsearchServer();
+            for (int i = 0; i < LINES; i++) {
+                elasticsearch.addLogLine(1_700_000_000_000L + i / 10, "[INFO] Compiling 312 source files with javac [debug release 11] to target/classes #" + i);
+            }
+            elasticsearch.searchLatencyInMillis = 20;
+            esClient = elasticsearch.newClient();
+        }
+
+        @TearDown
+        public void tearDown() throws IOException {
+            esClient._transport().close();
+            elasticsearch.close();
+        }
+    }
+
+    @Benchmark
+    public long renderLog(ElasticsearchState state) throws IOException {
+        long renderedChars = 0;
+        try (ElasticsearchBuildLogsLineIterator lines = new ElasticsearchBuildLogsLineIterator("my-pipeline", 1, "0af7651916cd43dd8448eb211c80319c", state.esClient, TracerProvider.noop().get("benchmark"))) {
+            lines.setPrefetchedPages(state.prefetchedPages);
+            lines.setParallelRetrieval(state.slices, 0);
+            while (lines.hasNext()) {
+                Blackhole.consumeCPU(2_000);
+                renderedChars += lines.next().length();
+            }
+        }
+        return renderedChars;
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.backend.elastic;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.jenkins.plugins.opentelemetry.job.log.ConsoleNotes;
+import io.opentelemetry.api.trace.TracerProvider;
+import net.sf.json.JSONArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ElasticsearchBuildLogsLineIteratorTest {
+
+    FakeElasticsearchServer elasticsearch;
+    ElasticsearchClient esClient;
+
+    @Before
+    public void before() throws IOException {
+        elasticsearch = new FakeElasticsearchServer();
+        esClient = elasticsearch.newClient();
+    }
+
+    @After
+    public void after() throws IOException {
+        esClient._transport().close();
+        elasticsearch.close();
+    }
+
+    @Test
+    public void testSearchAfterWithIdenticalTimestampsAcrossPages() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            // 7 lines per millisecond so that the boundaries of the pages fall between lines with the same timestamp
+            elasticsearch.addLogLine(1_700_000_000_000L + i / 7, "line-" + i);
+            expected.add("line-" + i);
+        }
+
+        List<String> actual = new ArrayList<>();
+        try (ElasticsearchBuildLogsLineIterator lines = newLineIterator()) {
+            while (lines.hasNext()) {
+                actual.add(lines.next());
+            }
+        }
+        assertEquals(expected, actual);
+        assertEquals(0, elasticsearch.openPointInTimes.get());
+
+        List<JsonNode> searchRequests = elasticsearch.searchRequests;
+        assertNull(searchRequests.get(0).get("search_after"));
+        for (int i = 1; i < searchRequests.size(); i++) {
+            JsonNode searchRequest = searchRequests.get(i);
+            assertTrue(searchRequest.has("search_after"));
+            assertEquals(0, searchRequest.path("from").asInt(0));
+            assertFalse(searchRequest.path("pit").path("keep_alive").isMissingNode());
+        }
+        // the page size doubles when pages are full: 200 + 400 + 400 of 800, then the empty last page
+        assertEquals(List.of(200, 400, 800, 800), searchRequests.stream().map(searchRequest -> searchRequest.path("size").asInt()).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testMoreThanTenThousandLines() throws Exception {
+        for (int i = 0; i < 25_000; i++) {
+            elasticsearch.addLogLine(1_700_000_000_000L + i, "line-" + i);
+        }
+        long lineCount = 0;
+        String lastLine = null;
+        try (ElasticsearchBuildLogsLineIterator lines = newLineIterator()) {
+            while (lines.hasNext()) {
+                lastLine = lines.next();
+                lineCount++;
+            }
+        }
+        assertEquals(25_000, lineCount);
+        assertEquals("line-24999", lastLine);
+        assertTrue(elasticsearch.searchRequests.stream().allMatch(searchRequest -> searchRequest.path("from").asInt(0) == 0));
+    }
+
+    @Test
+    public void testSkipBeyondMaxResultWindow() throws Exception {
+        for (int i = 0; i < 12_500; i++) {
+            elasticsearch.addLogLine(1_700_000_000_000L + i, "line-" + i);
+        }
+        try (ElasticsearchBuildLogsLineIterator lines = newLineIterator()) {
+            lines.skipLines(12_000);
+            assertEquals("line-12000", lines.next());
+        }
+        List<JsonNode> skipRequests = elasticsearch.searchRequests.stream()
+            .filter(searchRequest -> !searchRequest.path("_source").asBoolean(true))
+            .collect(Collectors.toList());
+        assertEquals("3 pages of " + ElasticsearchBuildLogsLineIterator.MAX_PAGE_SIZE + " documents without source", 3, skipRequests.size());
+        assertTrue(elasticsearch.searchRequests.stream().allMatch(searchRequest -> searchRequest.path("from").asInt(0) == 0));
+    }
+
+    @Test
+    public void testRetrievalBudget() throws Exception {
+        for (int i = 0; i < 1_000; i++) {
+            elasticsearch.addLogLine(1_700_000_000_000L + i, "line-" + i);
+        }
+        List<String> actual = new ArrayList<>();
+        try (ElasticsearchBuildLogsLineIterator lines = newLineIterator()) {
+            lines.setRetrievalBudget(Duration.ZERO, 1_000);
+            while (lines.hasNext()) {
+                actual.add(lines.next());
+            }
+        }
+        // the budget is checked between pages
+        assertEquals(ElasticsearchBuildLogsLineIterator.PAGE_SIZE + 1, actual.size());
+        assertEquals("line-199", actual.get(ElasticsearchBuildLogsLineIterator.PAGE_SIZE - 1));
+        assertTrue(actual.get(ElasticsearchBuildLogsLineIterator.PAGE_SIZE), actual.get(ElasticsearchBuildLogsLineIterator.PAGE_SIZE).startsWith("[OpenTelemetry] Log truncated"));
+    }
+
+    @Test
+    public void testNoTruncationWithinBudget() throws Exception {
+        for (int i = 0; i < 1_000; i++) {
+            elasticsearch.addLogLine(1_700_000_000_000L + i, "line-" + i);
+        }
+        List<String> actual = new ArrayList<>();
+        try (ElasticsearchBuildLogsLineIterator lines = newLineIterator()) {
+            lines.setRetrievalBudget(Duration.ofMinutes(5), 1_000_000);
+            while (lines.hasNext()) {
+                actual.add(lines.next());
+            }
+        }
+        assertEquals(1_000, actual.size());
+        assertEquals("line-999", actual.get(999));
+    }
+
+    @Test
+    public void testPrefetchedPages() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) {
+            elasticsearch.addLogLine(1_700_000_000_000L + i / 7, "line-" + i);
+            expected.add("line-" + i);
+        }
+        List<String> actual = new ArrayList<>();
+        try (ElasticsearchBuildLogsLineIterator lines = newLineIterator()) {
+            lines.setPrefetchedPages(2);
+            while (lines.hasNext()) {
+                actual.add(lines.next());
+            }
+        }
+        assertEquals(expected, actual);
+        assertEquals(0, elasticsearch.openPointInTimes.get());
+    }
+
+    @Test
+    public void testCloseWhilePrefetching() throws Exception {
+        for (int i = 0; i < 5_000; i++) {
+            elasticsearch.addLogLine(1_700_000_000_000L + i, "line-" + i);
+        }
+        elasticsearch.searchLatencyInMillis = 50;
+        try (ElasticsearchBuildLogsLineIterator lines = newLineIterator()) {
+            lines.setPrefetchedPages(2);
+            assertEquals("line-0", lines.next());
+        }
+        assertEquals("the point in time is closed after the cancellation of the read ahead", 0, elasticsearch.openPointInTimes.get());
+    }
+
+    @Test
+    public void testSourceFiltering() throws Exception {
+        String annotations = "[{\"position\":2,\"note\":\"note-1\"}]";
+        for (int i = 0; i < 10; i++) {
+            ObjectNode document = elasticsearch.newObjectNode();
+            ObjectNode labels = document.putObject("labels");
+            labels.put("jenkins_pipeline_step_id", "42");
+            // the ANSI annotations stored with or without replacing the dots of the attribute name
+            labels.put(i % 2 == 0 ? "jenkins_ansi_annotations" : "jenkins.ansi.annotations", annotations);
+            document.putObject("resource").put("service.name", "jenkins").put("host.name", "ci.example.com");
+            elasticsearch.addLogDocument(1_700_000_000_000L + i, "é link " + i, document);
+        }
+        List<String> actual = new ArrayList<>();
+        try (ElasticsearchBuildLogsLineIterator lines = newLineIterator()) {
+            while (lines.hasNext()) {
+                actual.add(lines.next());
+            }
+        }
+        assertEquals(10, actual.size());
+        assertEquals(ConsoleNotes.readFormattedMessage("é link 0", JSONArray.fromObject(annotations)), actual.get(0));
+        assertEquals(ConsoleNotes.readFormattedMessage("é link 1", JSONArray.fromObject(annotations)), actual.get(1));
+
+        JsonNode sourceIncludes = elasticsearch.searchRequests.get(0).path("_source").path("includes");
+        List<String> actualSourceIncludes = new ArrayList<>();
+        sourceIncludes.forEach(include -> actualSourceIncludes.add(include.asText()));
+        assertEquals(ElasticsearchLogDocument.SOURCE_INCLUDES, actualSourceIncludes);
+    }
+
+    @Test
+    public void testParallelSlices() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            // identical timestamps across the slices, the lines are ordered by the tiebreaker
+            elasticsearch.addLogLine(1_700_000_000_000L + i / 7, "line-" + i);
+            expected.add("line-" + i);
+        }
+        for (int prefetchedPages = 0; prefetchedPages <= 1; prefetchedPages++) {
+            elasticsearch.searchRequests.clear();
+            List<String> actual = new ArrayList<>();
+            try (ElasticsearchBuildLogsLineIterator lines = newLineIterator()) {
+                lines.setPrefetchedPages(prefetchedPages);
+                lines.setParallelRetrieval(4, 1_000);
+                while (lines.hasNext()) {
+                    actual.add(lines.next());
+                }
+            }
+            assertEquals(expected, actual);
+            assertEquals(0, elasticsearch.openPointInTimes.get());
+            assertEquals(Set.of("0", "1", "2", "3"), elasticsearch.searchRequests.stream().map(searchRequest -> searchRequest.path("slice").path("id").asText()).collect(Collectors.toSet()));
+        }
+    }
+
+    @Test
+    public void testSmallLogSearchedSequentially() throws Exception {
+        for (int i = 0; i < 500; i++) {
+            elasticsearch.addLogLine(1_700_000_000_000L + i, "line-" + i);
+        }
+        long lineCount = 0;
+        try (ElasticsearchBuildLogsLineIterator lines = newLineIterator()) {
+            lines.setParallelRetrieval(4, 1_000);
+            while (lines.hasNext()) {
+                lines.next();
+                lineCount++;
+            }
+        }
+        assertEquals(500, lineCount);
+        assertEquals(1, elasticsearch.countRequests.get());
+        assertTrue(elasticsearch.searchRequests.stream().noneMatch(searchRequest -> searchRequest.has("slice")));
+    }
+
+    @Test
+    public void testCloseWhileSearchingSlices() throws Exception {
+        for (int i = 0; i < 5_000; i++) {
+            elasticsearch.addLogLine(1_700_000_000_000L + i, "line-" + i);
+        }
+        elasticsearch.searchLatencyInMillis = 50;
+        try (ElasticsearchBuildLogsLineIterator lines = newLineIterator()) {
+            lines.setPrefetchedPages(1);
+            lines.setParallelRetrieval(4, 1_000);
+            assertEquals("line-0", lines.next());
+        }
+        assertEquals("the point in time is closed after the cancellation of the searches of the slices", 0, elasticsearch.openPointInTimes.get());
+    }
+
+    @Test
+    public void testChunkedLogRecords() throws Exception {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            if (i % 3 == 0) {
+                // log record coalescing 3 lines
+                ObjectNode document = elasticsearch.newObjectNode();
+                document.putObject("numeric_labels").put("jenkins_log_line_count", 3);
+                elasticsearch.addLogDocument(1_700_000_000_000L + i, "line-" + i + "-a\nline-" + i + "-b\nline-" + i + "-c", document);
+                expected.addAll(List.of("line-" + i + "-a", "line-" + i + "-b", "line-" + i + "-c"));
+            } else {
+                // single line containing a line break
+                elasticsearch.addLogLine(1_700_000_000_000L + i, "line-" + i + "\ncontinued");
+                expected.add("line-" + i + "\ncontinued");
+            }
+        }
+        for (int slices = 1; slices <= 4; slices += 3) {
+            List<String> actual = new ArrayList<>();
+            try (ElasticsearchBuildLogsLineIterator lines = newLineIterator()) {
+                lines.setChunkedLogRecords(true);
+                lines.setParallelRetrieval(slices, 100);
+                while (lines.hasNext()) {
+                    actual.add(lines.next());
+                }
+            }
+            assertEquals(expected, actual);
+        }
+    }
+
+    ElasticsearchBuildLogsLineIterator newLineIterator() {
+        return new ElasticsearchBuildLogsLineIterator("my-pipeline", 1, "0af7651916cd43dd8448eb211c80319c", esClient, TracerProvider.noop().get("test"));
+    }
+}
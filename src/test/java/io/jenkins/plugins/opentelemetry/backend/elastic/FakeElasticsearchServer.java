@@ -0,0 +1,238 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.backend.elastic;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local stand-in of the Elasticsearch point in time and search APIs serving in memory log documents sorted by
+ * {@code @timestamp} and insertion order, the insertion order being returned as the {@code _shard_doc} tiebreaker.
+ * The query is ignored, all the documents match. The slice of a document is its insertion order modulo the number of
+ * slices.
+ */
+final class FakeElasticsearchServer implements Closeable {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final List<Document> documents = new CopyOnWriteArrayList<>();
+    /**
+     * Bodies of the {@code _search} requests received
+     */
+    final List<JsonNode> searchRequests = new CopyOnWriteArrayList<>();
+    final AtomicInteger openPointInTimes = new AtomicInteger();
+    final AtomicInteger countRequests = new AtomicInteger();
+    private final AtomicInteger pointInTimeSequence = new AtomicInteger();
+    /**
+     * Latency added to the {@code _search} requests to simulate the round-trip to a remote cluster
+     */
+    volatile long searchLatencyInMillis;
+
+    static final class Document {
+        final long timestampInMillis;
+        final ObjectNode source;
+
+        Document(long timestampInMillis, ObjectNode source) {
+            this.timestampInMillis = timestampInMillis;
+            this.source = source;
+        }
+    }
+
+    FakeElasticsearchServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Documents must be added in chronological order
+     */
+    void addLogLine(long timestampInMillis, String message) {
+        addLogDocument(timestampInMillis, message, MAPPER.createObjectNode());
+    }
+
+    /**
+     * @param otherFields fields added to the {@code @timestamp} and {@code message} of the document
+     */
+    void addLogDocument(long timestampInMillis, String message, ObjectNode otherFields) {
+        ObjectNode source = MAPPER.createObjectNode();
+        source.put(ElasticsearchFields.FIELD_TIMESTAMP, Instant.ofEpochMilli(timestampInMillis).toString());
+        source.put(ElasticsearchFields.FIELD_MESSAGE, message);
+        source.setAll(otherFields);
+        documents.add(new Document(timestampInMillis, source));
+    }
+
+    ObjectNode newObjectNode() {
+        return MAPPER.createObjectNode();
+    }
+
+    ElasticsearchClient newClient() {
+        RestClient restClient = RestClient.builder(new HttpHost(server.getAddress().getHostString(), server.getAddress().getPort(), "http")).build();
+        return new ElasticsearchClient(new RestClientTransport(restClient, new JacksonJsonpMapper()));
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            JsonNode request = readBody(exchange.getRequestBody());
+            ObjectNode response = MAPPER.createObjectNode();
+            if (path.endsWith("/_pit") && "POST".equals(method)) {
+                openPointInTimes.incrementAndGet();
+                response.put("id", "pit-" + pointInTimeSequence.incrementAndGet());
+            } else if (path.equals("/_pit") && "DELETE".equals(method)) {
+                openPointInTimes.decrementAndGet();
+                response.put("succeeded", true).put("num_freed", 1);
+            } else if (path.endsWith("/_count")) {
+                countRequests.incrementAndGet();
+                response.put("count", documents.size());
+                response.putObject("_shards").put("total", 1).put("successful", 1).put("skipped", 0).put("failed", 0);
+            } else if (path.endsWith("/_search")) {
+                searchRequests.add(request);
+                response = search(request);
+                if (searchLatencyInMillis > 0) {
+                    try {
+                        Thread.sleep(searchLatencyInMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException(e);
+                    }
+                }
+            } else {
+                send(exchange, 404, MAPPER.createObjectNode().put("error", "unsupported " + method + " " + path));
+                return;
+            }
+            send(exchange, 200, response);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private ObjectNode search(JsonNode request) {
+        int size = request.path("size").asInt(10);
+        int from = request.path("from").asInt(0);
+        JsonNode searchAfter = request.get("search_after");
+        JsonNode sourceConfig = request.path("_source");
+        boolean fetchSource = sourceConfig.asBoolean(true);
+        JsonNode includes = sourceConfig.get("includes");
+        JsonNode slice = request.get("slice");
+
+        List<ObjectNode> hits = new ArrayList<>();
+        int skipped = 0;
+        for (int i = 0; i < documents.size() && hits.size() < size; i++) {
+            Document document = documents.get(i);
+            if (slice != null && i % slice.path("max").asInt() != slice.path("id").asInt()) {
+                continue;
+            }
+            if (searchAfter != null && compare(document.timestampInMillis, i, searchAfter.get(0).asLong(), searchAfter.get(1).asLong()) <= 0) {
+                continue;
+            }
+            if (skipped < from) {
+                skipped++;
+                continue;
+            }
+            ObjectNode hit = MAPPER.createObjectNode()
+                .put("_index", ElasticsearchFields.INDEX_TEMPLATE_NAME)
+                .put("_id", "doc-" + i)
+                .putNull("_score");
+            if (fetchSource) {
+                hit.set("_source", includes == null ? document.source : filter(document.source, includes, ""));
+            }
+            hit.putArray("sort").add(document.timestampInMillis).add(i);
+            hits.add(hit);
+        }
+
+        ObjectNode response = MAPPER.createObjectNode()
+            .put("took", 1)
+            .put("timed_out", false);
+        JsonNode pit = request.get("pit");
+        if (pit != null) {
+            response.put("pit_id", pit.path("id").asText());
+        }
+        response.putObject("_shards").put("total", 1).put("successful", 1).put("skipped", 0).put("failed", 0);
+        ObjectNode hitsNode = response.putObject("hits");
+        hitsNode.putObject("total").put("value", documents.size()).put("relation", "eq");
+        hitsNode.putNull("max_score");
+        ArrayNode hitsArray = hitsNode.putArray("hits");
+        hits.forEach(hitsArray::add);
+        return response;
+    }
+
+    /**
+     * Source filtering, the dots of the include paths match both the nested objects and the dotted field names
+     */
+    private static ObjectNode filter(ObjectNode source, JsonNode includes, String prefix) {
+        ObjectNode result = MAPPER.createObjectNode();
+        source.fields().forEachRemaining(field -> {
+            String path = prefix + field.getKey();
+            for (JsonNode include : includes) {
+                if (include.asText().equals(path)) {
+                    result.set(field.getKey(), field.getValue());
+                    return;
+                } else if (include.asText().startsWith(path + ".") && field.getValue().isObject()) {
+                    ObjectNode filtered = filter((ObjectNode) field.getValue(), includes, path + ".");
+                    if (!filtered.isEmpty()) {
+                        result.set(field.getKey(), filtered);
+                    }
+                    return;
+                }
+            }
+        });
+        return result;
+    }
+
+    private static int compare(long timestamp, long shardDoc, long otherTimestamp, long otherShardDoc) {
+        int result = Long.compare(timestamp, otherTimestamp);
+        return result == 0 ? Long.compare(shardDoc, otherShardDoc) : result;
+    }
+
+    private static JsonNode readBody(InputStream in) throws IOException {
+        byte[] bytes = in.readAllBytes();
+        return bytes.length == 0 ? MAPPER.createObjectNode() : MAPPER.readTree(bytes);
+    }
+
+    private static void send(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsString(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.getResponseHeaders().add("X-Elastic-Product", "Elasticsearch");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -5,6 +5,7 @@
 
 package io.jenkins.plugins.opentelemetry.backend.grafana;
 
+import com.sun.net.httpserver.HttpServer;
 import io.jenkins.plugins.opentelemetry.job.log.LogLine;
 import io.opentelemetry.api.OpenTelemetry;
 import org.apache.http.auth.UsernamePasswordCredentials;
@@ -13,13 +14,22 @@ import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.protocol.BasicHttpContext;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class LokiBuildLogsLineIteratorTest {
@@ -57,4 +67,84 @@ public class LokiBuildLogsLineIteratorTest {
             fail(e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testLoadChunkedLogRecords() throws Exception {
+        // one stream per line count, the single lines that contain line breaks are not split
+        String lokiQueryResponse = "{\"status\": \"success\", \"data\": {\"resultType\": \"streams\", \"result\": [" +
+            "{\"stream\": {\"jenkins_log_line_count\": \"3\"}, \"values\": [" +
+            "[\"1718111754515426000\", \"first\\nsecond\\nthird\"]," +
+            "[\"1718111754515428000\", \"fifth\\nsixth\\nseventh\"]" +
+            "]}," +
+            "{\"stream\": {}, \"values\": [" +
+            "[\"1718111754515427000\", \"fourth\\nstill fourth\"]" +
+            "]}]}}";
+        LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters = new LokiGetJenkinsBuildLogsQueryParametersBuilder()
+            .setJobFullName("my-war/master").setRunNumber(384)
+            .setTraceId("69a627b7bc02241b6029bed20f4ff8d8")
+            .setStartTime(Instant.ofEpochMilli(1718111754000L))
+            .setEndTime(Instant.ofEpochMilli(1718111755000L))
+            .setServiceName("jenkins")
+            .setServiceNamespace("jenkins")
+            .build();
+        try (LokiBuildLogsLineIterator lokiBuildLogsLineIterator = new LokiBuildLogsLineIterator(
+            lokiQueryParameters, HttpClientBuilder.create().build(),
+            new BasicHttpContext(),
+            "http://localhost:3100",
+            Optional.empty(),
+            Optional.empty(),
+            OpenTelemetry.noop().getTracer("io.jenkins")
+        )) {
+            Iterator<LogLine<Long>> logLines = lokiBuildLogsLineIterator.loadLogLines(new ByteArrayInputStream(lokiQueryResponse.getBytes(StandardCharsets.UTF_8)));
+            List<String> messages = new ArrayList<>();
+            logLines.forEachRemaining(logLine -> messages.add(logLine.getMessage()));
+            assertEquals(List.of("first", "second", "third", "fourth\nstill fourth", "fifth", "sixth", "seventh"), messages);
+        }
+    }
+
+    @Test
+    public void testCloseAbortsTheInFlightQuery() throws Exception {
+        CountDownLatch requested = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        HttpServer loki = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        loki.createContext("/", exchange -> {
+            requested.countDown();
+            try {
+                // Loki never responds
+                released.await(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        loki.start();
+        try {
+            LokiGetJenkinsBuildLogsQueryParameters lokiQueryParameters = new LokiGetJenkinsBuildLogsQueryParametersBuilder()
+                .setJobFullName("my-war/master").setRunNumber(384)
+                .setTraceId("69a627b7bc02241b6029bed20f4ff8d8")
+                .setStartTime(Instant.ofEpochMilli(1718111754000L))
+                .setEndTime(Instant.ofEpochMilli(1718111755000L))
+                .setServiceName("jenkins")
+                .build();
+            LokiBuildLogsLineIterator lokiBuildLogsLineIterator = new LokiBuildLogsLineIterator(
+                lokiQueryParameters, HttpClientBuilder.create().build(),
+                new BasicHttpContext(),
+                "http://" + loki.getAddress().getHostString() + ":" + loki.getAddress().getPort(),
+                Optional.empty(),
+                Optional.empty(),
+                OpenTelemetry.noop().getTracer("io.jenkins"));
+            lokiBuildLogsLineIterator.setPrefetchedPages(1);
+            lokiBuildLogsLineIterator.getReadAhead().start();
+            assertTrue(requested.await(10, TimeUnit.SECONDS));
+
+            long closeStartInNanos = System.nanoTime();
+            lokiBuildLogsLineIterator.close();
+            // the read ahead would otherwise wait 30 seconds for the loading thread blocked reading the response
+            long closeDurationInSeconds = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - closeStartInNanos);
+            assertTrue("close took " + closeDurationInSeconds + "s", closeDurationInSeconds < 10);
+        } finally {
+            released.countDown();
+            loki.stop(0);
+        }
+    }
+}
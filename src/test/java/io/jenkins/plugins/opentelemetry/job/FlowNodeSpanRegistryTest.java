@@ -0,0 +1,106 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import io.jenkins.plugins.opentelemetry.job.action.FlowNodeMonitoringAction;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class FlowNodeSpanRegistryTest {
+
+    static SdkTracerProvider tracerProvider;
+    static Tracer tracer;
+
+    @BeforeClass
+    public static void beforeClass() {
+        tracerProvider = SdkTracerProvider.builder().build();
+        tracer = tracerProvider.get("test");
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        tracerProvider.close();
+    }
+
+    @Test
+    public void testFindOpenSpanWalksEnclosingBlocks() {
+        // 2 (node) > 5 (stage) > 7 (script, no span) > 9 (sh)
+        Map<String, String> enclosingIds = new HashMap<>();
+        enclosingIds.put("7", "5");
+        enclosingIds.put("9", "7");
+
+        FlowNodeSpanRegistry registry = new FlowNodeSpanRegistry();
+        Span nodeSpan = tracer.spanBuilder("node").startSpan();
+        registry.put("2", null, new FlowNodeMonitoringAction(nodeSpan));
+        Span stageSpan = tracer.spanBuilder("stage").startSpan();
+        registry.put("5", "2", new FlowNodeMonitoringAction(stageSpan));
+
+        assertSame(stageSpan, registry.findOpenSpan("9", enclosingIds::get));
+        assertSame(stageSpan, registry.findOpenSpan("5", enclosingIds::get));
+
+        stageSpan.end();
+        assertSame(nodeSpan, registry.findOpenSpan("9", enclosingIds::get));
+
+        nodeSpan.end();
+        assertNull(registry.findOpenSpan("9", enclosingIds::get));
+    }
+
+    @Test
+    public void testMostRecentOpenSpanWins() {
+        FlowNodeSpanRegistry registry = new FlowNodeSpanRegistry();
+        Span agentSpan = tracer.spanBuilder("agent").startSpan();
+        registry.put("3", null, new FlowNodeMonitoringAction(agentSpan));
+        Span agentAllocationSpan = tracer.spanBuilder("agent.allocate").startSpan();
+        registry.put("3", null, new FlowNodeMonitoringAction(agentAllocationSpan));
+
+        assertSame(agentAllocationSpan, registry.getOpenSpan("3"));
+        agentAllocationSpan.end();
+        assertSame(agentSpan, registry.getOpenSpan("3"));
+        agentSpan.end();
+    }
+
+    @Test
+    public void testRemove() {
+        FlowNodeSpanRegistry registry = new FlowNodeSpanRegistry();
+        Span span = tracer.spanBuilder("sh").startSpan();
+        FlowNodeMonitoringAction action = new FlowNodeMonitoringAction(span);
+        registry.put("9", "5", action);
+        assertEquals(1, registry.size());
+
+        assertNull(registry.remove("9", "0000000000000000"));
+        assertSame(action, registry.remove("9", span.getSpanContext().getSpanId()));
+        assertNull(registry.getOpenSpan("9"));
+        span.end();
+    }
+
+    @Test
+    public void testPurge() {
+        FlowNodeSpanRegistry registry = new FlowNodeSpanRegistry(true);
+        Span stageSpan = tracer.spanBuilder("stage").startSpan();
+        FlowNodeMonitoringAction stageAction = new FlowNodeMonitoringAction(stageSpan);
+        registry.put("5", null, stageAction);
+        Span shSpan = tracer.spanBuilder("sh").startSpan();
+        registry.put("9", "5", new FlowNodeMonitoringAction(shSpan));
+        shSpan.end();
+        registry.remove("9", shSpan.getSpanContext().getSpanId());
+
+        assertEquals(2, registry.purge());
+        assertNull(stageAction.getSpan());
+        assertNull(registry.getOpenSpan("5"));
+        stageSpan.end();
+    }
+}
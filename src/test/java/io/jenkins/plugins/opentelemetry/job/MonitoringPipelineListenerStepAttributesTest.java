@@ -0,0 +1,69 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import hudson.ExtensionList;
+import hudson.model.Describable;
+import hudson.model.Descriptor;
+import io.jenkins.plugins.opentelemetry.BaseIntegrationTest;
+import io.jenkins.plugins.opentelemetry.JenkinsControllerOpenTelemetry;
+import io.jenkins.plugins.opentelemetry.OpenTelemetryConfiguration;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MonitoringPipelineListenerStepAttributesTest extends BaseIntegrationTest {
+
+    @Test
+    public void testStepAttributesCacheInvalidatedWhenTheDescriptorsChange() throws Exception {
+        StepAttributesCache stepAttributesCache = runPipeline();
+
+        ExtensionList.lookup(Descriptor.class).add(new TestDescribable.DescriptorImpl());
+        assertEquals(0, stepAttributesCache.size());
+    }
+
+    @Test
+    public void testStepAttributesCacheInvalidatedWhenTheConfigurationChanges() throws Exception {
+        StepAttributesCache stepAttributesCache = runPipeline();
+
+        JenkinsControllerOpenTelemetry.get().initialize(new OpenTelemetryConfiguration(
+            of("http://localhost:4317"), empty(),
+            empty(),
+            empty(), empty(),
+            empty(), empty(), empty(),
+            Collections.emptyMap()));
+        assertEquals(0, stepAttributesCache.size());
+    }
+
+    private StepAttributesCache runPipeline() throws Exception {
+        WorkflowJob pipeline = jenkinsRule.createProject(WorkflowJob.class, "test-step-attributes-cache-" + jobNameSuffix.incrementAndGet());
+        pipeline.setDefinition(new CpsFlowDefinition("echo 'first'\necho 'second'", true));
+        jenkinsRule.buildAndAssertSuccess(pipeline);
+        StepAttributesCache stepAttributesCache = ExtensionList.lookupSingleton(MonitoringPipelineListener.class).getStepAttributesCache();
+        assertTrue(stepAttributesCache.size() > 0);
+        return stepAttributesCache;
+    }
+
+    public static class TestDescribable implements Describable<TestDescribable> {
+        @Override
+        public Descriptor<TestDescribable> getDescriptor() {
+            return ExtensionList.lookupSingleton(DescriptorImpl.class);
+        }
+
+        public static class DescriptorImpl extends Descriptor<TestDescribable> {
+            public DescriptorImpl() {
+                super(TestDescribable.class);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import hudson.Functions;
+import io.jenkins.plugins.opentelemetry.BaseIntegrationTest;
+import io.jenkins.plugins.opentelemetry.JenkinsControllerOpenTelemetry;
+import io.jenkins.plugins.opentelemetry.OpenTelemetryConfiguration;
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporterProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.util.Optional.empty;
+import static java.util.Optional.of;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OtelStepEnvironmentContributorAsyncTest extends BaseIntegrationTest {
+
+    private static final Pattern TRACEPARENT = Pattern.compile("00-([0-9a-f]{32})-([0-9a-f]{16})-01");
+
+    @After
+    public void restoreSynchronousDispatch() {
+        initialize(Collections.emptyMap());
+    }
+
+    @Test
+    public void testTraceParentOfTheShellStepWithAsynchronousDispatch() throws Exception {
+        Assume.assumeFalse(Functions.isWindows());
+        initialize(Map.of(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_PIPELINE_ASYNC_ENABLED, "true"));
+
+        WorkflowJob pipeline = jenkinsRule.createProject(WorkflowJob.class, "test-traceparent-async-dispatch-" + jobNameSuffix.incrementAndGet());
+        pipeline.setDefinition(new CpsFlowDefinition("node() {\n" +
+            "    echo 'before'\n" +
+            "    sh 'echo $TRACEPARENT > traceparent.txt'\n" +
+            "    currentBuild.description = readFile('traceparent.txt').trim()\n" +
+            "}", true));
+        WorkflowRun run = jenkinsRule.buildAndAssertSuccess(pipeline);
+
+        Matcher matcher = TRACEPARENT.matcher(String.valueOf(run.getDescription()));
+        assertTrue("unexpected TRACEPARENT " + run.getDescription(), matcher.matches());
+        String spanId = matcher.group(2);
+
+        JenkinsControllerOpenTelemetry.get().getOpenTelemetrySdk().getSdkTracerProvider().forceFlush().join(1, TimeUnit.SECONDS);
+        Optional<SpanData> span = InMemorySpanExporterProvider.LAST_CREATED_INSTANCE.getFinishedSpanItems().stream()
+            .filter(spanData -> spanData.getSpanId().equals(spanId))
+            .findFirst();
+        assertTrue("no span " + spanId, span.isPresent());
+        // the span of the shell step, not the span of the enclosing node
+        assertEquals("sh", span.get().getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_STEP_TYPE));
+    }
+
+    private static void initialize(Map<String, String> configurationProperties) {
+        JenkinsControllerOpenTelemetry.get().initialize(new OpenTelemetryConfiguration(
+            of("http://localhost:4317"), empty(),
+            empty(),
+            empty(), empty(),
+            empty(), empty(), empty(),
+            configurationProperties));
+    }
+}
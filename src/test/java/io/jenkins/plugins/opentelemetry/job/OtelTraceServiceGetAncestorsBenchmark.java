@@ -0,0 +1,88 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import io.jenkins.plugins.opentelemetry.job.action.FlowNodeMonitoringAction;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graphanalysis.DepthFirstScanner;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Verify.verifyNotNull;
+
+/**
+ * Compare the eager materialization of {@link FlowNode#getEnclosingBlocks()} with the lazy
+ * {@link OtelTraceService#getAncestors(FlowNode)} when the span is held by the first enclosing block.
+ */
+public class OtelTraceServiceGetAncestorsBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class NestedPipelineState extends JmhBenchmarkState {
+        @Param({"10", "100", "1000"})
+        int depth;
+
+        FlowNode leafNode;
+
+        @Override
+        public void setup() throws Exception {
+            WorkflowJob job = getJenkins().createProject(WorkflowJob.class, "nested-blocks-" + depth);
+            job.setDefinition(new CpsFlowDefinition(
+                "def nest(int depth) {\n" +
+                    "    if (depth == 0) {\n" +
+                    "        echo 'leaf'\n" +
+                    "    } else {\n" +
+                    "        withEnv([\"DEPTH=${depth}\"]) {\n" +
+                    "            nest(depth - 1)\n" +
+                    "        }\n" +
+                    "    }\n" +
+                    "}\n" +
+                    "nest(" + depth + ")", true));
+            WorkflowRun run = verifyNotNull(job.scheduleBuild2(0)).get();
+            leafNode = verifyNotNull(new DepthFirstScanner().findFirstMatch(run.getExecution(), node -> node instanceof StepAtomNode));
+
+            SdkTracerProvider tracerProvider = SdkTracerProvider.builder().build();
+            FlowNode enclosingBlock = verifyNotNull(leafNode.getExecution().findEnclosingBlockStart(leafNode));
+            enclosingBlock.addAction(new FlowNodeMonitoringAction(tracerProvider.get("benchmark").spanBuilder("withEnv").startSpan()));
+        }
+    }
+
+    @Benchmark
+    public Span eagerEnclosingBlocks(NestedPipelineState state) {
+        List<FlowNode> ancestors = new ArrayList<>();
+        ancestors.add(state.leafNode);
+        ancestors.addAll(state.leafNode.getEnclosingBlocks());
+        for (FlowNode ancestor : ancestors) {
+            Span span = OtelTraceService.getOpenSpan(ancestor);
+            if (span != null) {
+                return span;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    public Span lazyEnclosingBlocks(NestedPipelineState state) {
+        for (FlowNode ancestor : OtelTraceService.getAncestors(state.leafNode)) {
+            Span span = OtelTraceService.getOpenSpan(ancestor);
+            if (span != null) {
+                return span;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
+import io.opentelemetry.api.common.Attributes;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class StepAttributesCacheTest {
+
+    @Test
+    public void testCacheHits() {
+        StepAttributesCache cache = new StepAttributesCache();
+        AtomicInteger computations = new AtomicInteger();
+        Supplier<Attributes> echoAttributes = () -> {
+            computations.incrementAndGet();
+            return Attributes.of(JenkinsOtelSemanticAttributes.JENKINS_STEP_TYPE, "echo");
+        };
+        Attributes attributes = cache.get("echo", echoAttributes);
+        assertSame(attributes, cache.get("echo", echoAttributes));
+        assertEquals(1, computations.get());
+
+        cache.get("sh", () -> Attributes.of(JenkinsOtelSemanticAttributes.JENKINS_STEP_TYPE, "sh"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testInvalidate() {
+        StepAttributesCache cache = new StepAttributesCache();
+        Attributes attributes = cache.get("echo", () -> Attributes.of(JenkinsOtelSemanticAttributes.JENKINS_STEP_PLUGIN_VERSION, "1.0"));
+
+        // plugin upgraded
+        cache.invalidate();
+        assertEquals(0, cache.size());
+        Attributes upgradedAttributes = cache.get("echo", () -> Attributes.of(JenkinsOtelSemanticAttributes.JENKINS_STEP_PLUGIN_VERSION, "2.0"));
+        assertNotSame(attributes, upgradedAttributes);
+        assertEquals("2.0", cache.get("echo", () -> Attributes.empty()).get(JenkinsOtelSemanticAttributes.JENKINS_STEP_PLUGIN_VERSION));
+    }
+
+    @Test
+    public void testMaxSize() {
+        StepAttributesCache cache = new StepAttributesCache(10);
+        for (int i = 0; i < 100; i++) {
+            String stepType = "step-" + i;
+            Attributes attributes = cache.get(stepType, () -> Attributes.of(JenkinsOtelSemanticAttributes.JENKINS_STEP_TYPE, stepType));
+            // computed beyond the limit
+            assertEquals(stepType, attributes.get(JenkinsOtelSemanticAttributes.JENKINS_STEP_TYPE));
+        }
+        assertEquals(10, cache.size());
+    }
+}
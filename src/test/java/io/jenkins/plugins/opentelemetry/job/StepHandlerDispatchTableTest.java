@@ -0,0 +1,58 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import io.jenkins.plugins.opentelemetry.job.step.BuildTriggerStepHandler;
+import io.jenkins.plugins.opentelemetry.job.step.DefaultStepHandler;
+import io.jenkins.plugins.opentelemetry.job.step.DurableTaskHandler;
+import io.jenkins.plugins.opentelemetry.job.step.GitStepHandler;
+import io.jenkins.plugins.opentelemetry.job.step.StepHandler;
+import jenkins.plugins.git.GitStep;
+import org.jenkinsci.plugins.workflow.steps.EchoStep;
+import org.jenkinsci.plugins.workflow.steps.durable_task.ShellStep;
+import org.jenkinsci.plugins.workflow.support.steps.build.BuildTriggerStep;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class StepHandlerDispatchTableTest {
+
+    final StepHandler gitStepHandler = new GitStepHandler();
+    final StepHandler buildTriggerStepHandler = new BuildTriggerStepHandler();
+    final StepHandler durableTaskHandler = new DurableTaskHandler();
+    final StepHandler defaultStepHandler = new DefaultStepHandler();
+
+    StepHandlerDispatchTable newDispatchTable() {
+        List<StepHandler> stepHandlers = new ArrayList<>(Arrays.asList(defaultStepHandler, durableTaskHandler, gitStepHandler, buildTriggerStepHandler));
+        Collections.sort(stepHandlers);
+        return new StepHandlerDispatchTable(stepHandlers);
+    }
+
+    @Test
+    public void testCandidatesOfDeclaredDescriptors() {
+        StepHandlerDispatchTable dispatchTable = newDispatchTable();
+        assertEquals(Arrays.asList(gitStepHandler, defaultStepHandler), dispatchTable.getCandidates(GitStep.DescriptorImpl.class));
+        assertEquals(Arrays.asList(buildTriggerStepHandler, defaultStepHandler), dispatchTable.getCandidates(BuildTriggerStep.DescriptorImpl.class));
+    }
+
+    @Test
+    public void testCandidatesOfDescriptorSubclasses() {
+        StepHandlerDispatchTable dispatchTable = newDispatchTable();
+        // DurableTaskHandler declares DurableTaskStep.DurableTaskStepDescriptor
+        assertEquals(Arrays.asList(durableTaskHandler, defaultStepHandler), dispatchTable.getCandidates(ShellStep.DescriptorImpl.class));
+    }
+
+    @Test
+    public void testCandidatesOfUnknownDescriptor() {
+        StepHandlerDispatchTable dispatchTable = newDispatchTable();
+        assertEquals(Collections.singletonList(defaultStepHandler), dispatchTable.getCandidates(EchoStep.DescriptorImpl.class));
+    }
+}
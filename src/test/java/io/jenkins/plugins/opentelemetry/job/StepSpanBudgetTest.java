@@ -0,0 +1,116 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class StepSpanBudgetTest {
+
+    InMemorySpanExporter spanExporter;
+    SdkTracerProvider tracerProvider;
+    Tracer tracer;
+
+    @Before
+    public void before() {
+        spanExporter = InMemorySpanExporter.create();
+        tracerProvider = SdkTracerProvider.builder().addSpanProcessor(SimpleSpanProcessor.create(spanExporter)).build();
+        tracer = tracerProvider.get("test");
+    }
+
+    @After
+    public void after() {
+        tracerProvider.close();
+    }
+
+    @Test
+    public void testBudgetPerParent() {
+        StepSpanBudget stepSpanBudget = new StepSpanBudget(0, 2);
+        assertTrue(stepSpanBudget.tryAcquire("stage-1"));
+        assertTrue(stepSpanBudget.tryAcquire("stage-1"));
+        assertFalse(stepSpanBudget.tryAcquire("stage-1"));
+        assertTrue(stepSpanBudget.tryAcquire("stage-2"));
+    }
+
+    @Test
+    public void testBudgetPerRun() {
+        StepSpanBudget stepSpanBudget = new StepSpanBudget(3, 2);
+        assertTrue(stepSpanBudget.tryAcquire("stage-1"));
+        assertTrue(stepSpanBudget.tryAcquire("stage-1"));
+        // rejected by the parent budget, doesn't consume the run budget
+        assertFalse(stepSpanBudget.tryAcquire("stage-1"));
+        assertTrue(stepSpanBudget.tryAcquire("stage-2"));
+        assertFalse(stepSpanBudget.tryAcquire("stage-2"));
+        assertFalse(stepSpanBudget.tryAcquire("stage-3"));
+    }
+
+    @Test
+    public void testAggregatedSpan() {
+        StepSpanBudget stepSpanBudget = new StepSpanBudget(1, 0);
+        long start = TimeUnit.SECONDS.toNanos(1_000);
+        for (int i = 1; i <= 10; i++) {
+            String flowNodeId = String.valueOf(i);
+            stepSpanBudget.aggregate(flowNodeId, "stage-1", "sh", start, () -> tracer.spanBuilder("Aggregated steps: sh").startSpan());
+            assertTrue(stepSpanBudget.complete(flowNodeId, start + TimeUnit.MILLISECONDS.toNanos(i * 100L), i == 10));
+        }
+        assertFalse(stepSpanBudget.complete("11", start, false));
+
+        stepSpanBudget.endAggregatedSpans("stage-2");
+        assertTrue(spanExporter.getFinishedSpanItems().isEmpty());
+
+        stepSpanBudget.endAggregatedSpans("stage-1");
+        List<SpanData> spans = spanExporter.getFinishedSpanItems();
+        assertEquals(1, spans.size());
+        SpanData span = spans.get(0);
+        assertEquals(Long.valueOf(10), span.getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_COUNT));
+        assertEquals(Long.valueOf(1), span.getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_FAILURE_COUNT));
+        assertEquals(Long.valueOf(5_500), span.getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_DURATION_MILLIS_TOTAL));
+        assertEquals(Long.valueOf(100), span.getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_DURATION_MILLIS_MIN));
+        assertEquals(Long.valueOf(1_000), span.getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_DURATION_MILLIS_MAX));
+        assertEquals(Long.valueOf(500), span.getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_DURATION_MILLIS_P50));
+        assertEquals(Long.valueOf(900), span.getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_DURATION_MILLIS_P90));
+        assertEquals(StatusCode.ERROR, span.getStatus().getStatusCode());
+        assertEquals(start + TimeUnit.SECONDS.toNanos(1), span.getEndEpochNanos());
+    }
+
+    @Test
+    public void testAggregatedSpanPercentilesOfManySteps() {
+        StepSpanBudget stepSpanBudget = new StepSpanBudget(1, 0);
+        long start = TimeUnit.SECONDS.toNanos(1_000);
+        int steps = 100 * StepSpanBudget.AggregatedStepSpan.RESERVOIR_SIZE;
+        for (int i = 1; i <= steps; i++) {
+            String flowNodeId = String.valueOf(i);
+            stepSpanBudget.aggregate(flowNodeId, "stage-1", "sh", start, () -> tracer.spanBuilder("Aggregated steps: sh").startSpan());
+            assertTrue(stepSpanBudget.complete(flowNodeId, start + TimeUnit.MILLISECONDS.toNanos(i), false));
+        }
+        stepSpanBudget.endAggregatedSpans();
+
+        SpanData span = spanExporter.getFinishedSpanItems().get(0);
+        // exact statistics
+        assertEquals(Long.valueOf(steps), span.getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_COUNT));
+        assertEquals(Long.valueOf((long) steps * (steps + 1) / 2), span.getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_DURATION_MILLIS_TOTAL));
+        assertEquals(Long.valueOf(1), span.getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_DURATION_MILLIS_MIN));
+        assertEquals(Long.valueOf(steps), span.getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_DURATION_MILLIS_MAX));
+        // percentiles estimated on the sample of the durations
+        assertEquals(0.5 * steps, span.getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_DURATION_MILLIS_P50), 0.1 * steps);
+        assertEquals(0.9 * steps, span.getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_STEP_AGGREGATED_DURATION_MILLIS_P90), 0.1 * steps);
+    }
+}
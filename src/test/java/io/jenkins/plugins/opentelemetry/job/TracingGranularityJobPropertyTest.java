@@ -0,0 +1,54 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job;
+
+import com.cloudbees.hudson.plugins.folder.Folder;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class TracingGranularityJobPropertyTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testFromValue() {
+        assertEquals(TracingGranularity.FULL, TracingGranularity.fromValue(null, TracingGranularity.FULL));
+        assertEquals(TracingGranularity.STAGES, TracingGranularity.fromValue(" Stages ", TracingGranularity.FULL));
+        assertEquals(TracingGranularity.RUN_ONLY, TracingGranularity.fromValue("run-only", TracingGranularity.FULL));
+        assertEquals(TracingGranularity.RUN_ONLY, TracingGranularity.fromValue("RUN_ONLY", TracingGranularity.FULL));
+        assertThrows(IllegalArgumentException.class, () -> TracingGranularity.fromValue("steps", TracingGranularity.FULL));
+    }
+
+    @Test
+    public void testResolve() throws Exception {
+        Folder parentFolder = r.jenkins.createProject(Folder.class, "monorepo");
+        Folder folder = parentFolder.createProject(Folder.class, "team");
+        WorkflowJob job = folder.createProject(WorkflowJob.class, "build");
+
+        assertEquals(TracingGranularity.FULL, TracingGranularityJobProperty.resolve(job, TracingGranularity.FULL));
+
+        parentFolder.addProperty(new TracingGranularityFolderProperty(TracingGranularity.RUN_ONLY));
+        assertEquals(TracingGranularity.RUN_ONLY, TracingGranularityJobProperty.resolve(job, TracingGranularity.FULL));
+
+        folder.addProperty(new TracingGranularityFolderProperty(TracingGranularity.STAGES));
+        assertEquals(TracingGranularity.STAGES, TracingGranularityJobProperty.resolve(job, TracingGranularity.FULL));
+
+        job.addProperty(new TracingGranularityJobProperty(TracingGranularity.FULL));
+        assertEquals(TracingGranularity.FULL, TracingGranularityJobProperty.resolve(job, TracingGranularity.RUN_ONLY));
+    }
+
+    @Test
+    public void testDescriptors() {
+        assertEquals("Override OpenTelemetry tracing granularity", r.jenkins.getDescriptorByType(TracingGranularityJobProperty.DescriptorImpl.class).getDisplayName());
+        assertEquals("Override OpenTelemetry tracing granularity", r.jenkins.getDescriptorByType(TracingGranularityFolderProperty.DescriptorImpl.class).getDisplayName());
+    }
+}
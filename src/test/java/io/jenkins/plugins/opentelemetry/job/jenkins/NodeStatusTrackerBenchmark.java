@@ -0,0 +1,103 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.jenkins;
+
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepEndNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.graphanalysis.DepthFirstScanner;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.pipelinegraphanalysis.GenericStatus;
+import org.jenkinsci.plugins.workflow.pipelinegraphanalysis.StatusAndTiming;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Verify.verifyNotNull;
+
+/**
+ * Compare {@link StatusAndTiming#computeChunkStatus2(WorkflowRun, FlowNode, FlowNode, FlowNode, FlowNode)} with
+ * {@link NodeStatusTracker#computeChunkStatus(WorkflowRun, FlowNode, FlowNode, FlowNode)} on the end of every stage of a
+ * pipeline with many stages.
+ */
+public class NodeStatusTrackerBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ManyStagesPipelineState extends JmhBenchmarkState {
+        @Param({"1000"})
+        int stages;
+
+        WorkflowRun run;
+        NodeStatusTracker nodeStatusTracker;
+        /**
+         * Stage end nodes and their next node
+         */
+        final List<FlowNode[]> stageEnds = new ArrayList<>();
+
+        @Override
+        public void setup() throws Exception {
+            WorkflowJob job = getJenkins().createProject(WorkflowJob.class, "many-stages-" + stages);
+            job.setDefinition(new CpsFlowDefinition(
+                "for (int i = 0; i < " + stages + "; i++) {\n" +
+                    "    stage(\"stage-${i}\") {\n" +
+                    "        if (i % 10 == 0) {\n" +
+                    "            unstable \"unstable-${i}\"\n" +
+                    "        } else {\n" +
+                    "            echo \"stage-${i}\"\n" +
+                    "        }\n" +
+                    "    }\n" +
+                    "}", true));
+            run = verifyNotNull(job.scheduleBuild2(0)).get();
+
+            // replay the graph in creation order to populate the tracker as the graph listener does
+            List<FlowNode> nodes = new ArrayList<>();
+            for (FlowNode node : new DepthFirstScanner().allNodes(run.getExecution())) {
+                nodes.add(node);
+            }
+            nodes.sort(Comparator.comparingInt(node -> Integer.parseInt(node.getId())));
+            Map<String, FlowNode> nextNodeById = new HashMap<>();
+            nodeStatusTracker = new NodeStatusTracker();
+            nodeStatusTracker.onStartPipeline(run);
+            for (FlowNode node : nodes) {
+                for (FlowNode previousNode : node.getParents()) {
+                    nodeStatusTracker.onNodeCompleted(previousNode, run);
+                    nextNodeById.putIfAbsent(previousNode.getId(), node);
+                }
+            }
+            for (FlowNode node : nodes) {
+                if (node instanceof StepEndNode && PipelineNodeUtil.isStartStage(((StepEndNode) node).getStartNode())) {
+                    stageEnds.add(new FlowNode[]{((StepEndNode) node).getStartNode(), node, nextNodeById.get(node.getId())});
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void computeChunkStatus2(ManyStagesPipelineState state, Blackhole blackhole) {
+        for (FlowNode[] stageEnd : state.stageEnds) {
+            GenericStatus status = StatusAndTiming.computeChunkStatus2(state.run, null, stageEnd[0], stageEnd[1], stageEnd[2]);
+            blackhole.consume(status);
+        }
+    }
+
+    @Benchmark
+    public void nodeStatusTracker(ManyStagesPipelineState state, Blackhole blackhole) {
+        for (FlowNode[] stageEnd : state.stageEnds) {
+            GenericStatus status = state.nodeStatusTracker.computeChunkStatus(state.run, stageEnd[0], stageEnd[1], stageEnd[2]);
+            blackhole.consume(status);
+        }
+    }
+}
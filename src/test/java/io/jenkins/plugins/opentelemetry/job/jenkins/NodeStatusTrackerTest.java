@@ -0,0 +1,117 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.jenkins;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.ExtensionList;
+import hudson.model.Result;
+import org.jenkinsci.plugins.workflow.cps.CpsFlowDefinition;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepAtomNode;
+import org.jenkinsci.plugins.workflow.cps.nodes.StepEndNode;
+import org.jenkinsci.plugins.workflow.graph.FlowNode;
+import org.jenkinsci.plugins.workflow.job.WorkflowJob;
+import org.jenkinsci.plugins.workflow.job.WorkflowRun;
+import org.jenkinsci.plugins.workflow.pipelinegraphanalysis.GenericStatus;
+import org.jenkinsci.plugins.workflow.pipelinegraphanalysis.StatusAndTiming;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+import org.jvnet.hudson.test.TestExtension;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NodeStatusTrackerTest {
+
+    @Rule
+    public JenkinsRule r = new JenkinsRule();
+
+    @Test
+    public void testStatusMatchesComputeChunkStatus2() throws Exception {
+        WorkflowJob job = r.createProject(WorkflowJob.class, "test-node-status-tracker");
+        job.setDefinition(new CpsFlowDefinition(
+            "stage('success') {\n" +
+                "    echo 'ok'\n" +
+                "}\n" +
+                "stage('unstable') {\n" +
+                "    unstable 'unstable'\n" +
+                "}\n" +
+                "stage('nested') {\n" +
+                "    stage('catchError') {\n" +
+                "        catchError(buildResult: 'SUCCESS', stageResult: 'UNSTABLE') {\n" +
+                "            error 'caught'\n" +
+                "        }\n" +
+                "    }\n" +
+                "    stage('warnError') {\n" +
+                "        warnError('warning') {\n" +
+                "            error 'warned'\n" +
+                "        }\n" +
+                "    }\n" +
+                "}\n" +
+                "stage('parallel') {\n" +
+                "    parallel(a: { echo 'a' }, b: { unstable 'b' })\n" +
+                "}\n" +
+                "node {\n" +
+                "    stage('in node') {\n" +
+                "        echo 'in node'\n" +
+                "    }\n" +
+                "}\n" +
+                "stage('failure') {\n" +
+                "    catchError(buildResult: 'UNSTABLE', stageResult: 'FAILURE') {\n" +
+                "        error 'failure'\n" +
+                "    }\n" +
+                "}\n", true));
+        WorkflowRun run = r.buildAndAssertStatus(Result.UNSTABLE, job);
+
+        ComparingPipelineListener listener = ExtensionList.lookupSingleton(ComparingPipelineListener.class);
+        assertTrue("No chunk status compared", listener.comparisons.size() > 10);
+        for (String comparison : listener.comparisons) {
+            String[] statuses = comparison.split(" => ")[1].split(" vs ");
+            assertEquals(comparison, statuses[0], statuses[1]);
+        }
+        assertTrue(run.getLog(), listener.comparisons.stream().anyMatch(c -> c.startsWith("stage(unstable)") && c.endsWith("UNSTABLE vs UNSTABLE")));
+        assertTrue(run.getLog(), listener.comparisons.stream().anyMatch(c -> c.startsWith("stage(nested)") && c.endsWith("UNSTABLE vs UNSTABLE")));
+        assertTrue(run.getLog(), listener.comparisons.stream().anyMatch(c -> c.startsWith("branch(b)") && c.endsWith("UNSTABLE vs UNSTABLE")));
+    }
+
+    /**
+     * Compare the status computed by the {@link NodeStatusTracker} with {@link StatusAndTiming#computeChunkStatus2(WorkflowRun, FlowNode, FlowNode, FlowNode, FlowNode)}
+     */
+    @TestExtension
+    public static class ComparingPipelineListener extends AbstractPipelineListener {
+        final List<String> comparisons = new CopyOnWriteArrayList<>();
+
+        void compare(@NonNull String chunk, @NonNull WorkflowRun run, @NonNull FlowNode firstNode, @NonNull FlowNode lastNode, FlowNode nextNode) {
+            GenericStatus expected = StatusAndTiming.computeChunkStatus2(run, null, firstNode, lastNode, nextNode);
+            GenericStatus actual = ExtensionList.lookupSingleton(NodeStatusTracker.class).computeChunkStatus(run, firstNode, lastNode, nextNode);
+            comparisons.add(chunk + " => " + Objects.toString(expected) + " vs " + Objects.toString(actual));
+        }
+
+        @Override
+        public void onEndStageStep(@NonNull StepEndNode node, @NonNull String stageName, FlowNode nextNode, @NonNull WorkflowRun run) {
+            compare("stage(" + stageName + ")", run, node.getStartNode(), node, nextNode);
+        }
+
+        @Override
+        public void onEndParallelStepBranch(@NonNull StepEndNode node, @NonNull String branchName, FlowNode nextNode, @NonNull WorkflowRun run) {
+            compare("branch(" + branchName + ")", run, node.getStartNode(), node, nextNode);
+        }
+
+        @Override
+        public void onEndNodeStep(@NonNull StepEndNode node, @NonNull String nodeName, FlowNode nextNode, @NonNull WorkflowRun run) {
+            compare("node(" + nodeName + ")", run, node.getStartNode(), node, nextNode);
+        }
+
+        @Override
+        public void onAfterAtomicStep(@NonNull StepAtomNode node, FlowNode nextNode, @NonNull WorkflowRun run) {
+            compare("step(" + node.getDisplayFunctionName() + "#" + node.getId() + ")", run, node, node, nextNode);
+        }
+    }
+}
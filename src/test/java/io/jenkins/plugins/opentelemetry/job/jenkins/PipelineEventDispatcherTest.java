@@ -0,0 +1,246 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.jenkins;
+
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
+import io.opentelemetry.api.metrics.MeterProvider;
+import io.opentelemetry.sdk.autoconfigure.spi.internal.DefaultConfigProperties;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PipelineEventDispatcherTest {
+
+    PipelineEventDispatcher dispatcher = new PipelineEventDispatcher();
+
+    @After
+    public void after() {
+        dispatcher.shutdown();
+    }
+
+    void configure(boolean async, int threads, int queueCapacity) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_PIPELINE_ASYNC_ENABLED, String.valueOf(async));
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_PIPELINE_ASYNC_THREADS, String.valueOf(threads));
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_PIPELINE_ASYNC_QUEUE_CAPACITY, String.valueOf(queueCapacity));
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_PIPELINE_ASYNC_FLUSH_TIMEOUT, "10s");
+        dispatcher.afterSdkInitialized(MeterProvider.noop().get("test"), null, null, null, DefaultConfigProperties.createFromMap(properties));
+    }
+
+    @Test
+    public void testEventsOfEachRunDispatchedInOrder() {
+        configure(true, 4, 10_000);
+        List<Integer> firstRunEvents = new CopyOnWriteArrayList<>();
+        List<Integer> secondRunEvents = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            int event = i;
+            dispatcher.dispatch("first#1", true, "event-" + i, () -> firstRunEvents.add(event));
+            dispatcher.dispatch("second#1", true, "event-" + i, () -> secondRunEvents.add(event));
+        }
+        dispatcher.flush("first#1");
+        dispatcher.flush("second#1");
+
+        List<Integer> expected = IntStream.range(0, 1_000).boxed().collect(Collectors.toList());
+        assertEquals(expected, firstRunEvents);
+        assertEquals(expected, secondRunEvents);
+    }
+
+    @Test
+    public void testFullQueueDispatchedByTheProducer() throws Exception {
+        configure(true, 1, 2);
+        CountDownLatch dispatching = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        List<String> events = new CopyOnWriteArrayList<>();
+        AtomicReference<Thread> thirdEventThread = new AtomicReference<>();
+        dispatcher.dispatch("run#1", true, "blocked", () -> {
+            dispatching.countDown();
+            await(released);
+            events.add("blocked");
+        });
+        assertTrue(dispatching.await(10, TimeUnit.SECONDS));
+
+        // 2 events fill the queue
+        for (int i = 1; i <= 2; i++) {
+            String event = "event-" + i;
+            dispatcher.dispatch("run#1", true, event, () -> events.add(event));
+        }
+        Thread producer = new Thread(() -> {
+            dispatcher.dispatch("run#1", true, "event-3", () -> {
+                thirdEventThread.set(Thread.currentThread());
+                events.add("event-3");
+            });
+            dispatcher.dispatch("run#1", true, "event-4", () -> events.add("event-4"));
+        });
+        producer.start();
+        // the producer waits, at most for the flush timeout, for the blocked event before dispatching the pending
+        // events and its own event
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (producer.getState() != Thread.State.TIMED_WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Thread.State.TIMED_WAITING, producer.getState());
+        released.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(producer.isAlive());
+        dispatcher.flush("run#1");
+        assertEquals(List.of("blocked", "event-1", "event-2", "event-3", "event-4"), events);
+        assertSame(producer, thirdEventThread.get());
+    }
+
+    @Test
+    public void testFlushDispatchesThePendingEventsOnTheCallerThread() {
+        configure(true, 1, 10_000);
+        CountDownLatch released = new CountDownLatch(1);
+        List<Thread> dispatchingThreads = new CopyOnWriteArrayList<>();
+        // occupy the single thread of the executor with another run
+        dispatcher.dispatch("other#1", true, "blocked", () -> await(released));
+        for (int i = 0; i < 3; i++) {
+            dispatcher.dispatch("run#1", true, "event-" + i, () -> dispatchingThreads.add(Thread.currentThread()));
+        }
+        // like the CPS VM thread resolving the span of a step before the executor dispatched its event
+        dispatcher.flush("run#1");
+        assertEquals(List.of(Thread.currentThread(), Thread.currentThread(), Thread.currentThread()), dispatchingThreads);
+        released.countDown();
+    }
+
+    @Test
+    public void testFlushWaitsForThePendingEvents() throws Exception {
+        configure(true, 2, 10_000);
+        CountDownLatch released = new CountDownLatch(1);
+        List<String> events = new CopyOnWriteArrayList<>();
+        dispatcher.dispatch("run#1", true, "blocked", () -> {
+            await(released);
+            events.add("blocked");
+        });
+        dispatcher.dispatch("run#1", true, "pending", () -> events.add("pending"));
+
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(() -> dispatcher.flush("run#1"));
+        assertFalse(flush.isDone());
+        released.countDown();
+        flush.get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("blocked", "pending"), events);
+    }
+
+    @Test
+    public void testFlushFromAPipelineListenerDoesNotWait() {
+        configure(true, 1, 10_000);
+        List<String> events = new CopyOnWriteArrayList<>();
+        dispatcher.dispatch("run#1", true, "flushing", () -> {
+            dispatcher.flush("run#1");
+            events.add("flushing");
+        });
+        dispatcher.dispatch("run#1", true, "next", () -> events.add("next"));
+        dispatcher.flush("run#1");
+        assertEquals(List.of("flushing", "next"), events);
+    }
+
+    @Test
+    public void testCloseDispatchesThePendingEvents() {
+        configure(true, 2, 10_000);
+        List<Integer> events = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int event = i;
+            dispatcher.dispatch("run#1", true, "event-" + i, () -> events.add(event));
+        }
+        dispatcher.close("run#1");
+        assertEquals(IntStream.range(0, 100).boxed().collect(Collectors.toList()), events);
+
+        // the events of the completed run are dispatched synchronously rather than in a new queue
+        AtomicReference<Thread> dispatchingThread = new AtomicReference<>();
+        dispatcher.dispatch("run#1", false, "late", () -> dispatchingThread.set(Thread.currentThread()));
+        assertSame(Thread.currentThread(), dispatchingThread.get());
+    }
+
+    @Test
+    public void testEventsDispatchedConcurrentlyWithClose() throws Exception {
+        configure(true, 2, 10_000);
+        List<Integer> events = new CopyOnWriteArrayList<>();
+        CountDownLatch started = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < 10_000; i++) {
+                int event = i;
+                dispatcher.dispatch("run#1", true, "event-" + i, () -> events.add(event));
+                started.countDown();
+            }
+        });
+        producer.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        dispatcher.close("run#1");
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        dispatcher.flush("run#1");
+
+        // the events enqueued before the queue was closed are dispatched by close(), none is lost
+        assertEquals(10_000, events.size());
+        List<Integer> sortedEvents = new ArrayList<>(events);
+        sortedEvents.sort(Integer::compare);
+        assertEquals(IntStream.range(0, 10_000).boxed().collect(Collectors.toList()), sortedEvents);
+    }
+
+    @Test
+    public void testReconfiguration() throws Exception {
+        configure(true, 1, 10_000);
+        AtomicReference<Thread> firstExecutorThread = new AtomicReference<>();
+        dispatcher.dispatch("run#1", true, "first", () -> firstExecutorThread.set(Thread.currentThread()));
+        dispatcher.flush("run#1");
+        assertNotEquals(Thread.currentThread(), firstExecutorThread.get());
+
+        // executor recreated with more threads, the queued events are dispatched by the new executor
+        configure(true, 2, 10_000);
+        List<String> events = new CopyOnWriteArrayList<>();
+        dispatcher.dispatch("run#1", true, "second", () -> events.add("second"));
+        dispatcher.flush("run#1");
+        assertEquals(List.of("second"), events);
+        firstExecutorThread.get().join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse("the previous executor must be shut down", firstExecutorThread.get().isAlive());
+
+        // asynchronous dispatch disabled, the events of the runs in progress are dispatched synchronously
+        configure(false, 2, 10_000);
+        AtomicReference<Thread> dispatchingThread = new AtomicReference<>();
+        dispatcher.dispatch("run#1", true, "third", () -> dispatchingThread.set(Thread.currentThread()));
+        assertSame(Thread.currentThread(), dispatchingThread.get());
+    }
+
+    @Test
+    public void testShutdownDispatchesThePendingEvents() {
+        configure(true, 2, 10_000);
+        List<Integer> events = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int event = i;
+            dispatcher.dispatch("run#1", true, "event-" + i, () -> events.add(event));
+        }
+        dispatcher.shutdown();
+        assertEquals(IntStream.range(0, 100).boxed().collect(Collectors.toList()), events);
+
+        AtomicReference<Thread> dispatchingThread = new AtomicReference<>();
+        dispatcher.dispatch("run#1", true, "late", () -> dispatchingThread.set(Thread.currentThread()));
+        assertSame(Thread.currentThread(), dispatchingThread.get());
+    }
+
+    static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
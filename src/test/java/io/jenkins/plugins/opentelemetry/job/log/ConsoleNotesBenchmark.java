@@ -0,0 +1,118 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import com.google.common.collect.ImmutableMap;
+import hudson.console.ConsoleNote;
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
+import net.sf.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compare the byte level {@link ConsoleNotes.Parser} with the former parsing decoding each line in a {@link String} on
+ * a pipeline console log where most lines carry hyperlink or timestamp console notes.
+ */
+public class ConsoleNotesBenchmark {
+    static final String[] CONSOLE_LOG = {
+        "\u001B[8mha:////4M6NtB0GTRQCAdaplVIR0VJ+LHnCL5SK5Up3VN+g96s2AAAAoh+LCAAAAAAAAP9tjTEOAiEURD9rLGwtPQTbGRNjZUtoPAGyiLDkfxZYdytP5NW8g8RNrJxkknnTvNcb1jnBiZLl3mDvMGvHYxhtXXyi1N8CTdzTlWvCTMFwaSZJnTkvKKkYWMIaWAnYGNSBskNbYCu8eqg2KLTtpaT6HQU0rhvgCUxUc1GpfGFOsLuPXSb8ef4KYI6xADvU7j9Dg2gqvAAAAA==\u001B[0m[Pipeline] }\n",
+        "\u001B[8mha:////4NtlmQKo1G0NaSfxFKN2g+kGotqT+iGehz/XCBJWEHlfAAAAph+LCAAAAAAAAP9tjTEOwjAQBM9BKWgpeYQDEh2iorXc8AITG+PEugv2haTiRXyNPxCIRMVWOyut5vmCMic4UPKycdgGzHWQXez91ORAqb1EGmRDZ1kTZopOajdosu44oyZ2MEcUsFCwdFhHygE9w0o15m6qaNBXJ07TtldQBHuDBwg1mdkk/sKYYH3tbSb8ef4KYOwYxI6h2G4+x/INtuQqUcEAAAA=\u001B[0m[Pipeline] withEnv\n",
+        "\u001B[8mha:////4Mvxbm1S/M3MEIZ30oxOtJ5Yv0tMJ+nki3DSqJQODl2EAAAAhB+LCAAAAAAAAP9b85aBtbiIwSa/KF0vKzUvOzOvODlTryCnNB3I0kvPLMkoTYpPKkrMS86IL84vLUpO1XPPLPEoTXLOzyvOz0n1yy9JZYAARiYGRi8GzpLM3NTiksTcgooiBqmM0pTi/Dy9ZIhiPayaGCoKgHRd5uufMwBru/q/jgAAAA==\u001B[0mConnecting to https://api.github.com using github\n",
+        "\u001B[8mha:////4AAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAAA==\u001B[0m[2024-05-14T09:12:44.123Z] [INFO] Downloading from central: https://repo.maven.apache.org/maven2/org/jenkins-ci/plugins/plugin/4.80/plugin-4.80.pom\n",
+        "[INFO] Compiling 312 source files with javac [debug release 11] to target/classes\n",
+        "+ ./mvnw -B -ntp verify\n",
+    };
+    static final int LINES_PER_INVOCATION = 1_000;
+
+    @State(Scope.Thread)
+    public static class ConsoleLogState {
+        final List<byte[]> lines = new ArrayList<>();
+        final ConsoleNotes.Parser parser = new ConsoleNotes.Parser();
+
+        @Setup
+        public void setup() {
+            for (int i = 0; i < LINES_PER_INVOCATION; i++) {
+                lines.add(CONSOLE_LOG[i % CONSOLE_LOG.length].getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_PER_INVOCATION)
+    public void parser(ConsoleLogState state, Blackhole blackhole) {
+        for (byte[] line : state.lines) {
+            blackhole.consume(state.parser.parse(line, line.length));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_PER_INVOCATION)
+    public void parserWithLogFormatting(ConsoleLogState state, Blackhole blackhole) {
+        for (byte[] line : state.lines) {
+            blackhole.consume(state.parser.parse(line, line.length));
+            if (state.parser.hasAnnotations()) {
+                blackhole.consume(state.parser.getAnnotations().toString());
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_PER_INVOCATION)
+    public void stringParsing(ConsoleLogState state, Blackhole blackhole) {
+        for (byte[] line : state.lines) {
+            blackhole.consume(parseString(line, line.length));
+        }
+    }
+
+    /**
+     * Former implementation of {@link ConsoleNotes#parse(byte[], int)}
+     */
+    static ConsoleNotes.TextAndAnnotations parseString(byte[] bytes, int len) {
+        int endOfLine = len;
+        while (endOfLine > 0) {
+            byte character = bytes[endOfLine - 1];
+            if (character == '\n' || character == '\r') {
+                endOfLine--;
+            } else {
+                break;
+            }
+        }
+        String line = new String(bytes, 0, endOfLine, StandardCharsets.UTF_8);
+        if (!line.contains(ConsoleNote.PREAMBLE_STR)) {
+            return new ConsoleNotes.TextAndAnnotations(line, null);
+        } else {
+            StringBuilder buf = new StringBuilder();
+            List<Map<String, Object>> annotations = new ArrayList<>();
+            int pos = 0;
+            while (true) {
+                int preamble = line.indexOf(ConsoleNote.PREAMBLE_STR, pos);
+                if (preamble == -1) {
+                    break;
+                }
+                int endOfPreamble = preamble + ConsoleNote.PREAMBLE_STR.length();
+                int postamble = line.indexOf(ConsoleNote.POSTAMBLE_STR, endOfPreamble);
+                if (postamble == -1) {
+                    break;
+                }
+                buf.append(line, pos, preamble);
+                annotations.add(
+                    ImmutableMap.of(JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS_POSITION_FIELD, buf.length(), JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS_NOTE_FIELD, line.substring(endOfPreamble, postamble)));
+                pos = postamble + ConsoleNote.POSTAMBLE_STR.length();
+            }
+            buf.append(line, pos, line.length());
+            return new ConsoleNotes.TextAndAnnotations(buf.toString(), JSONArray.fromObject(annotations));
+        }
+    }
+}
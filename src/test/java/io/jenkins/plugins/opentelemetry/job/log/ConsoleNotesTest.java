@@ -5,6 +5,8 @@
 
 package io.jenkins.plugins.opentelemetry.job.log;
 
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
+import net.sf.json.JSONArray;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -32,6 +34,31 @@ public class ConsoleNotesTest {
         verifyParsing(expectedMessage, data);
     }
 
+    @Test
+    public void testAnnotationsWithReusedParser() {
+        ConsoleNotes.Parser parser = new ConsoleNotes.Parser();
+        byte[] annotatedLine = "é \u001B[8mha:note-1\u001B[0mlink\u001B[8mha:note-2\u001B[0m end\n".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals("é link end", parser.parse(annotatedLine, annotatedLine.length));
+        Assert.assertTrue(parser.hasAnnotations());
+        JSONArray annotations = parser.getAnnotations();
+        Assert.assertEquals(2, annotations.size());
+        Assert.assertEquals(2, annotations.getJSONObject(0).getInt(JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS_POSITION_FIELD));
+        Assert.assertEquals("note-1", annotations.getJSONObject(0).getString(JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS_NOTE_FIELD));
+        Assert.assertEquals(6, annotations.getJSONObject(1).getInt(JenkinsOtelSemanticAttributes.JENKINS_ANSI_ANNOTATIONS_POSITION_FIELD));
+        Assert.assertEquals("é \u001B[8mha:note-1\u001B[0mlink\u001B[8mha:note-2\u001B[0m end", ConsoleNotes.readFormattedMessage("é link end", annotations));
+        Assert.assertEquals(
+            ConsoleNotes.readFormattedMessage("é link end", annotations).getBytes(StandardCharsets.UTF_8).length,
+            ConsoleNotes.formattedMessageLengthInBytes("é link end", annotations));
+
+        byte[] plainLine = "plain\r\n".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals("plain", parser.parse(plainLine, plainLine.length));
+        Assert.assertFalse(parser.hasAnnotations());
+
+        byte[] malformedLine = "a\u001B[8mha:unterminated".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals("a\u001B[8mha:unterminated", parser.parse(malformedLine, malformedLine.length));
+        Assert.assertFalse(parser.hasAnnotations());
+    }
+
     private void verifyParsing(String expectedMessage, String data) {
         byte[] dataAsBytes = data.getBytes(StandardCharsets.UTF_8);
         ConsoleNotes.TextAndAnnotations textAndAnnotations = ConsoleNotes.parse(dataAsBytes, dataAsBytes.length);
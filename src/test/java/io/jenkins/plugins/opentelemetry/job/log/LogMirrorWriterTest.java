@@ -0,0 +1,242 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import hudson.model.BuildListener;
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
+import io.opentelemetry.api.logs.LoggerProvider;
+import io.opentelemetry.api.metrics.MeterProvider;
+import io.opentelemetry.sdk.autoconfigure.spi.internal.DefaultConfigProperties;
+import org.jenkinsci.plugins.workflow.log.OutputStreamTaskListener;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class LogMirrorWriterTest {
+
+    @Test
+    public void testSynchronousByDefault() {
+        LogMirrorWriter logMirrorWriter = newLogMirrorWriter(false);
+        BuildListener listener = new ByteArrayBuildListener(new ByteArrayOutputStream());
+        assertSame(listener, logMirrorWriter.wrap(new File("log"), listener));
+    }
+
+    @Test
+    public void testWritesAreOrderedAcrossTheStreamsOfTheRun() throws Exception {
+        LogMirrorWriter logMirrorWriter = newLogMirrorWriter(true);
+        ByteArrayOutputStream logFile = new ByteArrayOutputStream();
+        BuildListener overallListener = logMirrorWriter.wrap(new File("log"), new ByteArrayBuildListener(logFile));
+        BuildListener nodeListener = logMirrorWriter.wrap(new File("log"), new ByteArrayBuildListener(logFile));
+        assertNotSame(logFile, ((OutputStreamTaskListener) overallListener).getOutputStream());
+
+        OutputStream overallOutputStream = ((OutputStreamTaskListener) overallListener).getOutputStream();
+        OutputStream nodeOutputStream = ((OutputStreamTaskListener) nodeListener).getOutputStream();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1_000; i++) {
+            String line = (i % 2 == 0 ? "overall-" : "node-") + i + "\n";
+            (i % 2 == 0 ? overallOutputStream : nodeOutputStream).write(line.getBytes(StandardCharsets.UTF_8));
+            expected.append(line);
+        }
+        ((AutoCloseable) nodeListener).close();
+        ((AutoCloseable) overallListener).close();
+
+        assertEquals(expected.toString(), logFile.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFullBufferBlocksTheWriters() throws Exception {
+        LogMirrorWriter logMirrorWriter = newLogMirrorWriter(true, LogMirrorWriter.CHUNK_SIZE);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        ByteArrayOutputStream logFile = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                writing.countDown();
+                try {
+                    assertTrue(released.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                super.write(b, off, len);
+            }
+        };
+        BuildListener listener = logMirrorWriter.wrap(new File("log"), new ByteArrayBuildListener(logFile));
+        OutputStream outputStream = ((OutputStreamTaskListener) listener).getOutputStream();
+        byte[] bytes = new byte[3 * LogMirrorWriter.CHUNK_SIZE];
+        Arrays.fill(bytes, (byte) 'a');
+
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            try {
+                outputStream.write(bytes);
+            } catch (IOException e) {
+                failure.set(e);
+            }
+        });
+        producer.start();
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+        // the first chunk is being written and the second one fills the buffer, the third one waits
+        producer.join(100);
+        assertTrue("the producer must wait for the writer", producer.isAlive());
+
+        released.countDown();
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(producer.isAlive());
+        assertNull(failure.get());
+        ((AutoCloseable) listener).close();
+        assertEquals(bytes.length, logFile.size());
+    }
+
+    @Test
+    public void testRemoteWritesAreOrderedWithTheWritesOfTheController() throws Exception {
+        LogMirrorWriter logMirrorWriter = newLogMirrorWriter(true);
+        ByteArrayOutputStream logFile = new ByteArrayOutputStream();
+        LogMirrorWriter.AsyncMirrorBuildListener listener = (LogMirrorWriter.AsyncMirrorBuildListener) logMirrorWriter.wrap(new File("log"), new ByteArrayBuildListener(logFile));
+
+        // the listener sent to the agents writes in the same buffer
+        BuildListener remoteListener = (BuildListener) listener.writeReplace();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1_000; i++) {
+            String line = (i % 2 == 0 ? "controller-" : "agent-") + i + "\n";
+            if (i % 2 == 0) {
+                listener.getLogger().print(line);
+                listener.getLogger().flush();
+            } else {
+                remoteListener.getLogger().print(line);
+                remoteListener.getLogger().flush();
+            }
+            expected.append(line);
+        }
+        listener.close();
+
+        assertEquals(expected.toString(), logFile.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testWriteFailuresAreRethrown() throws Exception {
+        LogMirrorWriter logMirrorWriter = newLogMirrorWriter(true);
+        OutputStream failingLogFile = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        BuildListener listener = logMirrorWriter.wrap(new File("log"), new FailingBuildListener(failingLogFile));
+        OutputStream outputStream = ((OutputStreamTaskListener) listener).getOutputStream();
+        outputStream.write("lost\n".getBytes(StandardCharsets.UTF_8));
+
+        IOException e = assertThrows(IOException.class, () -> ((AutoCloseable) listener).close());
+        assertEquals("disk full", e.getCause().getMessage());
+        assertThrows(IOException.class, () -> outputStream.write("next\n".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testFlushWithoutPendingBytesFlushesTheTargetsOfPreviousWrites() throws Exception {
+        LogMirrorWriter logMirrorWriter = newLogMirrorWriter(true);
+        AtomicInteger flushes = new AtomicInteger();
+        ByteArrayOutputStream logFile = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes.incrementAndGet();
+            }
+        };
+        BuildListener listener = logMirrorWriter.wrap(new File("log"), new ByteArrayBuildListener(logFile));
+        LogMirrorWriter.AsyncMirrorOutputStream outputStream = (LogMirrorWriter.AsyncMirrorOutputStream) ((OutputStreamTaskListener) listener).getOutputStream();
+        outputStream.write("unflushed\n".getBytes(StandardCharsets.UTF_8));
+        outputStream.runMirror.awaitWritten();
+        assertEquals("unflushed\n", logFile.toString(StandardCharsets.UTF_8));
+        assertEquals(0, flushes.get());
+
+        // the bytes were written by a previous batch, the flush request comes with an empty batch
+        outputStream.flush();
+        outputStream.runMirror.awaitWritten();
+        assertEquals(1, flushes.get());
+
+        // nothing written since the last flush
+        outputStream.flush();
+        outputStream.runMirror.awaitWritten();
+        assertEquals(1, flushes.get());
+        ((AutoCloseable) listener).close();
+    }
+
+    static LogMirrorWriter newLogMirrorWriter(boolean async) {
+        return newLogMirrorWriter(async, 1024 * 1024);
+    }
+
+    static LogMirrorWriter newLogMirrorWriter(boolean async, int bufferSize) {
+        LogMirrorWriter logMirrorWriter = new LogMirrorWriter();
+        logMirrorWriter.afterSdkInitialized(
+            MeterProvider.noop().get("test"), LoggerProvider.noop(), null, null,
+            DefaultConfigProperties.createFromMap(Map.of(
+                JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_MIRROR_ASYNC_ENABLED, String.valueOf(async),
+                JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_MIRROR_ASYNC_BUFFER_SIZE, String.valueOf(bufferSize))));
+        return logMirrorWriter;
+    }
+
+    static final class FailingBuildListener implements BuildListener, OutputStreamTaskListener {
+        private static final long serialVersionUID = 1L;
+
+        final transient OutputStream outputStream;
+
+        FailingBuildListener(OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        @NonNull
+        @Override
+        public OutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        @NonNull
+        @Override
+        public PrintStream getLogger() {
+            return new PrintStream(outputStream, true, StandardCharsets.UTF_8);
+        }
+    }
+
+    static final class ByteArrayBuildListener implements BuildListener, OutputStreamTaskListener {
+        private static final long serialVersionUID = 1L;
+
+        final transient ByteArrayOutputStream outputStream;
+
+        ByteArrayBuildListener(ByteArrayOutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        @NonNull
+        @Override
+        public OutputStream getOutputStream() {
+            return outputStream;
+        }
+
+        @NonNull
+        @Override
+        public PrintStream getLogger() {
+            return new PrintStream(outputStream, true, StandardCharsets.UTF_8);
+        }
+    }
+}
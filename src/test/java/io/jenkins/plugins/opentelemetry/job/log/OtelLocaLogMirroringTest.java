@@ -119,6 +119,22 @@ public class OtelLocaLogMirroringTest {
     }
 
 
+    @Test
+    public void log_length_is_final_once_the_run_has_closed_its_log_streams() throws Exception {
+        assumeFalse(SystemUtils.IS_OS_WINDOWS);
+        Map<String, String> configuration = new HashMap<>();
+        configuration.put("otel.logs.exporter", "otlp");
+        reInitProvider(configuration);
+
+        WorkflowRun build = runBuild();
+
+        LogLengthAction logLengthAction = build.getAction(LogLengthAction.class);
+        assertNotNull(logLengthAction);
+        assertTrue("all the log streams of the run have been closed: " + logLengthAction, logLengthAction.isFinal());
+        assertTrue(logLengthAction.toString(), logLengthAction.getLengthInBytes() > printedLine.length());
+    }
+
+
     @Test
     public void return_log_from_file_when_log_file_mirrored() throws Exception {
         assumeFalse(SystemUtils.IS_OS_WINDOWS);
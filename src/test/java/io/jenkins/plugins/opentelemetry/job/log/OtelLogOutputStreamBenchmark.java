@@ -0,0 +1,64 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import io.jenkins.plugins.opentelemetry.OtelUtils;
+import io.jenkins.plugins.opentelemetry.opentelemetry.common.Clocks;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.sdk.logs.SdkLoggerProvider;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Cost per log line of {@link OtelLogOutputStream}, the number of lines per second is the inverse of the reported
+ * average time.
+ */
+public class OtelLogOutputStreamBenchmark {
+    static final int LINES_PER_INVOCATION = 1_000;
+
+    @State(Scope.Thread)
+    public static class LogOutputStreamState {
+        SdkLoggerProvider loggerProvider;
+        OtelLogOutputStream outputStream;
+        byte[] line;
+
+        @Setup
+        public void setup() {
+            SdkTracerProvider tracerProvider = SdkTracerProvider.builder().build();
+            Span span = tracerProvider.get("benchmark").spanBuilder("sh").startSpan();
+            RunTraceContext runTraceContext = new FlowNodeTraceContext(
+                "my-folder/my-pipeline", 1234, "42",
+                span.getSpanContext().getTraceId(), span.getSpanContext().getSpanId(), OtelUtils.getW3cTraceContext(span));
+            span.end();
+            tracerProvider.close();
+
+            loggerProvider = SdkLoggerProvider.builder().build();
+            outputStream = new OtelLogOutputStream(runTraceContext, loggerProvider.get("benchmark"), Clocks.monotonicClock());
+            line = "[INFO] Building jar: /home/jenkins/agent/workspace/my-pipeline/target/my-artifact-1.0.0-SNAPSHOT.jar\n".getBytes(StandardCharsets.UTF_8);
+        }
+
+        @TearDown
+        public void tearDown() {
+            loggerProvider.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES_PER_INVOCATION)
+    public void writeLines(LogOutputStreamState state) throws IOException {
+        for (int i = 0; i < LINES_PER_INVOCATION; i++) {
+            state.outputStream.write(state.line);
+        }
+    }
+}
@@ -0,0 +1,516 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import io.jenkins.plugins.opentelemetry.opentelemetry.LogRecordExportBackpressure;
+import io.jenkins.plugins.opentelemetry.opentelemetry.autoconfigure.ConfigPropertiesUtils;
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.metrics.MeterProvider;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdk;
+import io.opentelemetry.sdk.autoconfigure.AutoConfiguredOpenTelemetrySdkBuilder;
+import io.opentelemetry.sdk.autoconfigure.spi.ConfigProperties;
+import io.opentelemetry.sdk.autoconfigure.spi.internal.DefaultConfigProperties;
+import io.opentelemetry.sdk.common.Clock;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.logs.LogRecordProcessor;
+import io.opentelemetry.sdk.logs.ReadWriteLogRecord;
+import io.opentelemetry.sdk.logs.SdkLoggerProvider;
+import io.opentelemetry.sdk.logs.data.LogRecordData;
+import io.opentelemetry.sdk.logs.export.LogRecordExporter;
+import io.opentelemetry.sdk.logs.export.SimpleLogRecordProcessor;
+import io.opentelemetry.sdk.testing.exporter.InMemoryLogRecordExporter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OtelLogOutputStreamTest {
+
+    InMemoryLogRecordExporter exporter;
+    SdkLoggerProvider loggerProvider;
+    RunTraceContext runTraceContext = new RunTraceContext("my-pipeline", 1, "0af7651916cd43dd8448eb211c80319c", "b7ad6b7169203331", Collections.emptyMap());
+
+    @Before
+    public void before() {
+        exporter = InMemoryLogRecordExporter.create();
+        loggerProvider = SdkLoggerProvider.builder().addLogRecordProcessor(SimpleLogRecordProcessor.create(exporter)).build();
+    }
+
+    @After
+    public void after() {
+        loggerProvider.close();
+    }
+
+    @Test
+    public void testOneRecordPerLine() throws Exception {
+        try (OtelLogOutputStream outputStream = new OtelLogOutputStream(runTraceContext, loggerProvider.get("test"), Clock.getDefault())) {
+            outputStream.write("first\nsecond\n".getBytes(StandardCharsets.UTF_8));
+        }
+        List<LogRecordData> logRecords = exporter.getFinishedLogRecordItems();
+        assertEquals(2, logRecords.size());
+        assertEquals("first", logRecords.get(0).getBody().asString());
+        assertNull(logRecords.get(0).getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_LOG_LINE_COUNT));
+    }
+
+    @Test
+    public void testChunking() throws Exception {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_CHUNKING_ENABLED, "true");
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_CHUNKING_MAX_BYTES, "20");
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_CHUNKING_MAX_DELAY, "1h");
+        ConfigProperties config = DefaultConfigProperties.createFromMap(properties);
+
+        try (OtelLogOutputStream outputStream = new OtelLogOutputStream(runTraceContext, loggerProvider.get("test"), Clock.getDefault(), config)) {
+            outputStream.write("first\nsecond\nthird\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals("chunk not yet full", 0, exporter.getFinishedLogRecordItems().size());
+            outputStream.write("fourth\nfifth\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals("chunk full", 1, exporter.getFinishedLogRecordItems().size());
+        }
+        List<LogRecordData> logRecords = exporter.getFinishedLogRecordItems();
+        assertEquals(2, logRecords.size());
+        assertEquals("first\nsecond\nthird", logRecords.get(0).getBody().asString());
+        assertEquals(Long.valueOf(3), logRecords.get(0).getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_LOG_LINE_COUNT));
+        assertEquals("fourth\nfifth", logRecords.get(1).getBody().asString());
+        assertEquals(Long.valueOf(2), logRecords.get(1).getAttributes().get(JenkinsOtelSemanticAttributes.JENKINS_LOG_LINE_COUNT));
+    }
+
+    @Test
+    public void testLogLength() throws Exception {
+        LogLengthAction logLengthAction = new LogLengthAction();
+        try (OtelLogOutputStream outputStream = new OtelLogOutputStream(runTraceContext, loggerProvider.get("test"), MeterProvider.noop().get("test"), Clock.getDefault(), ConfigPropertiesUtils.emptyConfig(), logLengthAction)) {
+            outputStream.write("first\ndeuxième ligne ✔\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals("first\ndeuxième ligne ✔\n".getBytes(StandardCharsets.UTF_8).length, logLengthAction.getLengthInBytes());
+        assertTrue(logLengthAction.isFinal());
+    }
+
+    @Test
+    public void testLogLengthNotFinalUntilAllStreamsAreClosed() throws Exception {
+        LogLengthAction logLengthAction = new LogLengthAction();
+        assertFalse("no stream opened", logLengthAction.isFinal());
+        OtelLogOutputStream first = new OtelLogOutputStream(runTraceContext, loggerProvider.get("test"), MeterProvider.noop().get("test"), Clock.getDefault(), ConfigPropertiesUtils.emptyConfig(), logLengthAction);
+        OtelLogOutputStream second = new OtelLogOutputStream(runTraceContext, loggerProvider.get("test"), MeterProvider.noop().get("test"), Clock.getDefault(), ConfigPropertiesUtils.emptyConfig(), logLengthAction);
+        first.write("first\n".getBytes(StandardCharsets.UTF_8));
+        first.close();
+        // closing twice doesn't report the length twice
+        first.close();
+        assertFalse("second stream still open", logLengthAction.isFinal());
+        second.close();
+        assertTrue(logLengthAction.isFinal());
+        assertEquals("first\n".length(), logLengthAction.getLengthInBytes());
+    }
+
+    @Test
+    public void testRepeatedLinesCollapsing() throws Exception {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_REPEATED_LINES_COLLAPSING_ENABLED, "true");
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_REPEATED_LINES_COLLAPSING_WINDOW, "1h");
+        ConfigProperties config = DefaultConfigProperties.createFromMap(properties);
+
+        try (OtelLogOutputStream outputStream = new OtelLogOutputStream(runTraceContext, loggerProvider.get("test"), Clock.getDefault(), config)) {
+            outputStream.write("Pulling fs layer\n".getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i <= 100; i += 10) {
+                outputStream.write(("Downloading " + i + "% (" + i * 1024 + " bytes)\n").getBytes(StandardCharsets.UTF_8));
+            }
+            outputStream.write("Pull complete\n".getBytes(StandardCharsets.UTF_8));
+            outputStream.write("Pull complete\n".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(
+            List.of(
+                "Pulling fs layer",
+                "Downloading 0% (0 bytes)",
+                "[OpenTelemetry] 9 similar lines collapsed",
+                "Downloading 100% (102400 bytes)",
+                "Pull complete",
+                "Pull complete"),
+            exporter.getFinishedLogRecordItems().stream().map(logRecord -> logRecord.getBody().asString()).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testCollapsedLinesEmittedAtTheEndOfTheWindow() throws Exception {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_REPEATED_LINES_COLLAPSING_ENABLED, "true");
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_REPEATED_LINES_COLLAPSING_WINDOW, "200ms");
+        ConfigProperties config = DefaultConfigProperties.createFromMap(properties);
+
+        CountDownLatch emitted = new CountDownLatch(3);
+        LogRecordProcessor countingProcessor = new LogRecordProcessor() {
+            @Override
+            public void onEmit(Context context, ReadWriteLogRecord logRecord) {
+                emitted.countDown();
+            }
+        };
+        try (SdkLoggerProvider countingLoggerProvider = SdkLoggerProvider.builder()
+            .addLogRecordProcessor(SimpleLogRecordProcessor.create(exporter))
+            .addLogRecordProcessor(countingProcessor)
+            .build()) {
+            OtelLogOutputStream outputStream = new OtelLogOutputStream(runTraceContext, countingLoggerProvider.get("test"), Clock.getDefault(), config);
+            for (int i = 0; i <= 100; i += 10) {
+                outputStream.write(("Downloading " + i + "%\n").getBytes(StandardCharsets.UTF_8));
+            }
+            // the collapsed run ends the stream, the stream is neither flushed nor closed
+            assertTrue(emitted.await(10, TimeUnit.SECONDS));
+            assertEquals(
+                List.of(
+                    "Downloading 0%",
+                    "[OpenTelemetry] 9 similar lines collapsed",
+                    "Downloading 100%"),
+                exporter.getFinishedLogRecordItems().stream().map(logRecord -> logRecord.getBody().asString()).collect(Collectors.toList()));
+            outputStream.close();
+        }
+        assertEquals(3, exporter.getFinishedLogRecordItems().size());
+    }
+
+    @Test
+    public void testLinesEmittedSynchronouslyOnceTheChunksSchedulerIsShutDown() throws Exception {
+        Map<String, String> properties = new HashMap<>();
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_CHUNKING_ENABLED, "true");
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_CHUNKING_MAX_DELAY, "1h");
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_REPEATED_LINES_COLLAPSING_ENABLED, "true");
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_REPEATED_LINES_COLLAPSING_WINDOW, "1h");
+        ConfigProperties config = DefaultConfigProperties.createFromMap(properties);
+
+        try (OtelLogOutputStream outputStream = new OtelLogOutputStream(runTraceContext, loggerProvider.get("test"), Clock.getDefault(), config)) {
+            outputStream.write("first\n".getBytes(StandardCharsets.UTF_8));
+            assertEquals("line held in the chunk", 0, exporter.getFinishedLogRecordItems().size());
+
+            OtelLogOutputStream.shutdownChunksScheduler();
+            assertEquals("chunk emitted by the shutdown", List.of("first"), getExportedBodies());
+
+            outputStream.write("step 1\nstep 2\n".getBytes(StandardCharsets.UTF_8));
+            // neither chunked nor collapsed, the scheduler is not created again to emit the held lines
+            assertEquals(List.of("first", "step 1", "step 2"), getExportedBodies());
+        } finally {
+            OtelLogOutputStream.startChunksScheduler();
+        }
+    }
+
+    @Test
+    public void testIsRepeatedLine() {
+        assertTrue(OtelLogOutputStream.isRepeatedLine("waiting", "waiting"));
+        assertTrue(OtelLogOutputStream.isRepeatedLine("attempt 9 of 10", "attempt 10 of 10"));
+        assertFalse(OtelLogOutputStream.isRepeatedLine("attempt 9 of 10", "attempt 9 of 10 failed"));
+        assertFalse(OtelLogOutputStream.isRepeatedLine("attempt 9", "attempt x"));
+    }
+
+    @Test
+    public void testQueueDropOldest() throws Exception {
+        assertEquals(
+            List.of("line-1", "[OpenTelemetry] 2 lines dropped, the log is incomplete", "line-4"),
+            writeLinesWithBlockedExporter("drop_oldest"));
+    }
+
+    @Test
+    public void testQueueSpill() throws Exception {
+        assertEquals(
+            List.of("line-1", "line-2", "line-3", "line-4"),
+            writeLinesWithBlockedExporter("spill"));
+    }
+
+    /**
+     * Write 4 lines in a queue of capacity 1 while the emission of the first line is blocked
+     */
+    List<String> writeLinesWithBlockedExporter(String policy) throws Exception {
+        CountDownLatch emitting = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        LogRecordProcessor blockingProcessor = new LogRecordProcessor() {
+            @Override
+            public void onEmit(Context context, ReadWriteLogRecord logRecord) {
+                emitting.countDown();
+                try {
+                    assertTrue(released.await(10, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+        Map<String, String> properties = new HashMap<>();
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_QUEUE_POLICY, policy);
+        properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_QUEUE_CAPACITY, "1");
+        ConfigProperties config = DefaultConfigProperties.createFromMap(properties);
+
+        try (SdkLoggerProvider blockingLoggerProvider = SdkLoggerProvider.builder()
+            .addLogRecordProcessor(blockingProcessor)
+            .addLogRecordProcessor(SimpleLogRecordProcessor.create(exporter))
+            .build();
+             OtelLogOutputStream outputStream = new OtelLogOutputStream(runTraceContext, blockingLoggerProvider.get("test"), Clock.getDefault(), config)) {
+            outputStream.write("line-1\n".getBytes(StandardCharsets.UTF_8));
+            assertTrue(emitting.await(10, TimeUnit.SECONDS));
+            outputStream.write("line-2\nline-3\nline-4\n".getBytes(StandardCharsets.UTF_8));
+            released.countDown();
+        }
+        return exporter.getFinishedLogRecordItems().stream().map(logRecord -> logRecord.getBody().asString()).collect(Collectors.toList());
+    }
+
+    @Test
+    public void testQueueWaitsForTheBatchProcessorExport() throws Exception {
+        SlowLogRecordExporter slowExporter = new SlowLogRecordExporter();
+        try (OpenTelemetrySdk openTelemetrySdk = buildOpenTelemetrySdkWithBatchProcessor(slowExporter)) {
+            Map<String, String> properties = new HashMap<>();
+            properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_QUEUE_POLICY, "block");
+            properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_QUEUE_CAPACITY, "1");
+            ConfigProperties config = DefaultConfigProperties.createFromMap(properties);
+
+            OtelLogOutputStream outputStream = new OtelLogOutputStream(runTraceContext, openTelemetrySdk.getSdkLoggerProvider().get("test"), Clock.getDefault(), config);
+            Thread writer = new Thread(() -> {
+                try (OtelLogOutputStream out = outputStream) {
+                    for (int i = 1; i <= 10; i++) {
+                        out.write(("line-" + i + "\n").getBytes(StandardCharsets.UTF_8));
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            writer.start();
+            assertTrue(slowExporter.exporting.await(10, TimeUnit.SECONDS));
+            // at most 2 records pending export in the batch processor, 1 waiting to be emitted and 1 in the queue
+            writer.join(100);
+            assertTrue("the pipeline must wait for the export of the log records", writer.isAlive());
+
+            slowExporter.release();
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+            assertFalse(writer.isAlive());
+            assertTrue(openTelemetrySdk.getSdkLoggerProvider().forceFlush().join(10, TimeUnit.SECONDS).isSuccess());
+
+            assertEquals(
+                List.of("line-1", "line-2", "line-3", "line-4", "line-5", "line-6", "line-7", "line-8", "line-9", "line-10"),
+                slowExporter.getExportedBodies());
+            assertEquals(0, LogRecordExportBackpressure.getDroppedLogRecords());
+        }
+    }
+
+    @Test
+    public void testBatchProcessorDropsAreCounted() throws Exception {
+        SlowLogRecordExporter slowExporter = new SlowLogRecordExporter();
+        try (OpenTelemetrySdk openTelemetrySdk = buildOpenTelemetrySdkWithBatchProcessor(slowExporter)) {
+            try (OtelLogOutputStream outputStream = new OtelLogOutputStream(runTraceContext, openTelemetrySdk.getSdkLoggerProvider().get("test"), Clock.getDefault())) {
+                for (int i = 1; i <= 10; i++) {
+                    outputStream.write(("line-" + i + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            // the records are emitted synchronously, only the first 2 records can be pending export
+            assertEquals(8, LogRecordExportBackpressure.getDroppedLogRecords());
+
+            slowExporter.release();
+            assertTrue(openTelemetrySdk.getSdkLoggerProvider().forceFlush().join(10, TimeUnit.SECONDS).isSuccess());
+            assertEquals(List.of("line-1", "line-2"), slowExporter.getExportedBodies());
+        }
+    }
+
+    @Test
+    public void testLogLengthNotFinalWhenTheSdkDropsRecords() throws Exception {
+        SlowLogRecordExporter slowExporter = new SlowLogRecordExporter();
+        try (OpenTelemetrySdk openTelemetrySdk = buildOpenTelemetrySdkWithBatchProcessor(slowExporter)) {
+            LogLengthAction logLengthAction = new LogLengthAction();
+            try (OtelLogOutputStream outputStream = new OtelLogOutputStream(runTraceContext, openTelemetrySdk.getSdkLoggerProvider().get("test"), MeterProvider.noop().get("test"), Clock.getDefault(), ConfigPropertiesUtils.emptyConfig(), logLengthAction)) {
+                for (int i = 1; i <= 10; i++) {
+                    outputStream.write(("line-" + i + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            assertEquals(8, LogRecordExportBackpressure.getDroppedLogRecords());
+            // the emitted length is larger than the length of the exported records
+            assertFalse(logLengthAction.isFinal());
+
+            slowExporter.release();
+            assertTrue(openTelemetrySdk.getSdkLoggerProvider().forceFlush().join(10, TimeUnit.SECONDS).isSuccess());
+        }
+    }
+
+    @Test
+    public void testStalledExportDoesNotWaitForEachRecord() throws Exception {
+        SlowLogRecordExporter slowExporter = new SlowLogRecordExporter();
+        try (OpenTelemetrySdk openTelemetrySdk = buildOpenTelemetrySdkWithBatchProcessor(slowExporter, "1000")) {
+            Map<String, String> properties = new HashMap<>();
+            properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_QUEUE_POLICY, "drop_oldest");
+            properties.put(JenkinsOtelSemanticAttributes.OTEL_INSTRUMENTATION_JENKINS_LOGS_QUEUE_CLOSE_TIMEOUT, "30s");
+            ConfigProperties config = DefaultConfigProperties.createFromMap(properties);
+
+            long startInNanos = System.nanoTime();
+            try (OtelLogOutputStream outputStream = new OtelLogOutputStream(runTraceContext, openTelemetrySdk.getSdkLoggerProvider().get("test"), Clock.getDefault(), config)) {
+                for (int i = 1; i <= 10; i++) {
+                    outputStream.write(("line-" + i + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            // a single wait of the export timeout rather than one per record beyond the 2 records pending export
+            long closeDurationInMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startInNanos);
+            assertTrue("close took " + closeDurationInMillis + "ms", closeDurationInMillis < 5_000);
+            slowExporter.release();
+        }
+    }
+
+    @Test
+    public void testCloseDropsTheRecordsLeftAfterTheTimeout() throws Exception {
+        CountDownLatch emitting = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        try (SdkLoggerProvider blockingLoggerProvider = SdkLoggerProvider.builder()
+            .addLogRecordProcessor(new BlockingLogRecordProcessor("line-1", emitting, released))
+            .addLogRecordProcessor(SimpleLogRecordProcessor.create(exporter))
+            .build()) {
+            OtelLogRecordQueue queue = newLogRecordQueue(blockingLoggerProvider, OtelLogRecordQueue.Policy.BLOCK, 10, TimeUnit.MILLISECONDS.toNanos(100));
+            queue.add(newPendingLogRecord("line-1"), true);
+            assertTrue(emitting.await(10, TimeUnit.SECONDS));
+            queue.add(newPendingLogRecord("line-2"), true);
+            queue.add(newPendingLogRecord("line-3"), true);
+
+            CompletableFuture.runAsync(queue::close).get(10, TimeUnit.SECONDS);
+            assertEquals(List.of("[OpenTelemetry] 2 lines dropped, the log is incomplete"), getExportedBodies());
+            released.countDown();
+        }
+    }
+
+    @Test
+    public void testNonBlockingAddSpillsWhenTheQueueIsFull() throws Exception {
+        CountDownLatch emitting = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        try (SdkLoggerProvider blockingLoggerProvider = SdkLoggerProvider.builder()
+            .addLogRecordProcessor(new BlockingLogRecordProcessor("line-1", emitting, released))
+            .addLogRecordProcessor(SimpleLogRecordProcessor.create(exporter))
+            .build()) {
+            OtelLogRecordQueue queue = newLogRecordQueue(blockingLoggerProvider, OtelLogRecordQueue.Policy.BLOCK, 1, TimeUnit.SECONDS.toNanos(10));
+            queue.add(newPendingLogRecord("line-1"), true);
+            assertTrue(emitting.await(10, TimeUnit.SECONDS));
+            queue.add(newPendingLogRecord("line-2"), true);
+            // like the chunks scheduler shared by all the log streams, must not wait for the queue to have room
+            CompletableFuture.runAsync(() -> queue.add(newPendingLogRecord("line-3"), false)).get(10, TimeUnit.SECONDS);
+
+            released.countDown();
+            queue.close();
+            assertEquals(List.of("line-1", "line-2", "line-3"), getExportedBodies());
+        }
+    }
+
+    OtelLogRecordQueue newLogRecordQueue(SdkLoggerProvider loggerProvider, OtelLogRecordQueue.Policy policy, int capacity, long closeTimeoutInNanos) {
+        return new OtelLogRecordQueue(runTraceContext, loggerProvider.get("test"), MeterProvider.noop().get("test"), Clock.getDefault(),
+            Context.root(), Attributes.empty(), policy, capacity, closeTimeoutInNanos);
+    }
+
+    static OtelLogRecordQueue.PendingLogRecord newPendingLogRecord(String body) {
+        return new OtelLogRecordQueue.PendingLogRecord(body, null, 1, Clock.getDefault().now(), body.length() + 1);
+    }
+
+    List<String> getExportedBodies() {
+        return exporter.getFinishedLogRecordItems().stream().map(logRecord -> logRecord.getBody().asString()).collect(Collectors.toList());
+    }
+
+    /**
+     * Blocks the emission of the record of the given body until released
+     */
+    static class BlockingLogRecordProcessor implements LogRecordProcessor {
+        final String blockedBody;
+        final CountDownLatch emitting;
+        final CountDownLatch released;
+
+        BlockingLogRecordProcessor(String blockedBody, CountDownLatch emitting, CountDownLatch released) {
+            this.blockedBody = blockedBody;
+            this.emitting = emitting;
+            this.released = released;
+        }
+
+        @Override
+        public void onEmit(Context context, ReadWriteLogRecord logRecord) {
+            if (!blockedBody.equals(logRecord.toLogRecordData().getBody().asString())) {
+                return;
+            }
+            emitting.countDown();
+            try {
+                assertTrue(released.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * SDK exporting the log records with a {@link io.opentelemetry.sdk.logs.export.BatchLogRecordProcessor} of queue
+     * size 2 to the given exporter
+     */
+    OpenTelemetrySdk buildOpenTelemetrySdkWithBatchProcessor(LogRecordExporter logRecordExporter) {
+        return buildOpenTelemetrySdkWithBatchProcessor(logRecordExporter, "10000");
+    }
+
+    OpenTelemetrySdk buildOpenTelemetrySdkWithBatchProcessor(LogRecordExporter logRecordExporter, String exportTimeoutInMillis) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("otel.traces.exporter", "none");
+        properties.put("otel.metrics.exporter", "none");
+        properties.put("otel.logs.exporter", "otlp");
+        properties.put("otel.blrp.max.queue.size", "2");
+        properties.put("otel.blrp.max.export.batch.size", "1");
+        properties.put("otel.blrp.schedule.delay", "10");
+        properties.put("otel.blrp.export.timeout", exportTimeoutInMillis);
+        AutoConfiguredOpenTelemetrySdkBuilder builder = AutoConfiguredOpenTelemetrySdk.builder()
+            .addPropertiesSupplier(() -> properties)
+            .addLogRecordExporterCustomizer((otlpExporter, configProperties) -> {
+                otlpExporter.shutdown();
+                return logRecordExporter;
+            })
+            .disableShutdownHook();
+        LogRecordExportBackpressure.configure(builder);
+        return builder.build().getOpenTelemetrySdk();
+    }
+
+    /**
+     * Exporter whose exports only complete once released
+     */
+    static class SlowLogRecordExporter implements LogRecordExporter {
+        final CountDownLatch exporting = new CountDownLatch(1);
+        final List<LogRecordData> exported = new ArrayList<>();
+        final List<CompletableResultCode> pendingResults = new ArrayList<>();
+        boolean released;
+
+        @Override
+        public synchronized CompletableResultCode export(Collection<LogRecordData> logs) {
+            exported.addAll(logs);
+            exporting.countDown();
+            if (released) {
+                return CompletableResultCode.ofSuccess();
+            }
+            CompletableResultCode result = new CompletableResultCode();
+            pendingResults.add(result);
+            return result;
+        }
+
+        synchronized void release() {
+            released = true;
+            pendingResults.forEach(CompletableResultCode::succeed);
+            pendingResults.clear();
+        }
+
+        synchronized List<String> getExportedBodies() {
+            return exported.stream().map(logRecord -> logRecord.getBody().asString()).collect(Collectors.toList());
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return CompletableResultCode.ofSuccess();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            release();
+            return CompletableResultCode.ofSuccess();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import hudson.remoting.Channel;
+import hudson.slaves.DumbSlave;
+import jenkins.security.MasterToSlaveCallable;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OtelLogSenderConfigurationsPushTest {
+
+    @Rule
+    public JenkinsRule jenkinsRule = new JenkinsRule();
+
+    @Test
+    public void testPushThenResolveOnTheAgent() throws Exception {
+        DumbSlave agent = jenkinsRule.createOnlineSlave();
+        Channel channel = (Channel) agent.getChannel();
+        assertNotNull(channel);
+        Map<String, String> properties = Map.of("otel.logs.exporter", "otlp", "otel.exporter.otlp.endpoint", "http://localhost:4317");
+        Map<String, String> resourceAttributes = Map.of("service.name", "jenkins");
+        String hash = OtelLogSenderConfigurations.hash(properties, resourceAttributes);
+        assertNull(channel.call(new GetConfiguration(hash)));
+
+        // the push doesn't wait for the agent, the first listener is sent with its configuration
+        assertFalse(OtelLogSenderConfigurations.pushIfAbsent(channel, hash, properties, resourceAttributes));
+        Future<Void> push = OtelLogSenderConfigurations.getPush(channel, hash);
+        assertNotNull(push);
+        push.get(30, TimeUnit.SECONDS);
+
+        // once pushed, the listeners are sent with the hash of their configuration that the agent resolves
+        assertTrue(OtelLogSenderConfigurations.pushIfAbsent(channel, hash, properties, resourceAttributes));
+        assertSame(push, OtelLogSenderConfigurations.getPush(channel, hash));
+        assertEquals(properties, channel.call(new GetConfiguration(hash)));
+    }
+
+    private static final class GetConfiguration extends MasterToSlaveCallable<Map<String, String>, RuntimeException> {
+        private static final long serialVersionUID = 1;
+
+        private final String hash;
+
+        GetConfiguration(String hash) {
+            this.hash = hash;
+        }
+
+        @Override
+        public Map<String, String> call() {
+            OtelLogSenderConfigurations.Configuration configuration = OtelLogSenderConfigurations.resolve(hash, Map.of(), Map.of());
+            return configuration == null ? null : configuration.otelConfigProperties;
+        }
+    }
+}
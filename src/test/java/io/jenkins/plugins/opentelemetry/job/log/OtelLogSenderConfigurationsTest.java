@@ -0,0 +1,101 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OtelLogSenderConfigurationsTest {
+
+    @Test
+    public void testHashIgnoresOrdering() {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("otel.exporter.otlp.endpoint", "http://localhost:4317");
+        properties.put("otel.logs.exporter", "otlp");
+        Map<String, String> reversedProperties = new LinkedHashMap<>();
+        reversedProperties.put("otel.logs.exporter", "otlp");
+        reversedProperties.put("otel.exporter.otlp.endpoint", "http://localhost:4317");
+        Map<String, String> resourceAttributes = Map.of("service.name", "jenkins");
+
+        assertEquals(
+            OtelLogSenderConfigurations.hash(properties, resourceAttributes),
+            OtelLogSenderConfigurations.hash(reversedProperties, resourceAttributes));
+    }
+
+    @Test
+    public void testHashDistinguishesPropertiesAndResourceAttributes() {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("service.name", "jenkins");
+
+        assertNotEquals(
+            OtelLogSenderConfigurations.hash(properties, Map.of()),
+            OtelLogSenderConfigurations.hash(Map.of(), properties));
+        assertNotEquals(
+            OtelLogSenderConfigurations.hash(properties, Map.of()),
+            OtelLogSenderConfigurations.hash(Map.of("service.name", "jenkins-2"), Map.of()));
+    }
+
+    @Test
+    public void testHashDistinguishesSeparatorsInKeysAndValues() {
+        assertNotEquals(
+            OtelLogSenderConfigurations.hash(Map.of("a=b", "c"), Map.of()),
+            OtelLogSenderConfigurations.hash(Map.of("a", "b=c"), Map.of()));
+        assertNotEquals(
+            OtelLogSenderConfigurations.hash(Map.of("a", "b\nc=d"), Map.of()),
+            OtelLogSenderConfigurations.hash(Map.of("a", "b", "c", "d"), Map.of()));
+    }
+
+    @Test
+    public void testResolveFallsBackOnTheConfiguredConfiguration() {
+        Map<String, String> properties = Map.of("otel.logs.exporter", "otlp", "test", "testResolveFallsBackOnTheConfiguredConfiguration");
+        Map<String, String> resourceAttributes = Map.of("service.name", "jenkins");
+        String hash = OtelLogSenderConfigurations.hash(properties, resourceAttributes);
+
+        // listener sent with its configuration
+        OtelLogSenderConfigurations.Configuration configuration = OtelLogSenderConfigurations.resolve(hash, properties, resourceAttributes);
+        assertEquals(properties, configuration.otelConfigProperties);
+        assertEquals(resourceAttributes, configuration.otelResourceAttributes);
+        OtelLogSenderConfigurations.configureIfChanged(hash, configuration, (p, r) -> {});
+
+        // listener sent with the hash of its configuration
+        assertSame(configuration, OtelLogSenderConfigurations.resolve(hash, Map.of(), Map.of()));
+
+        // listener sent with the hash of a configuration missing from the cache
+        String missingHash = OtelLogSenderConfigurations.hash(Map.of("test", "missing"), Map.of());
+        assertNull(OtelLogSenderConfigurations.get(missingHash));
+        assertSame(configuration, OtelLogSenderConfigurations.resolve(missingHash, Map.of(), Map.of()));
+    }
+
+    @Test
+    public void testConfigureSkippedWhenTheConfigurationHasNotChanged() {
+        List<Map<String, String>> configuredProperties = new ArrayList<>();
+        Map<String, String> properties = Map.of("test", "testConfigureSkippedWhenTheConfigurationHasNotChanged");
+        String hash = OtelLogSenderConfigurations.hash(properties, Map.of());
+        OtelLogSenderConfigurations.Configuration configuration = OtelLogSenderConfigurations.resolve(hash, properties, Map.of());
+
+        assertTrue(OtelLogSenderConfigurations.configureIfChanged(hash, configuration, (p, r) -> configuredProperties.add(p)));
+        assertFalse(OtelLogSenderConfigurations.configureIfChanged(hash, configuration, (p, r) -> configuredProperties.add(p)));
+        assertEquals(List.of(properties), configuredProperties);
+
+        Map<String, String> otherProperties = Map.of("test", "other");
+        String otherHash = OtelLogSenderConfigurations.hash(otherProperties, Map.of());
+        OtelLogSenderConfigurations.Configuration otherConfiguration = OtelLogSenderConfigurations.resolve(otherHash, otherProperties, Map.of());
+        assertTrue(OtelLogSenderConfigurations.configureIfChanged(otherHash, otherConfiguration, (p, r) -> configuredProperties.add(p)));
+        assertEquals(List.of(properties, otherProperties), configuredProperties);
+    }
+}
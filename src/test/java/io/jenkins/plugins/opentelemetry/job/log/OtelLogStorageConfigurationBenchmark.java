@@ -0,0 +1,59 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import io.jenkins.plugins.opentelemetry.JenkinsOpenTelemetryPluginConfiguration;
+import io.jenkins.plugins.opentelemetry.OpenTelemetryConfiguration;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cost per step of the OpenTelemetry configuration of the {@link OtelLogSenderBuildListener} created by
+ * {@link OtelLogStorage#nodeListener(org.jenkinsci.plugins.workflow.graph.FlowNode)} on a pipeline of 2,000 steps,
+ * comparing the former rebuild of the configuration for each step with the shared
+ * {@link OtelLogStorage.ConfigurationSnapshot}.
+ */
+public class OtelLogStorageConfigurationBenchmark {
+    static final int STEPS = 2_000;
+
+    @State(Scope.Benchmark)
+    public static class JenkinsState extends JmhBenchmarkState {
+        @Override
+        public void setup() {
+            JenkinsOpenTelemetryPluginConfiguration.get().initializeOpenTelemetry();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public void rebuildConfiguration(JenkinsState state, Blackhole blackhole) {
+        for (int step = 0; step < STEPS; step++) {
+            OpenTelemetryConfiguration otelConfiguration = JenkinsOpenTelemetryPluginConfiguration.get().toOpenTelemetryConfiguration();
+            Map<String, String> otelConfigurationProperties = otelConfiguration.toOpenTelemetryProperties();
+            Map<String, String> otelResourceAttributes = new HashMap<>();
+            otelConfiguration.toOpenTelemetryResource().getAttributes().asMap().forEach((k, v) -> otelResourceAttributes.put(k.getKey(), v.toString()));
+            blackhole.consume(otelConfigurationProperties);
+            blackhole.consume(otelResourceAttributes);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(STEPS)
+    public void configurationSnapshot(JenkinsState state, Blackhole blackhole) {
+        for (int step = 0; step < STEPS; step++) {
+            OtelLogStorage.ConfigurationSnapshot configuration = OtelLogStorage.getConfigurationSnapshot();
+            blackhole.consume(configuration.otelConfigProperties);
+            blackhole.consume(configuration.otelResourceAttributes);
+        }
+    }
+}
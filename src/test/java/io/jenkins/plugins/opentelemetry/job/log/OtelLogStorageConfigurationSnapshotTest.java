@@ -0,0 +1,47 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import io.jenkins.plugins.opentelemetry.JenkinsOpenTelemetryPluginConfiguration;
+import io.jenkins.plugins.opentelemetry.semconv.JenkinsOtelSemanticAttributes;
+import io.opentelemetry.semconv.ServiceAttributes;
+import jenkins.model.JenkinsLocationConfiguration;
+import org.junit.Rule;
+import org.junit.Test;
+import org.jvnet.hudson.test.JenkinsRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class OtelLogStorageConfigurationSnapshotTest {
+
+    @Rule
+    public JenkinsRule jenkinsRule = new JenkinsRule();
+
+    @Test
+    public void testSnapshotRefreshedWhenTheConfigurationChanges() {
+        OtelLogStorage.ConfigurationSnapshot snapshot = OtelLogStorage.getConfigurationSnapshot();
+        assertSame(snapshot, OtelLogStorage.getConfigurationSnapshot());
+
+        // data bound setter, invoked by JCasC without reinitialization of the plugin
+        JenkinsOpenTelemetryPluginConfiguration.get().setServiceName("my-jenkins");
+        OtelLogStorage.ConfigurationSnapshot serviceNameSnapshot = OtelLogStorage.getConfigurationSnapshot();
+        assertNotSame(snapshot, serviceNameSnapshot);
+        assertEquals("my-jenkins", serviceNameSnapshot.otelResourceAttributes.get(ServiceAttributes.SERVICE_NAME.getKey()));
+
+        JenkinsOpenTelemetryPluginConfiguration.get().setConfigurationProperties("otel.logs.exporter=otlp");
+        OtelLogStorage.ConfigurationSnapshot configurationPropertiesSnapshot = OtelLogStorage.getConfigurationSnapshot();
+        assertNotSame(serviceNameSnapshot, configurationPropertiesSnapshot);
+        assertEquals("otlp", configurationPropertiesSnapshot.otelConfigProperties.get("otel.logs.exporter"));
+
+        JenkinsLocationConfiguration.get().setUrl("http://jenkins.example.com:8080/");
+        OtelLogStorage.ConfigurationSnapshot jenkinsUrlSnapshot = OtelLogStorage.getConfigurationSnapshot();
+        assertNotSame(configurationPropertiesSnapshot, jenkinsUrlSnapshot);
+        assertEquals("http://jenkins.example.com:8080/", jenkinsUrlSnapshot.otelConfigProperties.get(JenkinsOtelSemanticAttributes.JENKINS_URL.getKey()));
+        assertSame(jenkinsUrlSnapshot, OtelLogStorage.getConfigurationSnapshot());
+    }
+}
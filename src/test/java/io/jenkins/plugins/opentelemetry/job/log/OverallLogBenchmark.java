@@ -0,0 +1,119 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log;
+
+import io.jenkins.plugins.opentelemetry.job.log.util.InputStreamByteBuffer;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogLineIterator;
+import io.jenkins.plugins.opentelemetry.job.log.util.LogLineIteratorInputStream;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.api.trace.TracerProvider;
+import jenkins.benchmark.jmh.JmhBenchmarkState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+/**
+ * Render a synthetic log of 100 MB with {@link OverallLog#writeHtmlTo(long, Writer)} reading the log lines with the bulk
+ * {@link LogLineIteratorInputStream#read(byte[], int, int)} compared with the former byte per byte reads.
+ */
+public class OverallLogBenchmark {
+    static final long LOG_SIZE_IN_BYTES = 100L * 1024 * 1024;
+    static final String[] LINES = {
+        "[Pipeline] sh",
+        "+ ./mvnw -B -ntp verify",
+        "[INFO] Downloading from central: https://repo.maven.apache.org/maven2/org/jenkins-ci/plugins/plugin/4.80/plugin-4.80.pom",
+        "[INFO] Compiling 312 source files with javac [debug release 11] to target/classes",
+        "[INFO] Tests run: 42, Failures: 0, Errors: 0, Skipped: 0, Time elapsed: 12.345 s - in io.jenkins.plugins.opentelemetry.MyTest",
+        "Téléchargement terminé ✔",
+    };
+
+    @State(Scope.Benchmark)
+    public static class JenkinsState extends JmhBenchmarkState {
+        final Tracer tracer = TracerProvider.noop().get("benchmark");
+        final LogsViewHeader logsViewHeader = new LogsViewHeader("My Backend", "https://example.com", "/plugin/opentelemetry/images/24x24/opentelemetry.png");
+    }
+
+    @Benchmark
+    public void bulkRead(JenkinsState state, Blackhole blackhole) throws IOException {
+        InputStream in = new LogLineIteratorInputStream<>(new SyntheticLogLineIterator(), new NoopLogLineIdMapper(), state.tracer);
+        blackhole.consume(writeHtml(state, in));
+    }
+
+    @Benchmark
+    public void singleByteRead(JenkinsState state, Blackhole blackhole) throws IOException {
+        InputStream in = new SingleByteInputStream(new LogLineIteratorInputStream<>(new SyntheticLogLineIterator(), new NoopLogLineIdMapper(), state.tracer));
+        blackhole.consume(writeHtml(state, in));
+    }
+
+    static long writeHtml(JenkinsState state, InputStream in) throws IOException {
+        OverallLog overallLog = new OverallLog(new InputStreamByteBuffer(in, state.tracer), state.logsViewHeader, StandardCharsets.UTF_8, true, null, state.tracer);
+        return overallLog.writeHtmlTo(0, Writer.nullWriter());
+    }
+
+    static final class SyntheticLogLineIterator implements LogLineIterator<Long> {
+        long id;
+        long bytes;
+
+        @Override
+        public boolean hasNext() {
+            return bytes < LOG_SIZE_IN_BYTES;
+        }
+
+        @Override
+        public LogLine<Long> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String message = LINES[(int) (id % LINES.length)];
+            bytes += message.length() + 1;
+            return new LogLine<>(id++, message);
+        }
+
+        @Override
+        public void skipLines(Long toLogLineId) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    static final class NoopLogLineIdMapper implements LogLineIterator.LogLineBytesToLogLineIdMapper<Long> {
+        @Override
+        public Long getLogLineIdFromLogBytes(long bytes) {
+            return null;
+        }
+
+        @Override
+        public void putLogBytesToLogLineId(long bytes, Long logLineId) {
+        }
+    }
+
+    /**
+     * Only exposes {@link InputStream#read()} as the former implementation of the line iterator input streams
+     */
+    static final class SingleByteInputStream extends InputStream {
+        final InputStream delegate;
+
+        SingleByteInputStream(InputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return delegate.read();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import io.jenkins.plugins.opentelemetry.job.log.LogLine;
+import io.opentelemetry.api.trace.TracerProvider;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class LogLineIteratorInputStreamTest {
+
+    static final List<String> LINES = List.of("first line", "", "deuxième ligne ✔", "a".repeat(5_000));
+
+    @Test
+    public void testBulkRead() throws Exception {
+        for (int bufferSize : new int[]{1, 3, 7, 1024, 16 * 1024}) {
+            try (InputStream in = newInputStream()) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[bufferSize];
+                int read;
+                while ((read = in.read(buffer, 0, buffer.length)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                assertEquals("buffer size " + bufferSize, String.join("\n", LINES) + "\n", out.toString(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    public void testSingleByteRead() throws Exception {
+        try (InputStream in = newInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                out.write(b);
+            }
+            assertEquals(String.join("\n", LINES) + "\n", out.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testSkipWithoutLogLineIdMapping() throws Exception {
+        byte[] log = (String.join("\n", LINES) + "\n").getBytes(StandardCharsets.UTF_8);
+        for (int skip : new int[]{0, 5, 11, 12, 20, log.length - 1}) {
+            try (InputStream in = newInputStream()) {
+                assertEquals(skip, in.skip(skip));
+                assertEquals("skip " + skip, new String(log, skip, log.length - skip, StandardCharsets.UTF_8), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    static InputStream newInputStream() {
+        Iterator<String> lines = LINES.iterator();
+        LogLineIterator<Long> logLines = new LogLineIterator<>() {
+            long id;
+
+            @Override
+            public void skipLines(Long toLogLineId) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public boolean hasNext() {
+                return lines.hasNext();
+            }
+
+            @Override
+            public LogLine<Long> next() {
+                return new LogLine<>(id++, lines.next());
+            }
+        };
+        LogLineIterator.LogLineBytesToLogLineIdMapper<Long> mapper = new LogLineIterator.LogLineBytesToLogLineIdMapper<>() {
+            @Override
+            public Long getLogLineIdFromLogBytes(long bytes) {
+                return null;
+            }
+
+            @Override
+            public void putLogBytesToLogLineId(long bytes, Long logLineId) {
+            }
+        };
+        return new LogLineIteratorInputStream<>(logLines, mapper, TracerProvider.noop().get("test"));
+    }
+}
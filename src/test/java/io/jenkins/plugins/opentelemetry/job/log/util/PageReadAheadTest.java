@@ -0,0 +1,183 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.job.log.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PageReadAheadTest {
+
+    @Test
+    public void testPagesInOrder() throws Exception {
+        for (int maxPagesAhead = 0; maxPagesAhead <= 2; maxPagesAhead++) {
+            AtomicInteger pageCounter = new AtomicInteger();
+            List<Integer> actual = new ArrayList<>();
+            try (PageReadAhead<Integer> readAhead = new PageReadAhead<>(() -> {
+                int page = pageCounter.getAndIncrement();
+                return page < 10 ? List.of(page * 2, page * 2 + 1) : Collections.emptyList();
+            }, maxPagesAhead)) {
+                List<Integer> page;
+                while (!(page = readAhead.nextPage()).isEmpty()) {
+                    actual.addAll(page);
+                }
+                assertTrue("no page after the end of the log", readAhead.nextPage().isEmpty());
+            }
+            assertEquals(20, actual.size());
+            for (int i = 0; i < actual.size(); i++) {
+                assertEquals(i, (int) actual.get(i));
+            }
+            assertEquals("loading stops at the end of the log", 11, pageCounter.get());
+        }
+    }
+
+    @Test
+    public void testMaxPagesAhead() throws Exception {
+        AtomicInteger pageCounter = new AtomicInteger();
+        CountDownLatch thirdPageLoaded = new CountDownLatch(1);
+        PageReadAhead<Integer> readAhead = new PageReadAhead<>(() -> {
+            int page = pageCounter.incrementAndGet();
+            if (page == 3) {
+                thirdPageLoaded.countDown();
+            }
+            return List.of(page);
+        }, 2);
+        assertEquals(List.of(1), readAhead.nextPage());
+        assertTrue(thirdPageLoaded.await(10, TimeUnit.SECONDS));
+        // wait for the loading thread to leave, it is waiting for the consumption of a page
+        readAhead.close();
+        // the consumed page and 2 pages ahead
+        assertEquals(3, pageCounter.get());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        AtomicInteger pageCounter = new AtomicInteger();
+        try (PageReadAhead<Integer> readAhead = new PageReadAhead<>(() -> {
+            if (pageCounter.incrementAndGet() > 1) {
+                throw new IOException("backend unavailable");
+            }
+            return List.of(1);
+        }, 1)) {
+            assertEquals(List.of(1), readAhead.nextPage());
+            try {
+                readAhead.nextPage();
+                fail();
+            } catch (IOException e) {
+                assertEquals("backend unavailable", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testCloseWaitsForTheLoader() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        AtomicInteger loadingPages = new AtomicInteger();
+        PageReadAhead<Integer> readAhead = new PageReadAhead<>(() -> {
+            loadingPages.incrementAndGet();
+            try {
+                if (loadingPages.get() > 1) {
+                    loading.countDown();
+                    // blocked round-trip to the backend
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                }
+                return List.of(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            } finally {
+                loadingPages.decrementAndGet();
+            }
+        }, 1);
+        assertEquals(List.of(1), readAhead.nextPage());
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+        readAhead.close();
+        assertEquals("the loader has left the page loader", 0, loadingPages.get());
+        assertTrue(readAhead.nextPage().isEmpty());
+    }
+
+    @Test
+    public void testCloseCancelsTheLoader() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        AtomicInteger loadingPages = new AtomicInteger();
+        PageReadAhead<Integer> readAhead = new PageReadAhead<>(new PageReadAhead.PageLoader<>() {
+            @Override
+            public List<Integer> loadNextPage() throws IOException {
+                loadingPages.incrementAndGet();
+                try {
+                    loading.countDown();
+                    // blocking I/O that doesn't respond to the interruption, released by cancel()
+                    while (true) {
+                        try {
+                            if (cancelled.await(10, TimeUnit.SECONDS)) {
+                                throw new IOException("aborted");
+                            }
+                        } catch (InterruptedException e) {
+                            // ignored like by a blocking socket read
+                        }
+                    }
+                } finally {
+                    loadingPages.decrementAndGet();
+                }
+            }
+
+            @Override
+            public void cancel() {
+                cancelled.countDown();
+            }
+        }, 1);
+        readAhead.start();
+        assertTrue(loading.await(10, TimeUnit.SECONDS));
+        readAhead.close();
+        assertEquals("the loader has left the page loader", 0, loadingPages.get());
+    }
+
+    @Test
+    public void testPagesLoadedOnDemandWhenTheThreadsAreBusy() throws Exception {
+        CountDownLatch started = new CountDownLatch(PageReadAhead.MAX_THREADS);
+        List<PageReadAhead<Integer>> busyReadAheads = new ArrayList<>();
+        try {
+            for (int i = 0; i < PageReadAhead.MAX_THREADS; i++) {
+                PageReadAhead<Integer> busyReadAhead = new PageReadAhead<>(() -> {
+                    started.countDown();
+                    try {
+                        new CountDownLatch(1).await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return Collections.emptyList();
+                }, 1);
+                busyReadAheads.add(busyReadAhead);
+                busyReadAhead.start();
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            List<Thread> loadingThreads = new ArrayList<>();
+            try (PageReadAhead<Integer> readAhead = new PageReadAhead<>(() -> {
+                loadingThreads.add(Thread.currentThread());
+                return loadingThreads.size() < 3 ? List.of(loadingThreads.size()) : Collections.emptyList();
+            }, 1)) {
+                assertEquals(List.of(1), readAhead.nextPage());
+                assertEquals(List.of(2), readAhead.nextPage());
+                assertTrue(readAhead.nextPage().isEmpty());
+            }
+            assertEquals(List.of(Thread.currentThread(), Thread.currentThread(), Thread.currentThread()), loadingThreads);
+        } finally {
+            busyReadAheads.forEach(PageReadAhead::close);
+        }
+    }
+}
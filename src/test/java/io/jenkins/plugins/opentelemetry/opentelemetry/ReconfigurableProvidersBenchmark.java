@@ -0,0 +1,106 @@
+/*
+ * Copyright The Original Author or Authors
+ * SPDX-License-Identifier: Apache-2.0
+ */
+
+package io.jenkins.plugins.opentelemetry.opentelemetry;
+
+import io.opentelemetry.api.logs.LogRecordBuilder;
+import io.opentelemetry.api.logs.Logger;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.sdk.logs.SdkLoggerProvider;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Contended access to the {@link ReconfigurableTracerProvider} and {@link ReconfigurableLoggerProvider} as done by
+ * concurrent HTTP requests and pipelines, compared with the former {@code synchronized} delegation.
+ */
+@Threads(16)
+public class ReconfigurableProvidersBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ProvidersState {
+        SdkTracerProvider sdkTracerProvider;
+        SdkLoggerProvider sdkLoggerProvider;
+        Tracer tracer;
+        Logger logger;
+        Tracer synchronizedTracer;
+        Logger synchronizedLogger;
+
+        @Setup
+        public void setup() {
+            sdkTracerProvider = SdkTracerProvider.builder().build();
+            sdkLoggerProvider = SdkLoggerProvider.builder().build();
+            tracer = new ReconfigurableTracerProvider(sdkTracerProvider).get("io.jenkins");
+            logger = new ReconfigurableLoggerProvider(sdkLoggerProvider).get("io.jenkins");
+            synchronizedTracer = new SynchronizedTracer(sdkTracerProvider.get("io.jenkins"));
+            synchronizedLogger = new SynchronizedLogger(sdkLoggerProvider.get("io.jenkins"));
+        }
+
+        @TearDown
+        public void tearDown() {
+            sdkTracerProvider.close();
+            sdkLoggerProvider.close();
+        }
+    }
+
+    @Benchmark
+    public void spanBuilder(ProvidersState state, Blackhole blackhole) {
+        blackhole.consume(state.tracer.spanBuilder("span"));
+    }
+
+    @Benchmark
+    public void synchronizedSpanBuilder(ProvidersState state, Blackhole blackhole) {
+        blackhole.consume(state.synchronizedTracer.spanBuilder("span"));
+    }
+
+    @Benchmark
+    public void logRecordBuilder(ProvidersState state, Blackhole blackhole) {
+        blackhole.consume(state.logger.logRecordBuilder());
+    }
+
+    @Benchmark
+    public void synchronizedLogRecordBuilder(ProvidersState state, Blackhole blackhole) {
+        blackhole.consume(state.synchronizedLogger.logRecordBuilder());
+    }
+
+    /**
+     * Former implementation of {@link ReconfigurableTracerProvider.ReconfigurableTracer}
+     */
+    static class SynchronizedTracer implements Tracer {
+        Tracer delegate;
+
+        SynchronizedTracer(Tracer delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized SpanBuilder spanBuilder(String spanName) {
+            return delegate.spanBuilder(spanName);
+        }
+    }
+
+    /**
+     * Former implementation of {@link ReconfigurableLoggerProvider.ReconfigurableLogger}
+     */
+    static class SynchronizedLogger implements Logger {
+        Logger delegate;
+
+        SynchronizedLogger(Logger delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public synchronized LogRecordBuilder logRecordBuilder() {
+            return delegate.logRecordBuilder();
+        }
+    }
+}